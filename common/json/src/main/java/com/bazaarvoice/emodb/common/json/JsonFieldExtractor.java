@@ -0,0 +1,186 @@
+package com.bazaarvoice.emodb.common.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Extracts the values at a fixed set of paths from JSON objects in a single streaming pass, without materializing
+ * the rest of the document.  Each path is a list of object keys from the root, so <code>["about", "~id"]</code>
+ * refers to the "~id" key of the object at the "about" key.  Values which aren't on a path are skipped by the
+ * tokenizer and the pass ends as soon as every path has been found.
+ * <p>
+ * If case-insensitive matching is enabled a key matching a path exactly takes precedence over any key which only
+ * differs by case, and otherwise the first key which matches ignoring case is used.  This is the same lookup the
+ * Hive SerDe performs on fully parsed maps, where column names are always lower case.
+ * <p>
+ * Instances are immutable and may be shared between threads.
+ */
+public class JsonFieldExtractor {
+
+    // Parsers created by this factory can read values with {@link JsonParser#readValueAs(Class)}
+    private static final JsonFactory FACTORY = CustomJsonObjectMapperFactory.build().getFactory();
+
+    private final Node _root = new Node(-1);
+    private final int _numPaths;
+    private final boolean _caseInsensitive;
+
+    /**
+     * Callback for each value extracted from a document.
+     */
+    public interface ValueHandler {
+        /**
+         * Called at most once per path with the parser positioned at the first token of the path's value, which
+         * may be {@link JsonToken#VALUE_NULL}.  The handler may read the value but must not advance the parser past
+         * the value's last token.  Any part of the value which the handler doesn't read is skipped.
+         */
+        void value(int path, JsonParser parser) throws IOException;
+    }
+
+    /**
+     * @param paths The paths to extract.  The path index passed to the {@link ValueHandler} is the path's position
+     *              in this list.  Since each value is only reported once no path may be a prefix of another.
+     * @param caseInsensitive Whether keys are matched ignoring case.
+     */
+    public JsonFieldExtractor(List<List<String>> paths, boolean caseInsensitive) {
+        _numPaths = paths.size();
+        _caseInsensitive = caseInsensitive;
+
+        for (int i = 0; i < paths.size(); i++) {
+            List<String> path = paths.get(i);
+            checkArgument(!path.isEmpty(), "Empty path");
+            Node node = _root;
+            for (int depth = 0; depth < path.size(); depth++) {
+                checkArgument(node._path == -1, "Path is a prefix of another path: %s", path);
+                String key = path.get(depth);
+                Node child = node._children.get(key);
+                if (child == null) {
+                    child = new Node(depth == path.size() - 1 ? i : -1);
+                    node._children.put(key, child);
+                    node._childrenIgnoringCase.putIfAbsent(key.toLowerCase(), child);
+                } else {
+                    checkArgument(depth != path.size() - 1, "Path is a prefix of another path: %s", path);
+                }
+                node = child;
+            }
+        }
+    }
+
+    public int getNumPaths() {
+        return _numPaths;
+    }
+
+    /**
+     * Extracts the paths from the UTF-8 encoded JSON document in the given range.  Paths which aren't present, or
+     * which are interrupted by a value which isn't an object, are not reported to the handler.  If the document
+     * itself isn't an object no paths are reported.
+     */
+    public void extract(byte[] utf8, int offset, int length, ValueHandler handler)
+            throws IOException {
+        try (JsonParser parser = FACTORY.createParser(utf8, offset, length)) {
+            if (parser.nextToken() == JsonToken.START_OBJECT && _numPaths > 0) {
+                new Pass(handler).extractObject(parser, _root);
+            }
+        }
+    }
+
+    /** A key in the trie of paths.  Leaves are the last key of a path, all other nodes are intermediate objects. */
+    private static class Node {
+        private final int _path;
+        private final Map<String, Node> _children = Maps.newHashMap();
+        // Same children keyed by their lower case keys
+        private final Map<String, Node> _childrenIgnoringCase = Maps.newHashMap();
+
+        private Node(int path) {
+            _path = path;
+        }
+    }
+
+    /** State for a single call to extract(). */
+    private class Pass {
+        private final ValueHandler _handler;
+        private int _remaining = _numPaths;
+
+        private Pass(ValueHandler handler) {
+            _handler = handler;
+        }
+
+        /**
+         * Extracts the paths below the node from the object at the parser's current START_OBJECT token.  Returns
+         * true if every path has been found, in which case the parser is left wherever it stopped.
+         */
+        private boolean extractObject(JsonParser parser, Node node)
+                throws IOException {
+            // Children matched by a key which exactly matches, so any other key for the same child is skipped
+            Set<Node> matched = Sets.newHashSet();
+            // Values for children which so far only matched ignoring case.  These are held until the end of the object
+            // in case a later key matches exactly.
+            Map<Node, TokenBuffer> deferred = null;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String key = parser.getCurrentName();
+                parser.nextToken();
+
+                Node child = node._children.get(key);
+                if (child != null && matched.add(child)) {
+                    if (deferred != null) {
+                        deferred.remove(child);
+                    }
+                    if (extractValue(parser, child)) {
+                        return true;
+                    }
+                } else if (_caseInsensitive
+                        && (child = node._childrenIgnoringCase.get(key.toLowerCase())) != null
+                        && !matched.contains(child)
+                        && (deferred == null || !deferred.containsKey(child))) {
+                    if (deferred == null) {
+                        deferred = Maps.newLinkedHashMap();
+                    }
+                    TokenBuffer buffer = new TokenBuffer(parser.getCodec(), false);
+                    buffer.copyCurrentStructure(parser);
+                    deferred.put(child, buffer);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (deferred != null) {
+                for (Map.Entry<Node, TokenBuffer> entry : deferred.entrySet()) {
+                    try (JsonParser bufferedParser = entry.getValue().asParser(parser.getCodec())) {
+                        bufferedParser.nextToken();
+                        if (extractValue(bufferedParser, entry.getKey())) {
+                            return true;
+                        }
+                    }
+                }
+            }
+
+            return false;
+        }
+
+        private boolean extractValue(JsonParser parser, Node node)
+                throws IOException {
+            if (node._path != -1) {
+                _handler.value(node._path, parser);
+                // No-op if the handler already read the value
+                parser.skipChildren();
+                return --_remaining == 0;
+            }
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                return extractObject(parser, node);
+            }
+            parser.skipChildren();
+            return false;
+        }
+    }
+}
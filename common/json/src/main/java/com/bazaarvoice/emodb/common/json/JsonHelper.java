@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.common.json;
 
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
 import com.bazaarvoice.emodb.common.json.deferred.LazyJsonModule;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -7,6 +8,8 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.util.ISO8601Utils;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -15,6 +18,8 @@ import java.io.OutputStream;
 import java.text.ParseException;
 import java.text.ParsePosition;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 public abstract class JsonHelper {
 
@@ -121,6 +126,45 @@ public abstract class JsonHelper {
         return date;
     }
 
+    /**
+     * Returns a copy of a JSON value which shares no maps or lists with the original, so either may be modified
+     * without affecting the other.  A {@link LazyJsonMap} which hasn't been deserialized is copied without
+     * deserializing it.
+     */
+    @Nullable
+    public static Object deepCopy(@Nullable Object value) {
+        if (value instanceof LazyJsonMap) {
+            LazyJsonMap copy = ((LazyJsonMap) value).lazyCopy();
+            Map<String, Object> overrides = copy.getOverrides();
+            if (overrides != null) {
+                // The JSON string is immutable, so only the overrides need to be copied
+                for (Map.Entry<String, Object> entry : overrides.entrySet()) {
+                    entry.setValue(deepCopy(entry.getValue()));
+                }
+                return copy;
+            }
+            // Otherwise the copy is a shallow copy of the deserialized map, so copy its values below
+            value = copy;
+        }
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            Map<Object, Object> copy = Maps.newLinkedHashMap();
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                copy.put(entry.getKey(), deepCopy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            List<Object> copy = Lists.newArrayListWithCapacity(list.size());
+            for (Object element : list) {
+                copy.add(deepCopy(element));
+            }
+            return copy;
+        }
+        return value;
+    }
+
     /** Formats the specified timestamp as an ISO 8601 string with milliseconds and UTC timezone. */
     public static String formatTimestamp(@Nullable Date date) {
         return (date != null) ? date.toInstant().toString() : null;
@@ -3,16 +3,23 @@ package com.bazaarvoice.emodb.common.json.deferred;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.bazaarvoice.emodb.common.json.OrderedJson;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.google.common.base.Charsets;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Bytes;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -62,11 +69,21 @@ import static com.google.common.base.Preconditions.checkState;
 @JsonSerialize(using = LazyJsonMapSerializer.class)
 public class LazyJsonMap implements Map<String, Object> {
 
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     private final AtomicReference<DeserializationState> _deserState;
 
     @JsonCreator
     public LazyJsonMap(String json) {
-        this(new DeserializationState(checkNotNull(json, "json")));
+        this(new DeserializationState(checkNotNull(json, "json"), null));
+    }
+
+    /**
+     * Creates a map around the UTF-8 encoding of a JSON object.  Writing the map to a UTF-8 generator copies the bytes
+     * without decoding them.  The caller must not modify the array after calling this constructor.
+     */
+    public LazyJsonMap(byte[] utf8) {
+        this(new DeserializationState(null, checkNotNull(utf8, "utf8")));
     }
 
     private LazyJsonMap(DeserializationState deserState) {
@@ -76,20 +93,22 @@ public class LazyJsonMap implements Map<String, Object> {
     /**
      * At any time the map could be in one of two states:
      * <ol>
-     *     <li>JSON string, in which case the state consists of the original JSON string and a map of any updates
-     *         which have been performed on the map, and</li>
+     *     <li>JSON string, in which case the state consists of the original JSON as either a string or UTF-8 bytes
+     *         and a map of any updates which have been performed on the map, and</li>
      *     <li>Deserialized, in which case the state consists of the Java Map object representation.</li>
      * </ol>
      */
     private static class DeserializationState {
-        // Initial JSON string attributes
+        // Initial JSON string attributes.  Exactly one of json and utf8 is set.
         private final String json;
+        private final byte[] utf8;
         private final Map<String, Object> overrides;
         // Deserialized attributes
         private final Map<String, Object> deserialized;
 
-        DeserializationState(String json) {
+        DeserializationState(@Nullable String json, @Nullable byte[] utf8) {
             this.json = json;
+            this.utf8 = utf8;
             this.overrides = Maps.newHashMap();
             this.deserialized = null;
         }
@@ -97,6 +116,7 @@ public class LazyJsonMap implements Map<String, Object> {
         DeserializationState(Map<String, Object> deserialized) {
             this.deserialized = deserialized;
             this.json = null;
+            this.utf8 = null;
             this.overrides = null;
         }
 
@@ -109,7 +129,7 @@ public class LazyJsonMap implements Map<String, Object> {
             if (deserialized != null) {
                 copy = new DeserializationState(Maps.newHashMap(deserialized));
             } else {
-                copy = new DeserializationState(json);
+                copy = new DeserializationState(json, utf8);
                 copy.overrides.putAll(overrides);
             }
             return copy;
@@ -123,7 +143,10 @@ public class LazyJsonMap implements Map<String, Object> {
         // Written as a loop to prevent the need for locking
         DeserializationState deserState;
         while (!(deserState = _deserState.get()).isDeserialized()) {
-            Map<String, Object> deserialized = JsonHelper.fromJson(deserState.json, new TypeReference<Map<String, Object>>() {});
+            //noinspection unchecked
+            Map<String, Object> deserialized = deserState.json != null ?
+                    JsonHelper.fromJson(deserState.json, new TypeReference<Map<String, Object>>() {}) :
+                    JsonHelper.fromUtf8Bytes(deserState.utf8, 0, deserState.utf8.length, Map.class);
             deserialized.putAll(deserState.overrides);
             DeserializationState newDeserState = new DeserializationState(deserialized);
             _deserState.compareAndSet(deserState, newDeserState);
@@ -140,7 +163,9 @@ public class LazyJsonMap implements Map<String, Object> {
         // If the JSON is empty it will contain only '{', '}', and possibly white space.  If it is not empty it must
         // contain at least one '"' to open the first field name string.  So a shortcut to test emptiness is to check
         // whether '"' does not exist in the string.
-        return deserializationState.overrides.isEmpty() && deserializationState.json.indexOf('"') == -1;
+        return deserializationState.overrides.isEmpty() && (deserializationState.json != null ?
+                deserializationState.json.indexOf('"') == -1 :
+                Bytes.indexOf(deserializationState.utf8, (byte) '"') == -1);
     }
 
     @Override
@@ -250,9 +275,14 @@ public class LazyJsonMap implements Map<String, Object> {
         }
 
         if (deserState.overrides.isEmpty()) {
-            // With no overrides the most efficient action is to copy the original JSON verbatim.
+            // With no overrides the most efficient action is to copy the original JSON verbatim.  Write it as a value
+            // so any separator the generator owes, such as after a field name, comes first.
             try {
-                generator.writeRaw(deserState.json);
+                if (deserState.json != null) {
+                    generator.writeRawValue(deserState.json);
+                } else {
+                    generator.writeRawValue(new Utf8JsonString(deserState.utf8));
+                }
                 return;
             } catch (UnsupportedOperationException e) {
                 // Not all parsers are guaranteed to support this.  If this is one then use the default
@@ -267,7 +297,14 @@ public class LazyJsonMap implements Map<String, Object> {
             return;
         }
 
-        JsonParser parser = codec.getFactory().createParser(deserState.json);
+        // The source is always JSON text, even when writing to a binary format such as CBOR.
+        JsonFactory factory = codec.getFactory();
+        if (factory.canHandleBinaryNatively()) {
+            factory = JSON_FACTORY;
+        }
+        JsonParser parser = deserState.json != null ?
+                factory.createParser(deserState.json) :
+                factory.createParser(deserState.utf8);
         checkState(parser.nextToken() == JsonToken.START_OBJECT, "JSON did not contain an object");
         generator.writeStartObject();
 
@@ -353,4 +390,99 @@ public class LazyJsonMap implements Map<String, Object> {
         // For consistency must use the deserialized map
         return deserialized().equals(obj);
     }
+
+    /**
+     * Raw JSON backed by its UTF-8 encoding.  Generators which write UTF-8 copy the bytes from
+     * {@link #asUnquotedUTF8()} as-is.  Other generators, and the quoted forms which are never used for raw values,
+     * work from the decoded string.
+     */
+    private static class Utf8JsonString implements SerializableString {
+        private final byte[] _utf8;
+        private SerializedString _decoded;
+
+        Utf8JsonString(byte[] utf8) {
+            _utf8 = utf8;
+        }
+
+        private SerializedString decoded() {
+            if (_decoded == null) {
+                _decoded = new SerializedString(new String(_utf8, Charsets.UTF_8));
+            }
+            return _decoded;
+        }
+
+        @Override
+        public String getValue() {
+            return decoded().getValue();
+        }
+
+        @Override
+        public int charLength() {
+            return decoded().charLength();
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            return decoded().asQuotedChars();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return _utf8;
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            return decoded().asQuotedUTF8();
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            return decoded().appendQuotedUTF8(buffer, offset);
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            return decoded().appendQuoted(buffer, offset);
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+            if (offset + _utf8.length > buffer.length) {
+                return -1;
+            }
+            System.arraycopy(_utf8, 0, buffer, offset, _utf8.length);
+            return _utf8.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+            return decoded().appendUnquoted(buffer, offset);
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream out) throws IOException {
+            return decoded().writeQuotedUTF8(out);
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream out) throws IOException {
+            out.write(_utf8);
+            return _utf8.length;
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) throws IOException {
+            return decoded().putQuotedUTF8(buffer);
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) throws IOException {
+            if (_utf8.length > buffer.remaining()) {
+                return -1;
+            }
+            buffer.put(_utf8);
+            return _utf8.length;
+        }
+    }
 }
@@ -0,0 +1,118 @@
+package com.bazaarvoice.emodb.common.json;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.fail;
+
+public class JsonFieldExtractorTest {
+
+    @Test
+    public void testExtract() throws IOException {
+        JsonFieldExtractor extractor = new JsonFieldExtractor(ImmutableList.of(
+                path("~id"), path("about", "~id"), path("missing"), path("rating", "value"), path("nothing")), false);
+
+        Map<Integer, Object> values = extract(extractor,
+                "{\"text\":{\"~id\":\"skip\"},\"~id\":\"review1\",\"rating\":5,\"nothing\":null," +
+                "\"about\":{\"name\":\"x\",\"~id\":\"product1\"},\"tags\":[1,2,3]}");
+
+        assertEquals(values, ImmutableMap.of(0, "review1", 1, "product1", 4, "null"));
+    }
+
+    @Test
+    public void testExtractStructures() throws IOException {
+        JsonFieldExtractor extractor = new JsonFieldExtractor(ImmutableList.of(path("about"), path("tags")), false);
+
+        Map<Integer, Object> values = extract(extractor,
+                "{\"about\":{\"~id\":\"product1\",\"nested\":{\"a\":[]}},\"tags\":[1,{\"b\":2}]}");
+
+        assertEquals(values, ImmutableMap.of(
+                0, ImmutableMap.of("~id", "product1", "nested", ImmutableMap.of("a", Collections.emptyList())),
+                1, Arrays.asList(1, ImmutableMap.of("b", 2))));
+    }
+
+    @Test
+    public void testUnreadValuesAreSkipped() throws IOException {
+        JsonFieldExtractor extractor = new JsonFieldExtractor(ImmutableList.of(path("about"), path("title")), false);
+        Map<Integer, String> tokens = Maps.newHashMap();
+
+        byte[] json = "{\"about\":{\"a\":[1,{\"b\":2}]},\"title\":\"Great\"}".getBytes(Charsets.UTF_8);
+        // Only look at the first token of each value
+        extractor.extract(json, 0, json.length, (path, parser) -> tokens.put(path, parser.getText()));
+
+        assertEquals(tokens, ImmutableMap.of(0, "{", 1, "Great"));
+    }
+
+    @Test
+    public void testCaseInsensitive() throws IOException {
+        JsonFieldExtractor extractor = new JsonFieldExtractor(ImmutableList.of(
+                path("title"), path("about", "name"), path("rating")), true);
+
+        // Exact matches take precedence even when they appear after a case-insensitive match
+        Map<Integer, Object> values = extract(extractor,
+                "{\"Title\":\"wrong\",\"About\":{\"name\":\"wrong\"},\"title\":\"right\",\"about\":{\"Name\":\"right\"}," +
+                "\"RATING\":4,\"Rating\":5}");
+
+        assertEquals(values, ImmutableMap.of(0, "right", 1, "right", 2, 4));
+
+        // Without an exact match the first case-insensitive match is used, even if it doesn't contain the path
+        values = extract(extractor, "{\"ABOUT\":{\"other\":1},\"About\":{\"name\":\"wrong\"}}");
+
+        assertEquals(values, ImmutableMap.of());
+    }
+
+    @Test
+    public void testCaseSensitive() throws IOException {
+        JsonFieldExtractor extractor = new JsonFieldExtractor(ImmutableList.of(path("title")), false);
+
+        assertEquals(extract(extractor, "{\"Title\":\"wrong\"}"), ImmutableMap.of());
+    }
+
+    @Test
+    public void testNotAnObject() throws IOException {
+        JsonFieldExtractor extractor = new JsonFieldExtractor(ImmutableList.of(path("title")), false);
+
+        assertEquals(extract(extractor, "[{\"title\":\"wrong\"}]"), ImmutableMap.of());
+        assertEquals(extract(extractor, "\"title\""), ImmutableMap.of());
+    }
+
+    @Test
+    public void testPrefixPathsRejected() {
+        try {
+            new JsonFieldExtractor(ImmutableList.of(path("about", "~id"), path("about")), false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            new JsonFieldExtractor(ImmutableList.of(path("about"), path("about", "~id")), false);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private static List<String> path(String... keys) {
+        return Arrays.asList(keys);
+    }
+
+    private static Map<Integer, Object> extract(JsonFieldExtractor extractor, String json) throws IOException {
+        Map<Integer, Object> values = Maps.newHashMap();
+        byte[] utf8 = json.getBytes(Charsets.UTF_8);
+        extractor.extract(utf8, 0, utf8.length, (path, parser) -> {
+            Object value = parser.readValueAs(Object.class);
+            values.put(path, value != null ? value : "null");
+        });
+        return values;
+    }
+}
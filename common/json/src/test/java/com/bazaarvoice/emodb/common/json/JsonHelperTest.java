@@ -1,11 +1,19 @@
 package com.bazaarvoice.emodb.common.json;
 
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.testng.annotations.Test;
 
 import java.text.ParseException;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 
 public class JsonHelperTest {
     @Test
@@ -20,4 +28,38 @@ public class JsonHelperTest {
         assertEquals(JsonHelper.parseTimestamp("2013-12-06T23:25:57.023Z"), new Date(1386372357023L));
         assertEquals(JsonHelper.parseTimestamp(null), null);
     }
+
+    @Test
+    public void testDeepCopy() {
+        Map<String, Object> nested = Maps.newHashMap(ImmutableMap.of("b", 1));
+        List<Object> list = Lists.newArrayList("a", nested);
+        Map<String, Object> original = Maps.newHashMap(ImmutableMap.of("name", "Bob", "list", list));
+
+        @SuppressWarnings("unchecked") Map<String, Object> copy = (Map<String, Object>) JsonHelper.deepCopy(original);
+        assertEquals(copy, original);
+
+        nested.put("b", 2);
+        list.add("c");
+        original.put("name", "Alice");
+        assertEquals(copy, ImmutableMap.of("name", "Bob", "list", ImmutableList.of("a", ImmutableMap.of("b", 1))));
+    }
+
+    @Test
+    public void testDeepCopyLazyJsonMap() {
+        LazyJsonMap original = new LazyJsonMap("{\"name\":\"Bob\",\"address\":{\"city\":\"Austin\"}}");
+        Map<String, Object> override = Maps.newHashMap(ImmutableMap.of("b", 1));
+        original.put("extra", override);
+
+        // The copy isn't deserialized and its overrides are copied
+        LazyJsonMap copy = (LazyJsonMap) JsonHelper.deepCopy(original);
+        assertFalse(copy.isDeserialized());
+        override.put("b", 2);
+        assertEquals(copy.get("extra"), ImmutableMap.of("b", 1));
+
+        // Once the original is deserialized its values are copied as well
+        @SuppressWarnings("unchecked") Map<String, Object> address = (Map<String, Object>) original.get("address");
+        @SuppressWarnings("unchecked") Map<String, Object> deserializedCopy = (Map<String, Object>) JsonHelper.deepCopy(original);
+        address.put("city", "Dallas");
+        assertEquals(deserializedCopy.get("address"), ImmutableMap.of("city", "Austin"));
+    }
 }
@@ -3,10 +3,12 @@ package com.bazaarvoice.emodb.common.json.deferred;
 import com.bazaarvoice.emodb.common.json.CustomJsonObjectMapperFactory;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.primitives.Bytes;
 import org.testng.annotations.Test;
 
 import java.util.Collection;
@@ -208,4 +210,28 @@ public class LazyJsonMapTest {
         Map<String, Object> expected = ImmutableMap.of("k1", "v1", "k2", "v22", "k3", "v3");
         assertEquals(actual, expected);
     }
+
+    @Test
+    public void testUtf8JsonWrittenWithoutDecoding() throws Exception {
+        // The lone continuation byte in the value would be replaced if the bytes were decoded and encoded again
+        byte[] utf8 = new byte[] {'{', '"', 'k', '"', ':', '"', 'v', (byte) 0x80, '"', '}'};
+        LazyJsonMap map = new LazyJsonMap(utf8);
+        assertFalse(map.isEmpty());
+
+        ObjectMapper objectMapper = CustomJsonObjectMapperFactory.build();
+        assertEquals(objectMapper.writeValueAsBytes(ImmutableList.of(map)), Bytes.concat(new byte[] {'['}, utf8, new byte[] {']'}));
+        assertFalse(map.isDeserialized());
+    }
+
+    @Test
+    public void testUtf8JsonWithOverrides() throws Exception {
+        LazyJsonMap map = new LazyJsonMap("{\"k1\":\"v1\",\"k2\":\"v\u00e9\"}".getBytes(Charsets.UTF_8));
+        map.put("k3", "v3");
+
+        ObjectMapper objectMapper = CustomJsonObjectMapperFactory.build();
+        String asJson = objectMapper.writeValueAsString(map);
+        assertEquals(asJson, "{\"k1\":\"v1\",\"k2\":\"v\u00e9\",\"k3\":\"v3\"}");
+        assertFalse(map.isDeserialized());
+        assertEquals(map, ImmutableMap.of("k1", "v1", "k2", "v\u00e9", "k3", "v3"));
+    }
 }
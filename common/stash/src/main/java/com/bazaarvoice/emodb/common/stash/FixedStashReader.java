@@ -23,15 +23,14 @@ public class FixedStashReader extends StashReader {
     }
 
     public static FixedStashReader getInstance(URI stashRoot, AWSCredentialsProvider credentialsProvider) {
-        AmazonS3 s3 = getS3Client(stashRoot, credentialsProvider);
-        return new FixedStashReader(stashRoot, s3);
+        return new FixedStashReader(stashRoot, getObjectStore(stashRoot, credentialsProvider, null));
     }
 
     public static FixedStashReader getInstance(URI stashRoot, AmazonS3 s3) {
-        return new FixedStashReader(stashRoot, s3);
+        return new FixedStashReader(stashRoot, new S3StashObjectStore(s3));
     }
 
-    FixedStashReader(URI stashRoot, AmazonS3 s3) {
+    FixedStashReader(URI stashRoot, StashObjectStore s3) {
         super(stashRoot, s3);
     }
 
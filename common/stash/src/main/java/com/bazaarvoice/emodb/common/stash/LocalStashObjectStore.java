@@ -0,0 +1,147 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Closeables;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Read-only {@link StashObjectStore} over the local file system, used for Stash roots with a "file" URI such as
+ * <code>file:///tmp/stash/2015-01-01-00-00-00</code>.  Keys are absolute paths without the leading slash and the
+ * bucket is ignored.  "/" is the only supported delimiter.
+ */
+class LocalStashObjectStore implements StashObjectStore {
+
+    private static final int DEFAULT_MAX_KEYS = 1000;
+
+    @Override
+    public ObjectListing listObjects(ListObjectsRequest request) {
+        String prefix = Strings.nullToEmpty(request.getPrefix());
+        boolean delimited = request.getDelimiter() != null;
+        String dirKey = prefix.substring(0, prefix.lastIndexOf('/') + 1);
+
+        // Sizes of matching files by key.  Common prefixes are included with a null size.
+        NavigableMap<String, Long> entries = Maps.newTreeMap();
+        collect(new File("/" + dirKey), dirKey, prefix, delimited, entries);
+
+        if (request.getMarker() != null) {
+            entries = entries.tailMap(request.getMarker(), false);
+        }
+        int maxKeys = request.getMaxKeys() != null ? request.getMaxKeys() : DEFAULT_MAX_KEYS;
+
+        List<S3ObjectSummary> summaries = Lists.newArrayList();
+        List<String> commonPrefixes = Lists.newArrayList();
+        String lastKey = null;
+        for (Map.Entry<String, Long> entry : entries.entrySet()) {
+            if (summaries.size() + commonPrefixes.size() == maxKeys) {
+                break;
+            }
+            if (entry.getValue() == null) {
+                commonPrefixes.add(entry.getKey());
+            } else {
+                S3ObjectSummary summary = new S3ObjectSummary();
+                summary.setBucketName(request.getBucketName());
+                summary.setKey(entry.getKey());
+                summary.setSize(entry.getValue());
+                summaries.add(summary);
+            }
+            lastKey = entry.getKey();
+        }
+
+        ObjectListing listing = new ObjectListing();
+        listing.setBucketName(request.getBucketName());
+        listing.setPrefix(request.getPrefix());
+        listing.setDelimiter(request.getDelimiter());
+        listing.setMarker(request.getMarker());
+        listing.setMaxKeys(maxKeys);
+        listing.getObjectSummaries().addAll(summaries);
+        listing.setCommonPrefixes(commonPrefixes);
+        listing.setTruncated(lastKey != null && !lastKey.equals(entries.lastKey()));
+        if (listing.isTruncated()) {
+            listing.setNextMarker(lastKey);
+        }
+        return listing;
+    }
+
+    private void collect(File dir, String dirKey, String prefix, boolean delimited, Map<String, Long> entries) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String key = dirKey + file.getName();
+            if (file.isDirectory()) {
+                String childDirKey = key + "/";
+                if (childDirKey.startsWith(prefix)) {
+                    if (delimited) {
+                        entries.put(childDirKey, null);
+                    } else {
+                        collect(file, childDirKey, prefix, false, entries);
+                    }
+                }
+            } else if (key.startsWith(prefix)) {
+                entries.put(key, file.length());
+            }
+        }
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        File file = new File("/" + request.getKey());
+        if (!file.isFile()) {
+            AmazonS3Exception e = new AmazonS3Exception("The specified key does not exist.");
+            e.setStatusCode(404);
+            e.setErrorCode("NoSuchKey");
+            throw e;
+        }
+
+        long start = 0;
+        long end = file.length() - 1;
+        long[] range = request.getRange();
+        if (range != null) {
+            start = Math.min(range[0], file.length());
+            end = Math.min(range[1], end);
+        }
+        long length = Math.max(end - start + 1, 0);
+
+        InputStream in = null;
+        try {
+            in = new FileInputStream(file);
+            ByteStreams.skipFully(in, start);
+        } catch (IOException e) {
+            try {
+                Closeables.close(in, true);
+            } catch (IOException ignore) {
+                // Won't happen, already caught and logged
+            }
+            throw Throwables.propagate(e);
+        }
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(length);
+
+        S3Object s3Object = new S3Object();
+        s3Object.setBucketName(request.getBucketName());
+        s3Object.setKey(request.getKey());
+        s3Object.setObjectMetadata(metadata);
+        s3Object.setObjectContent(ByteStreams.limit(in, length));
+        return s3Object;
+    }
+}
@@ -0,0 +1,202 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Queues;
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Closeable iterator for parallel Stash scans, see {@link StashScanOptions}.  Up to "parallelism" files are read at
+ * once, each by its own worker thread, and workers hand rows to the caller in batches through bounded queues.
+ * Unordered scans share a single queue and each worker moves on to the next file as soon as it finishes one.
+ * Ordered scans use one queue per file so the caller can drain the files in order, and the next file is only started
+ * once the caller has consumed all rows from a file, which bounds the rows read ahead to "queueSize" batches.
+ */
+class ParallelStashScanIterator extends AbstractIterator<Map<String, Object>> implements StashRowIterator {
+    private final AtomicBoolean _closed = new AtomicBoolean(false);
+    private final StashObjectStore _s3;
+    private final String _bucket;
+    private final long _partSize;
+    private final boolean _ordered;
+    private final int _queueCapacity;
+    private final Iterator<StashFileMetadata> _files;
+    private final ExecutorService _service;
+    // The queue for each file being read, in the order the files were started
+    private final Deque<BlockingQueue<Batch>> _queues = Queues.newArrayDeque();
+    private final BlockingQueue<Batch> _sharedQueue;
+    private Iterator<Map<String, Object>> _rows = Collections.emptyIterator();
+
+    ParallelStashScanIterator(StashObjectStore s3, String bucket, List<StashFileMetadata> files, StashScanOptions options) {
+        _s3 = s3;
+        _bucket = bucket;
+        _partSize = options.getPartSize();
+        _ordered = options.isOrdered();
+        _files = files.iterator();
+
+        int parallelism = Math.min(options.getParallelism(), Math.max(files.size(), 1));
+        if (_ordered) {
+            _queueCapacity = Math.max(options.getQueueSize() / parallelism, 1);
+            _sharedQueue = null;
+        } else {
+            _queueCapacity = options.getQueueSize();
+            _sharedQueue = new ArrayBlockingQueue<>(_queueCapacity);
+        }
+
+        _service = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactoryBuilder().setNameFormat("stash-scan-%d").setDaemon(true).build());
+
+        int initialFiles = _ordered ? parallelism : files.size();
+        for (int i = 0; i < initialFiles; i++) {
+            startNextFile();
+        }
+    }
+
+    private void startNextFile() {
+        if (_files.hasNext()) {
+            StashFileMetadata file = _files.next();
+            BlockingQueue<Batch> queue = _ordered ? new ArrayBlockingQueue<>(_queueCapacity) : _sharedQueue;
+            _queues.add(queue);
+            _service.submit(() -> readFile(file, queue));
+        }
+    }
+
+    @Override
+    protected Map<String, Object> computeNext() {
+        while (!_rows.hasNext()) {
+            if (_queues.isEmpty()) {
+                closeQuietly();
+                return endOfData();
+            }
+
+            Batch batch;
+            try {
+                batch = _queues.peek().take();
+            } catch (InterruptedException e) {
+                closeQuietly();
+                throw Throwables.propagate(e);
+            }
+
+            if (batch._failure != null) {
+                closeQuietly();
+                throw Throwables.propagate(batch._failure);
+            } else if (batch._rows == null) {
+                // One file is complete.  For unordered scans it isn't necessarily the oldest one, but since all
+                // files share the same queue it makes no difference which entry is removed.
+                _queues.remove();
+                if (_ordered) {
+                    startNextFile();
+                }
+            } else {
+                _rows = batch._rows.iterator();
+            }
+        }
+
+        return _rows.next();
+    }
+
+    private void readFile(StashFileMetadata file, BlockingQueue<Batch> queue) {
+        try {
+            if (file.getSize() > 0) {
+                try (StashRowIterator rows = new StashSplitIterator(openParts(file))) {
+                    List<Map<String, Object>> batch = Lists.newArrayListWithCapacity(StashScanOptions.BATCH_SIZE);
+                    while (rows.hasNext()) {
+                        batch.add(rows.next());
+                        if (batch.size() == StashScanOptions.BATCH_SIZE) {
+                            queue.put(new Batch(batch, null));
+                            batch = Lists.newArrayListWithCapacity(StashScanOptions.BATCH_SIZE);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        queue.put(new Batch(batch, null));
+                    }
+                }
+            }
+            queue.put(new Batch(null, null));
+        } catch (InterruptedException e) {
+            // The scan was closed
+        } catch (Throwable t) {
+            if (!_closed.get()) {
+                try {
+                    queue.put(new Batch(null, t));
+                } catch (InterruptedException e) {
+                    // The scan was closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a stream over the entire file which reads it with consecutive ranged GETs of at most the part size.
+     */
+    private InputStream openParts(final StashFileMetadata file) {
+        Iterator<InputStream> parts = new AbstractIterator<InputStream>() {
+            private long _start = 0;
+
+            @Override
+            protected InputStream computeNext() {
+                if (_start >= file.getSize()) {
+                    return endOfData();
+                }
+                long end = Math.min(_start + _partSize, file.getSize());
+                InputStream part = new RestartingS3InputStream(_s3, _bucket, file.getKey(), Range.closedOpen(_start, end));
+                _start = end;
+                return part;
+            }
+        };
+        return new SequenceInputStream(Iterators.asEnumeration(parts));
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Won't happen
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        if (_closed.compareAndSet(false, true)) {
+            // Interrupts any workers blocked on a full queue, which then close their files
+            _service.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+
+    /**
+     * A batch of rows from a file, the failure reading a file, or if both are null the end of a file.
+     */
+    private static class Batch {
+        private final List<Map<String, Object>> _rows;
+        private final Throwable _failure;
+
+        private Batch(@Nullable List<Map<String, Object>> rows, @Nullable Throwable failure) {
+            _rows = rows;
+            _failure = failure;
+        }
+    }
+}
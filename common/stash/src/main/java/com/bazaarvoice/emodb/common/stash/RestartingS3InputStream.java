@@ -18,7 +18,7 @@ import java.io.InputStream;
  */
 public class RestartingS3InputStream extends InputStream {
 
-    private final AmazonS3 _s3;
+    private final StashObjectStore _s3;
     private final String _bucket;
     private final String _key;
     private long _length;
@@ -30,6 +30,14 @@ public class RestartingS3InputStream extends InputStream {
     }
 
     public RestartingS3InputStream(AmazonS3 s3, String bucket, String key, @Nullable Range<Long> range) {
+        this(new S3StashObjectStore(s3), bucket, key, range);
+    }
+
+    RestartingS3InputStream(StashObjectStore s3, String bucket, String key) {
+        this(s3, bucket, key, null);
+    }
+
+    RestartingS3InputStream(StashObjectStore s3, String bucket, String key, @Nullable Range<Long> range) {
         _s3 = s3;
         _bucket = bucket;
         _key = key;
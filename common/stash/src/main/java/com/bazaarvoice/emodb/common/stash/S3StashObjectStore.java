@@ -0,0 +1,31 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link StashObjectStore} which reads Stash from S3.
+ */
+class S3StashObjectStore implements StashObjectStore {
+
+    private final AmazonS3 _s3;
+
+    S3StashObjectStore(AmazonS3 s3) {
+        _s3 = checkNotNull(s3, "s3");
+    }
+
+    @Override
+    public ObjectListing listObjects(ListObjectsRequest request) {
+        return _s3.listObjects(request);
+    }
+
+    @Override
+    public S3Object getObject(GetObjectRequest request) {
+        return _s3.getObject(request);
+    }
+}
@@ -48,7 +48,7 @@ public class StandardStashReader extends StashReader {
     }
 
     public static StandardStashReader getInstance(URI stashRoot, ClientConfiguration s3Config) {
-        return getInstance(stashRoot, getS3Client(stashRoot,  new DefaultAWSCredentialsProviderChain(), s3Config));
+        return getInstance(stashRoot, new DefaultAWSCredentialsProviderChain(), s3Config);
     }
 
     public static StandardStashReader getInstance(URI stashRoot, String accessKey, String secretKey) {
@@ -62,16 +62,15 @@ public class StandardStashReader extends StashReader {
 
     public static StandardStashReader getInstance(URI stashRoot, AWSCredentialsProvider credentialsProvider,
                                                   ClientConfiguration s3Config) {
-        AmazonS3 s3 = getS3Client(stashRoot, credentialsProvider, s3Config);
-        return getInstance(stashRoot, s3);
+        return new StandardStashReader(stashRoot, getObjectStore(stashRoot, credentialsProvider, s3Config), REFRESH_LATEST_MS);
     }
 
     public static StandardStashReader getInstance(URI stashRoot, AmazonS3 s3) {
-        return new StandardStashReader(stashRoot, s3, REFRESH_LATEST_MS);
+        return new StandardStashReader(stashRoot, new S3StashObjectStore(s3), REFRESH_LATEST_MS);
     }
 
     @VisibleForTesting
-    StandardStashReader(URI stashRoot, AmazonS3 s3, long refreshLatestMs) {
+    StandardStashReader(URI stashRoot, StashObjectStore s3, long refreshLatestMs) {
         super(stashRoot, s3);
 
         Supplier<String> s3LatestRootSupplier = new Supplier<String>() {
@@ -173,7 +172,7 @@ public class StandardStashReader extends StashReader {
             throws StashNotAvailableException {
         String stashDirectory = StashUtil.getStashDirectoryForCreationTime(creationTime);
         // The following call will raise an AmazonS3Exception if the file cannot be read
-        try (S3Object s3Object = _s3.getObject(_bucket, String.format("%s/%s/%s", _rootPath, stashDirectory, StashUtil.SUCCESS_FILE))) {
+        try (S3Object s3Object = _s3.getObject(new GetObjectRequest(_bucket, String.format("%s/%s/%s", _rootPath, stashDirectory, StashUtil.SUCCESS_FILE)))) {
             _lockedLatest = String.format("%s/%s", _rootPath, stashDirectory);
         } catch (AmazonS3Exception e) {
             if (e.getStatusCode() == 404 ||
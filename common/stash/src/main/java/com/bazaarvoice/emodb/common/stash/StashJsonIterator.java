@@ -0,0 +1,11 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Like {@link StashRowIterator} except each row is returned as its UTF-8 JSON text without being parsed.  Callers which
+ * only need a few values from each row can read them without building a Map for the entire row.
+ */
+public interface StashJsonIterator extends Iterator<byte[]>, Closeable {
+}
@@ -0,0 +1,88 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Closeable iterator for Stash scans of a table across an incremental Stash and the Stashes it builds on.  Layers
+ * are read newest first; each row is returned from the newest layer which contains it and rows which that layer
+ * records as deleted are dropped.
+ */
+class StashLayeredScanIterator extends AbstractIterator<Map<String, Object>> implements StashRowIterator {
+    private final Iterator<List<StashFileMetadata>> _layers;
+    private final Function<List<StashFileMetadata>, StashRowIterator> _openLayer;
+    // Keys of the rows returned or dropped so far, used to skip older versions of the same rows in older layers
+    private final Set<String> _seenIds = Sets.newHashSet();
+    private boolean _oldestLayer;
+    private StashRowIterator _currentIterator;
+
+    /**
+     * @param filesByLayer The table's files in each layer, newest layer first.
+     * @param openLayer Opens an iterator over all rows in a layer's files.  Since each row appears at most once per
+     *                  layer the rows within a layer can be returned in any order.
+     */
+    StashLayeredScanIterator(List<List<StashFileMetadata>> filesByLayer,
+                             Function<List<StashFileMetadata>, StashRowIterator> openLayer) {
+        _layers = filesByLayer.iterator();
+        _openLayer = openLayer;
+    }
+
+    @Override
+    protected Map<String, Object> computeNext() {
+        while (true) {
+            if (_currentIterator != null && _currentIterator.hasNext()) {
+                Map<String, Object> row = _currentIterator.next();
+                // No later layer follows the oldest, so there's no need to remember its ids
+                if (_oldestLayer ? _seenIds.contains(row.get("~id")) : !_seenIds.add((String) row.get("~id"))) {
+                    continue;
+                }
+                if (Boolean.TRUE.equals(row.get("~deleted"))) {
+                    continue;
+                }
+                return row;
+            }
+
+            closeCurrentLayer();
+
+            if (!_layers.hasNext()) {
+                return endOfData();
+            }
+            List<StashFileMetadata> files = _layers.next();
+            _oldestLayer = !_layers.hasNext();
+            if (!files.isEmpty()) {
+                _currentIterator = _openLayer.apply(files);
+            }
+        }
+    }
+
+    private void closeCurrentLayer() {
+        if (_currentIterator != null) {
+            try {
+                Closeables.close(_currentIterator, true);
+            } catch (IOException e) {
+                // Already logged and caught
+            }
+            _currentIterator = null;
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        closeCurrentLayer();
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+}
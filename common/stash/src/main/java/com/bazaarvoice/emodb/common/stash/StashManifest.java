@@ -0,0 +1,63 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+
+import java.util.Date;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * POJO for the manifest of an incremental Stash, stored in its {@link StashUtil#MANIFEST_FILE} file.  An incremental
+ * Stash only contains the rows updated since the Stash it builds on, including rows which were deleted, so it must be
+ * read together with that Stash and every Stash before it back to the most recent full Stash.  Full Stashes have
+ * no manifest.
+ */
+public class StashManifest {
+    private final String _previous;
+    private final Date _since;
+
+    @JsonCreator
+    public StashManifest(@JsonProperty("previous") String previous,
+                         @JsonProperty("since") Date since) {
+        _previous = checkNotNull(previous, "previous");
+        _since = checkNotNull(since, "since");
+    }
+
+    /**
+     * Returns the directory of the Stash this Stash builds on.  It is always a sibling of this Stash's directory.
+     */
+    public String getPrevious() {
+        return _previous;
+    }
+
+    /**
+     * Returns the time from which updated rows were included in this Stash.
+     */
+    public Date getSince() {
+        return _since;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof StashManifest)) {
+            return false;
+        }
+        StashManifest that = (StashManifest) o;
+        return _previous.equals(that._previous) && _since.equals(that._since);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(_previous, _since);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s since %s", _previous, _since);
+    }
+}
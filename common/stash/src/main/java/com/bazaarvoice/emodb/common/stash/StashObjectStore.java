@@ -0,0 +1,22 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+
+/**
+ * The object store calls made when reading Stash.  Stash is normally read from S3 using {@link S3StashObjectStore},
+ * but a copy of Stash on the local file system can be read using {@link LocalStashObjectStore}.
+ */
+interface StashObjectStore {
+
+    ObjectListing listObjects(ListObjectsRequest request);
+
+    /**
+     * Returns the object, or only the requested range of it.
+     * @throws AmazonS3Exception with status code 404 if the object does not exist.
+     */
+    S3Object getObject(GetObjectRequest request);
+}
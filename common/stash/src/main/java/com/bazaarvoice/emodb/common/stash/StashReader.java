@@ -6,40 +6,63 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.bazaarvoice.emodb.sor.api.StashNotAvailableException;
 import com.bazaarvoice.emodb.sor.api.TableNotStashedException;
 import com.google.common.base.Predicate;
+import com.google.common.base.Throwables;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 import com.google.common.collect.Range;
+import com.google.common.collect.Sets;
 import com.google.common.reflect.AbstractInvocationHandler;
 import com.google.common.reflect.Reflection;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 /**
  * Provides basic access to Stashed tables and content.
+ * <p>
+ * If the Stash is incremental, see {@link StashManifest}, then {@link #listTables()}, {@link #getTableExists(String)}
+ * and {@link #scan(String)} return the merged view of it and the Stashes it builds on.  The remaining methods
+ * operate on the files physically present in the Stash, so clients which read splits or files directly from an
+ * incremental Stash must merge the layers themselves.
  */
 abstract public class StashReader {
 
-    protected final AmazonS3 _s3;
+    protected final StashObjectStore _s3;
     protected final String _bucket;
     protected final String _rootPath;
+    // Stash directories are never rewritten once complete, so their manifests can be cached indefinitely
+    private final ConcurrentMap<String, Optional<StashManifest>> _manifests = Maps.newConcurrentMap();
 
     protected StashReader(URI stashRoot, AmazonS3 s3) {
+        this(stashRoot, new S3StashObjectStore(s3));
+    }
+
+    StashReader(URI stashRoot, StashObjectStore s3) {
         checkNotNull(stashRoot, "stashRoot");
         _s3 = checkNotNull(s3, "s3");
         _bucket = stashRoot.getHost();
@@ -71,6 +94,18 @@ abstract public class StashReader {
         return getS3Client(stashRoot, credentialsProvider, null);
     }
 
+    /**
+     * Returns the object store for reading the Stash root, which is S3 unless the root is on the local file system.
+     */
+    static StashObjectStore getObjectStore(URI stashRoot, AWSCredentialsProvider credentialsProvider,
+                                           @Nullable ClientConfiguration s3Config) {
+        if ("file".equals(stashRoot.getScheme())) {
+            // Stash copied to or written to the local file system
+            return new LocalStashObjectStore();
+        }
+        return new S3StashObjectStore(getS3Client(stashRoot, credentialsProvider, s3Config));
+    }
+
     protected static AmazonS3 getS3Client(URI stashRoot, final AWSCredentialsProvider credentialsProvider,
                                           final @Nullable ClientConfiguration s3Config) {
         final String bucket = stashRoot.getHost();
@@ -148,11 +183,83 @@ abstract public class StashReader {
         }
     }
 
+    /**
+     * Returns the root paths of each layer of the current Stash, newest first.  A full Stash has a single layer.  An
+     * incremental Stash is followed by the Stash it builds on and so on back to the most recent full Stash.
+     */
+    protected List<String> getLayerRootPaths() {
+        List<String> layers = Lists.newArrayList();
+        String root = getRootPath();
+        while (root != null) {
+            checkState(!layers.contains(root), "Stash manifests form a cycle: %s", layers);
+            layers.add(root);
+
+            Optional<StashManifest> manifest = getManifest(root);
+            if (manifest.isPresent()) {
+                root = root.substring(0, root.lastIndexOf('/') + 1) + manifest.get().getPrevious();
+            } else {
+                root = null;
+            }
+        }
+        return layers;
+    }
+
+    private Optional<StashManifest> getManifest(String root) {
+        Optional<StashManifest> manifest = _manifests.get(root);
+        if (manifest == null) {
+            manifest = readManifest(root);
+            _manifests.putIfAbsent(root, manifest);
+        }
+        return manifest;
+    }
+
+    private Optional<StashManifest> readManifest(String root) {
+        S3Object s3Object;
+        try {
+            s3Object = _s3.getObject(new GetObjectRequest(_bucket, String.format("%s/%s", root, StashUtil.MANIFEST_FILE)));
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                // Full Stashes have no manifest
+                return Optional.empty();
+            }
+            throw e;
+        }
+
+        if (s3Object == null) {
+            return Optional.empty();
+        }
+
+        try (InputStream in = s3Object.getObjectContent()) {
+            return Optional.of(JsonHelper.readJson(in, StashManifest.class));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
     /**
      * Gets all tables available in this stash.
      */
     public Iterator<StashTable> listTables() {
-        final String root = getRootPath();
+        List<String> layers = getLayerRootPaths();
+        if (layers.size() == 1) {
+            return listTables(layers.get(0));
+        }
+
+        // A table is listed in the newest layer which contains it
+        final Set<String> tableNames = Sets.newHashSet();
+        List<Iterator<StashTable>> tablesByLayer = Lists.newArrayListWithCapacity(layers.size());
+        for (String layer : layers) {
+            tablesByLayer.add(listTables(layer));
+        }
+        return Iterators.filter(Iterators.concat(tablesByLayer.iterator()), new Predicate<StashTable>() {
+            @Override
+            public boolean apply(StashTable table) {
+                return tableNames.add(table.getTableName());
+            }
+        });
+    }
+
+    private Iterator<StashTable> listTables(String root) {
         final String prefix = String.format("%s/", root);
 
         return new AbstractIterator<StashTable>() {
@@ -297,7 +404,12 @@ abstract public class StashReader {
     }
 
     public boolean getTableExists(String table) {
-        return getS3ObjectSummariesForTable(table).hasNext();
+        for (String layer : getLayerRootPaths()) {
+            if (getS3ObjectSummaries(getPrefix(layer, table)).hasNext()) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -327,6 +439,13 @@ abstract public class StashReader {
         return new StashSplitIterator(_s3, _bucket, getSplitKey(split));
     }
 
+    /**
+     * Like {@link #getSplit(StashSplit)} except each row is returned as its UTF-8 JSON text without being parsed.
+     */
+    public StashJsonIterator getSplitJson(final StashSplit split) {
+        return new StashSplitJsonIterator(_s3, _bucket, getSplitKey(split));
+    }
+
     /**
      * Gets an iterator over the entire contents of a Stash table.  If possible the caller should call
      * {@link com.bazaarvoice.emodb.common.stash.StashRowIterator#close()} when done with the iterator
@@ -334,8 +453,46 @@ abstract public class StashReader {
      */
     public StashRowIterator scan(String table)
             throws StashNotAvailableException, TableNotStashedException {
-        List<StashSplit> splits = getSplits(table);
-        return new StashScanIterator(_s3, _bucket, _rootPath, splits);
+        return scan(table, files -> new StashScanIterator(_s3, _bucket, Lists.transform(files, StashFileMetadata::getKey)));
+    }
+
+    /**
+     * Like {@link #scan(String)} except the table's files are downloaded, decompressed and parsed concurrently by a
+     * pool of background threads which read ahead of the caller, see {@link StashScanOptions}.  The caller must call
+     * {@link com.bazaarvoice.emodb.common.stash.StashRowIterator#close()} if it stops iterating early to stop the
+     * background threads.
+     */
+    public StashRowIterator scan(String table, final StashScanOptions options)
+            throws StashNotAvailableException, TableNotStashedException {
+        checkNotNull(options, "options");
+        return scan(table, files -> new ParallelStashScanIterator(_s3, _bucket, files, options));
+    }
+
+    private StashRowIterator scan(String table, Function<List<StashFileMetadata>, StashRowIterator> openFiles)
+            throws StashNotAvailableException, TableNotStashedException {
+        // Layers which don't contain the table are skipped, as long as at least one layer does contain it
+        List<String> layers = getLayerRootPaths();
+        List<List<StashFileMetadata>> filesByLayer = Lists.newArrayListWithCapacity(layers.size());
+        boolean tableExists = false;
+        for (String layer : layers) {
+            List<StashFileMetadata> files = Lists.newArrayList();
+            Iterator<S3ObjectSummary> objectSummaries = getS3ObjectSummaries(getPrefix(layer, table));
+            while (objectSummaries.hasNext()) {
+                S3ObjectSummary objectSummary = objectSummaries.next();
+                files.add(new StashFileMetadata(_bucket, objectSummary.getKey(), objectSummary.getSize()));
+            }
+            tableExists |= !files.isEmpty();
+            filesByLayer.add(files);
+        }
+
+        if (!tableExists) {
+            throw new TableNotStashedException(table);
+        }
+
+        if (layers.size() == 1) {
+            return openFiles.apply(filesByLayer.get(0));
+        }
+        return new StashLayeredScanIterator(filesByLayer, openFiles);
     }
 
     private String getSplitKey(StashSplit split) {
@@ -354,7 +511,10 @@ abstract public class StashReader {
     }
 
     private String getPrefix(String table) {
-        String root = getRootPath();
+        return getPrefix(getRootPath(), table);
+    }
+
+    private String getPrefix(String root, String table) {
         return String.format("%s/%s/", root, StashUtil.encodeStashTable(table));
     }
 
@@ -1,6 +1,5 @@
 package com.bazaarvoice.emodb.common.stash;
 
-import com.amazonaws.services.s3.AmazonS3;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.io.Closeables;
 
@@ -12,17 +11,18 @@ import java.util.Map;
  * Closeable iterator for Stash scans.
  */
 class StashScanIterator extends AbstractIterator<Map<String, Object>> implements StashRowIterator {
-    private final AmazonS3 _s3;
+    private final StashObjectStore _s3;
     private final String _bucket;
-    private final String _rootPath;
-    private final Iterator<StashSplit> _splits;
+    private final Iterator<String> _keys;
     private StashRowIterator _currentIterator;
 
-    StashScanIterator(AmazonS3 s3, String bucket, String rootPath, Iterable<StashSplit> splits) {
+    /**
+     * @param keys The full S3 keys of the files to scan.
+     */
+    StashScanIterator(StashObjectStore s3, String bucket, Iterable<String> keys) {
         _s3 = s3;
         _bucket = bucket;
-        _rootPath = rootPath;
-        _splits = splits.iterator();
+        _keys = keys.iterator();
 
         moveToNextSplit();
     }
@@ -31,10 +31,8 @@ class StashScanIterator extends AbstractIterator<Map<String, Object>> implements
         // Close the current split if it is open first
         closeCurrentSplit();
 
-        if (_splits.hasNext()) {
-            StashSplit split = _splits.next();
-            String key = String.format("%s/%s", _rootPath, split.getKey());
-            _currentIterator = new StashSplitIterator(_s3, _bucket, key);
+        if (_keys.hasNext()) {
+            _currentIterator = new StashSplitIterator(_s3, _bucket, _keys.next());
         } else {
             _currentIterator = null;
         }
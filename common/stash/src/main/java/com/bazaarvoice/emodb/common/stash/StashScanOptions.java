@@ -0,0 +1,69 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Options for parallel Stash scans with {@link StashReader#scan(String, StashScanOptions)}.
+ * <ul>
+ *     <li>parallelism: The number of files downloaded, decompressed and parsed concurrently.  Defaults to the
+ *         number of available processors.</li>
+ *     <li>queueSize: The maximum number of batches of {@link #BATCH_SIZE} rows read ahead of the caller.</li>
+ *     <li>partSize: Each file is downloaded with ranged GETs of at most this many bytes, so a slow or dropped
+ *         connection only ever restarts a single part.</li>
+ *     <li>ordered: If true rows are returned in the same order as {@link StashReader#scan(String)}, file by file.
+ *         Otherwise rows are returned as soon as they are parsed, interleaving rows from concurrently read files.
+ *         Unordered scans keep every worker busy even if one file is much slower than the others.</li>
+ * </ul>
+ */
+public class StashScanOptions {
+
+    // Rows are passed from the workers to the caller in batches to keep contention on the queue low
+    public static final int BATCH_SIZE = 100;
+
+    private static final int DEFAULT_QUEUE_SIZE = 64;
+    private static final long DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+
+    private int _parallelism = Runtime.getRuntime().availableProcessors();
+    private int _queueSize = DEFAULT_QUEUE_SIZE;
+    private long _partSize = DEFAULT_PART_SIZE;
+    private boolean _ordered;
+
+    public int getParallelism() {
+        return _parallelism;
+    }
+
+    public StashScanOptions setParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "parallelism <= 0");
+        _parallelism = parallelism;
+        return this;
+    }
+
+    public int getQueueSize() {
+        return _queueSize;
+    }
+
+    public StashScanOptions setQueueSize(int queueSize) {
+        checkArgument(queueSize > 0, "queueSize <= 0");
+        _queueSize = queueSize;
+        return this;
+    }
+
+    public long getPartSize() {
+        return _partSize;
+    }
+
+    public StashScanOptions setPartSize(long partSize) {
+        checkArgument(partSize > 0, "partSize <= 0");
+        _partSize = partSize;
+        return this;
+    }
+
+    public boolean isOrdered() {
+        return _ordered;
+    }
+
+    public StashScanOptions setOrdered(boolean ordered) {
+        _ordered = ordered;
+        return this;
+    }
+}
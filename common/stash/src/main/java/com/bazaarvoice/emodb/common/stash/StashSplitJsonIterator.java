@@ -0,0 +1,116 @@
+package com.bazaarvoice.emodb.common.stash;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.Closeables;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Closeable iterator over the lines of a Stash split as UTF-8 bytes.  Each line holds one row's JSON.  Since JSON
+ * escapes all control characters a line break byte can only appear between rows.
+ */
+class StashSplitJsonIterator extends AbstractIterator<byte[]> implements StashJsonIterator {
+    private final AtomicBoolean _closed = new AtomicBoolean(false);
+    private final InputStream _in;
+    private final byte[] _buffer = new byte[8192];
+    private int _position;
+    private int _limit;
+
+    StashSplitJsonIterator(StashObjectStore s3, String bucket, String key) {
+        this(new RestartingS3InputStream(s3, bucket, key));
+    }
+
+    StashSplitJsonIterator(InputStream rawIn) {
+        try {
+            // File is gzipped
+            // Note:
+            //   Because the content may be concatenated gzip files we cannot use the default GZIPInputStream.
+            //   GzipCompressorInputStream supports concatenated gzip files.
+            _in = new GzipCompressorInputStream(rawIn, true);
+        } catch (Exception e) {
+            try {
+                Closeables.close(rawIn, true);
+            } catch (IOException ignore) {
+                // Won't happen, already caught and logged
+            }
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    protected byte[] computeNext() {
+        if (_closed.get()) {
+            return endOfData();
+        }
+
+        // Bytes of a line which spans more than one read
+        ByteArrayOutputStream partial = null;
+        try {
+            while (true) {
+                for (int i = _position; i < _limit; i++) {
+                    if (_buffer[i] == '\n') {
+                        byte[] line = toLine(partial, _position, i);
+                        _position = i + 1;
+                        return line;
+                    }
+                }
+
+                if (_position < _limit) {
+                    if (partial == null) {
+                        partial = new ByteArrayOutputStream(2 * (_limit - _position));
+                    }
+                    partial.write(_buffer, _position, _limit - _position);
+                }
+                _position = 0;
+                _limit = Math.max(_in.read(_buffer), 0);
+
+                if (_limit == 0) {
+                    try {
+                        close();
+                    } catch (IOException ignore) {
+                        // Don't worry about this, we're done iterating anyway
+                    }
+                    // The last line may not end with a line break
+                    return partial != null ? toLine(partial, 0, 0) : endOfData();
+                }
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private byte[] toLine(ByteArrayOutputStream partial, int from, int to) {
+        byte[] line;
+        if (partial == null) {
+            line = Arrays.copyOfRange(_buffer, from, to);
+        } else {
+            partial.write(_buffer, from, to - from);
+            line = partial.toByteArray();
+        }
+        // Tolerate Windows line breaks the same as a line-oriented reader would
+        if (line.length > 0 && line[line.length - 1] == '\r') {
+            line = Arrays.copyOf(line, line.length - 1);
+        }
+        return line;
+    }
+
+    @Override
+    public void close()
+            throws IOException {
+        if (_closed.compareAndSet(false, true)) {
+            _in.close();
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        super.finalize();
+        close();
+    }
+}
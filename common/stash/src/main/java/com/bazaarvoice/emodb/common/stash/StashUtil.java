@@ -21,6 +21,7 @@ public class StashUtil {
     public static final DateTimeFormatter STASH_DIRECTORY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss").withZone(ZoneOffset.UTC);
     public static final String LATEST_FILE = "_LATEST";
     public static final String SUCCESS_FILE = "_SUCCESS";
+    public static final String MANIFEST_FILE = "_MANIFEST";
     
     /**
      * Converts characters which are valid in table names but not valid or problematic in URLs and S3 keys.
@@ -11,10 +11,15 @@ import com.bazaarvoice.emodb.common.json.ISO8601DateFormat;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -27,15 +32,20 @@ import javax.annotation.Nullable;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPOutputStream;
 
@@ -64,7 +74,7 @@ public class StashReaderTest {
         });
 
         // Get the latest
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         assertEquals("2015-01-01-00-00-00", reader.getLatest());
         assertEquals(reader.getLatestCreationTime(), new ISO8601DateFormat().parse("2015-01-01T00:00:00Z"));
 
@@ -111,7 +121,7 @@ public class StashReaderTest {
         });
 
         // Get the stash start timestamp
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         assertEquals(reader.getStashCreationTime(), startTime, "Actual stash start timestamp");
     }
 
@@ -136,7 +146,7 @@ public class StashReaderTest {
         when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/", null))))
                 .thenReturn(listing);
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         List<StashTable> tables = ImmutableList.copyOf(reader.listTables());
 
         assertEquals(tables, ImmutableList.of(
@@ -203,7 +213,7 @@ public class StashReaderTest {
         when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/", listing.getMarker()))))
                 .thenReturn(listing);
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         List<StashTableMetadata> tables = ImmutableList.copyOf(reader.listTableMetadata());
         assertEquals(tables.size(), 100);
 
@@ -245,7 +255,7 @@ public class StashReaderTest {
         when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/test~table/", null))))
                 .thenAnswer(objectListingAnswer(null, "test~table-split0.gz", "test~table-split1.gz", "test~table-split2.gz"));
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         StashTableMetadata tableMetadata = reader.getTableMetadata("test:table");
 
         assertEquals(tableMetadata.getBucket(), "stash-bucket");
@@ -282,7 +292,7 @@ public class StashReaderTest {
         when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/test~table/", "marker1"))))
                 .thenAnswer(objectListingAnswer(null, "split2.gz", "split3.gz"));
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         List<StashSplit> splits = reader.getSplits("test:table");
         assertEquals(splits.size(), 4);
 
@@ -339,13 +349,202 @@ public class StashReaderTest {
 
         StashSplit stashSplit = new StashSplit("test:table", "2015-01-01-00-00-00/test-table/split0.gz", splitOut.size());
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         StashRowIterator contentIter = reader.getSplit(stashSplit);
 
         List<Map<String, Object>> content = ImmutableList.copyOf(contentIter);
         assertEquals(content, expected);
     }
 
+    @Test
+    public void getSplitJson() throws Exception {
+        // Include a row longer than the read buffer and leave the line break off the last row
+        List<String> expected = ImmutableList.of(
+                JsonHelper.asJson(ImmutableMap.of("~id", "row0", "~table", "test:table")),
+                JsonHelper.asJson(ImmutableMap.of("~id", "row1", "~table", "test:table", "text", Strings.repeat("x", 20000))),
+                JsonHelper.asJson(ImmutableMap.of("~id", "row2", "~table", "test:table")));
+
+        ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(splitOut), Charsets.UTF_8))) {
+            out.write(Joiner.on("\n").join(expected));
+        }
+
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new ByteArrayInputStream(splitOut.toByteArray()));
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(splitOut.size());
+        s3Object.setObjectMetadata(objectMetadata);
+
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-01-00-00-00/test-table/split0.gz"))))
+                .thenReturn(s3Object);
+
+        StashSplit stashSplit = new StashSplit("test:table", "2015-01-01-00-00-00/test-table/split0.gz", splitOut.size());
+
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
+        List<String> content = Lists.newArrayList();
+        try (StashJsonIterator jsonIter = reader.getSplitJson(stashSplit)) {
+            while (jsonIter.hasNext()) {
+                content.add(new String(jsonIter.next(), Charsets.UTF_8));
+            }
+        }
+        assertEquals(content, expected);
+    }
+
+    @Test
+    public void testIncrementalScan() throws Exception {
+        AmazonS3 s3 = mock(AmazonS3.class);
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/_LATEST")))).thenAnswer(new Answer<S3Object>() {
+            @Override
+            public S3Object answer(InvocationOnMock invocation)
+                    throws Throwable {
+                S3Object s3Object = new S3Object();
+                s3Object.setObjectContent(new ByteArrayInputStream("2015-01-03-00-00-00".getBytes(Charsets.UTF_8)));
+                return s3Object;
+            }
+        });
+
+        // 2015-01-03 builds on 2015-01-02 which builds on the full Stash from 2015-01-01
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-03-00-00-00/_MANIFEST"))))
+                .thenReturn(toS3Object(JsonHelper.asJson(new StashManifest("2015-01-02-00-00-00", new Date(1420156800000L)))
+                        .getBytes(Charsets.UTF_8)));
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-02-00-00-00/_MANIFEST"))))
+                .thenReturn(toS3Object(JsonHelper.asJson(new StashManifest("2015-01-01-00-00-00", new Date(1420070400000L)))
+                        .getBytes(Charsets.UTF_8)));
+
+        Map<String, Object> row1v1 = ImmutableMap.<String, Object>of("~id", "row1", "~deleted", false, "value", 1);
+        Map<String, Object> row2v1 = ImmutableMap.<String, Object>of("~id", "row2", "~deleted", false, "value", 1);
+        Map<String, Object> row3v1 = ImmutableMap.<String, Object>of("~id", "row3", "~deleted", false, "value", 1);
+        Map<String, Object> row1v3 = ImmutableMap.<String, Object>of("~id", "row1", "~deleted", false, "value", 3);
+        Map<String, Object> row2v3 = ImmutableMap.<String, Object>of("~id", "row2", "~deleted", true);
+
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-03-00-00-00/test~table/", null))))
+                .thenAnswer(objectListingAnswer(null, "split0.gz"));
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-02-00-00-00/test~table/", null))))
+                .thenAnswer(objectListingAnswer(null));
+        when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-01-00-00-00/test~table/", null))))
+                .thenAnswer(objectListingAnswer(null, "split0.gz"));
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-03-00-00-00/test~table/split0.gz"))))
+                .thenReturn(toS3Object(toGzippedSplit(row1v3, row2v3)));
+        when(s3.getObject(argThat(getsObject("stash-bucket", "stash/test/2015-01-01-00-00-00/test~table/split0.gz"))))
+                .thenReturn(toS3Object(toGzippedSplit(row1v1, row2v1, row3v1)));
+
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
+        assertTrue(reader.getTableExists("test:table"));
+
+        // Each row comes from the newest layer containing it and rows deleted in that layer are dropped
+        try (StashRowIterator rowIter = reader.scan("test:table")) {
+            assertEquals(ImmutableList.copyOf(rowIter), ImmutableList.of(row1v3, row3v1));
+        }
+    }
+
+    @Test
+    public void testParallelScanOfLocalDirectory() throws Exception {
+        File stashDir = Files.createTempDir();
+        try {
+            File tableDir = new File(stashDir, "test~table");
+            assertTrue(tableDir.mkdir());
+
+            // Several splits with multiple batches each
+            List<Map<String, Object>> rows = Lists.newArrayList();
+            for (int split = 0; split < 5; split++) {
+                List<Map<String, Object>> splitRows = Lists.newArrayList();
+                for (int i = 0; i < 250; i++) {
+                    splitRows.add(ImmutableMap.<String, Object>of("~id", format("row%d-%03d", split, i), "value", i));
+                }
+                //noinspection unchecked
+                Files.write(toGzippedSplit(splitRows.toArray(new Map[splitRows.size()])), new File(tableDir, "split" + split + ".gz"));
+                rows.addAll(splitRows);
+            }
+
+            assertEquals(Iterators.getOnlyElement(FixedStashReader.getInstance(stashDir.toURI()).listTables()).getTableName(), "test:table");
+
+            // Count the objects fetched to verify that closing a scan stops it from fetching more
+            final AtomicInteger objectsFetched = new AtomicInteger();
+            final StashObjectStore localStore = new LocalStashObjectStore();
+            FixedStashReader reader = new FixedStashReader(stashDir.toURI(), new StashObjectStore() {
+                @Override
+                public ObjectListing listObjects(ListObjectsRequest request) {
+                    return localStore.listObjects(request);
+                }
+
+                @Override
+                public S3Object getObject(GetObjectRequest request) {
+                    objectsFetched.incrementAndGet();
+                    return localStore.getObject(request);
+                }
+            });
+
+            List<Map<String, Object>> sequential;
+            try (StashRowIterator rowIter = reader.scan("test:table")) {
+                sequential = ImmutableList.copyOf(rowIter);
+            }
+            assertEquals(sequential, rows);
+
+            // Use a tiny part size so each split is read with many ranged GETs
+            StashScanOptions options = new StashScanOptions().setParallelism(3).setQueueSize(4).setPartSize(100);
+
+            try (StashRowIterator rowIter = reader.scan("test:table", options.setOrdered(true))) {
+                assertEquals(ImmutableList.copyOf(rowIter), sequential);
+            }
+
+            objectsFetched.set(0);
+            try (StashRowIterator rowIter = reader.scan("test:table", options.setOrdered(false))) {
+                List<Map<String, Object>> unordered = Lists.newArrayList(rowIter);
+                assertEquals(unordered.size(), sequential.size());
+                assertEquals(ImmutableSet.copyOf(unordered), ImmutableSet.copyOf(sequential));
+            }
+            int fullScanObjectsFetched = objectsFetched.get();
+
+            // Closing a scan early stops the workers blocked on the full queue
+            objectsFetched.set(0);
+            try (StashRowIterator rowIter = reader.scan("test:table", options.setOrdered(false))) {
+                assertTrue(rowIter.hasNext());
+                rowIter.next();
+            }
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            while (isStashScanThreadAlive()) {
+                assertTrue(stopwatch.elapsed(TimeUnit.SECONDS) < 10, "Stash scan threads did not stop");
+                Thread.sleep(10);
+            }
+            int closedScanObjectsFetched = objectsFetched.get();
+            assertTrue(closedScanObjectsFetched < fullScanObjectsFetched,
+                    format("Closed scan fetched %d of %d objects", closedScanObjectsFetched, fullScanObjectsFetched));
+            Thread.sleep(100);
+            assertEquals(objectsFetched.get(), closedScanObjectsFetched);
+        } finally {
+            java.nio.file.Files.walk(stashDir.toPath())
+                    .sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    private boolean isStashScanThreadAlive() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("stash-scan-") && thread.isAlive());
+    }
+
+    private byte[] toGzippedSplit(Map<String, Object>... rows) throws Exception {
+        ByteArrayOutputStream splitOut = new ByteArrayOutputStream();
+        try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(splitOut), Charsets.UTF_8))) {
+            for (Map<String, Object> row : rows) {
+                out.write(JsonHelper.asJson(row));
+                out.write("\n");
+            }
+        }
+        return splitOut.toByteArray();
+    }
+
+    private S3Object toS3Object(byte[] content) {
+        S3Object s3Object = new S3Object();
+        s3Object.setObjectContent(new ByteArrayInputStream(content));
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(content.length);
+        s3Object.setObjectMetadata(objectMetadata);
+        return s3Object;
+    }
+
     @Test
     public void testLockedView() throws Exception {
         AmazonS3 s3 = mock(AmazonS3.class);
@@ -371,7 +570,7 @@ public class StashReaderTest {
         when(s3.listObjects(argThat(listObjectRequest("stash-bucket", "stash/test/2015-01-02-00-00-00/", null))))
                 .thenReturn(listing);
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         assertEquals(reader.getLatest(), "2015-01-02-00-00-00");
 
         // Create a locked view
@@ -499,7 +698,7 @@ public class StashReaderTest {
 
         StashSplit stashSplit = new StashSplit("test:table", "2015-01-01-00-00-00/test-table/split0.gz", splitOut.size());
 
-        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), s3, 0);
+        StandardStashReader reader = new StandardStashReader(URI.create("s3://stash-bucket/stash/test"), new S3StashObjectStore(s3), 0);
         try (StashRowIterator rowIter = reader.getSplit(stashSplit)) {
             assertTrue(rowIter.hasNext());
             Map<String, Object> row = rowIter.next();
@@ -1,7 +1,14 @@
 package com.bazaarvoice.emodb.databus;
 
 import com.bazaarvoice.emodb.common.cassandra.CassandraConfiguration;
+import com.bazaarvoice.emodb.databus.core.FanoutConfiguration;
 import com.bazaarvoice.emodb.databus.db.generic.CachingSubscriptionDAO;
+import com.bazaarvoice.emodb.event.core.ClaimStoreConfiguration;
+import com.bazaarvoice.emodb.event.core.LongPollConfiguration;
+import com.bazaarvoice.emodb.event.core.SizeEstimateConfiguration;
+import com.bazaarvoice.emodb.event.db.GroupCommitConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocatorConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
 
@@ -47,6 +54,71 @@ public class DatabusConfiguration {
     @JsonProperty("dataCenterFanoutPartitions")
     private int _dataCenterFanoutPartitions = 4;
 
+    /**
+     * How many batches of events from a single peek or poll may be resolved from the data store concurrently?
+     * The default of 1 resolves each batch serially.
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("pollResolveConcurrency")
+    private int _pollResolveConcurrency = 1;
+
+    /**
+     * Which claim set implementation should track the events claimed by pollers of each subscription?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("claimStore")
+    private ClaimStoreConfiguration _claimStoreConfiguration = new ClaimStoreConfiguration();
+
+    /**
+     * Should events written to subscriptions by concurrent callers be combined into larger batches?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("groupCommit")
+    private GroupCommitConfiguration _groupCommitConfiguration = new GroupCommitConfiguration();
+
+    /**
+     * How large should the slabs holding each subscription's events be, and how long may they stay open?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("slabAllocator")
+    private SlabAllocatorConfiguration _slabAllocatorConfiguration = new SlabAllocatorConfiguration();
+
+    /**
+     * How many of each subscription's slabs may polls read ahead, and how many threads should read them?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("slabReadAhead")
+    private SlabReadAheadConfiguration _slabReadAheadConfiguration = new SlabReadAheadConfiguration();
+
+    /**
+     * Should subscription sizes be tracked in memory instead of counting the subscription's events on every request?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("sizeEstimate")
+    private SizeEstimateConfiguration _sizeEstimateConfiguration = new SizeEstimateConfiguration();
+
+    /**
+     * How long may polls of empty subscriptions wait server-side for events, and should other servers wake them?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("longPoll")
+    private LongPollConfiguration _longPollConfiguration = new LongPollConfiguration();
+
+    /**
+     * How many threads should each fanout partition match and write events with, and how far may reads get ahead?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("fanout")
+    private FanoutConfiguration _fanoutConfiguration = new FanoutConfiguration();
+
     public CassandraConfiguration getCassandraConfiguration() {
         return _cassandraConfiguration;
     }
@@ -100,4 +172,76 @@ public class DatabusConfiguration {
         _dataCenterFanoutPartitions = dataCenterFanoutPartitions;
         return this;
     }
+
+    public int getPollResolveConcurrency() {
+        return _pollResolveConcurrency;
+    }
+
+    public DatabusConfiguration setPollResolveConcurrency(int pollResolveConcurrency) {
+        _pollResolveConcurrency = pollResolveConcurrency;
+        return this;
+    }
+
+    public ClaimStoreConfiguration getClaimStoreConfiguration() {
+        return _claimStoreConfiguration;
+    }
+
+    public DatabusConfiguration setClaimStoreConfiguration(ClaimStoreConfiguration claimStoreConfiguration) {
+        _claimStoreConfiguration = claimStoreConfiguration;
+        return this;
+    }
+
+    public GroupCommitConfiguration getGroupCommitConfiguration() {
+        return _groupCommitConfiguration;
+    }
+
+    public DatabusConfiguration setGroupCommitConfiguration(GroupCommitConfiguration groupCommitConfiguration) {
+        _groupCommitConfiguration = groupCommitConfiguration;
+        return this;
+    }
+
+    public SlabAllocatorConfiguration getSlabAllocatorConfiguration() {
+        return _slabAllocatorConfiguration;
+    }
+
+    public DatabusConfiguration setSlabAllocatorConfiguration(SlabAllocatorConfiguration slabAllocatorConfiguration) {
+        _slabAllocatorConfiguration = slabAllocatorConfiguration;
+        return this;
+    }
+
+    public SlabReadAheadConfiguration getSlabReadAheadConfiguration() {
+        return _slabReadAheadConfiguration;
+    }
+
+    public DatabusConfiguration setSlabReadAheadConfiguration(SlabReadAheadConfiguration slabReadAheadConfiguration) {
+        _slabReadAheadConfiguration = slabReadAheadConfiguration;
+        return this;
+    }
+
+    public SizeEstimateConfiguration getSizeEstimateConfiguration() {
+        return _sizeEstimateConfiguration;
+    }
+
+    public DatabusConfiguration setSizeEstimateConfiguration(SizeEstimateConfiguration sizeEstimateConfiguration) {
+        _sizeEstimateConfiguration = sizeEstimateConfiguration;
+        return this;
+    }
+
+    public LongPollConfiguration getLongPollConfiguration() {
+        return _longPollConfiguration;
+    }
+
+    public DatabusConfiguration setLongPollConfiguration(LongPollConfiguration longPollConfiguration) {
+        _longPollConfiguration = longPollConfiguration;
+        return this;
+    }
+
+    public FanoutConfiguration getFanoutConfiguration() {
+        return _fanoutConfiguration;
+    }
+
+    public DatabusConfiguration setFanoutConfiguration(FanoutConfiguration fanoutConfiguration) {
+        _fanoutConfiguration = fanoutConfiguration;
+        return this;
+    }
 }
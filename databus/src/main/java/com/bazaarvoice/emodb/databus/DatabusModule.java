@@ -23,6 +23,7 @@ import com.bazaarvoice.emodb.databus.core.DefaultDatabus;
 import com.bazaarvoice.emodb.databus.core.DefaultFanoutManager;
 import com.bazaarvoice.emodb.common.dropwizard.log.DefaultRateLimitedLogFactory;
 import com.bazaarvoice.emodb.databus.core.DrainFanoutPartitionTask;
+import com.bazaarvoice.emodb.databus.core.FanoutConfiguration;
 import com.bazaarvoice.emodb.databus.core.FanoutLagMonitor;
 import com.bazaarvoice.emodb.databus.core.FanoutManager;
 import com.bazaarvoice.emodb.databus.core.HashingPartitionSelector;
@@ -48,6 +49,13 @@ import com.bazaarvoice.emodb.event.EventStoreModule;
 import com.bazaarvoice.emodb.event.EventStoreZooKeeper;
 import com.bazaarvoice.emodb.event.api.ChannelConfiguration;
 import com.bazaarvoice.emodb.event.api.DedupEventStoreChannels;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
+import com.bazaarvoice.emodb.event.core.ClaimStoreConfiguration;
+import com.bazaarvoice.emodb.event.core.LongPollConfiguration;
+import com.bazaarvoice.emodb.event.core.SizeEstimateConfiguration;
+import com.bazaarvoice.emodb.event.db.GroupCommitConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocatorConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration;
 import com.bazaarvoice.emodb.event.owner.OstrichOwnerGroupFactory;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
@@ -78,6 +86,9 @@ import java.time.Clock;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
@@ -113,10 +124,12 @@ import static com.google.common.base.Preconditions.checkArgument;
  * <li> {@link DatabusFactory}
  * <li> {@link DatabusEventStore}
  * <li> {@link ReplicationSource}
+ * <li> @{@link DatabusChannelWatcher} {@link ChannelWatcher}
  * </ul>
  */
 public class DatabusModule extends PrivateModule {
     private static final int MAX_THREADS_FOR_QUEUE_DRAINING = 10;
+    private static final int MAX_THREADS_FOR_POLL_RESOLVE = 50;
 
     private final EmoServiceMode _serviceMode;
     private MetricRegistry _metricRegistry;
@@ -181,6 +194,12 @@ public class DatabusModule extends PrivateModule {
         return ostrichOwnerGroupFactory;
     }
 
+    @Provides @Singleton @Exposed
+    @DatabusChannelWatcher
+    ChannelWatcher provideDatabusChannelWatcher(ChannelWatcher channelWatcher) {
+        return channelWatcher;
+    }
+
     @Provides @Singleton
     CassandraKeyspace provideKeyspace(DatabusConfiguration configuration, CassandraFactory factory) {
         Map<String, CassandraKeyspace> keyspaces = factory.build(configuration.getCassandraConfiguration());
@@ -216,6 +235,36 @@ public class DatabusModule extends PrivateModule {
         return service;
     }
 
+    @Provides @Singleton
+    ClaimStoreConfiguration provideClaimStoreConfiguration(DatabusConfiguration configuration) {
+        return configuration.getClaimStoreConfiguration();
+    }
+
+    @Provides @Singleton
+    GroupCommitConfiguration provideGroupCommitConfiguration(DatabusConfiguration configuration) {
+        return configuration.getGroupCommitConfiguration();
+    }
+
+    @Provides @Singleton
+    SlabAllocatorConfiguration provideSlabAllocatorConfiguration(DatabusConfiguration configuration) {
+        return configuration.getSlabAllocatorConfiguration();
+    }
+
+    @Provides @Singleton
+    SlabReadAheadConfiguration provideSlabReadAheadConfiguration(DatabusConfiguration configuration) {
+        return configuration.getSlabReadAheadConfiguration();
+    }
+
+    @Provides @Singleton
+    SizeEstimateConfiguration provideSizeEstimateConfiguration(DatabusConfiguration configuration) {
+        return configuration.getSizeEstimateConfiguration();
+    }
+
+    @Provides @Singleton
+    LongPollConfiguration provideLongPollConfiguration(DatabusConfiguration configuration) {
+        return configuration.getLongPollConfiguration();
+    }
+
     @Provides @Singleton
     CachingSubscriptionDAO.CachingMode provideCachingSubscriptionDAOCachingMode(DatabusConfiguration configuration) {
         return configuration.getSubscriptionCacheInvalidation();
@@ -228,6 +277,23 @@ public class DatabusModule extends PrivateModule {
         return queueDrainService;
     }
 
+    @Provides @Singleton @PollResolveConcurrency
+    Integer providePollResolveConcurrency(DatabusConfiguration configuration) {
+        checkArgument(Range.closed(1, 16).contains(configuration.getPollResolveConcurrency()),
+                "Poll resolve concurrency must be between 1 and 16");
+        return configuration.getPollResolveConcurrency();
+    }
+
+    @Provides @Singleton @PollResolveConcurrency
+    ExecutorService providePollResolveService(LifeCycleRegistry lifeCycleRegistry) {
+        // If every thread is busy run the query on the polling thread, effectively falling back to serial resolution
+        ExecutorService pollResolveService = new ThreadPoolExecutor(0, MAX_THREADS_FOR_POLL_RESOLVE, 1, TimeUnit.MINUTES,
+                new SynchronousQueue<>(), new ThreadFactoryBuilder().setNameFormat("pollResolve-%d").setDaemon(true).build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        lifeCycleRegistry.manage(new ExecutorServiceManager(pollResolveService, Duration.seconds(1), "pollResolve"));
+        return pollResolveService;
+    }
+
     @Provides @Singleton @MasterFanoutPartitions
     Integer provideMasterFanoutPartitions(DatabusConfiguration configuration) {
         checkArgument(Range.closed(1, 16).contains(configuration.getMasterFanoutPartitions()),
@@ -258,4 +324,8 @@ public class DatabusModule extends PrivateModule {
         return new HashingPartitionSelector(numPartitions);
     }
 
+    @Provides @Singleton
+    FanoutConfiguration provideFanoutConfiguration(DatabusConfiguration configuration) {
+        return configuration.getFanoutConfiguration();
+    }
 }
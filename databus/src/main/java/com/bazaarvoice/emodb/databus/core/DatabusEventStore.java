@@ -7,6 +7,7 @@ import com.bazaarvoice.emodb.event.api.DedupEventStore;
 import com.bazaarvoice.emodb.event.api.EventData;
 import com.bazaarvoice.emodb.event.api.EventSink;
 import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.api.SizeEstimate;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
 import com.google.common.collect.Maps;
@@ -80,6 +81,11 @@ public class DatabusEventStore implements BaseEventStore {
         return select(subscription).getSizeEstimate(subscription, limit);
     }
 
+    @Override
+    public SizeEstimate estimateSize(String subscription, long limit) {
+        return select(subscription).estimateSize(subscription, limit);
+    }
+
     @Override
     public long getClaimCount(String subscription) {
         return select(subscription).getClaimCount(subscription);
@@ -6,6 +6,7 @@ import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.databus.ChannelNames;
 import com.bazaarvoice.emodb.databus.DefaultJoinFilter;
 import com.bazaarvoice.emodb.databus.MasterFanoutPartitions;
+import com.bazaarvoice.emodb.databus.PollResolveConcurrency;
 import com.bazaarvoice.emodb.databus.QueueDrainExecutorService;
 import com.bazaarvoice.emodb.databus.SystemIdentity;
 import com.bazaarvoice.emodb.databus.api.Event;
@@ -44,9 +45,11 @@ import com.bazaarvoice.emodb.sor.core.UpdateRef;
 import com.bazaarvoice.emodb.sortedq.core.ReadOnlyQueueException;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
 import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
@@ -62,6 +65,8 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
@@ -71,10 +76,12 @@ import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -82,6 +89,7 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -148,11 +156,14 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
     private final Meter _drainQueueAsyncMeter;
     private final Meter _drainQueueTaskMeter;
     private final Meter _drainQueueRedundantMeter;
+    private final Timer _resolveBatchTimer;
     private final LoadingCache<SizeCacheKey, Map.Entry<Long, Long>> _eventSizeCache;
     private final Supplier<Condition> _defaultJoinFilterCondition;
     private final Ticker _ticker;
     private final Clock _clock;
     private ExecutorService _drainService;
+    private final ExecutorService _pollResolveService;
+    private final int _pollResolveConcurrency;
     private ConcurrentMap<String, Long> _drainedSubscriptionsMap = Maps.newConcurrentMap();
 
     @Inject
@@ -163,6 +174,8 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                           @SystemIdentity String systemOwnerId,
                           @DefaultJoinFilter Supplier<Condition> defaultJoinFilterCondition,
                           @QueueDrainExecutorService ExecutorService drainService,
+                          @PollResolveConcurrency ExecutorService pollResolveService,
+                          @PollResolveConcurrency int pollResolveConcurrency,
                           @MasterFanoutPartitions int masterPartitions,
                           @MasterFanoutPartitions PartitionSelector masterPartitionSelector,
                           MetricRegistry metricRegistry, Clock clock) {
@@ -176,6 +189,9 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         _systemOwnerId = systemOwnerId;
         _defaultJoinFilterCondition = defaultJoinFilterCondition;
         _drainService = checkNotNull(drainService, "drainService");
+        _pollResolveService = checkNotNull(pollResolveService, "pollResolveService");
+        checkArgument(pollResolveConcurrency > 0, "Poll resolve concurrency must be >0");
+        _pollResolveConcurrency = pollResolveConcurrency;
         _masterPartitionSelector = masterPartitionSelector;
         _ticker = ClockTicker.getTicker(clock);
         _clock = clock;
@@ -192,6 +208,7 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
         _drainQueueAsyncMeter = newEventMeter("drainQueueAsync", metricRegistry);
         _drainQueueTaskMeter = newEventMeter("drainQueueTask", metricRegistry);
         _drainQueueRedundantMeter = newEventMeter("drainQueueRedundant", metricRegistry);
+        _resolveBatchTimer = metricRegistry.timer(getMetricName("resolveBatch"));
         _eventSizeCache = CacheBuilder.newBuilder()
                 .expireAfterWrite(15, TimeUnit.SECONDS)
                 .maximumSize(2000)
@@ -506,25 +523,43 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                 break;
             }
 
-            // Resolve the raw events in batches of 10 until at least one response item is found for a maximum time of MAX_POLL_TIME.
-            do {
-                int batchItemsDiscarded = resolvePeekOrPollEvents(subscription, rawEvents, Math.min(10, remaining),
-                        (coord, item) -> {
-                            // Check whether we've already added this piece of content to the poll result.  If so, consolidate
-                            // the two together to reduce the amount of work a client must do.  Note that the previous item
-                            // would be from a previous batch of events and it's possible that we have read two different
-                            // versions of the same item of content.  This will prefer the most recent.
-                            Item previousItem = uniqueItems.get(coord);
-                            if (previousItem != null && previousItem.consolidateWith(item)) {
-                                _consolidatedMeter.mark();
-                            } else {
-                                // We have found a new item of content to return!
-                                uniqueItems.put(coord, item);
-                            }
-                        });
-                remaining = limit - uniqueItems.size();
-                itemsDiscarded += batchItemsDiscarded;
-            } while (!rawEvents.isEmpty() && remaining > 0 && stopwatch.elapsed(TimeUnit.MILLISECONDS) < MAX_POLL_TIME.toMillis());
+            // Resolve the raw events in batches of 10 until at least one response item is found for a maximum time of
+            // MAX_POLL_TIME.  Once the time is up no more batches are started, but any already in flight are completed.
+            ResolvePipeline pipeline = new ResolvePipeline(subscription, rawEvents, 10);
+            boolean resolved = false;
+            try {
+                do {
+                    boolean withinPollTime = stopwatch.elapsed(TimeUnit.MILLISECONDS) < MAX_POLL_TIME.toMillis();
+                    int batchItemsDiscarded = pipeline.resolveNext(remaining, withinPollTime,
+                            (coord, item) -> {
+                                // Check whether we've already added this piece of content to the poll result.  If so, consolidate
+                                // the two together to reduce the amount of work a client must do.  Note that the previous item
+                                // would be from a previous batch of events and it's possible that we have read two different
+                                // versions of the same item of content.  This will prefer the most recent.
+                                Item previousItem = uniqueItems.get(coord);
+                                if (previousItem != null && previousItem.consolidateWith(item)) {
+                                    _consolidatedMeter.mark();
+                                } else {
+                                    // We have found a new item of content to return!
+                                    uniqueItems.put(coord, item);
+                                }
+                            });
+                    remaining = limit - uniqueItems.size();
+                    itemsDiscarded += batchItemsDiscarded;
+                } while (pipeline.isInFlight() ||
+                        (!rawEvents.isEmpty() && remaining > 0 && stopwatch.elapsed(TimeUnit.MILLISECONDS) < MAX_POLL_TIME.toMillis()));
+                resolved = true;
+            } finally {
+                if (!resolved && repeatable && !rawEvents.isEmpty()) {
+                    // The poll is failing, so release the claims on the events which weren't resolved rather than
+                    // holding them until they expire
+                    try {
+                        unclaim(subscription, rawEvents.values());
+                    } catch (Exception e) {
+                        _log.warn("Failed to unclaim {} events from subscription {}", rawEvents.size(), subscription, e);
+                    }
+                }
+            }
 
             // There are more events for the next poll if either the event store explicitly said so or if, due to padding,
             // we got more events than "limit", in which case we're likely to unclaim at last one.
@@ -566,6 +601,7 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             // remaining events from the peek or poll which will be resolved lazily in batches of 25.
 
             final Map<Coordinate, EventList> deferredRawEvents = Maps.newLinkedHashMap(rawEvents);
+            final ResolvePipeline deferredPipeline = new ResolvePipeline(subscription, deferredRawEvents, 25);
             final int initialDeferredLimit = remaining;
 
             Iterator<Event> deferredEvents = new AbstractIterator<Event>() {
@@ -578,12 +614,12 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
 
                     if (currentBatch.hasNext()) {
                         next = currentBatch.next();
-                    } else if (!deferredRawEvents.isEmpty() && remaining > 0) {
+                    } else if (deferredPipeline.hasMore() && remaining > 0) {
                         // Resolve the next batch of events
                         try {
                             final List<Item> items = Lists.newArrayList();
                             do {
-                                resolvePeekOrPollEvents(subscription, deferredRawEvents, Math.min(remaining, 25),
+                                deferredPipeline.resolveNext(remaining, true,
                                         (coord, item) -> {
                                             // Unlike with the original batch the deferred batch's events are always
                                             // already de-duplicated by coordinate, so there is no need to maintain
@@ -596,11 +632,12 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                                     currentBatch = toEvents(items).iterator();
                                     next = currentBatch.next();
                                 }
-                            } while (next == null && !deferredRawEvents.isEmpty() && remaining > 0);
+                            } while (next == null && deferredPipeline.hasMore() && remaining > 0);
                         } catch (Exception e) {
                             // Don't fail; the caller has already received some events.  Just cut the result stream short
                             // now and throw back any remaining events for a future poll.
                             _log.warn("Failed to load additional events during peek/poll for subscription {}", subscription, e);
+                            deferredPipeline.abandon();
                         }
                     }
 
@@ -608,6 +645,9 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
                         return next;
                     }
 
+                    // Any batches still in flight were prefetched beyond what the caller requested
+                    deferredPipeline.abandon();
+
                     if (!deferredRawEvents.isEmpty()) {
                         // If we padded the number of raw events it's possible there are more than the caller actually
                         // requested.  Release the extra padded events now.
@@ -641,30 +681,14 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
     }
 
     /**
-     * Resolves events found during a peek or poll and converts them into items.  No more than <code>limit</code>
-     * events are read, not including events which are skipped because they come from dropped tables.
-     *
-     * Any events for content which has not yet been replicated to the local data center are excluded and set to retry
-     * in RECENT_UNKNOWN_RETRY.  Any events for redundant changes are automatically deleted.
-     *
-     * To make use of this method more efficient it is not idempotent.  This method has the following side effect:
-     *
-     * <ol>
-     *     <li>All events processed are removed from <code>rawEvents</code>.</li>
-     * </ol>
-     *
-     * Finally, this method returns the number of redundant events that were found and deleted, false otherwise.
+     * Removes up to <code>limit</code> events from <code>rawEvents</code> and prepares a single data store query to
+     * resolve them.  Events which come from dropped tables are not counted against the limit and are discarded
+     * when the batch is completed.
      */
-    private int resolvePeekOrPollEvents(String subscription, Map<Coordinate, EventList> rawEvents, int limit,
-                                            ResolvedItemSink sink) {
-        Map<Coordinate, Integer> eventOrder = Maps.newHashMap();
-        List<String> eventIdsToDiscard = Lists.newArrayList();
-        List<String> recentUnknownEventIds = Lists.newArrayList();
-        int remaining = limit;
-        int itemsDiscarded = 0;
-
-        DataProvider.AnnotatedGet annotatedGet = _dataProvider.prepareGetAnnotated(ReadConsistency.STRONG);
+    private ResolveBatch prepareResolveBatch(Map<Coordinate, EventList> rawEvents, int limit) {
+        ResolveBatch batch = new ResolveBatch(_dataProvider.prepareGetAnnotated(ReadConsistency.STRONG), limit);
         Iterator<Map.Entry<Coordinate, EventList>> rawEventIterator = rawEvents.entrySet().iterator();
+        int remaining = limit;
 
         while (rawEventIterator.hasNext() && remaining != 0) {
             Map.Entry<Coordinate, EventList> entry = rawEventIterator.next();
@@ -672,32 +696,60 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
 
             // Query the table/key pair.
             try {
-                annotatedGet.add(coord.getTable(), coord.getId());
+                batch.annotatedGet.add(coord.getTable(), coord.getId());
                 remaining -= 1;
             } catch (UnknownTableException | UnknownPlacementException e) {
                 // It's likely the table or facade was dropped since the event was queued.  Discard the events.
                 EventList list = entry.getValue();
                 for (Pair<String, UUID> pair : list.getEventAndChangeIds()) {
-                    eventIdsToDiscard.add(pair.first());
+                    batch.eventIdsToDiscard.add(pair.first());
                 }
                 _discardedMeter.mark(list.size());
             }
 
             // Keep track of the order in which we received the events from the EventStore.
+            batch.events.put(coord, entry.getValue());
+            rawEventIterator.remove();
+        }
+
+        return batch;
+    }
+
+    /**
+     * Executes the data store query for a batch.  This is the only part of resolving events which performs I/O
+     * and it has no side effects, so it is safe to run concurrently with other batches.
+     */
+    private List<DataProvider.AnnotatedContent> executeResolveBatch(ResolveBatch batch) {
+        try (Timer.Context ignore = _resolveBatchTimer.time()) {
+            return ImmutableList.copyOf(batch.annotatedGet.execute());
+        }
+    }
+
+    /**
+     * Converts the results of a batch's data store query into items.
+     *
+     * Any events for content which has not yet been replicated to the local data center are excluded and set to retry
+     * in RECENT_UNKNOWN_RETRY.  Any events for redundant changes are automatically deleted.
+     *
+     * Finally, this method returns the number of redundant events that were found and deleted.
+     */
+    private int completeResolveBatch(String subscription, ResolveBatch batch,
+                                     List<DataProvider.AnnotatedContent> readResults, ResolvedItemSink sink) {
+        List<String> eventIdsToDiscard = batch.eventIdsToDiscard;
+        List<String> recentUnknownEventIds = Lists.newArrayList();
+        Map<Coordinate, Integer> eventOrder = Maps.newHashMap();
+        for (Coordinate coord : batch.events.keySet()) {
             eventOrder.put(coord, eventOrder.size());
         }
-        Iterator<DataProvider.AnnotatedContent> readResultIter = annotatedGet.execute();
 
         // Loop through the results of the data store query.
-        while (readResultIter.hasNext()) {
-            DataProvider.AnnotatedContent readResult = readResultIter.next();
-
+        for (DataProvider.AnnotatedContent readResult : readResults) {
             // Get the JSON System of Record entity for this piece of content
             Map<String, Object> content = readResult.getContent();
 
             // Find the original event IDs that correspond to this piece of content
             Coordinate coord = Coordinate.fromJson(content);
-            EventList eventList = rawEvents.get(coord);
+            EventList eventList = batch.events.get(coord);
 
             // Get all databus event tags for the original event(s) for this coordinate
             List<List<String>> tags = eventList.getTags();
@@ -748,19 +800,130 @@ public class DefaultDatabus implements OwnerAwareDatabus, DatabusEventWriter, Ma
             _eventStore.renew(subscription, recentUnknownEventIds, RECENT_UNKNOWN_RETRY, false);
         }
         // Ack events we never again want to see.
-        if ((itemsDiscarded = eventIdsToDiscard.size()) != 0) {
+        int itemsDiscarded = eventIdsToDiscard.size();
+        if (itemsDiscarded != 0) {
             _eventStore.delete(subscription, eventIdsToDiscard, true);
         }
-        // Remove all coordinates from rawEvents which were processed by this method
-        for (Coordinate coord : eventOrder.keySet()) {
-            rawEvents.remove(coord);
-        }
 
         return itemsDiscarded;
     }
 
     /**
-     * Simple interface for the event sink in {@link #resolvePeekOrPollEvents(String, Map, int, ResolvedItemSink)}
+     * A batch of raw events removed from a peek or poll result along with the data store query which resolves them.
+     */
+    private static class ResolveBatch {
+        final DataProvider.AnnotatedGet annotatedGet;
+        final int limit;
+        final Map<Coordinate, EventList> events = Maps.newLinkedHashMap();
+        final List<String> eventIdsToDiscard = Lists.newArrayList();
+        Future<List<DataProvider.AnnotatedContent>> results;
+
+        ResolveBatch(DataProvider.AnnotatedGet annotatedGet, int limit) {
+            this.annotatedGet = annotatedGet;
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * Resolves events found during a peek or poll and converts them into items.  Each call to
+     * {@link #resolveNext(int, boolean, ResolvedItemSink)} completes one batch of no more than <code>batchSize</code>
+     * events, not including events which are skipped because they come from dropped tables.
+     *
+     * If the configured poll resolve concurrency is greater than one then up to that many batches are queried from
+     * the data store concurrently, so while one batch is being completed the following batches are already in flight.
+     * Batches are always completed in the order in which they were removed from the raw events and on the caller's
+     * thread, so items are returned to the sink in the same order as they would be if resolved serially.
+     *
+     * To make use of this class more efficient it is not idempotent:  all events are removed from
+     * <code>rawEvents</code> once they are part of a batch.  If the caller gives up on the remaining batches it must
+     * call {@link #abandon()} to return them to <code>rawEvents</code>.
+     */
+    private class ResolvePipeline {
+        private final String _subscription;
+        private final Map<Coordinate, EventList> _rawEvents;
+        private final int _batchSize;
+        private final Deque<ResolveBatch> _inFlight = new ArrayDeque<>();
+        private int _inFlightLimit;
+
+        ResolvePipeline(String subscription, Map<Coordinate, EventList> rawEvents, int batchSize) {
+            _subscription = subscription;
+            _rawEvents = rawEvents;
+            _batchSize = batchSize;
+        }
+
+        /** Returns true if there are any batches which have been queried but not yet completed. */
+        boolean isInFlight() {
+            return !_inFlight.isEmpty();
+        }
+
+        boolean hasMore() {
+            return isInFlight() || !_rawEvents.isEmpty();
+        }
+
+        /**
+         * Completes the next batch, first querying up to the configured concurrency additional batches if
+         * <code>prefetch</code> is true.  No more than <code>remaining</code> events are in flight at once.
+         * Returns the number of redundant events that were found and deleted.
+         */
+        int resolveNext(int remaining, boolean prefetch, ResolvedItemSink sink) {
+            while ((prefetch || _inFlight.isEmpty()) && _inFlight.size() < _pollResolveConcurrency &&
+                    !_rawEvents.isEmpty() && remaining - _inFlightLimit > 0) {
+                ResolveBatch batch = prepareResolveBatch(_rawEvents, Math.min(_batchSize, remaining - _inFlightLimit));
+                if (_pollResolveConcurrency > 1) {
+                    batch.results = _pollResolveService.submit(() -> executeResolveBatch(batch));
+                } else {
+                    batch.results = Futures.immediateFuture(executeResolveBatch(batch));
+                }
+                _inFlight.add(batch);
+                _inFlightLimit += batch.limit;
+            }
+
+            ResolveBatch batch = _inFlight.poll();
+            if (batch == null) {
+                return 0;
+            }
+            _inFlightLimit -= batch.limit;
+
+            boolean succeeded = false;
+            try {
+                List<DataProvider.AnnotatedContent> readResults;
+                try {
+                    readResults = Futures.getUnchecked(batch.results);
+                } catch (UncheckedExecutionException e) {
+                    // Return the failed batch's events along with those of the batches behind it
+                    _inFlight.addFirst(batch);
+                    throw Throwables.propagate(e.getCause());
+                }
+                int itemsDiscarded = completeResolveBatch(_subscription, batch, readResults, sink);
+                succeeded = true;
+                return itemsDiscarded;
+            } finally {
+                if (!succeeded) {
+                    // The caller won't ask for the following batches, so cancel them and return their events
+                    abandon();
+                }
+            }
+        }
+
+        /**
+         * Returns the events from all batches which have not been completed back to the raw events.  They go ahead of
+         * the raw events which were never part of a batch so the raw events remain in their original order.
+         */
+        void abandon() {
+            Map<Coordinate, EventList> untakenEvents = Maps.newLinkedHashMap(_rawEvents);
+            _rawEvents.clear();
+            for (ResolveBatch batch : _inFlight) {
+                batch.results.cancel(false);
+                _rawEvents.putAll(batch.events);
+            }
+            _rawEvents.putAll(untakenEvents);
+            _inFlight.clear();
+            _inFlightLimit = 0;
+        }
+    }
+
+    /**
+     * Simple interface for the event sink in {@link ResolvePipeline#resolveNext(int, boolean, ResolvedItemSink)}
      */
     private interface ResolvedItemSink {
         void accept(Coordinate coordinate, Item item);
@@ -8,6 +8,8 @@ import com.bazaarvoice.emodb.databus.ChannelNames;
 import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
 import com.bazaarvoice.emodb.datacenter.api.DataCenter;
 import com.bazaarvoice.emodb.event.api.EventData;
+import com.bazaarvoice.emodb.event.core.Limits;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -15,13 +17,16 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
-import com.google.common.collect.LinkedListMultimap;
+import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractScheduledService;
-import com.google.common.util.concurrent.Futures;
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,15 +35,22 @@ import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.temporal.ChronoUnit;
 import java.time.Duration;
-import java.util.Collections;
 import java.util.Date;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
@@ -48,11 +60,37 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Each source channel is handled by a single process in the EmoDB cluster.  Generally this copy process is fast enough
  * (and I/O bound) that it's not necessary to spread the work across different servers, but if that changes we can
  * spread writes across multiple source channels (eg. __system_bus:master1, __system_bus:master2, etc.).
+ * <p>
+ * Within the process events flow through a pipeline so no single slow step holds up the rest:
+ * <ol>
+ *     <li>The service thread polls batches of events from the source, claiming them so later reads skip the events
+ *         still in the pipeline instead of reading past them again.</li>
+ *     <li>A work-stealing pool matches small batches of events to subscriptions, so idle threads pick up whatever
+ *         is waiting instead of waiting on a slow batch.  Matched batches are handed to the write threads in the
+ *         order they were read.</li>
+ *     <li>Write threads each own the channels which hash to them and write the matched events in the order they
+ *         were queued, combining queued batches into larger writes.  Since every event for a channel, including
+ *         each outbound replication partition, goes through one write thread, each channel is written in the order
+ *         its events were read.</li>
+ *     <li>A delete thread deletes events from the source once every write for their batch has completed.</li>
+ * </ol>
+ * The queues between the match and write stages are bounded and reading stops while too many events are in flight,
+ * so when writes lag the whole pipeline slows down to match.
  */
 public class DefaultFanout extends AbstractScheduledService {
     private static final Logger _log = LoggerFactory.getLogger(DefaultFanout.class);
 
+    private static final int READ_EVENTS_BATCH_SIZE = 1000;
+    private static final int MATCH_EVENTS_BATCH_SIZE = 100;
+    private static final int WRITE_QUEUE_SIZE = 16;
     private static final int FLUSH_EVENTS_THRESHOLD = 500;
+    // Long enough for events to get through a backed up pipeline, short enough that events which aren't deleted,
+    // such as those for tables which may not be visible yet, are soon read again
+    private static final Duration CLAIM_TTL = Duration.ofSeconds(30);
+
+    /** Claims beyond the per-channel limit aren't granted, so the events in flight plus a full read must fit under it. */
+    @VisibleForTesting
+    static final int MAX_EVENTS_IN_FLIGHT = Limits.MAX_CLAIMS_OUTSTANDING - READ_EVENTS_BATCH_SIZE;
 
     private final String _name;
     private final EventSource _eventSource;
@@ -68,21 +106,41 @@ public class DefaultFanout extends AbstractScheduledService {
     private final Meter _eventsWrittenLocal;
     private final Meter _eventsWrittenOutboundReplication;
     private final Meter _subscriptionMatchEvaluations;
+    private final Histogram _subscriptionMatchCandidates;
     private final Timer _totalCopyTimer;
     private final Timer _fetchEventsTimer;
+    private final Timer _readBackpressureTimer;
     private final Timer _fetchSubscriptionsTimer;
     private final Timer _fanoutTimer;
     private final Timer _e2eFanoutTimer;
     private final Timer _matchSubscriptionsTimer;
     private final Timer _replicateTimer;
     private final Timer _fetchMatchEventDataTimer;
+    private final Timer _writeQueueTimer;
     private final Timer _eventFlushTimer;
+    private final Timer _deleteEventsTimer;
+    private final Timer _subscriptionIndexRebuildTimer;
     private final Clock _clock;
     private final Stopwatch _lastLagStopwatch;
     private final FanoutLagMonitor.Lag _lagGauge;
     private int _lastLagSeconds = -1;
-
-    private final ExecutorService _fanoutPool;
+    private SubscriptionMatchIndex _subscriptionIndex;
+
+    private final int _maxEventsInFlight;
+    private final ForkJoinPool _matchPool;
+    private final List<WriteLane> _writeLanes;
+    private final BlockingQueue<MatchBatch> _deleteQueue = new LinkedBlockingQueue<>();
+    private final AtomicLong _nextReadSequence = new AtomicLong();
+    // Matched batches waiting for the batches read before them to be handed to the write lanes
+    private final Map<Long, MatchBatch> _matchedBatches = new ConcurrentHashMap<>();
+    private final Object _handOffLock = new Object();
+    private long _nextHandOffSequence;  // Guarded by _handOffLock
+    private final Thread _deleteThread;
+    // Keys of events which have been read but not yet deleted or given up on
+    private final Set<String> _eventsInFlight = Sets.newConcurrentHashSet();
+    private final Object _progress = new Object();
+    private final AtomicReference<Throwable> _failure = new AtomicReference<>();
+    private volatile boolean _shutdown;
 
     public DefaultFanout(String name,
                          String partitionName,
@@ -90,6 +148,7 @@ public class DefaultFanout extends AbstractScheduledService {
                          Function<Multimap<String, ByteBuffer>, Void> eventSink,
                          @Nullable PartitionSelector outboundPartitionSelector,
                          Duration sleepWhenIdle,
+                         FanoutConfiguration fanoutConfiguration,
                          Supplier<Iterable<OwnedSubscription>> subscriptionsSupplier,
                          DataCenter currentDataCenter,
                          RateLimitedLogFactory logFactory,
@@ -107,30 +166,55 @@ public class DefaultFanout extends AbstractScheduledService {
         _currentDataCenter = checkNotNull(currentDataCenter, "currentDataCenter");
         _subscriptionEvaluator = checkNotNull(subscriptionEvaluator, "subscriptionEvaluator");
 
+        checkNotNull(fanoutConfiguration, "fanoutConfiguration");
+        checkArgument(fanoutConfiguration.getMatchThreads() > 0, "Fanout match threads must be at least 1");
+        checkArgument(fanoutConfiguration.getWriteThreads() > 0, "Fanout write threads must be at least 1");
+        checkArgument(fanoutConfiguration.getMaxEventsInFlight() > 0, "Fanout max events in flight must be at least 1");
+        checkArgument(fanoutConfiguration.getMaxEventsInFlight() <= MAX_EVENTS_IN_FLIGHT,
+                "Fanout max events in flight must be at most %s", MAX_EVENTS_IN_FLIGHT);
+        _maxEventsInFlight = fanoutConfiguration.getMaxEventsInFlight();
+
         _rateLimitedLog = logFactory.from(_log);
         _eventsRead = newEventMeter("read", metricRegistry);
         _eventsWrittenLocal = newEventMeter("written-local", metricRegistry);
         _eventsWrittenOutboundReplication = newEventMeter("written-outbound-replication", metricRegistry);
         _subscriptionMatchEvaluations = newEventMeter("subscription-match-evaluations", metricRegistry);
+        _subscriptionMatchCandidates = metricRegistry.histogram(metricName("subscription-match-candidates"));
         _totalCopyTimer = metricRegistry.timer(metricName("total-copy"));
         _fetchEventsTimer = metricRegistry.timer(metricName("fetch-events"));
+        _readBackpressureTimer = metricRegistry.timer(metricName("read-backpressure"));
         _fetchSubscriptionsTimer = metricRegistry.timer(metricName("fetch-subscriptions"));
         _fanoutTimer = metricRegistry.timer(metricName("fanout"));
         _e2eFanoutTimer = metricRegistry.timer(metricName("e2e-fanout"));
         _matchSubscriptionsTimer = metricRegistry.timer(metricName("match-subscriptions"));
         _replicateTimer = metricRegistry.timer(metricName("replicate"));
         _fetchMatchEventDataTimer = metricRegistry.timer(metricName("fetch-match-event-data"));
+        _writeQueueTimer = metricRegistry.timer(metricName("write-queue-wait"));
         _eventFlushTimer = metricRegistry.timer(metricName("flush-events"));
+        _deleteEventsTimer = metricRegistry.timer(metricName("delete-events"));
+        _subscriptionIndexRebuildTimer = metricRegistry.timer(metricName("subscription-index-rebuild"));
 
         _lagGauge = checkNotNull(fanoutLagMonitor, "fanoutLagMonitor").createForFanout(name, partitionName);
         _lastLagStopwatch = Stopwatch.createStarted(ClockTicker.getTicker(clock));
         _clock = clock;
         ServiceFailureListener.listenTo(this, metricRegistry);
 
-        _fanoutPool = Executors.newFixedThreadPool(
-            8,
-            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("fanout-%d").build()
-        );
+        final String threadPrefix = "fanout-" + name + "-" + partitionName;
+        _matchPool = new ForkJoinPool(fanoutConfiguration.getMatchThreads(), pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(threadPrefix + "-match-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+
+        ImmutableList.Builder<WriteLane> writeLanes = ImmutableList.builder();
+        for (int i = 0; i < fanoutConfiguration.getWriteThreads(); i++) {
+            writeLanes.add(new WriteLane(threadPrefix + "-write-" + i));
+        }
+        _writeLanes = writeLanes.build();
+
+        _deleteThread = new Thread(this::runDeletes, threadPrefix + "-delete");
+        _deleteThread.setDaemon(true);
+        _deleteThread.start();
     }
 
     private Meter newEventMeter(String name, MetricRegistry metricRegistry) {
@@ -164,145 +248,317 @@ public class DefaultFanout extends AbstractScheduledService {
 
     @Override
     protected void shutDown() throws Exception {
-        // Leadership lost, stop posting fanout lag
+        // Leadership lost, abandon events still in the pipeline.  They weren't deleted from the source so the next
+        // leader will copy them again.
+        _shutdown = true;
+        _matchPool.shutdownNow();
+        for (WriteLane writeLane : _writeLanes) {
+            writeLane.interrupt();
+        }
+        _deleteThread.interrupt();
+
+        // Stop posting fanout lag
         _lagGauge.close();
     }
 
     private boolean copyEvents() {
         try (Timer.Context ignored = _totalCopyTimer.time()) {
-            // Use peek() not poll() since LeaderSelector ensures we're not competing with other processes for claims.
-            final Timer.Context peekTime = _fetchEventsTimer.time();
-            List<EventData> rawEvents = _eventSource.get(1000);
-            peekTime.stop();
-
-            // If no events, sleep a little while before doing any more work to allow new events to arrive.
-            if (rawEvents.isEmpty()) {
-                // Update the lag metrics to indicate there is no lag
-                updateLagMetrics(null);
-                return false;
+            // Don't read more events while the pipeline is full.  This is how writes which fall behind slow down reads.
+            try (Timer.Context ignored1 = _readBackpressureTimer.time()) {
+                awaitEventsInFlight(_maxEventsInFlight - 1, true);
+            }
+
+            // Events still in the pipeline haven't been deleted yet.  Their claims keep this read from returning them
+            // again, so each read only fetches new events.
+            Set<String> eventsInFlight = ImmutableSet.copyOf(_eventsInFlight);
+            final Timer.Context pollTime = _fetchEventsTimer.time();
+            List<EventData> rawEvents = _eventSource.poll(CLAIM_TTL, READ_EVENTS_BATCH_SIZE);
+            pollTime.stop();
+
+            // Events whose claims expired while in the pipeline, or which a source without claims returned again, are
+            // already being copied
+            List<EventData> newEvents = Lists.newArrayListWithCapacity(rawEvents.size());
+            for (EventData rawEvent : rawEvents) {
+                if (!eventsInFlight.contains(rawEvent.getId())) {
+                    newEvents.add(rawEvent);
+                }
+            }
+
+            if (newEvents.isEmpty()) {
+                if (eventsInFlight.isEmpty()) {
+                    // If no events, sleep a little while before doing any more work to allow new events to arrive.
+                    // Update the lag metrics to indicate there is no lag
+                    updateLagMetrics(null);
+                    return false;
+                }
+                // Everything read is still in the pipeline.  Wait for some of it to finish before reading again.
+                try (Timer.Context ignored1 = _readBackpressureTimer.time()) {
+                    awaitEventsInFlight(eventsInFlight.size() - 1, true);
+                }
+                return true;
             }
 
             // Last chance to check that we are the leader before doing anything that would be bad if we aren't.
-            return isRunning() && copyEvents(rawEvents);
+            if (!isRunning()) {
+                return false;
+            }
+            submit(newEvents);
+            return true;
         }
     }
 
-
+    /**
+     * Copies the events through the pipeline and waits until they have all been written and deleted from the source.
+     */
     @VisibleForTesting
-    boolean copyEvents(List<EventData> rawEvents) {
+    void copyEvents(List<EventData> rawEvents) {
+        submit(rawEvents);
+        awaitEventsInFlight(0, false);
+    }
+
+    private void submit(List<EventData> rawEvents) {
         // Read the list of subscriptions *after* reading events from the event store to avoid race conditions with
         // creating a new subscription.
         final Timer.Context subTime = _fetchSubscriptionsTimer.time();
         Iterable<OwnedSubscription> subscriptions = _subscriptionsSupplier.get();
         subTime.stop();
 
-        List<Date> lastMatchEventBatchTimes = Collections.synchronizedList(Lists.newArrayList());
-        
-        try(final Timer.Context ignored = _e2eFanoutTimer.time()) {
-            final List<Future<?>> futures = new LinkedList<>();
-            // Copy the events to all the destination channels.
-            for (final List<EventData> rawEventPartition : Lists.partition(rawEvents, (int) Math.ceil(1.0 * rawEvents.size() / 8))) {
-                futures.add(_fanoutPool.submit(() -> {
-                    try {
-                        // multimap is not threadsafe
-                        final List<String> eventKeys = new LinkedList<>();
-                        final ListMultimap<String, ByteBuffer> eventsByChannel = LinkedListMultimap.create();
-                        SubscriptionEvaluator.MatchEventData lastMatchEventData = null;
-                        int numOutboundReplicationEvents = 0;
-                        try (Timer.Context ignored1 = _fanoutTimer.time()) {
-                            for (EventData rawEvent : rawEventPartition) {
-                                ByteBuffer eventData = rawEvent.getData();
-
-                                SubscriptionEvaluator.MatchEventData matchEventData;
-                                try (Timer.Context ignored2 = _fetchMatchEventDataTimer.time()) {
-                                    matchEventData = _subscriptionEvaluator.getMatchEventData(eventData);
-                                } catch (OrphanedEventException e) {
-                                    // There's a 2 second window where a race condition exists such that a newly created
-                                    // table may exist but due to caching the table may be cached as unknown.  To allow
-                                    // plenty of room for error wait until over 30 seconds after the event was written
-                                    // before dropping the event.  After this the event must be orphaned because
-                                    // the associated table was dropped.
-                                    if (e.getEventTime().until(_clock.instant(), ChronoUnit.SECONDS) > 30) {
-                                        eventKeys.add(rawEvent.getId());
-                                    }
-                                    continue;
-                                }
+        // Only (re)build the match index once an event actually needs to be matched
+        final Supplier<SubscriptionMatchIndex> subscriptionIndex = Suppliers.memoize(() -> getSubscriptionIndex(subscriptions));
 
-                                eventKeys.add(rawEvent.getId());
+        long readTime = System.nanoTime();
+        for (List<EventData> events : Lists.partition(rawEvents, MATCH_EVENTS_BATCH_SIZE)) {
+            final List<EventData> matchEvents = ImmutableList.copyOf(events);
+            final MatchBatch batch = new MatchBatch(matchEvents, readTime, _nextReadSequence.getAndIncrement());
+            _eventsInFlight.addAll(batch.eventKeys);
+            _matchPool.execute(() -> match(matchEvents, batch, subscriptionIndex));
+        }
+    }
 
-                                // Copy to subscriptions in the current data center.
-                                Timer.Context matchTime = _matchSubscriptionsTimer.time();
-                                int subscriptionCount = 0;
-                                for (OwnedSubscription subscription : subscriptions) {
-                                    subscriptionCount += 1;
-                                    if (_subscriptionEvaluator.matches(subscription, matchEventData)) {
-                                        eventsByChannel.put(subscription.getName(), eventData);
-                                    }
-                                }
-                                matchTime.stop();
-                                _subscriptionMatchEvaluations.mark(subscriptionCount);
-
-                                // Copy to queues for eventual delivery to remote data centers.
-                                try (Timer.Context ignored4 = _replicateTimer.time()) {
-                                    if (_replicateOutbound) {
-                                        for (DataCenter dataCenter : matchEventData.getTable().getDataCenters()) {
-                                            if (!dataCenter.equals(_currentDataCenter)) {
-                                                int partition = _outboundPartitionSelector.getPartition(matchEventData.getKey());
-                                                String channel = ChannelNames.getReplicationFanoutChannel(dataCenter, partition);
-                                                eventsByChannel.put(channel, eventData);
-                                                numOutboundReplicationEvents++;
-                                            }
-                                        }
-                                    }
-                                }
+    /** The match stage.  Finds the channels each event belongs in and hands them off to the owning write lanes. */
+    private void match(List<EventData> rawEvents, MatchBatch batch, Supplier<SubscriptionMatchIndex> subscriptionIndex) {
+        try {
+            WriteBatch[] writeBatches = new WriteBatch[_writeLanes.size()];
+            SubscriptionEvaluator.MatchEventData lastMatchEventData = null;
+
+            try (Timer.Context ignored = _fanoutTimer.time()) {
+                for (EventData rawEvent : rawEvents) {
+                    ByteBuffer eventData = rawEvent.getData();
+
+                    SubscriptionEvaluator.MatchEventData matchEventData;
+                    try (Timer.Context ignored1 = _fetchMatchEventDataTimer.time()) {
+                        matchEventData = _subscriptionEvaluator.getMatchEventData(eventData);
+                    } catch (OrphanedEventException e) {
+                        // There's a 2 second window where a race condition exists such that a newly created
+                        // table may exist but due to caching the table may be cached as unknown.  To allow
+                        // plenty of room for error wait until over 30 seconds after the event was written
+                        // before dropping the event.  After this the event must be orphaned because
+                        // the associated table was dropped.
+                        if (e.getEventTime().until(_clock.instant(), ChronoUnit.SECONDS) > 30) {
+                            batch.deleteKeys.add(rawEvent.getId());
+                        }
+                        continue;
+                    }
 
-                                // Flush to cap the amount of memory used to buffer events.
-                                if (eventsByChannel.size() >= FLUSH_EVENTS_THRESHOLD) {
-                                    flush(eventKeys, eventsByChannel, numOutboundReplicationEvents);
-                                    numOutboundReplicationEvents = 0;
+                    batch.deleteKeys.add(rawEvent.getId());
+
+                    // Copy to subscriptions in the current data center.  Only subscriptions returned
+                    // by the index can possibly match the event.
+                    Timer.Context matchTime = _matchSubscriptionsTimer.time();
+                    List<OwnedSubscription> candidates = subscriptionIndex.get().getCandidates(
+                            matchEventData.getTable(), matchEventData.getTags());
+                    int subscriptionCount = candidates.size();
+                    for (OwnedSubscription subscription : candidates) {
+                        if (_subscriptionEvaluator.matches(subscription, matchEventData)) {
+                            getWriteBatch(writeBatches, subscription.getName(), batch).add(subscription.getName(), eventData, false);
+                        }
+                    }
+                    matchTime.stop();
+                    _subscriptionMatchEvaluations.mark(subscriptionCount);
+                    _subscriptionMatchCandidates.update(subscriptionCount);
+
+                    // Copy to queues for eventual delivery to remote data centers.
+                    try (Timer.Context ignored2 = _replicateTimer.time()) {
+                        if (_replicateOutbound) {
+                            for (DataCenter dataCenter : matchEventData.getTable().getDataCenters()) {
+                                if (!dataCenter.equals(_currentDataCenter)) {
+                                    int partition = _outboundPartitionSelector.getPartition(matchEventData.getKey());
+                                    String channel = ChannelNames.getReplicationFanoutChannel(dataCenter, partition);
+                                    getWriteBatch(writeBatches, channel, batch).add(channel, eventData, true);
                                 }
-
-                                // Track the final match event data record returned
-                                lastMatchEventData = matchEventData;
-                            }
-
-                            // Final flush.
-                            flush(eventKeys, eventsByChannel, numOutboundReplicationEvents);
-
-                            if (lastMatchEventData != null) {
-                                lastMatchEventBatchTimes.add(lastMatchEventData.getEventTime());
                             }
                         }
-                    } catch (Throwable t) {
-                        _log.error("Uncaught exception in fanout pool. Thread will die, but it should be replaced.", t);
-                        throw t;
                     }
-                }));
+
+                    // Track the final match event data record returned
+                    lastMatchEventData = matchEventData;
+                }
             }
 
-            for (final Future<?> future : futures) {
-                Futures.getUnchecked(future);
+            if (lastMatchEventData != null) {
+                batch.lastEventTime = lastMatchEventData.getEventTime();
             }
 
-            // Update the lag metrics based on the last event returned.  This isn't perfect for several reasons:
-            // 1. In-order delivery is not guaranteed
-            // 2. The event time is based on the change ID which is close-to but not precisely the time the update occurred
-            // 3. Injected events have artificial change IDs which don't correspond to any clock-based time
-            // However, this is still a useful metric because:
-            // 1. Delivery is in-order the majority of the time
-            // 2. Change IDs are typically within milliseconds of update times
-            // 3. Injected events are extremely rare and should be avoided outside of testing anyway
-            // 4. The lag only becomes a concern on the scale of minutes, far above the uncertainty introduced by the above
-            Date lastMatchEventTime = lastMatchEventBatchTimes.stream().max(Date::compareTo).orElse(null);
-            if (lastMatchEventTime != null) {
-                updateLagMetrics(lastMatchEventTime);
+            batch.writeBatches = writeBatches;
+            handOff(batch);
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    /**
+     * Queues the writes of matched batches in the order the batches were read.  Batches may finish matching out of
+     * order, so a batch waits here until every batch read before it has been queued.
+     */
+    private void handOff(MatchBatch batch) throws InterruptedException {
+        _matchedBatches.put(batch.sequence, batch);
+        synchronized (_handOffLock) {
+            MatchBatch next;
+            while ((next = _matchedBatches.remove(_nextHandOffSequence)) != null) {
+                _nextHandOffSequence++;
+                queueWrites(next);
             }
         }
+    }
 
-        return true;
+    private void queueWrites(MatchBatch batch) throws InterruptedException {
+        // This blocks while a write lane's queue is full, which in turn stops matched batches from being handed off
+        // until the write lane catches up.
+        WriteBatch[] writeBatches = batch.writeBatches;
+        batch.writeBatches = null;
+        for (int lane = 0; lane < writeBatches.length; lane++) {
+            if (writeBatches[lane] != null) {
+                batch.pendingWrites.incrementAndGet();
+                _writeLanes.get(lane).put(writeBatches[lane]);
+            }
+        }
+        // Release the hold taken when the batch was created now that every write is queued
+        writeComplete(batch);
     }
 
-    private void updateLagMetrics(@Nullable Date eventTime) {
+    private WriteBatch getWriteBatch(WriteBatch[] writeBatches, String channel, MatchBatch batch) {
+        // Every event for a channel goes through the same write lane, so writes to a channel never race each other
+        int lane = (channel.hashCode() & Integer.MAX_VALUE) % writeBatches.length;
+        WriteBatch writeBatch = writeBatches[lane];
+        if (writeBatch == null) {
+            writeBatch = writeBatches[lane] = new WriteBatch(batch);
+        }
+        return writeBatch;
+    }
+
+    private void writeComplete(MatchBatch batch) {
+        if (batch.pendingWrites.decrementAndGet() == 0) {
+            _deleteQueue.add(batch);
+        }
+    }
+
+    /** The delete stage.  Deletes events from the source once all of their writes have completed. */
+    private void runDeletes() {
+        List<MatchBatch> batches = Lists.newArrayList();
+        List<String> eventKeys = Lists.newArrayList();
+        try {
+            while (!_shutdown) {
+                batches.add(_deleteQueue.take());
+                _deleteQueue.drainTo(batches);
+
+                Date lastEventTime = null;
+                for (MatchBatch batch : batches) {
+                    eventKeys.addAll(batch.deleteKeys);
+                    if (batch.lastEventTime != null && (lastEventTime == null || batch.lastEventTime.after(lastEventTime))) {
+                        lastEventTime = batch.lastEventTime;
+                    }
+                }
+
+                if (!eventKeys.isEmpty()) {
+                    try (Timer.Context ignored = _deleteEventsTimer.time()) {
+                        _eventSource.delete(eventKeys);
+                    }
+                    _eventsRead.mark(eventKeys.size());
+                    eventKeys.clear();
+                }
+
+                // Update the lag metrics based on the latest event copied.  This isn't perfect for several reasons:
+                // 1. In-order delivery is not guaranteed
+                // 2. The event time is based on the change ID which is close-to but not precisely the time the update occurred
+                // 3. Injected events have artificial change IDs which don't correspond to any clock-based time
+                // However, this is still a useful metric because:
+                // 1. Delivery is in-order the majority of the time
+                // 2. Change IDs are typically within milliseconds of update times
+                // 3. Injected events are extremely rare and should be avoided outside of testing anyway
+                // 4. The lag only becomes a concern on the scale of minutes, far above the uncertainty introduced by the above
+                if (lastEventTime != null) {
+                    updateLagMetrics(lastEventTime);
+                }
+
+                // Events which weren't deleted, such as those for tables which may not be visible yet, are read from
+                // the source again once their claims expire.
+                long now = System.nanoTime();
+                for (MatchBatch batch : batches) {
+                    _e2eFanoutTimer.update(now - batch.readTime, TimeUnit.NANOSECONDS);
+                    _eventsInFlight.removeAll(batch.eventKeys);
+                }
+                batches.clear();
+                signalProgress();
+            }
+        } catch (InterruptedException e) {
+            // Shutting down
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    /**
+     * Waits until no more than the given number of events are in flight.  If the pipeline fails the failure is
+     * rethrown to the caller.
+     */
+    private void awaitEventsInFlight(int limit, boolean onlyWhileRunning) {
+        synchronized (_progress) {
+            while (_eventsInFlight.size() > limit && _failure.get() == null && (!onlyWhileRunning || isRunning())) {
+                try {
+                    // Leadership can be lost without a signal, so check back periodically
+                    _progress.wait(100);
+                } catch (InterruptedException e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        }
+        Throwable failure = _failure.get();
+        if (failure != null) {
+            throw Throwables.propagate(failure);
+        }
+    }
+
+    private void signalProgress() {
+        synchronized (_progress) {
+            _progress.notifyAll();
+        }
+    }
+
+    private void fail(Throwable t) {
+        // Interruptions while shutting down are expected
+        if (!_shutdown) {
+            _log.error("Unexpected exception in the fanout pipeline for {}", _name, t);
+            _failure.compareAndSet(null, t);
+            signalProgress();
+        }
+    }
+
+    /**
+     * Returns the match index for the current subscriptions.  The subscription supplier returns the same instance
+     * until the subscriptions are invalidated, so the index is only rebuilt after a subscription changes.
+     */
+    private synchronized SubscriptionMatchIndex getSubscriptionIndex(Iterable<OwnedSubscription> subscriptions) {
+        SubscriptionMatchIndex index = _subscriptionIndex;
+        if (index == null || !index.isIndexOf(subscriptions)) {
+            try (Timer.Context ignored = _subscriptionIndexRebuildTimer.time()) {
+                index = index == null ? SubscriptionMatchIndex.build(subscriptions) : index.rebuild(subscriptions);
+            }
+            _subscriptionIndex = index;
+        }
+        return index;
+    }
+
+    private synchronized void updateLagMetrics(@Nullable Date eventTime) {
         int lagSeconds = eventTime == null ? 0 : (int) TimeUnit.MILLISECONDS.toSeconds(_clock.millis() - eventTime.getTime());
         // As a performance savings only update the metric if both of the following are true:
         // 1. It has been more than 5 seconds since the last time the metric was updated
@@ -315,19 +571,103 @@ public class DefaultFanout extends AbstractScheduledService {
         }
     }
 
-    private void flush(List<String> eventKeys, Multimap<String, ByteBuffer> eventsByChannel,
-                       int numOutboundReplicationEvents) {
+    private void flush(Multimap<String, ByteBuffer> eventsByChannel, int numOutboundReplicationEvents) {
         try (Timer.Context ignore = _eventFlushTimer.time()) {
-            if (!eventsByChannel.isEmpty()) {
-                _eventSink.apply(eventsByChannel);
-                _eventsWrittenLocal.mark(eventsByChannel.size() - numOutboundReplicationEvents);
-                _eventsWrittenOutboundReplication.mark(numOutboundReplicationEvents);
-                eventsByChannel.clear();
+            _eventSink.apply(eventsByChannel);
+            _eventsWrittenLocal.mark(eventsByChannel.size() - numOutboundReplicationEvents);
+            _eventsWrittenOutboundReplication.mark(numOutboundReplicationEvents);
+        }
+    }
+
+    /** Events read together and matched by a single task, tracked until all of their writes complete. */
+    private static class MatchBatch {
+        final List<String> eventKeys;
+        final List<String> deleteKeys = Lists.newArrayList();
+        final long readTime;
+        final long sequence;
+        // Set once the batch is matched, until its writes are queued
+        volatile WriteBatch[] writeBatches;
+        // Starts with a hold for the match stage, released once all of the batch's writes are queued
+        final AtomicInteger pendingWrites = new AtomicInteger(1);
+        volatile Date lastEventTime;
+
+        MatchBatch(List<EventData> events, long readTime, long sequence) {
+            eventKeys = Lists.newArrayListWithCapacity(events.size());
+            for (EventData event : events) {
+                eventKeys.add(event.getId());
+            }
+            this.readTime = readTime;
+            this.sequence = sequence;
+        }
+    }
+
+    /** The events from one match batch destined for the channels owned by a single write lane. */
+    private static class WriteBatch {
+        final MatchBatch matchBatch;
+        final ListMultimap<String, ByteBuffer> eventsByChannel = ArrayListMultimap.create();
+        int numOutboundReplicationEvents;
+        long queueTime;
+
+        WriteBatch(MatchBatch matchBatch) {
+            this.matchBatch = matchBatch;
+        }
+
+        void add(String channel, ByteBuffer eventData, boolean outboundReplication) {
+            eventsByChannel.put(channel, eventData);
+            if (outboundReplication) {
+                numOutboundReplicationEvents++;
             }
-            if (!eventKeys.isEmpty()) {
-                _eventSource.delete(eventKeys);
-                _eventsRead.mark(eventKeys.size());
-                eventKeys.clear();
+        }
+    }
+
+    /** The write stage for the channels which hash to a single lane. */
+    private class WriteLane implements Runnable {
+        private final BlockingQueue<WriteBatch> _queue = new ArrayBlockingQueue<>(WRITE_QUEUE_SIZE);
+        private final Thread _thread;
+
+        WriteLane(String threadName) {
+            _thread = new Thread(this, threadName);
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        void put(WriteBatch writeBatch) throws InterruptedException {
+            writeBatch.queueTime = System.nanoTime();
+            _queue.put(writeBatch);
+        }
+
+        void interrupt() {
+            _thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            List<WriteBatch> writeBatches = Lists.newArrayList();
+            ListMultimap<String, ByteBuffer> eventsByChannel = ArrayListMultimap.create();
+            try {
+                while (!_shutdown) {
+                    // Combine whatever else is waiting into the same write, up to the flush threshold
+                    WriteBatch writeBatch = _queue.take();
+                    int numOutboundReplicationEvents = 0;
+                    do {
+                        _writeQueueTimer.update(System.nanoTime() - writeBatch.queueTime, TimeUnit.NANOSECONDS);
+                        writeBatches.add(writeBatch);
+                        eventsByChannel.putAll(writeBatch.eventsByChannel);
+                        numOutboundReplicationEvents += writeBatch.numOutboundReplicationEvents;
+                    } while (eventsByChannel.size() < FLUSH_EVENTS_THRESHOLD && (writeBatch = _queue.poll()) != null);
+
+                    flush(eventsByChannel, numOutboundReplicationEvents);
+
+                    for (WriteBatch written : writeBatches) {
+                        writeComplete(written.matchBatch);
+                    }
+                    writeBatches.clear();
+                    eventsByChannel.clear();
+                }
+            } catch (InterruptedException e) {
+                // Shutting down
+            } catch (Throwable t) {
+                fail(t);
             }
         }
     }
@@ -50,6 +50,7 @@ public class DefaultFanoutManager implements FanoutManager {
     private final int _masterFanoutPartitions;
     private final int _dataCenterFanoutPartitions;
     private final PartitionSelector _dataCenterFanoutPartitionSelector;
+    private final FanoutConfiguration _fanoutConfiguration;
     private final FanoutLagMonitor _fanoutLagMonitor;
     private final MetricRegistry _metricRegistry;
     private final Clock _clock;
@@ -61,6 +62,7 @@ public class DefaultFanoutManager implements FanoutManager {
                                 @MasterFanoutPartitions int masterFanoutPartitions,
                                 @DataCenterFanoutPartitions int dataCenterFanoutPartitions,
                                 @DataCenterFanoutPartitions PartitionSelector dataCenterFanoutPartitionSelector,
+                                FanoutConfiguration fanoutConfiguration,
                                 FanoutLagMonitor fanoutLagMonitor,
                                 LeaderServiceTask dropwizardTask, RateLimitedLogFactory logFactory,
                                 MetricRegistry metricRegistry, Clock clock) {
@@ -75,6 +77,7 @@ public class DefaultFanoutManager implements FanoutManager {
         _masterFanoutPartitions = masterFanoutPartitions;
         _dataCenterFanoutPartitions = dataCenterFanoutPartitions;
         _dataCenterFanoutPartitionSelector = checkNotNull(dataCenterFanoutPartitionSelector, "dataCenterFanoutPartitionSelector");
+        _fanoutConfiguration = checkNotNull(fanoutConfiguration, "fanoutConfiguration");
         _fanoutLagMonitor = checkNotNull(fanoutLagMonitor, "fanoutLagMonitor");
         _metricRegistry = metricRegistry;
         _clock = clock;
@@ -109,7 +112,7 @@ public class DefaultFanoutManager implements FanoutManager {
                 _selfId, "PartitionedLeaderSelector-" + name, partitions, 1,  1, TimeUnit.MINUTES,
                 partition -> new DefaultFanout(name, "partition-" + partition,
                         eventSourceSupplier.createEventSourceForPartition(partition),
-                        eventSink, outboundPartitionSelector, sleepWhenIdle, subscriptionsSupplier, _dataCenters.getSelf(),
+                        eventSink, outboundPartitionSelector, sleepWhenIdle, _fanoutConfiguration, subscriptionsSupplier, _dataCenters.getSelf(),
                         _logFactory, _subscriptionEvaluator, _fanoutLagMonitor, _metricRegistry, _clock),
                 _clock);
 
@@ -2,11 +2,16 @@ package com.bazaarvoice.emodb.databus.core;
 
 import com.bazaarvoice.emodb.event.api.EventData;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
 public interface EventSource {
-    List<EventData> get(int limit);
+    /**
+     * Returns events which haven't been claimed and claims them for {@code claimTtl}, so the events being copied
+     * aren't read again until they're deleted or their claims expire.
+     */
+    List<EventData> poll(Duration claimTtl, int limit);
 
     void delete(Collection<String> eventKeys);
 }
@@ -3,6 +3,7 @@ package com.bazaarvoice.emodb.databus.core;
 import com.bazaarvoice.emodb.event.api.EventData;
 import com.bazaarvoice.emodb.event.api.EventStore;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -16,8 +17,8 @@ public class EventStoreEventSource implements EventSource {
     }
 
     @Override
-    public List<EventData> get(int limit) {
-        return _eventStore.peek(_channel, limit);
+    public List<EventData> poll(Duration claimTtl, int limit) {
+        return _eventStore.poll(_channel, claimTtl, limit);
     }
 
     @Override
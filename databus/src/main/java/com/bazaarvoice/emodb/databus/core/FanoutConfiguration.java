@@ -0,0 +1,55 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration for the pipeline each {@link DefaultFanout} partition copies events through.  Events read from the
+ * source are matched to subscriptions by up to "matchThreads" threads, then written to the subscription channels by
+ * "writeThreads" threads which each own the channels hashing to them.  Reading from the source pauses while
+ * "maxEventsInFlight" events have been read but not yet written and deleted, so writes which fall behind throttle
+ * reads instead of buffering without bound.  Events in flight stay claimed in the source, so "maxEventsInFlight" is
+ * capped below the number of claims a channel allows.
+ */
+public class FanoutConfiguration {
+
+    @JsonProperty("matchThreads")
+    private int _matchThreads = 8;
+
+    @JsonProperty("writeThreads")
+    private int _writeThreads = 4;
+
+    @Min(1)
+    @Max(DefaultFanout.MAX_EVENTS_IN_FLIGHT)
+    @JsonProperty("maxEventsInFlight")
+    private int _maxEventsInFlight = 3000;
+
+    public int getMatchThreads() {
+        return _matchThreads;
+    }
+
+    public FanoutConfiguration setMatchThreads(int matchThreads) {
+        _matchThreads = matchThreads;
+        return this;
+    }
+
+    public int getWriteThreads() {
+        return _writeThreads;
+    }
+
+    public FanoutConfiguration setWriteThreads(int writeThreads) {
+        _writeThreads = writeThreads;
+        return this;
+    }
+
+    public int getMaxEventsInFlight() {
+        return _maxEventsInFlight;
+    }
+
+    public FanoutConfiguration setMaxEventsInFlight(int maxEventsInFlight) {
+        _maxEventsInFlight = maxEventsInFlight;
+        return this;
+    }
+}
@@ -0,0 +1,434 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.bazaarvoice.emodb.sor.condition.AndCondition;
+import com.bazaarvoice.emodb.sor.condition.ComparisonCondition;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.ConditionVisitor;
+import com.bazaarvoice.emodb.sor.condition.ConstantCondition;
+import com.bazaarvoice.emodb.sor.condition.ContainsCondition;
+import com.bazaarvoice.emodb.sor.condition.EqualCondition;
+import com.bazaarvoice.emodb.sor.condition.InCondition;
+import com.bazaarvoice.emodb.sor.condition.IntrinsicCondition;
+import com.bazaarvoice.emodb.sor.condition.IsCondition;
+import com.bazaarvoice.emodb.sor.condition.LikeCondition;
+import com.bazaarvoice.emodb.sor.condition.MapCondition;
+import com.bazaarvoice.emodb.sor.condition.NotCondition;
+import com.bazaarvoice.emodb.sor.condition.OrCondition;
+import com.bazaarvoice.emodb.sor.condition.PartitionCondition;
+import com.bazaarvoice.emodb.sor.core.UpdateRef;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Ints;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Index over a set of subscriptions which returns, for a given event, the subscriptions which could possibly match it.
+ * Without the index fanout must evaluate every subscription's table filter against every event.
+ * <p>
+ * Each subscription's table filter is analyzed for a necessary condition on the event's table name, table placement
+ * or tags, taken from <code>intrinsic("~table":...)</code>, <code>intrinsic("~placement":...)</code> and
+ * <code>{..,"~tags":contains...(...)}</code> terms using equality, <code>in(...)</code> or <code>like(...)</code>
+ * with a constant prefix.  Subscriptions whose filters have no such necessary condition, such as
+ * <code>alwaysTrue()</code> or filters on only table attributes, are always returned as candidates.  The index is
+ * conservative:  every candidate must still be evaluated with {@link SubscriptionEvaluator#matches}.
+ * <p>
+ * Instances are immutable and safe to share between threads.  Since the subscription source, normally
+ * {@link com.bazaarvoice.emodb.databus.db.generic.CachingSubscriptionDAO}, only returns a new collection of
+ * subscriptions after one has been invalidated, callers can use {@link #isIndexOf(Iterable)} to rebuild only when
+ * necessary and {@link #rebuild(Iterable)} to reuse the analysis of every table filter that did not change.
+ */
+class SubscriptionMatchIndex {
+
+    private enum Field {
+        TABLE, PLACEMENT, TAGS
+    }
+
+    private final Iterable<OwnedSubscription> _source;
+    private final OwnedSubscription[] _subscriptions;
+    private final Map<Condition, Terms> _termsByCondition;
+    private final int[] _unindexed;
+    private final Map<Field, Map<String, int[]>> _exact;
+    private final Map<Field, Map<String, int[]>> _prefixes;
+    private final Map<Field, int[]> _prefixLengths;
+
+    static SubscriptionMatchIndex build(Iterable<OwnedSubscription> subscriptions) {
+        return new SubscriptionMatchIndex(subscriptions, Maps.newHashMap());
+    }
+
+    private SubscriptionMatchIndex(Iterable<OwnedSubscription> source, Map<Condition, Terms> previousTerms) {
+        _source = checkNotNull(source, "source");
+        _subscriptions = Iterables.toArray(source, OwnedSubscription.class);
+        _termsByCondition = Maps.newHashMapWithExpectedSize(_subscriptions.length);
+
+        List<Integer> unindexed = Lists.newArrayList();
+        Map<Field, Map<String, List<Integer>>> exact = Maps.newEnumMap(Field.class);
+        Map<Field, Map<String, List<Integer>>> prefixes = Maps.newEnumMap(Field.class);
+
+        for (int ordinal = 0; ordinal < _subscriptions.length; ordinal++) {
+            Condition tableFilter = _subscriptions[ordinal].getTableFilter();
+            Terms terms = _termsByCondition.get(tableFilter);
+            if (terms == null) {
+                terms = previousTerms.get(tableFilter);
+                if (terms == null) {
+                    terms = analyze(tableFilter);
+                }
+                _termsByCondition.put(tableFilter, terms);
+            }
+
+            if (terms == Terms.UNINDEXED) {
+                unindexed.add(ordinal);
+            } else {
+                for (Term term : terms._terms) {
+                    (term._prefix ? prefixes : exact)
+                            .computeIfAbsent(term._field, ignore -> Maps.newHashMap())
+                            .computeIfAbsent(term._value, ignore -> Lists.newArrayList())
+                            .add(ordinal);
+                }
+            }
+        }
+
+        _unindexed = Ints.toArray(unindexed);
+        _exact = toOrdinalArrays(exact);
+        _prefixes = toOrdinalArrays(prefixes);
+        _prefixLengths = Maps.newEnumMap(Field.class);
+        for (Map.Entry<Field, Map<String, int[]>> entry : _prefixes.entrySet()) {
+            Set<Integer> lengths = new TreeSet<>();
+            for (String prefix : entry.getValue().keySet()) {
+                lengths.add(prefix.length());
+            }
+            _prefixLengths.put(entry.getKey(), Ints.toArray(lengths));
+        }
+    }
+
+    /**
+     * Returns true if this index was built from the provided subscriptions instance.
+     */
+    boolean isIndexOf(Iterable<OwnedSubscription> subscriptions) {
+        return _source == subscriptions;
+    }
+
+    /**
+     * Returns a new index for the provided subscriptions, reusing the analysis of all table filters in this index.
+     */
+    SubscriptionMatchIndex rebuild(Iterable<OwnedSubscription> subscriptions) {
+        return new SubscriptionMatchIndex(subscriptions, _termsByCondition);
+    }
+
+    int size() {
+        return _subscriptions.length;
+    }
+
+    @VisibleForTesting
+    int getUnindexedCount() {
+        return _unindexed.length;
+    }
+
+    /**
+     * Returns the subscriptions which may match an event for the provided table and tags, in the order in which
+     * they were returned by the subscription source.
+     */
+    List<OwnedSubscription> getCandidates(Table table, Set<String> tags) {
+        BitSet candidates = new BitSet(_subscriptions.length);
+        set(candidates, _unindexed);
+
+        addCandidates(candidates, Field.TABLE, table.getName());
+        addCandidates(candidates, Field.PLACEMENT, table.getOptions().getPlacement());
+        if (tags != null) {
+            for (String tag : tags) {
+                addCandidates(candidates, Field.TAGS, tag);
+            }
+        }
+
+        List<OwnedSubscription> subscriptions = Lists.newArrayListWithCapacity(candidates.cardinality());
+        for (int ordinal = candidates.nextSetBit(0); ordinal >= 0; ordinal = candidates.nextSetBit(ordinal + 1)) {
+            subscriptions.add(_subscriptions[ordinal]);
+        }
+        return subscriptions;
+    }
+
+    private void addCandidates(BitSet candidates, Field field, @Nullable String value) {
+        if (value == null) {
+            return;
+        }
+        Map<String, int[]> exact = _exact.get(field);
+        if (exact != null) {
+            set(candidates, exact.get(value));
+        }
+        int[] prefixLengths = _prefixLengths.get(field);
+        if (prefixLengths != null) {
+            Map<String, int[]> prefixes = _prefixes.get(field);
+            for (int length : prefixLengths) {
+                if (length > value.length()) {
+                    break;
+                }
+                set(candidates, prefixes.get(value.substring(0, length)));
+            }
+        }
+    }
+
+    private static void set(BitSet bits, @Nullable int[] ordinals) {
+        if (ordinals != null) {
+            for (int ordinal : ordinals) {
+                bits.set(ordinal);
+            }
+        }
+    }
+
+    private static Map<Field, Map<String, int[]>> toOrdinalArrays(Map<Field, Map<String, List<Integer>>> postings) {
+        Map<Field, Map<String, int[]>> result = Maps.newEnumMap(Field.class);
+        for (Map.Entry<Field, Map<String, List<Integer>>> fieldEntry : postings.entrySet()) {
+            Map<String, int[]> values = Maps.newHashMapWithExpectedSize(fieldEntry.getValue().size());
+            for (Map.Entry<String, List<Integer>> entry : fieldEntry.getValue().entrySet()) {
+                values.put(entry.getKey(), Ints.toArray(entry.getValue()));
+            }
+            result.put(fieldEntry.getKey(), values);
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    static boolean isIndexable(Condition tableFilter) {
+        return analyze(tableFilter) != Terms.UNINDEXED;
+    }
+
+    private static Terms analyze(Condition tableFilter) {
+        Terms terms = tableFilter.visit(TermsVisitor.INSTANCE, null);
+        return terms != null ? terms : Terms.UNINDEXED;
+    }
+
+    /** A single indexed value.  An event can only match a subscription if it matches at least one of its terms. */
+    private static class Term {
+        private final Field _field;
+        private final String _value;
+        private final boolean _prefix;
+
+        Term(Field field, String value, boolean prefix) {
+            _field = field;
+            _value = value;
+            _prefix = prefix;
+        }
+
+        /** Lower ranks are expected to be more selective. */
+        int getRank() {
+            return _field.ordinal() * 2 + (_prefix ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Term)) {
+                return false;
+            }
+            Term term = (Term) o;
+            return _prefix == term._prefix && _field == term._field && _value.equals(term._value);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * _field.hashCode() + _value.hashCode()) + (_prefix ? 1 : 0);
+        }
+    }
+
+    /** A disjunction of terms.  An empty set of terms can never match. */
+    private static class Terms {
+        static final Terms UNINDEXED = new Terms(ImmutableSet.of());
+        static final Terms NONE = new Terms(ImmutableSet.of());
+
+        private final Set<Term> _terms;
+        private final int _rank;
+
+        Terms(Set<Term> terms) {
+            _terms = terms;
+            int rank = -1;
+            for (Term term : terms) {
+                rank = Math.max(rank, term.getRank());
+            }
+            _rank = rank;
+        }
+
+        static Terms of(Field field, String value, boolean prefix) {
+            return new Terms(ImmutableSet.of(new Term(field, value, prefix)));
+        }
+
+        /** Returns whichever terms should produce fewer candidates. */
+        static Terms mostSelective(@Nullable Terms a, @Nullable Terms b) {
+            if (a == null || b == null) {
+                return a != null ? a : b;
+            }
+            if (a._rank != b._rank) {
+                return a._rank < b._rank ? a : b;
+            }
+            return a._terms.size() <= b._terms.size() ? a : b;
+        }
+
+        @Nullable
+        static Terms union(@Nullable Terms a, @Nullable Terms b) {
+            if (a == null || b == null) {
+                return null;
+            }
+            return new Terms(ImmutableSet.<Term>builder().addAll(a._terms).addAll(b._terms).build());
+        }
+    }
+
+    /**
+     * Computes the terms for a condition.  When visiting the value of an intrinsic or "~tags" the context is the
+     * field being tested, otherwise it is null.  Returns null if the condition cannot be indexed.
+     */
+    private static class TermsVisitor implements ConditionVisitor<Field, Terms> {
+        static final TermsVisitor INSTANCE = new TermsVisitor();
+
+        @Nullable
+        @Override
+        public Terms visit(ConstantCondition condition, @Nullable Field field) {
+            return condition.getValue() ? null : Terms.NONE;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(EqualCondition condition, @Nullable Field field) {
+            return field != Field.TAGS ? valueTerms(field, ImmutableList.of(condition.getValue())) : null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(InCondition condition, @Nullable Field field) {
+            return field != Field.TAGS ? valueTerms(field, condition.getValues()) : null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(IntrinsicCondition condition, @Nullable Field field) {
+            if (field == null) {
+                if (Intrinsic.TABLE.equals(condition.getName())) {
+                    return condition.getCondition().visit(this, Field.TABLE);
+                }
+                if (Intrinsic.PLACEMENT.equals(condition.getName())) {
+                    return condition.getCondition().visit(this, Field.PLACEMENT);
+                }
+            }
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(ContainsCondition condition, @Nullable Field field) {
+            if (field != Field.TAGS || condition.getValues().isEmpty()) {
+                return null;
+            }
+            switch (condition.getContainment()) {
+                case ANY:
+                    return valueTerms(field, condition.getValues());
+                case ALL:
+                    // Every value is required, so any one of them is a necessary condition.
+                    return valueTerms(field, ImmutableList.of(condition.getValues().iterator().next()));
+                default:
+                    return null;
+            }
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(LikeCondition condition, @Nullable Field field) {
+            if (field == null || field == Field.TAGS) {
+                return null;
+            }
+            if (!condition.hasWildcards()) {
+                // Don't bother unescaping constants, they are functionally equivalent to equality tests
+                String value = condition.getCondition();
+                return value.indexOf('\\') == -1 ? Terms.of(field, value, false) : null;
+            }
+            String prefix = condition.getPrefix();
+            return prefix != null ? Terms.of(field, prefix, true) : null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(AndCondition condition, @Nullable Field field) {
+            // Each of the conditions is necessary, so use whichever one is the most selective
+            Terms best = null;
+            for (Condition child : condition.getConditions()) {
+                best = Terms.mostSelective(best, child.visit(this, field));
+            }
+            return best;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(OrCondition condition, @Nullable Field field) {
+            // Any of the conditions is sufficient, so every one must be indexable
+            Terms union = Terms.NONE;
+            for (Condition child : condition.getConditions()) {
+                union = Terms.union(union, child.visit(this, field));
+            }
+            return union;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(MapCondition condition, @Nullable Field field) {
+            if (field != null) {
+                return null;
+            }
+            // Only tags can be indexed.  Any other entries test table attributes.
+            Condition tagsCondition = condition.getEntries().get(UpdateRef.TAGS_NAME);
+            return tagsCondition != null ? tagsCondition.visit(this, Field.TAGS) : null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(IsCondition condition, @Nullable Field field) {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(ComparisonCondition condition, @Nullable Field field) {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(NotCondition condition, @Nullable Field field) {
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public Terms visit(PartitionCondition condition, @Nullable Field field) {
+            return null;
+        }
+
+        @Nullable
+        private Terms valueTerms(@Nullable Field field, Collection<?> values) {
+            if (field == null) {
+                return null;
+            }
+            ImmutableSet.Builder<Term> terms = ImmutableSet.builder();
+            for (Object value : values) {
+                if (!(value instanceof String)) {
+                    return null;
+                }
+                terms.add(new Term(field, (String) value, false));
+            }
+            return new Terms(terms.build());
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -27,8 +28,19 @@ public class DefaultReplicationSource implements ReplicationSource {
         checkNotNull(channel, "channel");
         checkArgument(limit > 0, "Limit must be >0");
 
-        List<EventData> rawEvents = _eventStore.peek(channel, limit);
+        return toReplicationEvents(_eventStore.peek(channel, limit));
+    }
+
+    @Override
+    public List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit) {
+        checkNotNull(channel, "channel");
+        checkNotNull(claimTtl, "claimTtl");
+        checkArgument(limit > 0, "Limit must be >0");
+
+        return toReplicationEvents(_eventStore.poll(channel, claimTtl, limit));
+    }
 
+    private List<ReplicationEvent> toReplicationEvents(List<EventData> rawEvents) {
         return Lists.transform(rawEvents, new Function<EventData, ReplicationEvent>() {
             @Override
             public ReplicationEvent apply(EventData rawEvent) {
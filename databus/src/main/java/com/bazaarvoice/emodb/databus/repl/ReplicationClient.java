@@ -12,6 +12,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriBuilder;
 import java.net.URI;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -52,6 +53,26 @@ public class ReplicationClient implements ReplicationSource {
         }
     }
 
+    @Override
+    public List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit) {
+        checkNotNull(channel, "channel");
+        checkNotNull(claimTtl, "claimTtl");
+        try {
+            // Servers which predate claims ignore the "ttl" parameter and peek instead
+            URI uri = _replicationSource.clone()
+                    .segment(channel)
+                    .queryParam("limit", limit)
+                    .queryParam("ttl", claimTtl.getSeconds())
+                    .build();
+            return _client.resource(uri)
+                    .accept(MediaType.APPLICATION_JSON_TYPE)
+                    .header(ApiKeyRequest.AUTHENTICATION_HEADER, _apiKey)
+                    .get(new GenericType<List<ReplicationEvent>>() {});
+        } catch (UniformInterfaceException e) {
+            throw convertException(e);
+        }
+    }
+
     @Override
     public void delete(String channel, Collection<String> eventIds) {
         checkNotNull(channel, "channel");
@@ -8,6 +8,7 @@ import com.google.common.base.Function;
 import com.google.common.collect.Lists;
 
 import java.nio.ByteBuffer;
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -26,8 +27,8 @@ public class ReplicationEventSource implements EventSource {
     }
 
     @Override
-    public List<EventData> get(int limit) {
-        List<ReplicationEvent> events = _source.get(_channel, limit);
+    public List<EventData> poll(Duration claimTtl, int limit) {
+        List<ReplicationEvent> events = _source.poll(_channel, claimTtl, limit);
 
         return Lists.transform(events, new Function<ReplicationEvent, EventData>() {
             @Override
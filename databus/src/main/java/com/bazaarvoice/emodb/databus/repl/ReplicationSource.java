@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.databus.repl;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 
@@ -10,5 +11,11 @@ public interface ReplicationSource {
 
     List<ReplicationEvent> get(String channel, int limit);
 
+    /**
+     * Returns events which aren't claimed and claims them for {@code claimTtl}, so repeated calls return new events
+     * instead of those already being replicated.  Claims are held by the server which answers the request.
+     */
+    List<ReplicationEvent> poll(String channel, Duration claimTtl, int limit);
+
     void delete(String channel, Collection<String> eventIds);
 }
@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.testng.annotations.Test;
 
 import java.nio.ByteBuffer;
@@ -341,7 +342,7 @@ public class ConsolidationTest {
         DatabusAuthorizer databusAuthorizer = ConstantDatabusAuthorizer.ALLOW_ALL;
         return new DefaultDatabus(lifeCycle, eventWriterRegistry, dataProvider, subscriptionDao, eventStore, subscriptionEvaluator,
                 jobService, jobHandlerRegistry, databusAuthorizer, "replication",
-                Suppliers.ofInstance(Conditions.alwaysFalse()), mock(ExecutorService.class), 1, key -> 0,
+                Suppliers.ofInstance(Conditions.alwaysFalse()), mock(ExecutorService.class), MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0,
                 new MetricRegistry(), clock);
     }
 
@@ -33,11 +33,13 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.SetMultimap;
 import com.google.common.util.concurrent.MoreExecutors;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
+import org.mockito.ArgumentCaptor;
 import org.testng.annotations.Test;
 
 import java.nio.ByteBuffer;
@@ -53,6 +55,8 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
@@ -71,6 +75,7 @@ import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public class DefaultDatabusTest {
     @Test
@@ -88,7 +93,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), mock(DataProvider.class), mockSubscriptionDao,
                 mock(DatabusEventStore.class), mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "replication", ignoreReEtl, mock(ExecutorService.class),
-                1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
         Condition originalCondition = Conditions.mapBuilder().contains("foo", "bar").build();
         testDatabus.subscribe("id", "test-subscription", originalCondition, Duration.ofDays(7),
                 Duration.ofDays(7));
@@ -142,7 +147,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider().add(annotatedContent), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", ignoreReEtl, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
 
         // Call the drainQueue method.
         testDatabus.drainQueueAsync("test-subscription");
@@ -185,7 +190,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider().add(annotatedContent), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", ignoreReEtl, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
 
         // Call the drainQueue method.
         testDatabus.drainQueueAsync("test-subscription");
@@ -231,7 +236,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider().add(annotatedContent), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", ignoreReEtl, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, new MetricRegistry(), Clock.systemUTC());
 
         // Call the drainQueue method.
         testDatabus.drainQueueAsync("test-subscription");
@@ -283,7 +288,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), databusAuthorizer, "systemOwnerId", acceptAll, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), clock);
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, new MetricRegistry(), clock);
 
         PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 500);
         assertFalse(pollResult.hasMoreEvents());
@@ -304,6 +309,129 @@ public class DefaultDatabusTest {
         assertEquals(executions.get(2).size(), 5);
     }
 
+    @Test
+    public void testLazyPollResultWithConcurrentResolution() throws Exception {
+        // Same as testLazyPollResult except the deferred batches are resolved concurrently
+        List<Integer> batchSizes = pollWithConcurrentResolution(40, clockAdvancingAfterFirstCall());
+        // The first synchronous batch loaded the first 10 events.  The remaining 25 and 5 were then loaded concurrently.
+        assertEquals(batchSizes.get(0), (Integer) 10);
+        assertEquals(Ordering.natural().sortedCopy(batchSizes.subList(1, batchSizes.size())), ImmutableList.of(5, 25));
+    }
+
+    @Test
+    public void testSynchronousPollResultWithConcurrentResolution() throws Exception {
+        // With a clock that doesn't advance all events are resolved synchronously in concurrent batches of 10
+        List<Integer> batchSizes = pollWithConcurrentResolution(40, Clock.fixed(Instant.ofEpochMilli(1489090000000L), ZoneId.systemDefault()));
+        assertEquals(batchSizes, ImmutableList.of(10, 10, 10, 10));
+    }
+
+    @Test
+    public void testConcurrentResolutionFailureUnclaimsInFlightBatches() throws Exception {
+        Supplier<Condition> acceptAll = Suppliers.ofInstance(Conditions.alwaysTrue());
+        TestDataProvider testDataProvider = new TestDataProvider();
+        // The second batch of 10 fails while the batches after it are in flight and the last batch hasn't started
+        testDataProvider.addExecuteException("table-15", "key-15", new RuntimeException("Simulated read failure"));
+
+        final List<String> unresolvedIds = Lists.newArrayList();
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    for (int iteration = 1; iteration <= 60; iteration++) {
+                        String id = "a" + iteration;
+                        addToPoll(id, "table-" + iteration, "key-" + iteration, false, sink, testDataProvider);
+                        if (iteration > 10) {
+                            unresolvedIds.add(id);
+                        }
+                    }
+                    return false;
+                });
+        SubscriptionDAO subscriptionDAO = mock(SubscriptionDAO.class);
+        when(subscriptionDAO.getSubscription("subscription")).thenReturn(
+                new DefaultOwnedSubscription("subscription", Conditions.alwaysTrue(), new Date(1489090060000L),
+                        Duration.ofSeconds(30), "owner"));
+
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(4);
+        try {
+            DefaultDatabus testDatabus = new DefaultDatabus(
+                    mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
+                    eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
+                    mock(JobHandlerRegistry.class), ConstantDatabusAuthorizer.ALLOW_ALL, "systemOwnerId", acceptAll,
+                    MoreExecutors.sameThreadExecutor(), pollResolveService, 4, 1, key -> 0, new MetricRegistry(),
+                    Clock.fixed(Instant.ofEpochMilli(1489090000000L), ZoneId.systemDefault()));
+
+            try {
+                testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 500);
+                fail("Poll should have failed");
+            } catch (RuntimeException e) {
+                assertEquals(e.getMessage(), "Simulated read failure");
+            }
+        } finally {
+            pollResolveService.shutdownNow();
+        }
+
+        // The events from the failed batch, from every batch still in flight behind it and from the batch which hadn't
+        // started are unclaimed immediately, in the order they were polled
+        ArgumentCaptor<Collection> unclaimedIds = ArgumentCaptor.forClass(Collection.class);
+        verify(eventStore).renew(eq("subscription"), unclaimedIds.capture(), eq(Duration.ZERO), eq(false));
+        assertEquals(ImmutableList.copyOf(unclaimedIds.getValue()), unresolvedIds);
+    }
+
+    private List<Integer> pollWithConcurrentResolution(int numEvents, Clock clock) throws Exception {
+        Supplier<Condition> acceptAll = Suppliers.ofInstance(Conditions.alwaysTrue());
+        TestDataProvider testDataProvider = new TestDataProvider();
+
+        final Set<String> expectedIds = Sets.newHashSet();
+
+        DatabusEventStore eventStore = mock(DatabusEventStore.class);
+        when(eventStore.poll(eq("subscription"), eq(Duration.ofMinutes(1)), any(EventSink.class)))
+                .thenAnswer(invocationOnMock -> {
+                    EventSink sink = (EventSink) invocationOnMock.getArguments()[2];
+                    for (int iteration = 1; iteration <= numEvents; iteration++) {
+                        String id = "a" + iteration;
+                        addToPoll(id, "table-" + iteration, "key-" + iteration, false, sink, testDataProvider);
+                        expectedIds.add(id);
+                    }
+                    return false;
+                });
+        SubscriptionDAO subscriptionDAO = mock(SubscriptionDAO.class);
+        when(subscriptionDAO.getSubscription("subscription")).thenReturn(
+                new DefaultOwnedSubscription("subscription", Conditions.alwaysTrue(), new Date(1489090060000L),
+                        Duration.ofSeconds(30), "owner"));
+
+        ExecutorService pollResolveService = Executors.newFixedThreadPool(4);
+        try {
+            DefaultDatabus testDatabus = new DefaultDatabus(
+                    mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
+                    eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
+                    mock(JobHandlerRegistry.class), ConstantDatabusAuthorizer.ALLOW_ALL, "systemOwnerId", acceptAll,
+                    MoreExecutors.sameThreadExecutor(), pollResolveService, 4, 1, key -> 0, new MetricRegistry(), clock);
+
+            PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 500);
+            assertFalse(pollResult.hasMoreEvents());
+
+            Iterator<Event> events = pollResult.getEventIterator();
+            Set<String> actualIds = Sets.newHashSet();
+            while (events.hasNext()) {
+                actualIds.add(events.next().getEventKey());
+            }
+            assertEquals(actualIds, expectedIds);
+        } finally {
+            pollResolveService.shutdownNow();
+        }
+
+        return testDataProvider.getExecutions().stream().map(List::size).collect(Collectors.toList());
+    }
+
+    private Clock clockAdvancingAfterFirstCall() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis())
+                .thenReturn(1489090000000L)
+                .thenReturn(1489090001000L);
+        return clock;
+    }
+
     @Test
     public void testLazyPollResultWithPaddedEvents() {
         Supplier<Condition> acceptAll = Suppliers.ofInstance(Conditions.alwaysTrue());
@@ -354,7 +482,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), testDataProvider, subscriptionDAO,
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), databusAuthorizer, "systemOwnerId", acceptAll, MoreExecutors.sameThreadExecutor(),
-                1, key -> 0, new MetricRegistry(), clock);
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, new MetricRegistry(), clock);
 
         PollResult pollResult = testDatabus.poll("owner", "subscription", Duration.ofMinutes(1), 10);
         // Because of padding all events were read from the event store.  However, since the padded events will be
@@ -406,7 +534,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), new TestDataProvider(), mock(SubscriptionDAO.class),
                 eventStore, mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "systemOwnerId", acceptAll, MoreExecutors.sameThreadExecutor(),
-                3, masterPartitioner, new MetricRegistry(), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 3, masterPartitioner, new MetricRegistry(), Clock.systemUTC());
 
         List<UpdateRef> updateRefs = Lists.newArrayListWithCapacity(4);
         for (int i=0; i < 4; i++) {
@@ -430,7 +558,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), mock(DataProvider.class), mock(SubscriptionDAO.class),
                 mock(DatabusEventStore.class), mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "replication", ignoreReEtl, mock(ExecutorService.class),
-                1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
         Condition condition = Conditions.intrinsic(Intrinsic.TABLE, "test");
         Duration subscriptionTtl = Duration.ofDays(365 * 10).plus(Duration.ofDays(1));
         Duration eventTtl = Duration.ofDays(2);
@@ -446,7 +574,7 @@ public class DefaultDatabusTest {
                 mock(LifeCycleRegistry.class), mock(DatabusEventWriterRegistry.class), mock(DataProvider.class), mock(SubscriptionDAO.class),
                 mock(DatabusEventStore.class), mock(SubscriptionEvaluator.class), mock(JobService.class),
                 mock(JobHandlerRegistry.class), mock(DatabusAuthorizer.class), "replication", ignoreReEtl, mock(ExecutorService.class),
-                1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
+                MoreExecutors.sameThreadExecutor(), 1, 1, key -> 0, mock(MetricRegistry.class), Clock.systemUTC());
         Condition condition = Conditions.intrinsic(Intrinsic.TABLE, "test");
         Duration subscriptionTtl = Duration.ofDays(15);
         Duration eventTtl = Duration.ofDays(365).plus(Duration.ofDays(1));
@@ -36,6 +36,7 @@ import java.nio.ByteBuffer;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -48,6 +49,7 @@ import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 @SuppressWarnings("unchecked")
 public class DefaultFanoutTest {
@@ -64,6 +66,7 @@ public class DefaultFanoutTest {
     private EventSource _eventSource;
     private List<String> _deletedKeys;
     private Instant _now;
+    private RuntimeException _sinkFailure;
     
     @BeforeMethod
     private void setUp() {
@@ -72,6 +75,9 @@ public class DefaultFanoutTest {
         Function<Multimap<String, ByteBuffer>, Void> eventSink = new Function<Multimap<String, ByteBuffer>, Void>() {
             @Override
             public Void apply(Multimap<String, ByteBuffer> input) {
+                if (_sinkFailure != null) {
+                    throw _sinkFailure;
+                }
                 synchronized (this) {
                     _eventsSinked.putAll(input);
                 }
@@ -81,8 +87,9 @@ public class DefaultFanoutTest {
 
         // Event event keys are deleted we need to capture them since fanout clears and re-uses the same instance.
         _eventSource = mock(EventSource.class);
-        _deletedKeys = Lists.newArrayList();
+        _deletedKeys = Collections.synchronizedList(Lists.<String>newArrayList());
         doAnswer(invocationOnMock -> {
+            // Deletes happen on the fanout's delete thread
             _deletedKeys.addAll((List<String>) invocationOnMock.getArguments()[0]);
             return null;
         }).when(_eventSource).delete(anyCollectionOf(String.class));
@@ -114,7 +121,8 @@ public class DefaultFanoutTest {
         MetricRegistry metricRegistry = new MetricRegistry();
 
         _defaultFanout = new DefaultFanout("test", "test", _eventSource, eventSink, _outboundPartitionSelector,
-                Duration.ofSeconds(1), _subscriptionsSupplier, _currentDataCenter, rateLimitedLogFactory, subscriptionEvaluator,
+                Duration.ofSeconds(1), new FanoutConfiguration().setMatchThreads(3).setWriteThreads(2),
+                _subscriptionsSupplier, _currentDataCenter, rateLimitedLogFactory, subscriptionEvaluator,
                 new FanoutLagMonitor(mock(LifeCycleRegistry.class), metricRegistry), metricRegistry, clock);
     }
 
@@ -271,6 +279,69 @@ public class DefaultFanoutTest {
         assertEquals(_deletedKeys, ImmutableList.of("id0"));
     }
 
+    @Test
+    public void testPipelineCopiesEveryBatch() {
+        addTable("table0");
+        addTable("table1");
+
+        List<OwnedSubscription> subscriptions = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            subscriptions.add(new DefaultOwnedSubscription(
+                    "sub" + i, Conditions.alwaysTrue(), new Date(), Duration.ofDays(1), "owner0"));
+        }
+        when(_subscriptionsSupplier.get()).thenReturn(subscriptions);
+        DatabusAuthorizer.DatabusAuthorizerByOwner authorizerByOwner = mock(DatabusAuthorizer.DatabusAuthorizerByOwner.class);
+        when(authorizerByOwner.canReceiveEventsFromTable(anyString())).thenReturn(true);
+        when(_databusAuthorizer.owner("owner0")).thenReturn(authorizerByOwner);
+
+        // Enough events for several match batches, each of which writes through both write lanes
+        List<EventData> events = Lists.newArrayList();
+        List<String> eventIds = Lists.newArrayList();
+        for (int i = 0; i < 1000; i++) {
+            EventData event = newEvent("id" + i, "table" + (i % 2), "key" + i);
+            events.add(event);
+            eventIds.add(event.getId());
+        }
+
+        _defaultFanout.copyEvents(events);
+
+        // Batches may be matched out of order but each channel is written in the order its events were read
+        List<ByteBuffer> eventData = Lists.transform(events, EventData::getData);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(_eventsSinked.get("sub" + i), eventData);
+        }
+        assertEquals(_eventsSinked.get(_remoteChannel), eventData);
+        assertEquals(ImmutableSet.copyOf(_deletedKeys), ImmutableSet.copyOf(eventIds));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMaxEventsInFlightBeyondClaimLimit() {
+        RateLimitedLogFactory rateLimitedLogFactory = mock(RateLimitedLogFactory.class);
+        MetricRegistry metricRegistry = new MetricRegistry();
+
+        new DefaultFanout("test", "test", _eventSource, mock(Function.class), _outboundPartitionSelector,
+                Duration.ofSeconds(1), new FanoutConfiguration().setMaxEventsInFlight(DefaultFanout.MAX_EVENTS_IN_FLIGHT + 1),
+                _subscriptionsSupplier, _currentDataCenter, rateLimitedLogFactory, mock(SubscriptionEvaluator.class),
+                new FanoutLagMonitor(mock(LifeCycleRegistry.class), metricRegistry), metricRegistry, Clock.systemUTC());
+    }
+
+    @Test
+    public void testWriteFailureKeepsEvents() {
+        addTable("matching-table");
+        when(_subscriptionsSupplier.get()).thenReturn(ImmutableList.of());
+        _sinkFailure = new RuntimeException("write failed");
+
+        try {
+            _defaultFanout.copyEvents(ImmutableList.of(newEvent("id0", "matching-table", "key0")));
+            fail("RuntimeException not thrown");
+        } catch (RuntimeException e) {
+            assertEquals(e.getMessage(), "write failed");
+        }
+
+        // The event was never written so it must not have been deleted
+        assertTrue(_deletedKeys.isEmpty());
+    }
+
     private Table mockTable(String tableName) {
         Table table = mock(Table.class);
         when(table.getName()).thenReturn(tableName);
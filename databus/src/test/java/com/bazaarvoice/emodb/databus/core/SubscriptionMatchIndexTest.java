@@ -0,0 +1,155 @@
+package com.bazaarvoice.emodb.databus.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.log.RateLimitedLogFactory;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.databus.auth.ConstantDatabusAuthorizer;
+import com.bazaarvoice.emodb.databus.model.DefaultOwnedSubscription;
+import com.bazaarvoice.emodb.databus.model.OwnedSubscription;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.core.DataProvider;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SubscriptionMatchIndexTest {
+
+    private static final List<String> TABLE_FILTERS = ImmutableList.of(
+            "alwaysTrue()",
+            "alwaysFalse()",
+            "intrinsic(\"~table\":\"review:testcustomer\")",
+            "intrinsic(\"~table\":in(\"review:testcustomer\",\"question:testcustomer\"))",
+            "intrinsic(\"~table\":like(\"review:*\"))",
+            "intrinsic(\"~table\":like(\"*:testcustomer\"))",
+            "intrinsic(\"~table\":like(\"answer:testcustomer\"))",
+            "intrinsic(\"~placement\":\"ugc_global:ugc\")",
+            "intrinsic(\"~placement\":like(\"catalog_*\"))",
+            "{..,\"type\":\"review\"}",
+            "{..,\"~tags\":containsAny(\"re-etl\",\"backfill\")}",
+            "{..,\"~tags\":containsAll(\"re-etl\",\"backfill\")}",
+            "not({..,\"~tags\":containsAny(\"ignore\")})",
+            "and(intrinsic(\"~placement\":\"ugc_global:ugc\"),intrinsic(\"~table\":\"review:testcustomer\"))",
+            "and(intrinsic(\"~table\":like(\"review:*\")),{..,\"~tags\":containsAny(\"re-etl\")})",
+            "or(intrinsic(\"~table\":\"review:testcustomer\"),intrinsic(\"~placement\":\"catalog_global:cat\"))",
+            "or(intrinsic(\"~table\":\"review:testcustomer\"),{..,\"type\":\"review\"})",
+            "intrinsic(\"~table\":not(\"review:testcustomer\"))");
+
+    @Test
+    public void testCandidatesIncludeAllMatches() {
+        List<OwnedSubscription> subscriptions = Lists.newArrayList();
+        for (int i = 0; i < TABLE_FILTERS.size(); i++) {
+            subscriptions.add(subscription("sub" + i, TABLE_FILTERS.get(i)));
+        }
+
+        SubscriptionEvaluator evaluator = new SubscriptionEvaluator(mock(DataProvider.class),
+                ConstantDatabusAuthorizer.ALLOW_ALL, mock(RateLimitedLogFactory.class));
+        SubscriptionMatchIndex index = SubscriptionMatchIndex.build(subscriptions);
+
+        List<Table> tables = ImmutableList.of(
+                table("review:testcustomer", "ugc_global:ugc", ImmutableMap.of("type", "review")),
+                table("question:testcustomer", "ugc_global:ugc", ImmutableMap.of("type", "question")),
+                table("answer:testcustomer", "ugc_us:ugc", ImmutableMap.of()),
+                table("product:testcustomer", "catalog_global:cat", ImmutableMap.of()),
+                table("review", "app_global:sys", ImmutableMap.of()));
+        List<Set<String>> tagSets = ImmutableList.of(
+                ImmutableSet.of(), ImmutableSet.of("re-etl"), ImmutableSet.of("re-etl", "backfill"), ImmutableSet.of("ignore"));
+
+        for (Table table : tables) {
+            for (Set<String> tags : tagSets) {
+                SubscriptionEvaluator.MatchEventData eventData =
+                        evaluator.new MatchEventData(table, "key", tags, TimeUUIDs.newUUID());
+                List<OwnedSubscription> candidates = index.getCandidates(table, tags);
+                for (OwnedSubscription subscription : subscriptions) {
+                    if (evaluator.matches(subscription, eventData)) {
+                        assertTrue(candidates.contains(subscription),
+                                subscription.getTableFilter() + " not a candidate for " + table.getName() + " " + tags);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCandidatesAreSelective() {
+        OwnedSubscription review = subscription("review", "intrinsic(\"~table\":\"review:testcustomer\")");
+        OwnedSubscription reviewPrefix = subscription("review-prefix", "intrinsic(\"~table\":like(\"review:*\"))");
+        OwnedSubscription catalog = subscription("catalog", "intrinsic(\"~placement\":\"catalog_global:cat\")");
+        OwnedSubscription tagged = subscription("tagged", "{..,\"~tags\":containsAny(\"re-etl\")}");
+        OwnedSubscription all = subscription("all", "alwaysTrue()");
+        OwnedSubscription none = subscription("none", "alwaysFalse()");
+
+        SubscriptionMatchIndex index = SubscriptionMatchIndex.build(
+                ImmutableList.of(review, reviewPrefix, catalog, tagged, all, none));
+        assertEquals(index.size(), 6);
+        assertEquals(index.getUnindexedCount(), 1);
+
+        assertEquals(index.getCandidates(table("review:testcustomer", "ugc_global:ugc", ImmutableMap.of()), ImmutableSet.of()),
+                ImmutableList.of(review, reviewPrefix, all));
+        assertEquals(index.getCandidates(table("review:othercustomer", "ugc_global:ugc", ImmutableMap.of()), ImmutableSet.of("re-etl")),
+                ImmutableList.of(reviewPrefix, tagged, all));
+        assertEquals(index.getCandidates(table("product:testcustomer", "catalog_global:cat", ImmutableMap.of()), ImmutableSet.of()),
+                ImmutableList.of(catalog, all));
+        assertEquals(index.getCandidates(table("rev", "ugc_global:ugc", ImmutableMap.of()), ImmutableSet.of()),
+                ImmutableList.of(all));
+    }
+
+    @Test
+    public void testIndexableConditions() {
+        assertTrue(SubscriptionMatchIndex.isIndexable(Conditions.fromString("alwaysFalse()")));
+        assertTrue(SubscriptionMatchIndex.isIndexable(Conditions.fromString("intrinsic(\"~table\":like(\"a*b\"))")));
+        assertTrue(SubscriptionMatchIndex.isIndexable(Conditions.fromString(
+                "and({..,\"type\":\"review\"},intrinsic(\"~placement\":in(\"a\",\"b\")))")));
+        assertFalse(SubscriptionMatchIndex.isIndexable(Conditions.fromString("alwaysTrue()")));
+        assertFalse(SubscriptionMatchIndex.isIndexable(Conditions.fromString("intrinsic(\"~table\":like(\"*b\"))")));
+        assertFalse(SubscriptionMatchIndex.isIndexable(Conditions.fromString("intrinsic(\"~id\":\"key\")")));
+        assertFalse(SubscriptionMatchIndex.isIndexable(Conditions.fromString(
+                "or(intrinsic(\"~table\":\"a\"),{..,\"type\":\"review\"})")));
+        assertFalse(SubscriptionMatchIndex.isIndexable(Conditions.fromString(
+                "{..,\"~tags\":containsOnly(\"re-etl\")}")));
+    }
+
+    @Test
+    public void testRebuild() {
+        OwnedSubscription review = subscription("review", "intrinsic(\"~table\":\"review:testcustomer\")");
+        OwnedSubscription question = subscription("question", "intrinsic(\"~table\":\"question:testcustomer\")");
+        List<OwnedSubscription> original = ImmutableList.of(review);
+        List<OwnedSubscription> updated = ImmutableList.of(review, question);
+
+        SubscriptionMatchIndex index = SubscriptionMatchIndex.build(original);
+        assertTrue(index.isIndexOf(original));
+        assertFalse(index.isIndexOf(updated));
+
+        Table questionTable = table("question:testcustomer", "ugc_global:ugc", ImmutableMap.of());
+        assertEquals(index.getCandidates(questionTable, ImmutableSet.of()), ImmutableList.of());
+
+        index = index.rebuild(updated);
+        assertTrue(index.isIndexOf(updated));
+        assertEquals(index.getCandidates(questionTable, ImmutableSet.of()), ImmutableList.of(question));
+    }
+
+    private OwnedSubscription subscription(String name, String tableFilter) {
+        Condition condition = Conditions.fromString(tableFilter);
+        return new DefaultOwnedSubscription(name, condition, new Date(), Duration.ofDays(1), "owner");
+    }
+
+    private Table table(String name, String placement, Map<String, ?> attributes) {
+        return new InMemoryTable(name, new TableOptionsBuilder().setPlacement(placement).build(), Maps.newHashMap(attributes));
+    }
+}
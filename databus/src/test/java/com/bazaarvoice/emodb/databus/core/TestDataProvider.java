@@ -24,7 +24,8 @@ class TestDataProvider implements DataProvider {
     private final Map<String, Table> _cannedTables = Maps.newHashMap();
     private final Map<Coordinate, AnnotatedContent> _cannedContent = Maps.newHashMap();
     private final Map<Coordinate, UnknownTableException> _cannedExceptions = Maps.newHashMap();
-    private final List<List<Coordinate>> _executions = Lists.newArrayList();
+    private final Map<Coordinate, RuntimeException> _cannedExecuteExceptions = Maps.newHashMap();
+    private final List<List<Coordinate>> _executions = Collections.synchronizedList(Lists.<List<Coordinate>>newArrayList());
 
     public TestDataProvider addTable(String table, Table response) {
         _cannedTables.put(table, response);
@@ -48,10 +49,17 @@ class TestDataProvider implements DataProvider {
         return this;
     }
 
+    /** Any query which includes the coordinate fails with the exception when executed. */
+    public TestDataProvider addExecuteException(String table, String key, RuntimeException response) {
+        _cannedExecuteExceptions.put(Coordinate.of(table, key), response);
+        return this;
+    }
+
     @Override
     public AnnotatedGet prepareGetAnnotated(ReadConsistency consistency) {
         return new AnnotatedGet() {
             private final List<AnnotatedContent> _contents = Lists.newArrayList();
+            private RuntimeException _executeException;
 
             @Override
             public AnnotatedGet add(String table, String key) throws UnknownTableException {
@@ -60,6 +68,9 @@ class TestDataProvider implements DataProvider {
                 if (ute != null) {
                     throw ute;
                 }
+                if (_cannedExecuteExceptions.containsKey(coord)) {
+                    _executeException = _cannedExecuteExceptions.get(coord);
+                }
                 AnnotatedContent content = _cannedContent.get(coord);
                 if (content != null) {
                     _contents.add(content);
@@ -69,6 +80,9 @@ class TestDataProvider implements DataProvider {
 
             @Override
             public Iterator<AnnotatedContent> execute() {
+                if (_executeException != null) {
+                    throw _executeException;
+                }
                 _executions.add(_contents.stream().map(AnnotatedContent::getContent).map(Coordinate::fromJson).collect(Collectors.toList()));
                 Collections.shuffle(_contents);
                 return _contents.iterator();
@@ -11,13 +11,20 @@ import com.bazaarvoice.emodb.event.api.ChannelConfiguration;
 import com.bazaarvoice.emodb.event.api.DedupEventStore;
 import com.bazaarvoice.emodb.event.api.DedupEventStoreChannels;
 import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.core.ChannelSizeTracker;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.bazaarvoice.emodb.event.core.ClaimStore;
+import com.bazaarvoice.emodb.event.core.ClaimStoreConfiguration;
 import com.bazaarvoice.emodb.event.core.DefaultClaimStore;
+import com.bazaarvoice.emodb.event.core.LongPollConfiguration;
+import com.bazaarvoice.emodb.event.core.SizeEstimateConfiguration;
 import com.bazaarvoice.emodb.event.core.DefaultEventStore;
 import com.bazaarvoice.emodb.event.core.MetricsGroupName;
 import com.bazaarvoice.emodb.event.db.EventIdSerializer;
 import com.bazaarvoice.emodb.event.db.EventReaderDAO;
 import com.bazaarvoice.emodb.event.db.EventWriterDAO;
+import com.bazaarvoice.emodb.event.db.GroupCommitConfiguration;
+import com.bazaarvoice.emodb.event.db.GroupCommitEventWriterDAO;
 import com.bazaarvoice.emodb.event.db.astyanax.AstyanaxEventIdSerializer;
 import com.bazaarvoice.emodb.event.db.astyanax.AstyanaxEventReaderDAO;
 import com.bazaarvoice.emodb.event.db.astyanax.AstyanaxEventWriterDAO;
@@ -25,6 +32,8 @@ import com.bazaarvoice.emodb.event.db.astyanax.AstyanaxManifestPersister;
 import com.bazaarvoice.emodb.event.db.astyanax.DefaultSlabAllocator;
 import com.bazaarvoice.emodb.event.db.astyanax.ManifestPersister;
 import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocator;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocatorConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration;
 import com.bazaarvoice.emodb.event.db.astyanax.VerifyRandomPartitioner;
 import com.bazaarvoice.emodb.event.dedup.DedupQueueAdmin;
 import com.bazaarvoice.emodb.event.dedup.DefaultDedupEventStore;
@@ -66,11 +75,18 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * <li> @{@link EventStoreHostDiscovery} {@link HostDiscovery}
  * <li> @{@link EventStoreZooKeeper} {@link CuratorFramework}
  * <li> {@link DedupEventStoreChannels}
+ * <li> {@link ClaimStoreConfiguration}
+ * <li> {@link GroupCommitConfiguration}
+ * <li> {@link SlabAllocatorConfiguration}
+ * <li> {@link SlabReadAheadConfiguration}
+ * <li> {@link SizeEstimateConfiguration}
+ * <li> {@link LongPollConfiguration}
  * </ul>
  * Exports the following:
  * <ul>
  * <li> {@link EventStore}
  * <li> {@link DedupEventStore}
+ * <li> {@link ChannelWatcher}
  * </ul>
  */
 public class EventStoreModule extends PrivateModule {
@@ -89,7 +105,7 @@ public class EventStoreModule extends PrivateModule {
         // DAO classes
         bind(AstyanaxEventReaderDAO.class).asEagerSingleton();
         bind(EventReaderDAO.class).to(AstyanaxEventReaderDAO.class).asEagerSingleton();
-        bind(EventWriterDAO.class).to(AstyanaxEventWriterDAO.class).asEagerSingleton();
+        bind(AstyanaxEventWriterDAO.class).asEagerSingleton();
         bind(EventIdSerializer.class).to(AstyanaxEventIdSerializer.class).asEagerSingleton();
         bind(SlabAllocator.class).to(DefaultSlabAllocator.class).asEagerSingleton();
         bind(ManifestPersister.class).to(AstyanaxManifestPersister.class).asEagerSingleton();
@@ -98,6 +114,7 @@ public class EventStoreModule extends PrivateModule {
 
         // Core classes
         bind(ClaimStore.class).to(DefaultClaimStore.class).asEagerSingleton();
+        bind(ChannelSizeTracker.class).asEagerSingleton();
         bind(EventStore.class).to(DefaultEventStore.class).asEagerSingleton();
         bind(DefaultDedupEventStore.class).asEagerSingleton();
         bind(DedupEventStore.class).to(DefaultDedupEventStore.class).asEagerSingleton();
@@ -107,6 +124,7 @@ public class EventStoreModule extends PrivateModule {
         expose(EventStore.class);
         expose(DedupEventStore.class);
         expose(OstrichOwnerGroupFactory.class);
+        expose(ChannelWatcher.class);
 
         // Metrics instrumentation
         bind(String.class).annotatedWith(MetricsGroupName.class).toInstance(_metricsGroup);
@@ -115,6 +133,22 @@ public class EventStoreModule extends PrivateModule {
         bind(DedupQueueTask.class).asEagerSingleton();
     }
 
+    @Provides @Singleton
+    EventWriterDAO provideEventWriterDAO(AstyanaxEventWriterDAO delegate, GroupCommitConfiguration configuration,
+                                         @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry) {
+        if (!configuration.isEnabled()) {
+            return delegate;
+        }
+        return new GroupCommitEventWriterDAO(delegate, configuration, metricsGroup, metricRegistry);
+    }
+
+    @Provides @Singleton
+    ChannelWatcher provideChannelWatcher(LifeCycleRegistry lifeCycle, @EventStoreZooKeeper CuratorFramework curator,
+                                         LongPollConfiguration configuration, @MetricsGroupName String metricsGroup,
+                                         MetricRegistry metricRegistry) {
+        return new ChannelWatcher(lifeCycle, curator, configuration, metricsGroup, metricRegistry);
+    }
+
     @Provides @Singleton
     OstrichOwnerGroupFactory provideOwnerServicesFactory(final LifeCycleRegistry lifeCycle,
                                                          @EventStoreZooKeeper final CuratorFramework curator,
@@ -26,6 +26,12 @@ public interface BaseEventStore {
 
     long getSizeEstimate(String channel, long limit);
 
+    /**
+     * Returns the same estimate as {@link #getSizeEstimate(String, long)} along with how far it may be from the
+     * actual number of events in the channel.
+     */
+    SizeEstimate estimateSize(String channel, long limit);
+
     long getClaimCount(String channel);
 
     Map<String, Long> snapshotClaimCounts();
@@ -0,0 +1,56 @@
+package com.bazaarvoice.emodb.event.api;
+
+import com.google.common.base.Objects;
+
+/**
+ * An estimated channel size and the maximum amount by which it's expected to differ from the actual size.  The error
+ * bound covers events added and deleted since the channel was last counted; as with
+ * {@link BaseEventStore#getSizeEstimate(String, long)}, counts beyond the requested limit may be less accurate still.
+ */
+public final class SizeEstimate {
+    private final long _count;
+    private final long _errorBound;
+
+    public SizeEstimate(long count, long errorBound) {
+        _count = count;
+        _errorBound = errorBound;
+    }
+
+    public long getCount() {
+        return _count;
+    }
+
+    public long getErrorBound() {
+        return _errorBound;
+    }
+
+    /** Returns an estimate of the combined size of two channels. */
+    public SizeEstimate plus(SizeEstimate other) {
+        return new SizeEstimate(_count + other.getCount(), _errorBound + other.getErrorBound());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SizeEstimate)) {
+            return false;
+        }
+        SizeEstimate that = (SizeEstimate) o;
+        return _count == that._count && _errorBound == that._errorBound;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(_count, _errorBound);
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("count", _count)
+                .add("errorBound", _errorBound)
+                .toString();
+    }
+}
@@ -0,0 +1,257 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.event.api.SizeEstimate;
+import com.bazaarvoice.emodb.event.db.EventReaderDAO;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Estimates the number of events in each channel without reading the channel's slabs on every request.
+ * <p>
+ * The first request for a channel's size counts it using {@link EventReaderDAO#count(String, long)}.  From then on the
+ * count is adjusted in memory as events are added to and deleted from the channel through this server, so requests are
+ * answered without reading from Cassandra.  Events written or deleted by other servers and events which expire aren't
+ * seen locally, so tracked channels are counted again in the background every reconcile interval.  Each estimate
+ * carries an error bound: how far the adjusted count had drifted from the exact count at the last reconciliation plus
+ * the changes made while that count was in progress.
+ * <p>
+ * When disabled every request counts the channel, the same as calling the DAO directly.
+ */
+public class ChannelSizeTracker {
+    private static final Logger _log = LoggerFactory.getLogger(ChannelSizeTracker.class);
+
+    private final EventReaderDAO _readerDao;
+    private final boolean _enabled;
+    private final long _reconcileIntervalMillis;
+    private final long _idleTimeoutMillis;
+    private final Histogram _reconcileError;
+    private final Clock _clock;
+    private final ConcurrentMap<String, ChannelSize> _sizes = Maps.newConcurrentMap();
+
+    /** Creates a tracker which doesn't track sizes, every estimate is counted from the channel's slabs. */
+    public ChannelSizeTracker(EventReaderDAO readerDao) {
+        this(readerDao, new SizeEstimateConfiguration(), new Histogram(new UniformReservoir()), Clock.systemUTC());
+    }
+
+    @Inject
+    public ChannelSizeTracker(LifeCycleRegistry lifeCycle, EventReaderDAO readerDao, SizeEstimateConfiguration configuration,
+                              @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry) {
+        this(readerDao, configuration,
+                metricRegistry.histogram(MetricRegistry.name(metricsGroup, "ChannelSizeTracker", "reconcile_error")),
+                Clock.systemUTC());
+
+        if (_enabled) {
+            metricRegistry.register(MetricRegistry.name(metricsGroup, "ChannelSizeTracker", "channels"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return _sizes.size();
+                }
+            });
+
+            String nameFormat = "Events Size Reconcile-" + metricsGroup.substring(metricsGroup.lastIndexOf('.') + 1) + "-%d";
+            ScheduledExecutorService executor = Executors.newScheduledThreadPool(1,
+                    new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+            lifeCycle.manage(new ExecutorServiceManager(executor, io.dropwizard.util.Duration.seconds(5), nameFormat));
+
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        reconcile();
+                    } catch (Throwable t) {
+                        _log.error("Unexpected exception reconciling channel sizes.", t);
+                    }
+                }
+            }, _reconcileIntervalMillis, _reconcileIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    ChannelSizeTracker(EventReaderDAO readerDao, SizeEstimateConfiguration configuration, Histogram reconcileError, Clock clock) {
+        _readerDao = checkNotNull(readerDao, "readerDao");
+        _enabled = configuration.isEnabled();
+        _reconcileIntervalMillis = configuration.getReconcileInterval().toMillis();
+        _idleTimeoutMillis = configuration.getIdleTimeout().toMillis();
+        _reconcileError = checkNotNull(reconcileError, "reconcileError");
+        _clock = checkNotNull(clock, "clock");
+    }
+
+    /**
+     * Returns the estimated size of the channel.  As with {@link EventReaderDAO#count(String, long)}, sizes beyond
+     * the limit may be less accurate.
+     */
+    public SizeEstimate getSizeEstimate(String channel, long limit) {
+        if (!_enabled) {
+            return new SizeEstimate(_readerDao.count(channel, limit), 0);
+        }
+
+        ChannelSize size = _sizes.get(channel);
+        if (size == null) {
+            ChannelSize newSize = new ChannelSize();
+            size = _sizes.putIfAbsent(channel, newSize);
+            if (size == null) {
+                size = newSize;
+            }
+        }
+
+        long now = _clock.millis();
+        SizeEstimate estimate = size.getEstimate(limit, now);
+        if (estimate == null) {
+            // The channel hasn't been counted yet or the last count didn't go as high as the caller needs
+            count(channel, size, limit);
+            estimate = size.getEstimate(limit, now);
+        }
+        return estimate;
+    }
+
+    public void recordAdds(Multimap<String, ?> eventsByChannel) {
+        if (_enabled) {
+            for (Map.Entry<String, ? extends Collection<?>> entry : eventsByChannel.asMap().entrySet()) {
+                recordAdds(entry.getKey(), entry.getValue().size());
+            }
+        }
+    }
+
+    public void recordAdds(String channel, int count) {
+        ChannelSize size = _enabled ? _sizes.get(channel) : null;
+        if (size != null) {
+            size.adjust(count);
+        }
+    }
+
+    public void recordDeletes(String channel, int count) {
+        ChannelSize size = _enabled ? _sizes.get(channel) : null;
+        if (size != null) {
+            size.adjust(-count);
+        }
+    }
+
+    /** Records that all events in the channel were deleted. */
+    public void recordPurge(String channel) {
+        ChannelSize size = _enabled ? _sizes.get(channel) : null;
+        if (size != null) {
+            size.clear();
+        }
+    }
+
+    /** Forgets the size of a channel whose events changed in ways that can't be tracked, such as moving slabs. */
+    public void invalidate(String channel) {
+        _sizes.remove(channel);
+    }
+
+    /** Counts every tracked channel which hasn't been counted within the reconcile interval, and stops tracking idle channels. */
+    @VisibleForTesting
+    void reconcile() {
+        for (Map.Entry<String, ChannelSize> entry : _sizes.entrySet()) {
+            String channel = entry.getKey();
+            ChannelSize size = entry.getValue();
+            long now = _clock.millis();
+            if (size.isIdleSince(now - _idleTimeoutMillis)) {
+                _sizes.remove(channel, size);
+            } else if (size.isCountedBefore(now - _reconcileIntervalMillis)) {
+                try {
+                    count(channel, size, 1);
+                } catch (Exception e) {
+                    _log.warn("Unable to reconcile the size of channel: {}", channel, e);
+                }
+            }
+        }
+    }
+
+    private void count(String channel, ChannelSize size, long limit) {
+        long countLimit = Math.max(limit, size.getCountLimit());
+        long changesBefore = size.getChanges();
+        long count = _readerDao.count(channel, countLimit);
+        Long drift = size.rebase(count, countLimit, changesBefore, _clock.millis());
+        if (drift != null) {
+            _reconcileError.update(drift);
+        }
+    }
+
+    /** The last exact count of a channel and the changes made through this server since. */
+    private static class ChannelSize {
+        private long _count;
+        private long _countLimit;
+        private long _countedAt;
+        private boolean _counted;
+        private long _changes;
+        private long _errorBound;
+        private long _requestedAt;
+
+        synchronized SizeEstimate getEstimate(long limit, long now) {
+            // A count above its limit may have been estimated from the number of slabs, so count again if the caller
+            // wants to distinguish sizes beyond that
+            if (!_counted || (limit > _countLimit && _count > _countLimit)) {
+                return null;
+            }
+            _requestedAt = now;
+            return new SizeEstimate(Math.max(0, _count + _changes), _errorBound);
+        }
+
+        synchronized void adjust(long delta) {
+            _changes += delta;
+        }
+
+        synchronized void clear() {
+            _count = 0;
+            _changes = 0;
+        }
+
+        synchronized long getChanges() {
+            return _changes;
+        }
+
+        synchronized long getCountLimit() {
+            return _countLimit;
+        }
+
+        synchronized boolean isIdleSince(long time) {
+            return _counted && _requestedAt < time;
+        }
+
+        synchronized boolean isCountedBefore(long time) {
+            return _counted && _countedAt < time;
+        }
+
+        /**
+         * Replaces the count with a new exact count taken when the changes stood at {@code changesBefore}.  Changes
+         * made while counting may or may not be included in the new count, so they count toward the error bound.
+         * Returns how far the previous estimate was from the new count, or null if the channel wasn't counted before.
+         */
+        synchronized Long rebase(long count, long countLimit, long changesBefore, long now) {
+            Long drift = _counted ? Math.abs(Math.max(0, _count + changesBefore) - count) : null;
+            long concurrentChanges = _changes - changesBefore;
+            _count = count;
+            _countLimit = countLimit;
+            _changes = concurrentChanges;
+            _errorBound = (drift != null ? drift : 0) + Math.abs(concurrentChanges);
+            if (!_counted) {
+                _requestedAt = now;
+            }
+            _counted = true;
+            _countedAt = now;
+            return drift;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.ExecutorServiceManager;
+import io.dropwizard.lifecycle.Managed;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.PathChildrenCache;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheEvent;
+import org.apache.curator.framework.recipes.cache.PathChildrenCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Wakes pollers waiting for events to be added to a channel, so polls can wait server-side instead of the caller
+ * polling an empty channel over and over.
+ * <p>
+ * A poller calls {@link #watch} before its first poll, then waits on the returned {@link Watch} between polls.  The
+ * event store calls {@link #notifyChanged} whenever events are added to or made available again in a channel, which
+ * wakes every local watcher of that channel.  Events are often added on a different server than the one where the
+ * poller waits, so with cluster wakeups enabled each watched channel is registered as an ephemeral ZooKeeper node and
+ * servers which add events to a registered channel touch its node, at most once every {@value #NUDGE_INTERVAL_MILLIS}ms
+ * per channel.  Watchers should still re-poll every {@link #getRecheckInterval()} in case a wake-up is missed.
+ */
+public class ChannelWatcher {
+    private static final Logger _log = LoggerFactory.getLogger(ChannelWatcher.class);
+
+    /** Callers which don't wait server-side are assumed to re-poll an empty channel about this often. */
+    private static final long UNWAITED_POLL_INTERVAL_MILLIS = 2000;
+    private static final long NUDGE_INTERVAL_MILLIS = 250;
+    /** How long a channel stays registered in ZooKeeper after its last local watcher goes away. */
+    private static final long UNREGISTER_DELAY_MILLIS = 60 * 1000;
+    private static final String ZK_PATH = "/watched-channels";
+
+    private final Duration _maxWait;
+    private final Duration _recheckInterval;
+    private final SetMultimap<String, Watch> _watches = HashMultimap.create();
+    private final List<Listener> _listeners = Lists.newCopyOnWriteArrayList();
+    private final Meter _wakeups;
+    private final Meter _nudgesSent;
+    private final Meter _nudgesReceived;
+    private final Meter _emptyPollsSaved;
+    private final Clock _clock;
+    @Nullable
+    private final CuratorFramework _curator;
+    @Nullable
+    private final PathChildrenCache _registeredChannels;
+    /** Channels registered in ZooKeeper by this server and when each last had a local watcher. */
+    private final ConcurrentMap<String, Long> _registrations = Maps.newConcurrentMap();
+    private final Cache<String, Boolean> _recentNudges = CacheBuilder.newBuilder()
+            .expireAfterWrite(NUDGE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+            .build();
+
+    /** Creates a watcher which only wakes pollers on the local server. */
+    public ChannelWatcher() {
+        this(null, new LongPollConfiguration(), "bv.emodb.event", new MetricRegistry(), Clock.systemUTC());
+    }
+
+    public ChannelWatcher(LifeCycleRegistry lifeCycle, CuratorFramework curator, LongPollConfiguration configuration,
+                          String metricsGroup, MetricRegistry metricRegistry) {
+        this(configuration.isClusterWakeups() ? checkNotNull(curator, "curator") : null,
+                configuration, metricsGroup, metricRegistry, Clock.systemUTC());
+
+        if (_registeredChannels != null) {
+            lifeCycle.manage(new Managed() {
+                @Override
+                public void start() throws Exception {
+                    try {
+                        _curator.create().creatingParentsIfNeeded().forPath(ZK_PATH);
+                    } catch (KeeperException.NodeExistsException e) {
+                        // Don't care
+                    }
+                    _registeredChannels.start();
+                }
+
+                @Override
+                public void stop() throws Exception {
+                    _registeredChannels.close();
+                }
+            });
+
+            String nameFormat = "Events Channel Watcher-" + metricsGroup.substring(metricsGroup.lastIndexOf('.') + 1) + "-%d";
+            ScheduledExecutorService executor = Executors.newScheduledThreadPool(1,
+                    new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+            lifeCycle.manage(new ExecutorServiceManager(executor, io.dropwizard.util.Duration.seconds(5), nameFormat));
+
+            long intervalMillis = _recheckInterval.toMillis();
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refreshRegistrations();
+                    } catch (Throwable t) {
+                        _log.error("Unexpected exception refreshing watched channel registrations.", t);
+                    }
+                }
+            }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @VisibleForTesting
+    ChannelWatcher(@Nullable CuratorFramework curator, LongPollConfiguration configuration,
+                   String metricsGroup, MetricRegistry metricRegistry, Clock clock) {
+        _maxWait = checkNotNull(configuration.getMaxWait(), "maxWait");
+        _recheckInterval = checkNotNull(configuration.getRecheckInterval(), "recheckInterval");
+        _wakeups = metricRegistry.meter(MetricRegistry.name(metricsGroup, "ChannelWatcher", "wakeups"));
+        _nudgesSent = metricRegistry.meter(MetricRegistry.name(metricsGroup, "ChannelWatcher", "nudges_sent"));
+        _nudgesReceived = metricRegistry.meter(MetricRegistry.name(metricsGroup, "ChannelWatcher", "nudges_received"));
+        _emptyPollsSaved = metricRegistry.meter(MetricRegistry.name(metricsGroup, "ChannelWatcher", "empty_polls_saved"));
+        _curator = curator;
+        _clock = checkNotNull(clock, "clock");
+
+        if (curator != null) {
+            _registeredChannels = new PathChildrenCache(curator, ZK_PATH, false);
+            _registeredChannels.getListenable().addListener(new PathChildrenCacheListener() {
+                @Override
+                public void childEvent(CuratorFramework client, PathChildrenCacheEvent event) {
+                    if (event.getType() == PathChildrenCacheEvent.Type.CHILD_UPDATED) {
+                        _nudgesReceived.mark();
+                        signal(fromNodeName(ZKPaths.getNodeFromPath(event.getData().getPath())));
+                    }
+                }
+            });
+        } else {
+            _registeredChannels = null;
+        }
+    }
+
+    /** Returns the longest any poll should wait server-side, regardless of how long the caller is willing to wait. */
+    public Duration getMaxWait() {
+        return _maxWait;
+    }
+
+    /** Returns how often a waiting poller should poll again even if it hasn't been woken. */
+    public Duration getRecheckInterval() {
+        return _recheckInterval;
+    }
+
+    /** Registers a listener which is told about every changed channel before watchers of the channel are woken. */
+    public void addListener(Listener listener) {
+        _listeners.add(checkNotNull(listener, "listener"));
+    }
+
+    /** Starts watching a channel.  The caller must close the watch when it's done polling. */
+    public Watch watch(String channel) {
+        return watch(channel, null);
+    }
+
+    /**
+     * Starts watching a channel, running {@code onChange} every time the channel changes.  The callback runs on the
+     * thread which changed the channel, so it must be quick and must not block.
+     */
+    public Watch watch(String channel, @Nullable Runnable onChange) {
+        Watch watch = new Watch(checkNotNull(channel, "channel"));
+        watch.setOnChange(onChange);
+        synchronized (_watches) {
+            _watches.put(channel, watch);
+        }
+        if (_curator != null && _registrations.put(channel, Long.MAX_VALUE) == null) {
+            register(channel);
+        }
+        return watch;
+    }
+
+    /** Wakes pollers waiting on the channel, here and, if the channel is registered by any server, cluster-wide. */
+    public void notifyChanged(String channel) {
+        signal(channel);
+
+        if (_registeredChannels != null &&
+                _registeredChannels.getCurrentData(toPath(channel)) != null &&
+                _recentNudges.asMap().putIfAbsent(channel, Boolean.TRUE) == null) {
+            try {
+                _curator.setData().inBackground().forPath(toPath(channel), new byte[0]);
+                _nudgesSent.mark();
+            } catch (Exception e) {
+                _log.warn("Unable to wake pollers of channel {} on other servers.", channel, e);
+            }
+        }
+    }
+
+    public void notifyChanged(Collection<String> channels) {
+        for (String channel : channels) {
+            notifyChanged(channel);
+        }
+    }
+
+    private void signal(String channel) {
+        for (Listener listener : _listeners) {
+            listener.channelChanged(channel);
+        }
+
+        List<Watch> watches;
+        synchronized (_watches) {
+            Collection<Watch> channelWatches = _watches.get(channel);
+            if (channelWatches.isEmpty()) {
+                return;
+            }
+            watches = ImmutableList.copyOf(channelWatches);
+        }
+        for (Watch watch : watches) {
+            watch.signal();
+        }
+    }
+
+    private void unwatch(Watch watch) {
+        synchronized (_watches) {
+            _watches.remove(watch._channel, watch);
+        }
+    }
+
+    private boolean isWatched(String channel) {
+        synchronized (_watches) {
+            return _watches.containsKey(channel);
+        }
+    }
+
+    /**
+     * Re-registers watched channels whose node went missing, for example because the server which created it
+     * unregistered it or lost its ZooKeeper session, and unregisters channels which haven't been watched in a while.
+     */
+    @VisibleForTesting
+    void refreshRegistrations() {
+        long now = _clock.millis();
+        for (Map.Entry<String, Long> entry : _registrations.entrySet()) {
+            String channel = entry.getKey();
+            if (isWatched(channel)) {
+                entry.setValue(now);
+                if (_registeredChannels.getCurrentData(toPath(channel)) == null) {
+                    register(channel);
+                }
+            } else if (entry.getValue() < now - UNREGISTER_DELAY_MILLIS && _registrations.remove(channel, entry.getValue())) {
+                unregister(channel);
+            }
+        }
+    }
+
+    private void register(String channel) {
+        try {
+            _curator.create().withMode(CreateMode.EPHEMERAL).inBackground().forPath(toPath(channel));
+        } catch (Exception e) {
+            _log.warn("Unable to register watched channel {}.", channel, e);
+        }
+    }
+
+    private void unregister(String channel) {
+        // Other servers may be relying on the same node, so only delete it if this server created it
+        ChildData node = _registeredChannels.getCurrentData(toPath(channel));
+        try {
+            if (node != null && node.getStat().getEphemeralOwner() == _curator.getZookeeperClient().getZooKeeper().getSessionId()) {
+                _curator.delete().inBackground().forPath(node.getPath());
+            }
+        } catch (Exception e) {
+            _log.warn("Unable to unregister watched channel {}.", channel, e);
+        }
+    }
+
+    private String toPath(String channel) {
+        return ZKPaths.makePath(ZK_PATH, toNodeName(channel));
+    }
+
+    /** Channel names may contain characters which aren't allowed in ZooKeeper paths, including "." and "/". */
+    @VisibleForTesting
+    static String toNodeName(String channel) {
+        try {
+            return URLEncoder.encode(channel, Charsets.UTF_8.name()).replace(".", "%2E").replace("*", "%2A");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @VisibleForTesting
+    static String fromNodeName(String nodeName) {
+        try {
+            return URLDecoder.decode(nodeName, Charsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Told about channels which may have new events available. */
+    public interface Listener {
+        void channelChanged(String channel);
+    }
+
+    /** A single poller's interest in a channel. */
+    public class Watch implements Closeable {
+        private final String _channel;
+        @Nullable
+        private volatile Runnable _onChange;
+        private final long _createdAt = _clock.millis();
+        private boolean _changed;
+        private boolean _closed;
+        private long _polls;
+
+        private Watch(String channel) {
+            _channel = channel;
+        }
+
+        /**
+         * Runs {@code onChange} every time the channel changes from now on.  Changes before the callback was set are
+         * only reported by {@link #checkChanged()} and {@link #await}, so a watch can be started before the poller
+         * which handles its changes exists.  The callback runs on the thread which changed the channel, so it must be
+         * quick and must not block.
+         */
+        public void setOnChange(@Nullable Runnable onChange) {
+            _onChange = onChange;
+        }
+
+        /**
+         * Waits until the channel changes or the timeout elapses, returning whether the channel changed.  A change
+         * which happened since the last call returns immediately, so no change is missed between polls.
+         */
+        public synchronized boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            long remaining;
+            while (!_changed && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            boolean changed = _changed;
+            _changed = false;
+            return changed;
+        }
+
+        /** Returns whether the channel changed since the last check without waiting. */
+        public synchronized boolean checkChanged() {
+            boolean changed = _changed;
+            _changed = false;
+            return changed;
+        }
+
+        /** Records that the poller polled the channel, so polls saved by waiting can be reported. */
+        public synchronized void recordPoll() {
+            _polls++;
+        }
+
+        private void signal() {
+            synchronized (this) {
+                if (_closed) {
+                    return;
+                }
+                _changed = true;
+                notifyAll();
+            }
+            _wakeups.mark();
+            Runnable onChange = _onChange;
+            if (onChange != null) {
+                onChange.run();
+            }
+        }
+
+        @Override
+        public void close() {
+            long polls;
+            synchronized (this) {
+                if (_closed) {
+                    return;
+                }
+                _closed = true;
+                polls = _polls;
+            }
+            unwatch(this);
+
+            // Compare against a caller re-polling the empty channel at a fixed interval for as long as this watch lasted
+            long unwaitedPolls = (_clock.millis() - _createdAt) / UNWAITED_POLL_INTERVAL_MILLIS + 1;
+            if (unwaitedPolls > polls) {
+                _emptyPollsSaved.mark(unwaitedPolls - polls);
+            }
+        }
+    }
+}
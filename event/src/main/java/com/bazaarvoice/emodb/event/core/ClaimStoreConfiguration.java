@@ -0,0 +1,79 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Map;
+
+/**
+ * Configuration for the {@link ClaimStore}, which selects the {@link ClaimSet} implementation used for each channel.
+ * Channels use the default type unless their name starts with one of the prefixes in "channelTypes", in which case
+ * the type for the longest matching prefix is used.
+ */
+public class ClaimStoreConfiguration {
+
+    public enum ClaimSetType {
+        /** {@link DefaultClaimSet}, which guards each claim set with a single lock. */
+        standard,
+        /** {@link ConcurrentClaimSet}, which stripes each claim set so concurrent pollers rarely contend. */
+        concurrent,
+        /** {@link OffHeapClaimSet}, which keeps claims in direct memory for channels with very many claims. */
+        offHeap
+    }
+
+    @NotNull
+    @JsonProperty("type")
+    private ClaimSetType _type = ClaimSetType.standard;
+
+    // Number of stripes in each concurrent claim set, rounded up to a power of two
+    @Min(1)
+    @JsonProperty("concurrencyLevel")
+    private int _concurrencyLevel = 16;
+
+    @NotNull
+    @JsonProperty("channelTypes")
+    private Map<String, ClaimSetType> _channelTypes = ImmutableMap.of();
+
+    public ClaimSetType getType() {
+        return _type;
+    }
+
+    public ClaimStoreConfiguration setType(ClaimSetType type) {
+        _type = type;
+        return this;
+    }
+
+    /** Returns the type of claim set to use for the specified channel. */
+    public ClaimSetType getType(String channel) {
+        ClaimSetType type = _type;
+        int longestPrefix = -1;
+        for (Map.Entry<String, ClaimSetType> entry : _channelTypes.entrySet()) {
+            String prefix = entry.getKey();
+            if (channel.startsWith(prefix) && prefix.length() > longestPrefix) {
+                type = entry.getValue();
+                longestPrefix = prefix.length();
+            }
+        }
+        return type;
+    }
+
+    public int getConcurrencyLevel() {
+        return _concurrencyLevel;
+    }
+
+    public ClaimStoreConfiguration setConcurrencyLevel(int concurrencyLevel) {
+        _concurrencyLevel = concurrencyLevel;
+        return this;
+    }
+
+    public Map<String, ClaimSetType> getChannelTypes() {
+        return _channelTypes;
+    }
+
+    public ClaimStoreConfiguration setChannelTypes(Map<String, ClaimSetType> channelTypes) {
+        _channelTypes = channelTypes;
+        return this;
+    }
+}
@@ -0,0 +1,314 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * In-memory implementation of the {@link ClaimSet} interface for claim sets shared by many concurrent pollers.
+ * <p>
+ * Where {@link DefaultClaimSet} guards all of its claims with a single monitor, this implementation splits the claims
+ * into stripes by the hash of the claim ID and locks only the stripe being accessed, so pollers claiming different
+ * events rarely contend.  Each stripe expires its claims using a timer wheel: claims are bucketed by the tick in which
+ * they expire, and each operation sweeps only the buckets whose ticks have passed since the last sweep.  A claim which
+ * has expired but hasn't been swept yet is treated as unclaimed, so expiration is exact even though sweeping is lazy.
+ */
+public class ConcurrentClaimSet implements ClaimSet {
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 1024;
+
+    private final Stripe[] _stripes;
+    private final int _stripeMask;
+
+    public ConcurrentClaimSet(int concurrencyLevel) {
+        checkArgument(concurrencyLevel > 0, "Concurrency level must be >0");
+        int numStripes = Integer.highestOneBit(concurrencyLevel);
+        if (numStripes < concurrencyLevel) {
+            numStripes <<= 1;
+        }
+        _stripes = new Stripe[numStripes];
+        for (int i = 0; i < numStripes; i++) {
+            _stripes[i] = new Stripe();
+        }
+        _stripeMask = numStripes - 1;
+    }
+
+    @Override
+    public long size() {
+        long now = System.currentTimeMillis();
+        long size = 0;
+        for (Stripe stripe : _stripes) {
+            size += stripe.size(now);
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isClaimed(byte[] claimId) {
+        checkNotNull(claimId, "claimId");
+
+        Claim claim = new Claim(claimId, 0);
+        return stripeFor(claim).isClaimed(claim, System.currentTimeMillis());
+    }
+
+    @Override
+    public boolean acquire(byte[] claimId, Duration ttl) {
+        checkNotNull(claimId, "claimId");
+        long ttlMillis = ttl.toMillis();
+        checkArgument(ttlMillis >= 0, "Ttl must be >=0");
+
+        long now = System.currentTimeMillis();
+        Claim claim = new Claim(claimId, now + ttlMillis);
+        return stripeFor(claim).acquire(claim, now);
+    }
+
+    @Override
+    public void renew(byte[] claimId, Duration ttl, boolean extendOnly) {
+        renewAll(Collections.singleton(claimId), ttl, extendOnly);
+    }
+
+    @Override
+    public void renewAll(Collection<byte[]> claimIds, Duration ttl, boolean extendOnly) {
+        checkNotNull(claimIds, "claimIds");
+        long ttlMillis = ttl.toMillis();
+        checkArgument(ttlMillis >= 0, "Ttl must be >=0");
+
+        long now = System.currentTimeMillis();
+        long expireAt = now + ttlMillis;
+
+        if (claimIds.size() == 1) {
+            Claim claim = new Claim(claimIds.iterator().next(), expireAt);
+            stripeFor(claim).renewAll(Collections.singletonList(claim), now, extendOnly);
+            return;
+        }
+
+        // Group the claims by stripe so each stripe is locked once per call
+        @SuppressWarnings("unchecked")
+        List<Claim>[] claimsByStripe = new List[_stripes.length];
+        for (byte[] claimId : claimIds) {
+            Claim claim = new Claim(claimId, expireAt);
+            int index = claim.hashCode() & _stripeMask;
+            List<Claim> claims = claimsByStripe[index];
+            if (claims == null) {
+                claims = claimsByStripe[index] = Lists.newArrayList();
+            }
+            claims.add(claim);
+        }
+        for (int i = 0; i < _stripes.length; i++) {
+            if (claimsByStripe[i] != null) {
+                _stripes[i].renewAll(claimsByStripe[i], now, extendOnly);
+            }
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : _stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public void pump() {
+        long now = System.currentTimeMillis();
+        for (Stripe stripe : _stripes) {
+            stripe.pump(now);
+        }
+    }
+
+    private Stripe stripeFor(Claim claim) {
+        return _stripes[claim.hashCode() & _stripeMask];
+    }
+
+    /**
+     * A subset of the claims guarded by its own monitor.  Every claim in the claim map is also in exactly one bucket
+     * of the timer wheel, the bucket for the tick containing its expiration time.
+     */
+    private static class Stripe {
+        /** Holds claim objects.  Supports O(1) lookup by Claim ID. */
+        private final Map<Claim, Claim> _claimMap = Maps.newHashMap();
+        /** Buckets of claims by expiration tick modulo the wheel size.  Buckets are allocated on demand. */
+        @SuppressWarnings("unchecked")
+        private final Set<Claim>[] _wheel = new Set[WHEEL_SIZE];
+        /** All ticks up to and including this one have been swept. */
+        private long _sweptTick = System.currentTimeMillis() / TICK_MILLIS - 1;
+
+        synchronized long size(long now) {
+            sweep(now);
+            // Claims which expire in the current tick aren't swept until it passes, so look for them explicitly
+            long size = _claimMap.size();
+            Set<Claim> bucket = _wheel[bucketIndex(now / TICK_MILLIS)];
+            if (bucket != null) {
+                for (Claim claim : bucket) {
+                    if (claim.getExpireAt() <= now) {
+                        size--;
+                    }
+                }
+            }
+            return size;
+        }
+
+        synchronized boolean isClaimed(Claim key, long now) {
+            Claim claim = _claimMap.get(key);
+            return claim != null && claim.getExpireAt() > now;
+        }
+
+        synchronized boolean acquire(Claim claim, long now) {
+            sweep(now);
+
+            Claim oldClaim = _claimMap.get(claim);
+            if (oldClaim != null) {
+                if (oldClaim.getExpireAt() > now) {
+                    return false;
+                }
+                removeFromWheel(oldClaim);
+                _claimMap.remove(oldClaim);
+            }
+            // A claim with a zero ttl expires immediately, so there's nothing to keep
+            if (claim.getExpireAt() > now) {
+                _claimMap.put(claim, claim);
+                addToWheel(claim);
+            }
+            return true;
+        }
+
+        synchronized void renewAll(List<Claim> claims, long now, boolean extendOnly) {
+            sweep(now);
+
+            for (Claim claim : claims) {
+                Claim oldClaim = _claimMap.get(claim);
+                if (oldClaim != null) {
+                    if (extendOnly && oldClaim.getExpireAt() >= claim.getExpireAt()) {
+                        // Old claim is for longer than the new claim and 'extendOnly' means don't shorten the life of a claim
+                        continue;
+                    }
+                    removeFromWheel(oldClaim);
+                }
+                if (claim.getExpireAt() > now) {
+                    _claimMap.put(claim, claim);
+                    addToWheel(claim);
+                } else if (oldClaim != null) {
+                    // Renewing with a zero ttl releases the claim, so drop it now instead of waiting to sweep it
+                    _claimMap.remove(claim);
+                }
+            }
+        }
+
+        synchronized void clear() {
+            _claimMap.clear();
+            Arrays.fill(_wheel, null);
+        }
+
+        synchronized void pump(long now) {
+            sweep(now);
+
+            // Release empty buckets so idle claim sets don't hold onto them
+            int numClaims = 0;
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                if (_wheel[i] != null) {
+                    if (_wheel[i].isEmpty()) {
+                        _wheel[i] = null;
+                    } else {
+                        numClaims += _wheel[i].size();
+                    }
+                }
+            }
+            checkState(numClaims == _claimMap.size());
+        }
+
+        /**
+         * Removes expired claims from the buckets for all ticks which have passed since the last sweep.  A bucket
+         * also holds claims which expire on later turns of the wheel, those are left in place.
+         */
+        private void sweep(long now) {
+            long currentTick = now / TICK_MILLIS;
+            long fromTick = Math.max(_sweptTick + 1, currentTick - WHEEL_SIZE);
+            for (long tick = fromTick; tick < currentTick; tick++) {
+                Set<Claim> bucket = _wheel[bucketIndex(tick)];
+                if (bucket == null || bucket.isEmpty()) {
+                    continue;
+                }
+                Iterator<Claim> claimIter = bucket.iterator();
+                while (claimIter.hasNext()) {
+                    Claim claim = claimIter.next();
+                    if (claim.getExpireAt() <= now) {
+                        _claimMap.remove(claim);
+                        claimIter.remove();
+                    }
+                }
+            }
+            _sweptTick = Math.max(_sweptTick, currentTick - 1);
+        }
+
+        private void addToWheel(Claim claim) {
+            int index = bucketIndex(claim.getExpireAt() / TICK_MILLIS);
+            Set<Claim> bucket = _wheel[index];
+            if (bucket == null) {
+                bucket = _wheel[index] = Sets.newHashSet();
+            }
+            bucket.add(claim);
+        }
+
+        private void removeFromWheel(Claim claim) {
+            Set<Claim> bucket = _wheel[bucketIndex(claim.getExpireAt() / TICK_MILLIS)];
+            if (bucket != null) {
+                bucket.remove(claim);
+            }
+        }
+
+        private static int bucketIndex(long tick) {
+            return (int) (tick & (WHEEL_SIZE - 1));
+        }
+    }
+
+    /**
+     * Wraps a single claim.  Caches the hash of the ID since it's used both to pick the stripe and to find the claim
+     * within the stripe, and implements equals and hashCode on the ID so it can be used as the key in the claim map.
+     */
+    private static class Claim {
+        private final byte[] _id;
+        private final int _hash;
+        private final long _expireAt;
+
+        private Claim(byte[] id, long expireAt) {
+            _id = id;
+            _hash = spread(Arrays.hashCode(id));
+            _expireAt = expireAt;
+        }
+
+        long getExpireAt() {
+            return _expireAt;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            // Ignore expireAt so we can find claims by ID in a hash table.
+            return this == o || (o instanceof Claim && _hash == ((Claim) o)._hash && Arrays.equals(_id, ((Claim) o)._id));
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        /** Mixes the high bits of the array hash into the low bits used to pick a stripe. */
+        private static int spread(int h) {
+            h ^= (h >>> 16);
+            h *= 0x85ebca6b;
+            return h ^ (h >>> 13);
+        }
+    }
+}
@@ -3,9 +3,8 @@ package com.bazaarvoice.emodb.event.core;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
-import com.google.common.base.Predicate;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
@@ -13,6 +12,7 @@ import io.dropwizard.lifecycle.ExecutorServiceManager;
 import io.dropwizard.util.Duration;
 
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -20,12 +20,19 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * In-memory implementation of the {@link ClaimSet} interface.
+ * <p>
+ * Claim sets are held in a concurrent map and reference counted without a store-wide lock.  A claim set with no
+ * references is retired by setting its reference count to -1, after which it can't be acquired and a new claim set
+ * is created in its place the next time its channel is used.
  */
 public class DefaultClaimStore implements ClaimStore {
-    private final Map<String, Handle> _map = Maps.newHashMap();
+    private final ConcurrentMap<String, Handle> _map = Maps.newConcurrentMap();
+    private final ClaimStoreConfiguration _configuration;
 
     @Inject
-    public DefaultClaimStore(LifeCycleRegistry lifeCycle, @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry) {
+    public DefaultClaimStore(LifeCycleRegistry lifeCycle, @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry,
+                             ClaimStoreConfiguration configuration) {
+        _configuration = configuration;
         ScheduledExecutorService scheduledExecutor = defaultScheduledExecutor(lifeCycle, metricsGroup);
 
         // Periodically cleanup ClaimSets with no active claims.
@@ -36,7 +43,7 @@ public class DefaultClaimStore implements ClaimStore {
             }
         }, 15, 15, TimeUnit.SECONDS);
 
-        // Expose gauges for the # of channels and # of claims.
+        // Expose gauges for the # of channels, # of claims and the memory used by off-heap claim sets.
         metricRegistry.register(MetricRegistry.name(metricsGroup, "DefaultClaimStore", "channels"), new Gauge<Integer>() {
             @Override
             public Integer getValue() {
@@ -49,6 +56,12 @@ public class DefaultClaimStore implements ClaimStore {
                 return getNumClaims();
             }
         });
+        metricRegistry.register(MetricRegistry.name(metricsGroup, "DefaultClaimStore", "off_heap_bytes"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getOffHeapMemoryUsage();
+            }
+        });
     }
 
     private static ScheduledExecutorService defaultScheduledExecutor(LifeCycleRegistry lifeCycle, String metricsGroup) {
@@ -59,11 +72,21 @@ public class DefaultClaimStore implements ClaimStore {
         return executor;
     }
 
-    private synchronized Integer getNumChannels() {
+    private Integer getNumChannels() {
         return _map.size();
     }
 
-    private synchronized Integer getNumClaims() {
+    private Long getOffHeapMemoryUsage() {
+        long bytes = 0;
+        for (Handle handle : _map.values()) {
+            if (handle.getClaimSet() instanceof OffHeapClaimSet) {
+                bytes += ((OffHeapClaimSet) handle.getClaimSet()).getMemoryUsage();
+            }
+        }
+        return bytes;
+    }
+
+    private Integer getNumClaims() {
         int size = 0;
         for (Handle handle : _map.values()) {
             size += handle.getClaimSet().size();
@@ -81,22 +104,45 @@ public class DefaultClaimStore implements ClaimStore {
         }
     }
 
-    private synchronized Handle acquire(String name) {
-        Handle handle = _map.get(name);
-        if (handle == null) {
-            handle = new Handle(new DefaultClaimSet());
-            _map.put(name, handle);
+    private Handle acquire(String name) {
+        for (;;) {
+            Handle handle = _map.get(name);
+            if (handle == null) {
+                // Claim sets don't allocate memory for claims until the first claim is staked, so a claim set
+                // created by a thread which loses the race below costs nothing beyond the object itself
+                Handle newHandle = new Handle(newClaimSet(name));
+                handle = _map.putIfAbsent(name, newHandle);
+                if (handle == null) {
+                    handle = newHandle;
+                }
+            }
+            if (handle.retain()) {
+                return handle;
+            }
+            // Lost a race with removeEmptyClaimSets(), which is about to either remove the retired claim set from
+            // the map or, if it isn't empty after all, restore it.  Try again once it has.
+            Thread.yield();
         }
-        handle.getRefCount().incrementAndGet();
-        return handle;
     }
 
-    private synchronized void release(Handle handle) {
+    private void release(Handle handle) {
         handle.getRefCount().decrementAndGet();
     }
 
+    @VisibleForTesting
+    ClaimSet newClaimSet(String name) {
+        switch (_configuration.getType(name)) {
+            case concurrent:
+                return new ConcurrentClaimSet(_configuration.getConcurrencyLevel());
+            case offHeap:
+                return new OffHeapClaimSet();
+            default:
+                return new DefaultClaimSet();
+        }
+    }
+
     @Override
-    public synchronized Map<String, Long> snapshotClaimCounts() {
+    public Map<String, Long> snapshotClaimCounts() {
         Map<String, Long> snapshot = Maps.newHashMap();
         for (Map.Entry<String, Handle> entry : _map.entrySet()) {
             snapshot.put(entry.getKey(), entry.getValue().getClaimSet().size());
@@ -108,14 +154,23 @@ public class DefaultClaimStore implements ClaimStore {
      * Cleans up old claim sets for subscriptions that have become inactive.  Ensures the map of claim sets doesn't
      * grow forever.
      */
-    private synchronized void removeEmptyClaimSets() {
-        Iterables.removeIf(_map.values(), new Predicate<Handle>() {
-            @Override
-            public boolean apply(Handle handle) {
-                handle.getClaimSet().pump();
-                return handle.getRefCount().get() == 0 && handle.getClaimSet().size() == 0;
+    private void removeEmptyClaimSets() {
+        for (Map.Entry<String, Handle> entry : _map.entrySet()) {
+            Handle handle = entry.getValue();
+            handle.getClaimSet().pump();
+            if (handle.getClaimSet().size() == 0 && handle.retire()) {
+                // A claim may have been staked between checking the size and retiring the claim set
+                if (handle.getClaimSet().size() == 0) {
+                    _map.remove(entry.getKey(), handle);
+                    // Nothing can acquire a retired claim set, so its memory can be released immediately
+                    if (handle.getClaimSet() instanceof OffHeapClaimSet) {
+                        ((OffHeapClaimSet) handle.getClaimSet()).close();
+                    }
+                } else {
+                    handle.getRefCount().set(0);
+                }
             }
-        });
+        }
     }
 
     private static class Handle {
@@ -133,5 +188,23 @@ public class DefaultClaimStore implements ClaimStore {
         AtomicInteger getRefCount() {
             return _refCount;
         }
+
+        /** Increments the reference count unless the claim set has been retired. */
+        boolean retain() {
+            for (;;) {
+                int refCount = _refCount.get();
+                if (refCount < 0) {
+                    return false;
+                }
+                if (_refCount.compareAndSet(refCount, refCount + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /** Retires the claim set if it has no references. */
+        boolean retire() {
+            return _refCount.compareAndSet(0, -1);
+        }
     }
 }
@@ -6,6 +6,7 @@ import com.bazaarvoice.emodb.event.api.EventSink;
 import com.bazaarvoice.emodb.event.api.EventStore;
 import com.bazaarvoice.emodb.event.api.ScanSink;
 import com.bazaarvoice.emodb.event.api.SimpleEventSink;
+import com.bazaarvoice.emodb.event.api.SizeEstimate;
 import com.bazaarvoice.emodb.event.db.EventId;
 import com.bazaarvoice.emodb.event.db.EventIdSerializer;
 import com.bazaarvoice.emodb.event.db.EventReaderDAO;
@@ -41,7 +42,13 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class DefaultEventStore implements EventStore {
     private static final Logger _log = LoggerFactory.getLogger(DefaultEventStore.class);
 
-    private static final Duration DELETE_CLAIM_TTL = Duration.ofMillis(25);
+    /**
+     * Deleted events stay claimed for this long so that readers which read them just before the delete don't return
+     * them again.  Events read any earlier than this must not be returned, see
+     * {@link com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration}.
+     */
+    public static final Duration DELETE_CLAIM_TTL = Duration.ofMillis(25);
+
     private static final int MAX_COPY_LIMIT = 1000;
 
     // Don't log system channels--they floods the logs and drown out what's usually interesting, especially w/"__system_bus:master".
@@ -52,16 +59,35 @@ public class DefaultEventStore implements EventStore {
     private final EventWriterDAO _writerDao;
     private final EventIdSerializer _eventIdSerializer;
     private final ClaimStore _claimStore;
+    private final ChannelSizeTracker _sizeTracker;
+    private final ChannelWatcher _channelWatcher;
     private final Cache<String, Boolean> _emptyCache;
 
-    @Inject
     public DefaultEventStore(EventReaderDAO readerDao, EventWriterDAO writerDao,
                              EventIdSerializer eventIdSerializer, ClaimStore claimStore) {
+        this(readerDao, writerDao, eventIdSerializer, claimStore, new ChannelSizeTracker(readerDao),
+                new ChannelWatcher());
+    }
+
+    @Inject
+    public DefaultEventStore(EventReaderDAO readerDao, EventWriterDAO writerDao,
+                             EventIdSerializer eventIdSerializer, ClaimStore claimStore,
+                             ChannelSizeTracker sizeTracker, ChannelWatcher channelWatcher) {
         _readerDao = checkNotNull(readerDao, "readerDao");
         _writerDao = checkNotNull(writerDao, "writerDao");
         _eventIdSerializer = checkNotNull(eventIdSerializer, "eventIdSerializer");
         _claimStore = checkNotNull(claimStore, "claimStore");
+        _sizeTracker = checkNotNull(sizeTracker, "sizeTracker");
+        _channelWatcher = checkNotNull(channelWatcher, "channelWatcher");
         _emptyCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.SECONDS).build();
+
+        // A channel with new events is no longer empty, including when the events were added by another server
+        _channelWatcher.addListener(new ChannelWatcher.Listener() {
+            @Override
+            public void channelChanged(String channel) {
+                _emptyCache.invalidate(channel);
+            }
+        });
     }
 
     @Override
@@ -110,6 +136,8 @@ public class DefaultEventStore implements EventStore {
         }
 
         _writerDao.addAll(eventsByChannel, null);
+        _sizeTracker.recordAdds(eventsByChannel);
+        _channelWatcher.notifyChanged(eventsByChannel.keySet());
     }
 
     @ParameterizedTimed(type="DefaultEventStore")
@@ -118,7 +146,16 @@ public class DefaultEventStore implements EventStore {
         checkNotNull(channel, "channel");
         checkLimit(limit, Long.MAX_VALUE);
 
-        return _readerDao.count(channel, limit);
+        return estimateSize(channel, limit).getCount();
+    }
+
+    @ParameterizedTimed(type="DefaultEventStore")
+    @Override
+    public SizeEstimate estimateSize(String channel, long limit) {
+        checkNotNull(channel, "channel");
+        checkLimit(limit, Long.MAX_VALUE);
+
+        return _sizeTracker.getSizeEstimate(channel, limit);
     }
 
     @ParameterizedTimed(type="DefaultEventStore")
@@ -178,6 +215,8 @@ public class DefaultEventStore implements EventStore {
 
         DaoEventSink daoSink = new DaoEventSink(Integer.MAX_VALUE, sink);
         _writerDao.addAll(toEventsByChannel(channel, events), daoSink);
+        _sizeTracker.recordAdds(channel, events.size());
+        _channelWatcher.notifyChanged(channel);
 
         if (isDebugLoggingEnabled(channel)) {
             _log.debug("addAllAndPeek {} count={} extra={}", channel, events.size(), events.size() - daoSink.getCount());
@@ -257,6 +296,8 @@ public class DefaultEventStore implements EventStore {
 
                 DaoEventSink daoSink = new DaoEventSink(channel, claims, claimTtl, hardLimit, sink);
                 _writerDao.addAll(toEventsByChannel(channel, events), daoSink);
+                _sizeTracker.recordAdds(channel, events.size());
+                _channelWatcher.notifyChanged(channel);
 
                 if (isDebugLoggingEnabled(channel)) {
                     _log.debug("addAllAndPoll {} count={} ttl={} extra={}",
@@ -322,6 +363,7 @@ public class DefaultEventStore implements EventStore {
         final Collection<EventId> eventIdObjects = toEventIds(eventIds, channel);
 
         _writerDao.delete(channel, eventIdObjects);
+        _sizeTracker.recordDeletes(channel, eventIdObjects.size());
 
         if (cancelClaims) {
             // Don't delete the claims just yet.  Avoid race conditions with poll() by renewing the claims for
@@ -387,6 +429,8 @@ public class DefaultEventStore implements EventStore {
             @Override
             public void accept(List<ByteBuffer> events) {
                 _writerDao.addAll(toEventsByChannel(toChannel, events), null);
+                _sizeTracker.recordAdds(toChannel, events.size());
+                _channelWatcher.notifyChanged(toChannel);
             }
         }, MAX_COPY_LIMIT, since);
     }
@@ -411,6 +455,10 @@ public class DefaultEventStore implements EventStore {
         // "move(from, to)" followed by "delete(event)" may delete from the "to" channel.  This race condition is
         // likely to be confusing but harmless so we're willing to live with it to get good move performance.
         boolean movedAll = _readerDao.moveIfFast(fromChannel, toChannel);
+        // Slabs moved in bulk weren't counted, so count both channels again the next time their sizes are needed
+        _sizeTracker.invalidate(fromChannel);
+        _sizeTracker.invalidate(toChannel);
+        _channelWatcher.notifyChanged(toChannel);
         if (movedAll) {
             return;
         }
@@ -439,7 +487,10 @@ public class DefaultEventStore implements EventStore {
     private void addAndDelete(String addChannel, Collection<ByteBuffer> add,
                               String deleteChannel, Collection<EventId> delete) {
         _writerDao.addAll(toEventsByChannel(addChannel, add), null);
+        _sizeTracker.recordAdds(addChannel, add.size());
+        _channelWatcher.notifyChanged(addChannel);
         _writerDao.delete(deleteChannel, delete);
+        _sizeTracker.recordDeletes(deleteChannel, delete.size());
     }
 
     @ParameterizedTimed(type="DefaultEventStore")
@@ -458,6 +509,9 @@ public class DefaultEventStore implements EventStore {
                 return null;
             }
         });
+
+        // Every event is available again
+        _channelWatcher.notifyChanged(channel);
     }
 
     @ParameterizedTimed(type="DefaultEventStore")
@@ -481,6 +535,7 @@ public class DefaultEventStore implements EventStore {
         // Delete events as best we can.  This isn't completely thread-safe w/regard to releasing the claims, but by
         // releasing claims first at worst we end up with a few unnecessary in-memory claims.
         _writerDao.deleteAll(channel);
+        _sizeTracker.recordPurge(channel);
     }
 
     private boolean claim(@Nullable ClaimSet claims, EventId eventId, Duration claimTtl) {
@@ -499,8 +554,8 @@ public class DefaultEventStore implements EventStore {
         if (channel != null) {
             // Mark the events as unread
             _readerDao.markUnread(channel, eventIds);
-            // Remove the channel from the empty cache, or no-op if it wasn't cached as empty
-            _emptyCache.invalidate(channel);
+            // Remove the channel from the empty cache and wake pollers waiting for events
+            _channelWatcher.notifyChanged(channel);
         }
     }
 
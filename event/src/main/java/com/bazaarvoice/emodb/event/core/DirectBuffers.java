@@ -0,0 +1,66 @@
+package com.bazaarvoice.emodb.event.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * Frees the memory held by direct buffers without waiting for them to be garbage collected.  The JDK has no public
+ * API for this, so it uses the buffer's cleaner on Java 8 and {@code Unsafe.invokeCleaner} on later versions.  If
+ * neither is available the memory is left for the garbage collector to reclaim.
+ */
+class DirectBuffers {
+    private static final Logger _log = LoggerFactory.getLogger(DirectBuffers.class);
+
+    private static final Freer FREER = createFreer();
+
+    private interface Freer {
+        void free(ByteBuffer buffer) throws Exception;
+    }
+
+    /**
+     * Frees a direct buffer.  The buffer must not be used afterwards, nor may any buffer which shares its memory.
+     */
+    static void free(ByteBuffer buffer) {
+        if (FREER == null || !buffer.isDirect()) {
+            return;
+        }
+        try {
+            FREER.free(buffer);
+        } catch (Exception e) {
+            _log.debug("Unable to free direct buffer", e);
+        }
+    }
+
+    private static Freer createFreer() {
+        ByteBuffer probe = ByteBuffer.allocateDirect(1);
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Object unsafe = theUnsafe.get(null);
+            Freer freer = buffer -> invokeCleaner.invoke(unsafe, buffer);
+            freer.free(probe);
+            return freer;
+        } catch (Exception e) {
+            // Fall through to the Java 8 approach
+        }
+        try {
+            Method cleaner = probe.getClass().getMethod("cleaner");
+            cleaner.setAccessible(true);
+            Method clean = cleaner.getReturnType().getMethod("clean");
+            clean.setAccessible(true);
+            Freer freer = buffer -> clean.invoke(cleaner.invoke(buffer));
+            freer.free(probe);
+            return freer;
+        } catch (Exception e) {
+            _log.info("Direct buffers can't be freed explicitly and will be reclaimed by garbage collection");
+            return null;
+        }
+    }
+}
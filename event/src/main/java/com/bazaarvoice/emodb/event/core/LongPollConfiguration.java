@@ -0,0 +1,55 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Configuration for polls which wait server-side for events, see {@link ChannelWatcher}.  A waiting poll is woken
+ * as soon as events are added to its channel on the same server.  When "clusterWakeups" is enabled servers with
+ * waiting pollers register the channel in ZooKeeper and other servers which add events to it nudge them through
+ * ZooKeeper, otherwise events added by other servers are only found by the periodic re-poll every "recheckInterval".
+ * With cluster wakeups enabled "recheckInterval" can be raised to save more reads of empty channels.  No poll waits
+ * longer than "maxWait", regardless of what the caller asks for.
+ */
+public class LongPollConfiguration {
+
+    @JsonProperty("clusterWakeups")
+    private boolean _clusterWakeups;
+
+    @NotNull
+    @JsonProperty("maxWait")
+    private Duration _maxWait = Duration.ofSeconds(20);
+
+    @NotNull
+    @JsonProperty("recheckInterval")
+    private Duration _recheckInterval = Duration.ofSeconds(2);
+
+    public boolean isClusterWakeups() {
+        return _clusterWakeups;
+    }
+
+    public LongPollConfiguration setClusterWakeups(boolean clusterWakeups) {
+        _clusterWakeups = clusterWakeups;
+        return this;
+    }
+
+    public Duration getMaxWait() {
+        return _maxWait;
+    }
+
+    public LongPollConfiguration setMaxWait(Duration maxWait) {
+        _maxWait = maxWait;
+        return this;
+    }
+
+    public Duration getRecheckInterval() {
+        return _recheckInterval;
+    }
+
+    public LongPollConfiguration setRecheckInterval(Duration recheckInterval) {
+        _recheckInterval = recheckInterval;
+        return this;
+    }
+}
@@ -0,0 +1,382 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.google.common.annotations.VisibleForTesting;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Implementation of the {@link ClaimSet} interface which keeps its claims in direct memory, for channels with so many
+ * outstanding claims that holding them as objects on the heap would lengthen garbage collection pauses.
+ * <p>
+ * Claims are stored in an open-addressing hash table of fixed-width slots in a single direct buffer.  Each slot holds
+ * a claim ID of up to {@link #MAX_CLAIM_ID_LENGTH} bytes, which fits the 20 byte event IDs, along with its expiration
+ * time and the links of an intrusive doubly-linked list.  Those lists form an expiry ring: each claim is linked into
+ * the bucket for the tick in which it expires, and each operation sweeps only the buckets whose ticks have passed since
+ * the last sweep.  A claim which has expired but hasn't been swept yet is treated as unclaimed.
+ * <p>
+ * The table is allocated when the first claim is staked and is freed explicitly whenever it is replaced, so direct
+ * memory doesn't linger until the garbage collector happens to collect the buffer.  {@link DefaultClaimStore} closes
+ * the claim set once it is no longer used, after which it can't be used again.
+ */
+public class OffHeapClaimSet implements ClaimSet {
+    /** The longest claim ID which fits in a slot. */
+    public static final int MAX_CLAIM_ID_LENGTH = 24;
+
+    // Slot layout: state (empty, deleted or the ID length), hash, expiration time, ring links, ID
+    private static final int STATE = 0;
+    private static final int HASH = 4;
+    private static final int EXPIRE_AT = 8;
+    private static final int PREV = 16;
+    private static final int NEXT = 20;
+    private static final int ID = 24;
+    private static final int SLOT_SIZE = ID + MAX_CLAIM_ID_LENGTH;
+
+    private static final int EMPTY = 0;
+    private static final int DELETED = -1;
+    private static final int NONE = -1;
+
+    private static final int MIN_CAPACITY = 64;
+    private static final long TICK_MILLIS = 100;
+    private static final int RING_SIZE = 1024;
+
+    /** Head slot of the list of claims expiring in each tick of the ring. */
+    private final int[] _ring = new int[RING_SIZE];
+    /** The hash table, or null if no claims have been staked since the table was last freed. */
+    private ByteBuffer _table;
+    private int _capacity;
+    /** Number of occupied slots, including expired claims which haven't been swept yet. */
+    private int _size;
+    /** Number of slots holding tombstones for removed claims. */
+    private int _deleted;
+    /** All ticks up to and including this one have been swept. */
+    private long _sweptTick = System.currentTimeMillis() / TICK_MILLIS - 1;
+    private boolean _closed;
+
+    public OffHeapClaimSet() {
+        Arrays.fill(_ring, NONE);
+    }
+
+    @Override
+    public synchronized long size() {
+        long now = System.currentTimeMillis();
+        sweep(now);
+
+        // Claims which expire in the current tick aren't swept until it passes, so look for them explicitly
+        long size = _size;
+        for (int slot = _ring[bucketIndex(now / TICK_MILLIS)]; slot != NONE; slot = getNext(slot)) {
+            if (getExpireAt(slot) <= now) {
+                size--;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public synchronized boolean isClaimed(byte[] claimId) {
+        checkClaimId(claimId);
+
+        int slot = find(claimId, hash(claimId));
+        return slot != NONE && getExpireAt(slot) > System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized boolean acquire(byte[] claimId, Duration ttl) {
+        checkClaimId(claimId);
+        long ttlMillis = ttl.toMillis();
+        checkArgument(ttlMillis >= 0, "Ttl must be >=0");
+
+        long now = System.currentTimeMillis();
+        sweep(now);
+
+        int hash = hash(claimId);
+        int slot = find(claimId, hash);
+        if (slot != NONE) {
+            if (getExpireAt(slot) > now) {
+                return false;
+            }
+            remove(slot);
+        }
+        // A claim with a zero ttl expires immediately, so there's nothing to keep
+        if (ttlMillis > 0) {
+            insert(claimId, hash, now + ttlMillis);
+        }
+        return true;
+    }
+
+    @Override
+    public void renew(byte[] claimId, Duration ttl, boolean extendOnly) {
+        renewAll(Collections.singleton(claimId), ttl, extendOnly);
+    }
+
+    @Override
+    public synchronized void renewAll(Collection<byte[]> claimIds, Duration ttl, boolean extendOnly) {
+        checkNotNull(claimIds, "claimIds");
+        long ttlMillis = ttl.toMillis();
+        checkArgument(ttlMillis >= 0, "Ttl must be >=0");
+
+        long now = System.currentTimeMillis();
+        sweep(now);
+
+        long expireAt = now + ttlMillis;
+        for (byte[] claimId : claimIds) {
+            checkClaimId(claimId);
+            int hash = hash(claimId);
+            int slot = find(claimId, hash);
+            if (slot == NONE) {
+                if (ttlMillis > 0) {
+                    insert(claimId, hash, expireAt);
+                }
+            } else if (extendOnly && getExpireAt(slot) >= expireAt) {
+                // Old claim is for longer than the new claim and 'extendOnly' means don't shorten the life of a claim
+            } else if (ttlMillis > 0) {
+                unlink(slot);
+                _table.putLong(offset(slot) + EXPIRE_AT, expireAt);
+                link(slot);
+            } else {
+                // Renewing with a zero ttl releases the claim, so drop it now instead of waiting to sweep it
+                remove(slot);
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        free();
+    }
+
+    /**
+     * Frees the direct memory held by this claim set.  The claim set can't be used afterwards.
+     */
+    public synchronized void close() {
+        free();
+        _closed = true;
+    }
+
+    @Override
+    public synchronized void pump() {
+        sweep(System.currentTimeMillis());
+
+        // Give back memory once most of the claims are gone
+        if (_capacity > MIN_CAPACITY && _size < _capacity / 8) {
+            rehash(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(_size, 1)) * 4));
+        }
+    }
+
+    /** Returns the number of occupied slots, including expired claims which haven't been swept yet. */
+    @VisibleForTesting
+    synchronized int getOccupiedSlotCount() {
+        return _size;
+    }
+
+    /** Returns the number of slots linked into the expiration ring.  Every occupied slot must be linked exactly once. */
+    @VisibleForTesting
+    synchronized int getLinkedSlotCount() {
+        int numLinked = 0;
+        for (int head : _ring) {
+            for (int slot = head; slot != NONE; slot = getNext(slot)) {
+                numLinked++;
+            }
+        }
+        return numLinked;
+    }
+
+    /** Returns the number of bytes of direct memory held by this claim set. */
+    public synchronized long getMemoryUsage() {
+        return _table != null ? _table.capacity() : 0;
+    }
+
+    private void checkClaimId(byte[] claimId) {
+        checkNotNull(claimId, "claimId");
+        checkArgument(claimId.length > 0 && claimId.length <= MAX_CLAIM_ID_LENGTH,
+                "Claim ID must be between 1 and %s bytes", MAX_CLAIM_ID_LENGTH);
+    }
+
+    private int find(byte[] claimId, int hash) {
+        if (_table == null) {
+            return NONE;
+        }
+        int mask = _capacity - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int state = _table.getInt(offset(slot) + STATE);
+            if (state == EMPTY) {
+                return NONE;
+            }
+            if (state == claimId.length && _table.getInt(offset(slot) + HASH) == hash && idEquals(slot, claimId)) {
+                return slot;
+            }
+        }
+    }
+
+    private boolean idEquals(int slot, byte[] claimId) {
+        int offset = offset(slot) + ID;
+        for (int i = 0; i < claimId.length; i++) {
+            if (_table.get(offset + i) != claimId[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Inserts a claim which isn't already in the table. */
+    private void insert(byte[] claimId, int hash, long expireAt) {
+        if (_table == null) {
+            if (_closed) {
+                throw new ClosedClaimSetException();
+            }
+            allocate(MIN_CAPACITY);
+        }
+        // Keep at least a quarter of the slots empty so probe sequences stay short
+        if ((_size + _deleted + 1) * 4L > _capacity * 3L) {
+            rehash((_size + 1) * 2 > _capacity ? _capacity * 2 : _capacity);
+        }
+
+        int mask = _capacity - 1;
+        int slot = hash & mask;
+        int state;
+        while ((state = _table.getInt(offset(slot) + STATE)) > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (state == DELETED) {
+            _deleted--;
+        }
+
+        int offset = offset(slot);
+        _table.putInt(offset + STATE, claimId.length);
+        _table.putInt(offset + HASH, hash);
+        _table.putLong(offset + EXPIRE_AT, expireAt);
+        for (int i = 0; i < claimId.length; i++) {
+            _table.put(offset + ID + i, claimId[i]);
+        }
+        link(slot);
+        _size++;
+    }
+
+    private void remove(int slot) {
+        unlink(slot);
+        // A tombstone is only needed if a probe sequence may continue past this slot
+        int next = (slot + 1) & (_capacity - 1);
+        if (_table.getInt(offset(next) + STATE) == EMPTY) {
+            _table.putInt(offset(slot) + STATE, EMPTY);
+        } else {
+            _table.putInt(offset(slot) + STATE, DELETED);
+            _deleted++;
+        }
+        _size--;
+    }
+
+    /**
+     * Removes expired claims from the buckets for all ticks which have passed since the last sweep.  A bucket also
+     * holds claims which expire on later turns of the ring, those are left in place.
+     */
+    private void sweep(long now) {
+        long currentTick = now / TICK_MILLIS;
+        long fromTick = Math.max(_sweptTick + 1, currentTick - RING_SIZE);
+        for (long tick = fromTick; tick < currentTick; tick++) {
+            int slot = _ring[bucketIndex(tick)];
+            while (slot != NONE) {
+                int next = getNext(slot);
+                if (getExpireAt(slot) <= now) {
+                    remove(slot);
+                }
+                slot = next;
+            }
+        }
+        _sweptTick = Math.max(_sweptTick, currentTick - 1);
+    }
+
+    private void link(int slot) {
+        int bucket = bucketIndex(getExpireAt(slot) / TICK_MILLIS);
+        int head = _ring[bucket];
+        _table.putInt(offset(slot) + PREV, NONE);
+        _table.putInt(offset(slot) + NEXT, head);
+        if (head != NONE) {
+            _table.putInt(offset(head) + PREV, slot);
+        }
+        _ring[bucket] = slot;
+    }
+
+    private void unlink(int slot) {
+        int prev = _table.getInt(offset(slot) + PREV);
+        int next = getNext(slot);
+        if (prev == NONE) {
+            _ring[bucketIndex(getExpireAt(slot) / TICK_MILLIS)] = next;
+        } else {
+            _table.putInt(offset(prev) + NEXT, next);
+        }
+        if (next != NONE) {
+            _table.putInt(offset(next) + PREV, prev);
+        }
+    }
+
+    private void rehash(int capacity) {
+        ByteBuffer oldTable = _table;
+        int oldCapacity = _capacity;
+        allocate(capacity);
+
+        byte[] claimId = new byte[MAX_CLAIM_ID_LENGTH];
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            int offset = slot * SLOT_SIZE;
+            int length = oldTable.getInt(offset + STATE);
+            if (length > 0) {
+                for (int i = 0; i < length; i++) {
+                    claimId[i] = oldTable.get(offset + ID + i);
+                }
+                insert(Arrays.copyOf(claimId, length), oldTable.getInt(offset + HASH), oldTable.getLong(offset + EXPIRE_AT));
+            }
+        }
+        DirectBuffers.free(oldTable);
+    }
+
+    private void allocate(int capacity) {
+        checkState(capacity <= Integer.MAX_VALUE / SLOT_SIZE, "Too many claims for an off-heap claim set");
+        _table = ByteBuffer.allocateDirect(capacity * SLOT_SIZE);
+        _capacity = capacity;
+        _size = 0;
+        _deleted = 0;
+        Arrays.fill(_ring, NONE);
+    }
+
+    /** Drops all claims and frees the table. */
+    private void free() {
+        if (_table != null) {
+            ByteBuffer table = _table;
+            _table = null;
+            _capacity = 0;
+            _size = 0;
+            _deleted = 0;
+            Arrays.fill(_ring, NONE);
+            DirectBuffers.free(table);
+        }
+    }
+
+    private long getExpireAt(int slot) {
+        return _table.getLong(offset(slot) + EXPIRE_AT);
+    }
+
+    private int getNext(int slot) {
+        return _table.getInt(offset(slot) + NEXT);
+    }
+
+    private static int offset(int slot) {
+        return slot * SLOT_SIZE;
+    }
+
+    private static int bucketIndex(long tick) {
+        return (int) (tick & (RING_SIZE - 1));
+    }
+
+    private static int hash(byte[] claimId) {
+        int h = Arrays.hashCode(claimId);
+        h ^= (h >>> 16);
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
@@ -0,0 +1,54 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Configuration for the {@link ChannelSizeTracker}.  When enabled, the size of each channel is counted from the
+ * slab rows the first time it's requested, then kept up to date in memory as events are added and deleted so later
+ * requests don't read from Cassandra.  Writes made by other servers and events which expire aren't seen locally, so
+ * every "reconcileInterval" each tracked channel is counted again in the background.  A channel whose size hasn't been
+ * requested within "idleTimeout" is no longer tracked.
+ */
+public class SizeEstimateConfiguration {
+
+    @JsonProperty("enabled")
+    private boolean _enabled;
+
+    @NotNull
+    @JsonProperty("reconcileInterval")
+    private Duration _reconcileInterval = Duration.ofMinutes(1);
+
+    @NotNull
+    @JsonProperty("idleTimeout")
+    private Duration _idleTimeout = Duration.ofMinutes(30);
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public SizeEstimateConfiguration setEnabled(boolean enabled) {
+        _enabled = enabled;
+        return this;
+    }
+
+    public Duration getReconcileInterval() {
+        return _reconcileInterval;
+    }
+
+    public SizeEstimateConfiguration setReconcileInterval(Duration reconcileInterval) {
+        _reconcileInterval = reconcileInterval;
+        return this;
+    }
+
+    public Duration getIdleTimeout() {
+        return _idleTimeout;
+    }
+
+    public SizeEstimateConfiguration setIdleTimeout(Duration idleTimeout) {
+        _idleTimeout = idleTimeout;
+        return this;
+    }
+}
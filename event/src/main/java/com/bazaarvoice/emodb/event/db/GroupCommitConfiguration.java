@@ -0,0 +1,52 @@
+package com.bazaarvoice.emodb.event.db;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration for the optional {@link GroupCommitEventWriterDAO}, which combines the events written by concurrent
+ * callers into a single batch.  Disabled by default, in which case every caller writes its own batch.
+ */
+public class GroupCommitConfiguration {
+
+    @JsonProperty("enabled")
+    private boolean _enabled;
+
+    // How long the first caller in a batch waits for other callers to join it
+    @Min(0)
+    @JsonProperty("lingerMillis")
+    private int _lingerMillis = 2;
+
+    // A batch with at least this many events is written immediately without waiting out the linger time
+    @Min(1)
+    @JsonProperty("maxBatchEvents")
+    private int _maxBatchEvents = 1000;
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public GroupCommitConfiguration setEnabled(boolean enabled) {
+        _enabled = enabled;
+        return this;
+    }
+
+    public int getLingerMillis() {
+        return _lingerMillis;
+    }
+
+    public GroupCommitConfiguration setLingerMillis(int lingerMillis) {
+        _lingerMillis = lingerMillis;
+        return this;
+    }
+
+    public int getMaxBatchEvents() {
+        return _maxBatchEvents;
+    }
+
+    public GroupCommitConfiguration setMaxBatchEvents(int maxBatchEvents) {
+        _maxBatchEvents = maxBatchEvents;
+        return this;
+    }
+}
@@ -0,0 +1,160 @@
+package com.bazaarvoice.emodb.event.db;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * {@link EventWriterDAO} decorator which combines the events written by concurrent callers into a single call to the
+ * underlying DAO, so slabs are allocated once per channel for the combined batch and the events are written with
+ * fewer, fuller mutations.
+ * <p>
+ * The first caller to arrive when no batch is open starts a new batch and waits up to the linger time for other
+ * callers to add their events to it, or until the batch reaches the maximum size.  It then writes the combined batch
+ * while the other callers wait for the write to complete.  Every caller returns only once its events are written, and
+ * if the write fails every caller in the batch sees the failure.
+ * <p>
+ * Writes with an {@link EventSink} need the IDs of their own events, so they bypass batching and go straight to the
+ * underlying DAO.
+ */
+public class GroupCommitEventWriterDAO implements EventWriterDAO {
+    private final EventWriterDAO _delegate;
+    private final long _lingerNanos;
+    private final int _maxBatchEvents;
+    private final Histogram _batchSize;
+    private final Histogram _linger;
+    private final Object _lock = new Object();
+    /** The batch which new callers join, or null if no batch is open.  Guarded by _lock. */
+    private Batch _openBatch;
+
+    public GroupCommitEventWriterDAO(EventWriterDAO delegate, GroupCommitConfiguration configuration,
+                                     String metricsGroup, MetricRegistry metricRegistry) {
+        _delegate = checkNotNull(delegate, "delegate");
+        checkArgument(configuration.getLingerMillis() >= 0, "Linger must be >=0");
+        checkArgument(configuration.getMaxBatchEvents() > 0, "Max batch events must be >0");
+        _lingerNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getLingerMillis());
+        _maxBatchEvents = configuration.getMaxBatchEvents();
+        _batchSize = metricRegistry.histogram(MetricRegistry.name(metricsGroup, "GroupCommitEventWriterDAO", "batch_size"));
+        _linger = metricRegistry.histogram(MetricRegistry.name(metricsGroup, "GroupCommitEventWriterDAO", "linger_micros"));
+    }
+
+    @Override
+    public void addAll(Multimap<String, ByteBuffer> eventsByChannel, @Nullable EventSink sink) {
+        checkNotNull(eventsByChannel, "eventsByChannel");
+
+        if (sink != null || eventsByChannel.size() >= _maxBatchEvents) {
+            _delegate.addAll(eventsByChannel, sink);
+            return;
+        }
+        if (eventsByChannel.isEmpty()) {
+            return;
+        }
+
+        Batch batch;
+        boolean leader;
+        synchronized (_lock) {
+            leader = _openBatch == null;
+            if (leader) {
+                _openBatch = new Batch();
+            }
+            batch = _openBatch;
+            batch.add(eventsByChannel);
+            if (batch.size() >= _maxBatchEvents) {
+                // Close the batch and wake its leader so it's written without waiting out the linger time
+                _openBatch = null;
+                _lock.notifyAll();
+            }
+        }
+
+        if (leader) {
+            long start = System.nanoTime();
+            awaitBatchClosed(batch, start + _lingerNanos);
+            _linger.update(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            write(batch);
+        }
+
+        try {
+            Uninterruptibles.getUninterruptibly(batch.getFuture());
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
+
+    /** Waits until the batch fills up or the deadline passes, then closes the batch if it's still open. */
+    private void awaitBatchClosed(Batch batch, long deadline) {
+        boolean interrupted = false;
+        synchronized (_lock) {
+            long remaining;
+            while (_openBatch == batch && (remaining = deadline - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(_lock, remaining);
+                } catch (InterruptedException e) {
+                    // Other callers are waiting on this batch, so it must be written regardless
+                    interrupted = true;
+                }
+            }
+            if (_openBatch == batch) {
+                _openBatch = null;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write(Batch batch) {
+        _batchSize.update(batch.size());
+        try {
+            _delegate.addAll(batch.getEvents(), null);
+            batch.getFuture().set(null);
+        } catch (Throwable t) {
+            batch.getFuture().setException(t);
+        }
+    }
+
+    @Override
+    public void delete(String channel, Collection<EventId> eventIds) {
+        _delegate.delete(channel, eventIds);
+    }
+
+    @Override
+    public void deleteAll(String channel) {
+        _delegate.deleteAll(channel);
+    }
+
+    /** The combined events of the callers in a batch, in the order the callers joined it. */
+    private static class Batch {
+        private final ListMultimap<String, ByteBuffer> _events = ArrayListMultimap.create();
+        private final SettableFuture<Void> _future = SettableFuture.create();
+
+        void add(Multimap<String, ByteBuffer> eventsByChannel) {
+            _events.putAll(eventsByChannel);
+        }
+
+        int size() {
+            return _events.size();
+        }
+
+        ListMultimap<String, ByteBuffer> getEvents() {
+            return _events;
+        }
+
+        SettableFuture<Void> getFuture() {
+            return _future;
+        }
+    }
+}
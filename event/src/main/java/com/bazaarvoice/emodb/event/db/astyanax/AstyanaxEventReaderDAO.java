@@ -5,6 +5,7 @@ import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.common.dropwizard.metrics.InstrumentedCache;
 import com.bazaarvoice.emodb.common.dropwizard.metrics.ParameterizedTimed;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.event.core.DefaultEventStore;
 import com.bazaarvoice.emodb.event.core.MetricsGroupName;
 import com.bazaarvoice.emodb.event.db.EventId;
 import com.bazaarvoice.emodb.event.db.EventReaderDAO;
@@ -14,6 +15,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
@@ -43,10 +45,13 @@ import org.apache.cassandra.utils.ByteBufferUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Date;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -54,7 +59,9 @@ import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -75,14 +82,25 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
     private final LoadingCache<ChannelSlab, SlabCursor> _closedSlabCursors;
     private final Cache<String, ByteBuffer> _oldestSlab;
     private final Meter _staleSlabMeter;
+    private final ExecutorService _prefetchExecutor;
+    private final int _prefetchSlabs;
+    private final int _maxPrefetchSlabsPerChannel;
+    private final long _maxPrefetchAgeNanos;
+    private final Ticker _ticker;
+    private final ConcurrentMap<String, Integer> _prefetchSlabsByChannel = Maps.newConcurrentMap();
+    private final Meter _prefetchHitMeter;
+    private final Meter _prefetchWasteMeter;
 
     @Inject
     public AstyanaxEventReaderDAO(LifeCycleRegistry lifeCycle,
                                   CassandraKeyspace keyspace,
                                   ManifestPersister manifestPersister,
                                   @MetricsGroupName String metricsGroup,
-                                  MetricRegistry metricRegistry) {
-        this(keyspace, manifestPersister, metricsGroup, defaultCleanupExecutor(metricsGroup, lifeCycle, metricRegistry), metricRegistry);
+                                  MetricRegistry metricRegistry,
+                                  SlabReadAheadConfiguration readAheadConfiguration) {
+        this(keyspace, manifestPersister, metricsGroup, defaultCleanupExecutor(metricsGroup, lifeCycle, metricRegistry),
+                defaultPrefetchExecutor(metricsGroup, lifeCycle, readAheadConfiguration), readAheadConfiguration,
+                Ticker.systemTicker(), metricRegistry);
     }
 
     @VisibleForTesting
@@ -91,9 +109,31 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
                            String metricsGroup,
                            ExecutorService cleanupExecutor,
                            MetricRegistry metricRegistry) {
+        this(keyspace, manifestPersister, metricsGroup, cleanupExecutor, null,
+                new SlabReadAheadConfiguration().setSlabsPerRead(0), Ticker.systemTicker(), metricRegistry);
+    }
+
+    @VisibleForTesting
+    AstyanaxEventReaderDAO(CassandraKeyspace keyspace,
+                           ManifestPersister manifestPersister,
+                           String metricsGroup,
+                           ExecutorService cleanupExecutor,
+                           @Nullable ExecutorService prefetchExecutor,
+                           SlabReadAheadConfiguration readAheadConfiguration,
+                           Ticker ticker,
+                           MetricRegistry metricRegistry) {
+        checkArgument(readAheadConfiguration.getSlabsPerRead() == 0 || prefetchExecutor != null,
+                "Prefetching slabs requires an executor");
+        checkArgument(readAheadConfiguration.getMaxAge().compareTo(DefaultEventStore.DELETE_CLAIM_TTL) < 0,
+                "Slab read ahead max age must be less than %s", DefaultEventStore.DELETE_CLAIM_TTL);
         _keyspace = keyspace;
         _manifestPersister = manifestPersister;
         _cleanupExecutor = cleanupExecutor;
+        _prefetchExecutor = prefetchExecutor;
+        _prefetchSlabs = readAheadConfiguration.getSlabsPerRead();
+        _maxPrefetchSlabsPerChannel = readAheadConfiguration.getMaxSlabsPerChannel();
+        _maxPrefetchAgeNanos = readAheadConfiguration.getMaxAge().toNanos();
+        _ticker = ticker;
 
         CacheLoader<ChannelSlab, SlabCursor> slabCursorFactory = new CacheLoader<ChannelSlab, SlabCursor>() {
             @Override
@@ -120,6 +160,8 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
         InstrumentedCache.instrument(_closedSlabCursors, metricRegistry, metricsGroup, "closedSlabCursors", false);
 
         _staleSlabMeter = metricRegistry.meter(MetricRegistry.name(metricsGroup, "AstyanaxEventReaderDAO", "stale_slabs"));
+        _prefetchHitMeter = metricRegistry.meter(MetricRegistry.name(metricsGroup, "AstyanaxEventReaderDAO", "prefetch_hits"));
+        _prefetchWasteMeter = metricRegistry.meter(MetricRegistry.name(metricsGroup, "AstyanaxEventReaderDAO", "prefetch_waste"));
     }
 
     private static ExecutorService defaultCleanupExecutor(String metricsGroup, LifeCycleRegistry lifeCycle, MetricRegistry metricRegistry) {
@@ -140,6 +182,23 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
         return executor;
     }
 
+    @Nullable
+    private static ExecutorService defaultPrefetchExecutor(String metricsGroup, LifeCycleRegistry lifeCycle,
+                                                           SlabReadAheadConfiguration configuration) {
+        if (configuration.getSlabsPerRead() == 0) {
+            return null;
+        }
+        // When the queue is full new prefetches are rejected and those slabs are read by the polling thread instead.
+        String nameFormat = "Events Slab Prefetch-" + metricsGroup.substring(metricsGroup.lastIndexOf('.') + 1) + "-%d";
+        ExecutorService executor = new ThreadPoolExecutor(
+                configuration.getThreads(), configuration.getThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(configuration.getMaxQueuedReads()),
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+        lifeCycle.manage(new ExecutorServiceManager(executor, Duration.seconds(5), nameFormat));
+        return executor;
+    }
+
     @Override
     public Iterator<String> listChannels() {
         final Iterator<Row<String, ByteBuffer>> rowIter = execute(
@@ -166,6 +225,7 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
     @Override
     public long count(String channel, long limit) {
         long total = 0;
+        int slabsCounted = 0;
 
         // Note: unlike the read methods, the count method does not delete empty slabs (!open && count==0) since
         // we can't trust results w/ConsistencyLevel.CL_ONE.
@@ -187,16 +247,18 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
                                 .withColumnRange(0, Constants.OPEN_SLAB_MARKER - 1, false, Integer.MAX_VALUE)
                                 .getCount());
                 total += count;
+                slabsCounted++;
 
             } else {
                 // Clients may just want to distinguish "a few" vs. "lots.  Calculate an exact count up to 'limit'
-                // then estimate anything larger by counting slabs and assuming each has a full set of events.
+                // then estimate anything larger by counting slabs and assuming each has as many events as the slabs
+                // counted so far.  Slab sizes vary by channel and over time, so no fixed slab size is a good guess.
                 int slabs = execute(
                         _keyspace.prepareQuery(ColumnFamilies.MANIFEST, ConsistencyLevel.CL_LOCAL_ONE)
                                 .getKey(channel)
                                 .withColumnRange(new RangeBuilder().setStart(slabId).build())
                                 .getCount());
-                total += slabs * Constants.MAX_SLAB_SIZE;
+                total += slabs * total / slabsCounted;
                 break;
             }
         }
@@ -294,34 +356,281 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
         // reading the older tombstones can be minimized.  Since slabs can be written out-of-order across the cluster
         // we still occasionally (10 seconds) re-reads all slabs to pick up any of these newer-older slabs we may
         // have missed.
+        //
+        // Finally, once a call has read one slab and the sink still wants more events the call is likely to read
+        // several slabs, for example when skipping slabs full of claimed events.  From then on the next few slabs are
+        // read ahead asynchronously while the current slab is passed to the sink.  At most a few slabs are read ahead
+        // per call and per channel, and any which haven't been used when the sink stops are discarded.  Slabs read
+        // ahead too long ago are discarded as well:  an event deleted after the slab was read is only protected by a
+        // short-lived claim, so after that claim expires it would look like an event that had never been delivered.
 
-        Iterator<Column<ByteBuffer>> manifestColumns = readManifestForChannel(channel, true);
+        SlabReadAhead slabs = new SlabReadAhead(channel, readManifestForChannel(channel, true));
+        boolean prefetch = false;
 
-        while (manifestColumns.hasNext()) {
-            Column<ByteBuffer> manifestColumn = manifestColumns.next();
-            ByteBuffer slabId = manifestColumn.getName();
-            boolean open = manifestColumn.getBooleanValue();
+        try {
+            for (;;) {
+                if (prefetch) {
+                    slabs.prefetch(_prefetchSlabs);
+                }
+                PendingSlab slab = slabs.next();
+                if (slab == null) {
+                    break;
+                }
+                SlabCursor cursor = slab.getCursor();
 
-            ChannelSlab channelSlab = new ChannelSlab(channel, slabId);
-            SlabCursor cursor = (open ? _openSlabCursors : _closedSlabCursors).getUnchecked(channelSlab);
+                // Optimistic "can we skip this slab?" check outside the synchronized block.
+                if (cursor.get() == SlabCursor.END) {
+                    slabs.discard(slab);
+                    continue;
+                }
 
-            // Optimistic "can we skip this slab?" check outside the synchronized block.
-            if (cursor.get() == SlabCursor.END) {
-                continue;
+                // If multiple pollers try to query the same slab at the same time there's no reason they should do so
+                // in parallel--they'll find the same events and compete for claims.  Might as well just serialize.
+                // A smarter algorithm might randomize the order slabs are read to reduce contention between parallel
+                // pollers, but be careful to avoid starvation.
+
+                //noinspection SynchronizationOnLocalVariableOrMethodParameter
+                synchronized (cursor) {
+                    if (!readSlab(channel, slab.getSlabId(), cursor, slab.isOpen(), sink, slabs.takePrefetched(slab))) {
+                        break;
+                    }
+                }
+                prefetch = _prefetchSlabs > 0;
             }
+        } finally {
+            slabs.discardAll();
+        }
+    }
 
-            // If multiple pollers try to query the same slab at the same time there's no reason they should do so
-            // in parallel--they'll find the same events and compete for claims.  Might as well just serialize.
-            // A smarter algorithm might randomize the order slabs are read to reduce contention between parallel
-            // pollers, but be careful to avoid starvation.
+    /**
+     * Iterates over the slabs in a channel's manifest, optionally reading the events in upcoming slabs ahead of time.
+     */
+    private class SlabReadAhead {
+        private final String _channel;
+        private final Iterator<Column<ByteBuffer>> _manifestColumns;
+        private final Deque<PendingSlab> _pending = new ArrayDeque<>();
 
-            //noinspection SynchronizationOnLocalVariableOrMethodParameter
-            synchronized (cursor) {
-                if (!readSlab(channel, slabId, cursor, open, sink)) {
+        SlabReadAhead(String channel, Iterator<Column<ByteBuffer>> manifestColumns) {
+            _channel = channel;
+            _manifestColumns = manifestColumns;
+        }
+
+        @Nullable
+        PendingSlab next() {
+            return !_pending.isEmpty() ? _pending.removeFirst() : readManifest();
+        }
+
+        /** Starts reading the events in the next slabs which haven't been read to the end recently. */
+        void prefetch(int maxSlabs) {
+            // Slabs already pending may not have been read ahead if the channel had no room for them at the time
+            int prefetched = 0;
+            for (PendingSlab slab : _pending) {
+                if (prefetched >= maxSlabs) {
+                    return;
+                }
+                if (slab.getPrefetched() == null) {
+                    if (slab.getCursor().get() == SlabCursor.END) {
+                        continue;
+                    }
+                    if (!startPrefetch(slab)) {
+                        return;
+                    }
+                }
+                prefetched++;
+            }
+            while (prefetched < maxSlabs) {
+                PendingSlab slab = readManifest();
+                if (slab == null) {
                     break;
                 }
+                _pending.addLast(slab);
+                if (slab.getCursor().get() == SlabCursor.END) {
+                    continue;
+                }
+                if (!startPrefetch(slab)) {
+                    break;
+                }
+                prefetched++;
             }
         }
+
+        /** Returns false if the slab can't be read ahead because the channel or the prefetch threads are busy. */
+        private boolean startPrefetch(PendingSlab slab) {
+            if (!acquirePrefetchSlab(_channel)) {
+                // Other readers already have as many of this channel's slabs read ahead as are allowed
+                return false;
+            }
+            int start = slab.getCursor().get();
+            try {
+                slab.setPrefetched(start, _prefetchExecutor.submit(() -> {
+                    long readAt = _ticker.read();
+                    return new PrefetchedColumns(readSlabColumns(slab.getSlabId(), start), readAt);
+                }));
+            } catch (RejectedExecutionException e) {
+                // All prefetch threads are busy, read the slab when it's needed instead
+                releasePrefetchSlab(_channel);
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Returns the prefetched events for a slab if they were read from at or before the slab's current cursor and
+         * recently enough to reflect deletes, or null if the slab must be read now.  Must be called while synchronized
+         * on the slab's cursor.
+         */
+        @Nullable
+        ColumnList<Integer> takePrefetched(PendingSlab slab) {
+            Future<PrefetchedColumns> future = slab.getPrefetched();
+            if (future == null) {
+                return null;
+            }
+            int start = slab.getCursor().get();
+            if (start == SlabCursor.END || slab.getPrefetchStart() > start) {
+                // Another reader finished the slab, or rewound the cursor after the prefetch started so the prefetch
+                // is missing events
+                discard(slab);
+                return null;
+            }
+            clearPrefetched(slab);
+            try {
+                PrefetchedColumns prefetched = future.get();
+                if (_ticker.read() - prefetched.getReadAt() >= _maxPrefetchAgeNanos) {
+                    // Events deleted since the read may no longer be claimed, read the slab again
+                    _prefetchWasteMeter.mark();
+                    return null;
+                }
+                _prefetchHitMeter.mark();
+                return prefetched.getColumns();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                // Let the slab be read again by the polling thread, which will surface the error if it persists
+                _prefetchWasteMeter.mark();
+                return null;
+            }
+        }
+
+        void discard(PendingSlab slab) {
+            Future<PrefetchedColumns> future = slab.getPrefetched();
+            if (future != null) {
+                future.cancel(false);
+                clearPrefetched(slab);
+                _prefetchWasteMeter.mark();
+            }
+        }
+
+        /** Discards all slabs which were read ahead but not used, for example because the sink stopped early. */
+        void discardAll() {
+            for (PendingSlab slab : _pending) {
+                discard(slab);
+            }
+            _pending.clear();
+        }
+
+        private void clearPrefetched(PendingSlab slab) {
+            slab.setPrefetched(0, null);
+            releasePrefetchSlab(_channel);
+        }
+
+        @Nullable
+        private PendingSlab readManifest() {
+            if (!_manifestColumns.hasNext()) {
+                return null;
+            }
+            Column<ByteBuffer> manifestColumn = _manifestColumns.next();
+            ByteBuffer slabId = manifestColumn.getName();
+            boolean open = manifestColumn.getBooleanValue();
+
+            ChannelSlab channelSlab = new ChannelSlab(_channel, slabId);
+            SlabCursor cursor = (open ? _openSlabCursors : _closedSlabCursors).getUnchecked(channelSlab);
+            return new PendingSlab(slabId, open, cursor);
+        }
+    }
+
+    /** Reserves one of the slabs a channel may have read ahead, returns false if all of them are in use. */
+    private boolean acquirePrefetchSlab(String channel) {
+        boolean[] acquired = new boolean[1];
+        _prefetchSlabsByChannel.compute(channel, (key, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= _maxPrefetchSlabsPerChannel) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    private void releasePrefetchSlab(String channel) {
+        _prefetchSlabsByChannel.computeIfPresent(channel, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    @VisibleForTesting
+    int getPrefetchSlabs(String channel) {
+        Integer count = _prefetchSlabsByChannel.get(channel);
+        return count != null ? count : 0;
+    }
+
+    /** A slab from the manifest along with its cursor and, if it was read ahead, its events. */
+    private static class PendingSlab {
+        private final ByteBuffer _slabId;
+        private final boolean _open;
+        private final SlabCursor _cursor;
+        private int _prefetchStart;
+        private Future<PrefetchedColumns> _prefetched;
+
+        PendingSlab(ByteBuffer slabId, boolean open, SlabCursor cursor) {
+            _slabId = slabId;
+            _open = open;
+            _cursor = cursor;
+        }
+
+        ByteBuffer getSlabId() {
+            return _slabId;
+        }
+
+        boolean isOpen() {
+            return _open;
+        }
+
+        SlabCursor getCursor() {
+            return _cursor;
+        }
+
+        int getPrefetchStart() {
+            return _prefetchStart;
+        }
+
+        @Nullable
+        Future<PrefetchedColumns> getPrefetched() {
+            return _prefetched;
+        }
+
+        void setPrefetched(int start, @Nullable Future<PrefetchedColumns> prefetched) {
+            _prefetchStart = start;
+            _prefetched = prefetched;
+        }
+    }
+
+    /** The events read ahead from a slab and the time, in ticker nanoseconds, the read started. */
+    private static class PrefetchedColumns {
+        private final ColumnList<Integer> _columns;
+        private final long _readAt;
+
+        PrefetchedColumns(ColumnList<Integer> columns, long readAt) {
+            _columns = columns;
+            _readAt = readAt;
+        }
+
+        ColumnList<Integer> getColumns() {
+            return _columns;
+        }
+
+        long getReadAt() {
+            return _readAt;
+        }
     }
 
     /**
@@ -387,6 +696,15 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
 
     /** Returns true to keep searching for more events, false to stop searching for events. */
     private boolean readSlab(String channel, ByteBuffer slabId, SlabCursor cursor, boolean open, EventSink sink) {
+        return readSlab(channel, slabId, cursor, open, sink, null);
+    }
+
+    /**
+     * Returns true to keep searching for more events, false to stop searching for events.  If the slab's events were
+     * read ahead they may start before the cursor, in which case the earlier events are skipped.
+     */
+    private boolean readSlab(String channel, ByteBuffer slabId, SlabCursor cursor, boolean open, EventSink sink,
+                             @Nullable ColumnList<Integer> prefetchedColumns) {
         int start = cursor.get();
         if (start == SlabCursor.END) {
             return true;
@@ -394,13 +712,7 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
 
         boolean recent = isRecent(slabId);
 
-        // Event add and delete write with local quorum, so read with local quorum to get a consistent view of things.
-        // Using a lower consistency level could result in (a) duplicate events because we miss deletes and (b)
-        // incorrectly closing or deleting slabs when slabs look empty if we miss adds.
-        ColumnList<Integer> eventColumns = execute(
-                _keyspace.prepareQuery(ColumnFamilies.SLAB, ConsistencyLevel.CL_LOCAL_QUORUM)
-                        .getKey(slabId)
-                        .withColumnRange(start, Constants.OPEN_SLAB_MARKER, false, Integer.MAX_VALUE));
+        ColumnList<Integer> eventColumns = prefetchedColumns != null ? prefetchedColumns : readSlabColumns(slabId, start);
 
         boolean searching = true;
         boolean empty = (start == 0);  // If we skipped events in the query we must assume the slab isn't empty.
@@ -408,6 +720,9 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
         int next = start;
         for (Column<Integer> eventColumn : eventColumns) {
             int eventIdx = eventColumn.getName();
+            if (eventIdx < start) {
+                continue;
+            }
 
             // Open slabs have a dummy entry at maxint that indicates that this slab is still open.
             if (eventIdx == Constants.OPEN_SLAB_MARKER) {
@@ -461,6 +776,16 @@ public class AstyanaxEventReaderDAO implements EventReaderDAO {
         return searching;
     }
 
+    private ColumnList<Integer> readSlabColumns(ByteBuffer slabId, int start) {
+        // Event add and delete write with local quorum, so read with local quorum to get a consistent view of things.
+        // Using a lower consistency level could result in (a) duplicate events because we miss deletes and (b)
+        // incorrectly closing or deleting slabs when slabs look empty if we miss adds.
+        return execute(
+                _keyspace.prepareQuery(ColumnFamilies.SLAB, ConsistencyLevel.CL_LOCAL_QUORUM)
+                        .getKey(slabId)
+                        .withColumnRange(start, Constants.OPEN_SLAB_MARKER, false, Integer.MAX_VALUE));
+    }
+
     /**
      * Use the age of the slabId as a heuristic to determine when we should ignore the lack of the "open slab marker".
      * <p>
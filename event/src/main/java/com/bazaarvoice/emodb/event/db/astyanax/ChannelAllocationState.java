@@ -1,17 +1,52 @@
 package com.bazaarvoice.emodb.event.db.astyanax;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.PeekingIterator;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.time.Clock;
+
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 
 public class ChannelAllocationState {
+    /** Write rates are averaged over roughly this period, so brief bursts don't swing slab sizes. */
+    private static final long RATE_AVERAGING_MILLIS = 60 * 1000;
+    /** Minimum time between write rate updates, so the rate isn't computed from tiny intervals. */
+    private static final long RATE_UPDATE_INTERVAL_MILLIS = 1000;
+
     private final Object _slabCreationLock = new Object();
+    private final SlabAllocatorConfiguration _configuration;
+    private final Histogram _slabFillPercent;
+    private final Clock _clock;
     private SlabRef _slab;
+    private int _slabCapacity;
     private int _slabConsumed;
     private long _slabExpiresAt;
     private int _slabBytesConsumed;
+    /** Exponentially weighted moving average of the number of events written per second. */
+    private double _writeRate;
+    private long _writeRateUpdatedAt;
+    private int _writesSinceRateUpdate;
+
+    public ChannelAllocationState() {
+        this(new SlabAllocatorConfiguration(), new Histogram(new UniformReservoir()));
+    }
+
+    public ChannelAllocationState(SlabAllocatorConfiguration configuration, Histogram slabFillPercent) {
+        this(configuration, slabFillPercent, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    ChannelAllocationState(SlabAllocatorConfiguration configuration, Histogram slabFillPercent, Clock clock) {
+        _configuration = checkNotNull(configuration, "configuration");
+        _slabFillPercent = checkNotNull(slabFillPercent, "slabFillPercent");
+        _clock = checkNotNull(clock, "clock");
+        _writeRateUpdatedAt = clock.millis();
+    }
 
     /** Per-channel lock on creating new shared slabs. */
     public Object getSlabCreationLock() {
@@ -19,7 +54,7 @@ public class ChannelAllocationState {
     }
 
     public synchronized void rotateIfNecessary() {
-        if (isAttached() && _slabExpiresAt <= System.currentTimeMillis()) {
+        if (isAttached() && _slabExpiresAt <= _clock.millis()) {
             detach().release();
         }
     }
@@ -34,15 +69,17 @@ public class ChannelAllocationState {
         return allocate(eventSizes);
     }
 
-    /** Attaches a new slab to the channel with the specified capacity. */
+    /** Attaches a new slab to the channel with a capacity and lifetime based on the recent write rate. */
     public synchronized void attach(SlabRef slab) {
         // Assume ownership of the caller's ref.  No need to call slab.addRef().
         checkState(!isAttached());
 
+        long now = _clock.millis();
         _slab = slab;
+        _slabCapacity = getSlabCapacity(now);
         _slabConsumed = 0;
         _slabBytesConsumed = 0;
-        _slabExpiresAt = System.currentTimeMillis() + Constants.SLAB_ROTATE_TTL.toMillis();
+        _slabExpiresAt = now + getSlabLifetimeMillis(_slabCapacity, now);
     }
 
     /** Detaches a slab from the channel and returns it to the caller to dispose of. */
@@ -51,6 +88,8 @@ public class ChannelAllocationState {
             return null;
         }
 
+        _slabFillPercent.update(_slabConsumed * 100L / _slabCapacity);
+
         // Pass ownership of the slab ref to the caller.  No need to call slab.release().
         SlabRef slab = _slab;
         _slab = null;
@@ -65,9 +104,9 @@ public class ChannelAllocationState {
             return null;
         }
 
-        int remaining = Constants.MAX_SLAB_SIZE - _slabConsumed;
+        int remaining = _slabCapacity - _slabConsumed;
 
-        Pair<Integer, Integer> countAndBytesConsumed = DefaultSlabAllocator.defaultAllocationCount(_slabConsumed, _slabBytesConsumed, eventSizes);
+        Pair<Integer, Integer> countAndBytesConsumed = DefaultSlabAllocator.defaultAllocationCount(_slabConsumed, _slabBytesConsumed, _slabCapacity, eventSizes);
 
         int offsetForNewAllocation = _slabConsumed;
 
@@ -83,6 +122,8 @@ public class ChannelAllocationState {
 
         }
 
+        recordWrites(countAndBytesConsumed.getLeft());
+
         if (countAndBytesConsumed.getLeft() < remaining) {
 
             // All events fit in current slab, leave it attached
@@ -95,4 +136,42 @@ public class ChannelAllocationState {
 
         }
     }
+
+    /** Records events written to the channel, including events written to private slabs, toward the write rate. */
+    public synchronized void recordWrites(int count) {
+        _writesSinceRateUpdate += count;
+        getWriteRate(_clock.millis());
+    }
+
+    /** Returns the average number of events written to the channel per second. */
+    public synchronized double getWriteRate() {
+        return getWriteRate(_clock.millis());
+    }
+
+    private double getWriteRate(long now) {
+        long elapsed = now - _writeRateUpdatedAt;
+        if (elapsed >= RATE_UPDATE_INTERVAL_MILLIS) {
+            // Idle periods are folded in when the rate is next read, so a channel which goes quiet decays toward zero
+            double intervalRate = _writesSinceRateUpdate * 1000.0 / elapsed;
+            double alpha = 1 - Math.exp(-(double) elapsed / RATE_AVERAGING_MILLIS);
+            _writeRate += alpha * (intervalRate - _writeRate);
+            _writeRateUpdatedAt = now;
+            _writesSinceRateUpdate = 0;
+        }
+        return _writeRate;
+    }
+
+    /** Returns the number of events which the next slab should hold so that it fills in about the target time. */
+    private int getSlabCapacity(long now) {
+        double target = getWriteRate(now) * _configuration.getTargetFillTime().toMillis() / 1000;
+        return (int) Math.max(_configuration.getMinSlabSize(), Math.min(_configuration.getMaxSlabSize(), Math.round(target)));
+    }
+
+    /** Returns how long the next slab may stay open, twice the time it's expected to take to fill. */
+    private long getSlabLifetimeMillis(int capacity, long now) {
+        long maxLifetime = Constants.SLAB_ROTATE_TTL.toMillis();
+        double writeRate = getWriteRate(now);
+        long lifetime = writeRate > 0 ? (long) Math.min(maxLifetime, 2 * capacity * 1000 / writeRate) : maxLifetime;
+        return Math.min(maxLifetime, Math.max(_configuration.getMinOpenSlabLifetime().toMillis(), lifetime));
+    }
 }
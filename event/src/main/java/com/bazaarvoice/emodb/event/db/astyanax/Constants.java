@@ -7,6 +7,9 @@ interface Constants {
     /** Maximum number of events that should be stored in a single slab.  Must be <= 65536. */
     static final int MAX_SLAB_SIZE = 1000;
 
+    /** Upper bound on the configurable slab size for channels with high write rates.  Must be <= 65536. */
+    static final int MAX_SLAB_SIZE_LIMIT = 10000;
+
     /** Maximum number of bytes that should be in a slab */
     static final int BYTES_PER_MEGABYTE = 1024 * 1024;
     static final int MAX_SLAB_SIZE_IN_MEGABYTES = 10;
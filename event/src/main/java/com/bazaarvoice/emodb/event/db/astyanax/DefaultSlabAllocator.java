@@ -3,8 +3,10 @@ package com.bazaarvoice.emodb.event.db.astyanax;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.event.core.MetricsGroupName;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
@@ -31,11 +33,25 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class DefaultSlabAllocator implements SlabAllocator {
     private final ManifestPersister _persister;
     private final LoadingCache<String, ChannelAllocationState> _channelStateCache;
+    private final SlabAllocatorConfiguration _configuration;
     private final Meter _inactiveSlabMeter;
+    private final Histogram _slabFillPercent;
+
+    @VisibleForTesting
+    DefaultSlabAllocator(LifeCycleRegistry lifeCycle, ManifestPersister persister, String metricsGroup, MetricRegistry metricRegistry) {
+        this(lifeCycle, persister, metricsGroup, metricRegistry, new SlabAllocatorConfiguration());
+    }
 
     @Inject
-    public DefaultSlabAllocator(LifeCycleRegistry lifeCycle, ManifestPersister persister, @MetricsGroupName String metricsGroup, MetricRegistry metricRegistry) {
+    public DefaultSlabAllocator(LifeCycleRegistry lifeCycle, ManifestPersister persister, @MetricsGroupName String metricsGroup,
+                                MetricRegistry metricRegistry, SlabAllocatorConfiguration configuration) {
+        checkArgument(configuration.getMinSlabSize() <= configuration.getMaxSlabSize(), "minSlabSize must be <= maxSlabSize");
+        checkArgument(configuration.getMaxSlabSize() <= Constants.MAX_SLAB_SIZE_LIMIT, "maxSlabSize must be <= %s", Constants.MAX_SLAB_SIZE_LIMIT);
+        checkArgument(!configuration.getTargetFillTime().isNegative(), "targetFillTime must be >=0");
         _persister = persister;
+        _configuration = configuration;
+        // Percent of each slab's capacity which was used by the time the slab was closed
+        _slabFillPercent = metricRegistry.histogram(MetricRegistry.name(metricsGroup, "DefaultSlabAllocator", "slab_fill_percent"));
         _channelStateCache = CacheBuilder.newBuilder()
                 // Close each slab after a period of inactivity well before the reader slab timeout.  We need to be
                 // careful about causing race conditions when closing slabs--if a slab is closed while there's any
@@ -52,7 +68,7 @@ public class DefaultSlabAllocator implements SlabAllocator {
                 .build(new CacheLoader<String, ChannelAllocationState>() {
                     @Override
                     public ChannelAllocationState load(String channel) throws Exception {
-                        return new ChannelAllocationState();
+                        return new ChannelAllocationState(_configuration, _slabFillPercent);
                     }
                 });
         // Cleanup the cache once a minute to ensure channels are closed soon after they become inactive so when
@@ -84,13 +100,18 @@ public class DefaultSlabAllocator implements SlabAllocator {
      *         right value is the numb er of bytes that will be used by this allocation
      */
     static Pair<Integer, Integer> defaultAllocationCount(int slabSlotsUsed, int slabBytesUsed, PeekingIterator<Integer> eventSizes) {
+        return defaultAllocationCount(slabSlotsUsed, slabBytesUsed, Constants.MAX_SLAB_SIZE, eventSizes);
+    }
+
+    /** Same as {@link #defaultAllocationCount(int, int, PeekingIterator)} for a slab with the specified number of slots. */
+    static Pair<Integer, Integer> defaultAllocationCount(int slabSlotsUsed, int slabBytesUsed, int slabSlotCount, PeekingIterator<Integer> eventSizes) {
         int slabTotalSlotCount = slabSlotsUsed;
         int allocationSlotCount = 0;
         int slabTotalBytesUsed = slabBytesUsed;
         int allocationBytes = 0;
         while (eventSizes.hasNext()) {
             checkArgument(eventSizes.peek() <= Constants.MAX_EVENT_SIZE_IN_BYTES, "Event size (" + eventSizes.peek() + ") is greater than the maximum allowed (" + Constants.MAX_EVENT_SIZE_IN_BYTES + ") event size");
-            if (slabTotalSlotCount + 1 <= Constants.MAX_SLAB_SIZE && slabTotalBytesUsed + eventSizes.peek() <= Constants.MAX_SLAB_SIZE_IN_BYTES) {
+            if (slabTotalSlotCount + 1 <= slabSlotCount && slabTotalBytesUsed + eventSizes.peek() <= Constants.MAX_SLAB_SIZE_IN_BYTES) {
                 slabTotalSlotCount++;
                 allocationSlotCount++;
                 int eventSize = eventSizes.next();
@@ -116,12 +137,14 @@ public class DefaultSlabAllocator implements SlabAllocator {
         // Scenarios:
         // - Slab is open and has space.  (Any open slab must have space.)
         //   - Synchronously allocate from remaining space and return.
-        // - Slab is closed and requester wants >= MAX_SLAB_SIZE events
+        // - Slab is closed and requester wants >= maxSlabSize events
         //   - Generate a private slab ID, persist it, return the entire slab.
-        // - Slab is closed and requester wants < MAX_SLAB_SIZE events
+        // - Slab is closed and requester wants < maxSlabSize events
         //   - Synchronously generate slab ID, persist it, allocate from remaining space and return.
+        // Shared slabs are sized by the channel state based on the channel's write rate.
 
-        if (desiredCount >= Constants.MAX_SLAB_SIZE) {
+        int maxSlabSize = _configuration.getMaxSlabSize();
+        if (desiredCount >= maxSlabSize) {
             // Special case for callers writing lots and lots of events.  They don't have to synchronize on the
             // SlabPersister I/O operation around creating slabs.
 
@@ -133,7 +156,10 @@ public class DefaultSlabAllocator implements SlabAllocator {
 
             // No existing slab.  Create a new slab just for the caller and not shared with anyone else.
             SlabRef slab = createSlab(channelName);
-            return new DefaultSlabAllocation(slab, 0, defaultAllocationCount(0, 0, eventSizes).getLeft());
+            int count = defaultAllocationCount(0, 0, maxSlabSize, eventSizes).getLeft();
+            channelState.recordWrites(count);
+            _slabFillPercent.update(count * 100L / maxSlabSize);
+            return new DefaultSlabAllocation(slab, 0, count);
 
         } else {
             // Regular case for callers writing a few events.  Allocate from an existing open slab if possible, and if
@@ -0,0 +1,75 @@
+package com.bazaarvoice.emodb.event.db.astyanax;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Configuration for the {@link DefaultSlabAllocator}, which sizes the slabs for each channel based on the rate at which
+ * events are written to it.  The allocator aims for slabs which fill in about "targetFillTime": hot channels get larger
+ * slabs, up to "maxSlabSize", so they produce fewer slabs and shorter manifests, while cold channels get smaller slabs,
+ * down to "minSlabSize", so their slabs are closed by filling up instead of sitting open and mostly empty.  A slab is
+ * rotated once it has been open for about twice as long as it was expected to take to fill, but never sooner than
+ * "minOpenSlabLifetime" and never later than the fixed slab rotation time of one hour.
+ * <p>
+ * The defaults size every slab at 1000 events and rotate it after an hour regardless of the write rate.
+ */
+public class SlabAllocatorConfiguration {
+
+    @Min(1)
+    @Max(Constants.MAX_SLAB_SIZE_LIMIT)
+    @JsonProperty("minSlabSize")
+    private int _minSlabSize = Constants.MAX_SLAB_SIZE;
+
+    @Min(1)
+    @Max(Constants.MAX_SLAB_SIZE_LIMIT)
+    @JsonProperty("maxSlabSize")
+    private int _maxSlabSize = Constants.MAX_SLAB_SIZE;
+
+    @NotNull
+    @JsonProperty("targetFillTime")
+    private Duration _targetFillTime = Duration.ofMinutes(1);
+
+    @NotNull
+    @JsonProperty("minOpenSlabLifetime")
+    private Duration _minOpenSlabLifetime = Constants.SLAB_ROTATE_TTL;
+
+    public int getMinSlabSize() {
+        return _minSlabSize;
+    }
+
+    public SlabAllocatorConfiguration setMinSlabSize(int minSlabSize) {
+        _minSlabSize = minSlabSize;
+        return this;
+    }
+
+    public int getMaxSlabSize() {
+        return _maxSlabSize;
+    }
+
+    public SlabAllocatorConfiguration setMaxSlabSize(int maxSlabSize) {
+        _maxSlabSize = maxSlabSize;
+        return this;
+    }
+
+    public Duration getTargetFillTime() {
+        return _targetFillTime;
+    }
+
+    public SlabAllocatorConfiguration setTargetFillTime(Duration targetFillTime) {
+        _targetFillTime = targetFillTime;
+        return this;
+    }
+
+    public Duration getMinOpenSlabLifetime() {
+        return _minOpenSlabLifetime;
+    }
+
+    public SlabAllocatorConfiguration setMinOpenSlabLifetime(Duration minOpenSlabLifetime) {
+        _minOpenSlabLifetime = minOpenSlabLifetime;
+        return this;
+    }
+}
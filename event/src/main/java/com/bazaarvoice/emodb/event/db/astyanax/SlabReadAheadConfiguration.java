@@ -0,0 +1,86 @@
+package com.bazaarvoice.emodb.event.db.astyanax;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Configuration for reading slabs ahead in {@link AstyanaxEventReaderDAO#readNewer}.  Once a read has used up one slab
+ * and still wants more events, each call reads up to "slabsPerRead" upcoming slabs in the background, and at most
+ * "maxSlabsPerChannel" slabs are read ahead for a channel across all concurrent calls.  The background reads share a
+ * pool of "threads" threads with room for "maxQueuedReads" waiting reads.  Slabs which can't be read ahead are read
+ * by the calling thread when they are reached.
+ * <p>
+ * Events read ahead are only returned if the read started within "maxAge".  Deleted events are only protected by a
+ * short-lived claim, {@link com.bazaarvoice.emodb.event.core.DefaultEventStore#DELETE_CLAIM_TTL}, so "maxAge" must be
+ * shorter than that claim or an event deleted after it was read ahead may be returned again.
+ */
+public class SlabReadAheadConfiguration {
+
+    @Min(0)
+    @JsonProperty("slabsPerRead")
+    private int _slabsPerRead = 2;
+
+    @Min(1)
+    @JsonProperty("maxSlabsPerChannel")
+    private int _maxSlabsPerChannel = 4;
+
+    @Min(1)
+    @JsonProperty("threads")
+    private int _threads = 8;
+
+    @Min(1)
+    @JsonProperty("maxQueuedReads")
+    private int _maxQueuedReads = 100;
+
+    @NotNull
+    @JsonProperty("maxAge")
+    private Duration _maxAge = Duration.ofMillis(10);
+
+    public int getSlabsPerRead() {
+        return _slabsPerRead;
+    }
+
+    public SlabReadAheadConfiguration setSlabsPerRead(int slabsPerRead) {
+        _slabsPerRead = slabsPerRead;
+        return this;
+    }
+
+    public int getMaxSlabsPerChannel() {
+        return _maxSlabsPerChannel;
+    }
+
+    public SlabReadAheadConfiguration setMaxSlabsPerChannel(int maxSlabsPerChannel) {
+        _maxSlabsPerChannel = maxSlabsPerChannel;
+        return this;
+    }
+
+    public int getThreads() {
+        return _threads;
+    }
+
+    public SlabReadAheadConfiguration setThreads(int threads) {
+        _threads = threads;
+        return this;
+    }
+
+    public int getMaxQueuedReads() {
+        return _maxQueuedReads;
+    }
+
+    public SlabReadAheadConfiguration setMaxQueuedReads(int maxQueuedReads) {
+        _maxQueuedReads = maxQueuedReads;
+        return this;
+    }
+
+    public Duration getMaxAge() {
+        return _maxAge;
+    }
+
+    public SlabReadAheadConfiguration setMaxAge(Duration maxAge) {
+        _maxAge = maxAge;
+        return this;
+    }
+}
@@ -29,6 +29,7 @@ import java.time.Duration;
 import java.util.Collection;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -45,10 +46,20 @@ public class DedupQueue extends AbstractIdleService {
     private static final Duration LAZY_FILL_DELAY = Duration.ofSeconds(1);
     private static final Duration SORTED_QUEUE_TIMEOUT = Duration.ofMillis(100);
     private static final ByteBufferOrdering ORDERING = ByteBufferOrdering.INSTANCE;
+    private static final Duration WRITE_CHANNEL_CLAIM_TTL = Duration.ofSeconds(30);
+
+    // When the write channel backlog reaches this size the filler moves events to the sorted queue in bulk,
+    // writing the sorted queue segments in parallel.  Each bulk load is bounded in both events and bytes
+    // since all its events are held in memory at once.
+    private static final int BULK_LOAD_THRESHOLD = 10 * Limits.MAX_POLL_LIMIT;
+    private static final int BULK_LOAD_MAX_EVENTS = 50 * Limits.MAX_POLL_LIMIT;
+    private static final long BULK_LOAD_MAX_BYTES = 32L * 1024 * 1024;
+    private static final Duration BULK_LOAD_CLAIM_TTL = Duration.ofMinutes(2);
 
     private final String _name;
     private final QueueDAO _queueDAO;
     private final ScheduledExecutorService _executor;
+    private final ExecutorService _bulkLoadExecutor;
     private final EventStore _eventStore;
     private final Supplier<Boolean> _dedupEnabled;
     private final String _readChannel;
@@ -59,7 +70,8 @@ public class DedupQueue extends AbstractIdleService {
 
     public DedupQueue(String name, String readChannel, String writeChannel,
                       QueueDAO queueDAO, EventStore eventStore, Supplier<Boolean> dedupEnabled,
-                      ScheduledExecutorService executor, SortedQueueFactory sortedQueueFactory, MetricRegistry metricRegistry) {
+                      ScheduledExecutorService executor, ExecutorService bulkLoadExecutor,
+                      SortedQueueFactory sortedQueueFactory, MetricRegistry metricRegistry) {
         _name = checkNotNull(name, "name");
         _readChannel = checkNotNull(readChannel, "readChannel");
         _writeChannel = checkNotNull(writeChannel, "writeChannel");
@@ -67,6 +79,7 @@ public class DedupQueue extends AbstractIdleService {
         _eventStore = checkNotNull(eventStore, "eventStore");
         _dedupEnabled = checkNotNull(dedupEnabled, "dedupEnabled");
         _executor = checkNotNull(executor, "executor");
+        _bulkLoadExecutor = checkNotNull(bulkLoadExecutor, "bulkLoadExecutor");
         _sortedQueueFactory = sortedQueueFactory;
         ServiceFailureListener.listenTo(this, metricRegistry);
     }
@@ -301,11 +314,29 @@ public class DedupQueue extends AbstractIdleService {
     }
 
     private Drained drainWriteChannelTo(Consumer consumer, int limit) {
+        return drainWriteChannelTo(consumer, limit, Long.MAX_VALUE, WRITE_CHANNEL_CLAIM_TTL);
+    }
+
+    /**
+     * Polls up to {@code limit} events, stopping early once {@code maxBytes} of event data has been polled, and
+     * passes them to the consumer in a single call.
+     */
+    private Drained drainWriteChannelTo(Consumer consumer, int limit, long maxBytes, Duration claimTtl) {
         // Because we're trying to move records from the write channel to the read channel, use "poll" with the
         // write channel even if we're trying to "peek" the dedup queue.
-        SimpleEventSink simpleSink = new SimpleEventSink(limit);
-        boolean more = _eventStore.poll(_writeChannel, Duration.ofSeconds(30), simpleSink);
-        List<EventData> events = simpleSink.getEvents();
+        List<EventData> events = Lists.newArrayList();
+        long bytes = 0;
+        boolean more, full;
+        do {
+            int batchSize = Math.min(limit - events.size(), Limits.MAX_POLL_LIMIT);
+            SimpleEventSink simpleSink = new SimpleEventSink(batchSize);
+            more = _eventStore.poll(_writeChannel, claimTtl, simpleSink);
+            for (EventData event : simpleSink.getEvents()) {
+                events.add(event);
+                bytes += event.getData().remaining();
+            }
+            full = simpleSink.getEvents().size() == batchSize;
+        } while (more && full && events.size() < limit && bytes < maxBytes);
         if (events.isEmpty()) {
             return Drained.NONE;
         }
@@ -389,6 +420,7 @@ public class DedupQueue extends AbstractIdleService {
         private volatile ScheduledFuture<?> _fillFuture;
         private volatile boolean _paused;
         private volatile int _consecutiveNoops;
+        private volatile boolean _backlogged;
 
         boolean isFilling() {
             return _fillFuture != null;
@@ -491,14 +523,28 @@ public class DedupQueue extends AbstractIdleService {
                 return null;
             }
 
-            Drained drained = drainWriteChannelTo(new Consumer() {
-                @Override
-                public void consume(List<ByteBuffer> records) {
-                    getQueue().addAll(records);
-                }
-            }, Limits.MAX_POLL_LIMIT);
+            Drained drained;
+            if (_backlogged && _eventStore.getSizeEstimate(_writeChannel, BULK_LOAD_THRESHOLD) >= BULK_LOAD_THRESHOLD) {
+                // The write channel has a large backlog.  Move a big batch at once, writing the sorted queue
+                // segments in parallel instead of adding a poll's worth of events at a time.
+                drained = drainWriteChannelTo(new Consumer() {
+                    @Override
+                    public void consume(List<ByteBuffer> records) {
+                        getQueue().bulkLoad(filterDuplicates(records, Sets.<ByteBuffer>newHashSet()), _bulkLoadExecutor);
+                    }
+                }, BULK_LOAD_MAX_EVENTS, BULK_LOAD_MAX_BYTES, BULK_LOAD_CLAIM_TTL);
+            } else {
+                drained = drainWriteChannelTo(new Consumer() {
+                    @Override
+                    public void consume(List<ByteBuffer> records) {
+                        getQueue().addAll(records);
+                    }
+                }, Limits.MAX_POLL_LIMIT);
+            }
 
             Duration nextFill;
+            // Only check the backlog size once the write channel has had more than a single poll's worth of events.
+            _backlogged = (drained == Drained.SOME);
             if (drained != Drained.NONE) {
                 // If there are more events to fetch, schedule another fill immediately.  Otherwise wait a while.
                 _consecutiveNoops = 0;
@@ -9,6 +9,7 @@ import com.bazaarvoice.emodb.event.api.EventSink;
 import com.bazaarvoice.emodb.event.api.EventStore;
 import com.bazaarvoice.emodb.event.api.ScanSink;
 import com.bazaarvoice.emodb.event.api.SimpleEventSink;
+import com.bazaarvoice.emodb.event.api.SizeEstimate;
 import com.bazaarvoice.emodb.event.core.DefaultEventStore;
 import com.bazaarvoice.emodb.event.core.Limits;
 import com.bazaarvoice.emodb.event.core.MetricsGroupName;
@@ -45,6 +46,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -110,6 +112,7 @@ public class DefaultDedupEventStore implements DedupEventStore, DedupQueueAdmin
     /** The amount of time to wait for services to start for slow operations like copy, purge. */
     private static final Duration SERVICE_SLOW_WAIT_DURATION = Duration.ofSeconds(3);
     private static final int COPY_BATCH_SIZE = 2000;
+    private static final int BULK_LOAD_THREADS = 8;
 
     private final EventStore _delegate;
     private final DedupEventStoreChannels _channels;
@@ -140,6 +143,12 @@ public class DefaultDedupEventStore implements DedupEventStore, DedupQueueAdmin
         final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
         lifeCycle.manage(new ExecutorServiceManager(executor, io.dropwizard.util.Duration.seconds(5), nameFormat));
 
+        // Thread pool for writing sorted queue segments in parallel when filling from a large write channel backlog.
+        String bulkLoadNameFormat = "DedupBulkLoad-" + name + "-%d";
+        final ExecutorService bulkLoadExecutor = Executors.newFixedThreadPool(BULK_LOAD_THREADS,
+                new ThreadFactoryBuilder().setNameFormat(bulkLoadNameFormat).build());
+        lifeCycle.manage(new ExecutorServiceManager(bulkLoadExecutor, io.dropwizard.util.Duration.seconds(5), bulkLoadNameFormat));
+
         // Start the queue owner cache that tracks which queues this server is allowed to manage.
         _ownerGroup = lifeCycle.manage(ownerGroupFactory.create(name + "-dedup", new OstrichOwnerFactory<DedupQueue>() {
             @Override
@@ -151,7 +160,7 @@ public class DefaultDedupEventStore implements DedupEventStore, DedupQueueAdmin
             public DedupQueue create(String queue) {
                 String readChannel = _channels.readChannel(queue);
                 String writeChannel = _channels.writeChannel(queue);
-                return new DedupQueue(queue, readChannel, writeChannel, queueDAO, delegate, dedupEnabled, executor, sortedQueueFactory, metricRegistry);
+                return new DedupQueue(queue, readChannel, writeChannel, queueDAO, delegate, dedupEnabled, executor, bulkLoadExecutor, sortedQueueFactory, metricRegistry);
             }
         }, Duration.ofHours(1)));
     }
@@ -254,12 +263,18 @@ public class DefaultDedupEventStore implements DedupEventStore, DedupQueueAdmin
 
     @Override
     public long getSizeEstimate(String queue, long limit) {
+        return estimateSize(queue, limit).getCount();
+    }
+
+    @Override
+    public SizeEstimate estimateSize(String queue, long limit) {
         checkNotNull(queue, "queue");
         checkLimit(limit, Long.MAX_VALUE);
 
-        return _delegate.getSizeEstimate(_channels.writeChannel(queue), limit) +
-                getQueueReadOnly(queue, SERVICE_FAST_WAIT_DURATION).sizeEstimate() +
-                _delegate.getSizeEstimate(_channels.readChannel(queue), limit);
+        // Events in the in-memory sorted queue are counted exactly
+        return _delegate.estimateSize(_channels.writeChannel(queue), limit)
+                .plus(new SizeEstimate(getQueueReadOnly(queue, SERVICE_FAST_WAIT_DURATION).sizeEstimate(), 0))
+                .plus(_delegate.estimateSize(_channels.readChannel(queue), limit));
     }
 
     @Override
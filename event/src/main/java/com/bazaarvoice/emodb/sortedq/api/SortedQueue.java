@@ -5,6 +5,7 @@ import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
 
 public interface SortedQueue {
     boolean isReadOnly();
@@ -18,6 +19,13 @@ public interface SortedQueue {
      */
     void addAll(Collection<ByteBuffer> records);
 
+    /**
+     * Adds a large batch of records to the queue.  Equivalent to {@link #addAll(Collection)}, except the records are
+     * split up by the segment they belong to and the segments are written in parallel using the specified executor.
+     * The caller controls memory usage by bounding the size of each batch.
+     */
+    void bulkLoad(Collection<ByteBuffer> records, ExecutorService executor);
+
     /**
      * Returns all records starting from the specified record, up to the specified limit.  Unlike the {@code drainTo}
      * method this always starts from the first record and does not wrap around.
@@ -36,6 +36,9 @@ import java.util.NavigableMap;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -178,16 +181,7 @@ public class PersistentSortedQueue implements SortedQueue {
             return;
         }
 
-        int bytesToAdd = sumLengths(records);
-
-        // Do some splitting.  For every byte that's written, allow moving 2 bytes as part of splitting.
-        // The idea is to spread the work of splitting across write requests so that splitting is done in
-        // small chunks that don't hold locks for an extended period of time.
-        _splitBudget.credit(bytesToAdd * 2);
-        // If we've accumulated enough budget to do some split work, go do it.
-        while (_splitBudget.debitIfAvailable(_splitWorkBytes)) {
-            splitSegments(_splitWorkBytes);
-        }
+        doSplitWork(sumLengths(records));
 
         // Splitting is done.  The rest below is the actual "addAll" implementation.
         _writeLock.lock();
@@ -214,17 +208,140 @@ public class PersistentSortedQueue implements SortedQueue {
             }
             segmentMods.commit();
 
-            // Prioritize splitting of segments being written to.
-            if (!_splitQueue.isEmpty()) {
-                // Pick one at random.  Odds are we'll pick the one that's written to most frequently.
-                ByteBuffer randomRecord = sortedRecords.get(RANDOM.nextInt(sortedRecords.size()));
-                _splitQueue.prioritize(valueOrNull(_segmentMap.floorEntry(randomRecord)));
+            prioritizeSplitting(sortedRecords);
+        } finally {
+            _writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void bulkLoad(Collection<ByteBuffer> records, ExecutorService executor) {
+        checkNotNull(records, "records");
+        checkNotNull(executor, "executor");
+        checkWritesAllowed();
+
+        if (records.isEmpty()) {
+            return;
+        }
+
+        doSplitWork(sumLengths(records));
+
+        _writeLock.lock();
+        try {
+            // If the dirty list is non-empty because of a previous exception, flush those changes to disk
+            // to ensure we're in a good state before proceeding.
+            new SegmentMods().commit();
+
+            // Sort the records and split them up by the segment each belongs to.
+            List<ByteBuffer> sortedRecords = ORDERING.sortedCopy(records);
+            Map<Segment, List<ByteBuffer>> recordsBySegment = Maps.newLinkedHashMap();
+            Segment created = null;
+            for (ByteBuffer record : sortedRecords) {
+                Segment seg = valueOrNull(_segmentMap.floorEntry(record));
+                if (seg == null) {
+                    if (created == null) {
+                        created = newSegment(null/*min*/);
+                    }
+                    seg = created;
+                }
+                List<ByteBuffer> segmentRecords = recordsBySegment.get(seg);
+                if (segmentRecords == null) {
+                    recordsBySegment.put(seg, segmentRecords = Lists.newArrayList());
+                }
+                segmentRecords.add(record);
             }
+
+            // Persist a newly created segment before writing records to it so its records are never orphaned.
+            if (created != null) {
+                SegmentMods createMods = new SegmentMods();
+                createMods.with(created).create();
+                createMods.commit();
+            }
+
+            // Write the records to each segment in parallel.  If a write fails, some records may be on disk without
+            // being reflected in the segment stats, but they're within the segment's range so they won't be lost.
+            int batchSize = scanBatchSize();
+            List<Future<?>> futures = Lists.newArrayList();
+            for (Map.Entry<Segment, List<ByteBuffer>> entry : recordsBySegment.entrySet()) {
+                final UUID dataId = entry.getKey().getDataId();
+                for (final List<ByteBuffer> batch : Lists.partition(entry.getValue(), batchSize)) {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            checkWritesAllowed();
+                            _dao.prepareUpdate(_name).writeRecords(dataId, batch).execute();
+                        }
+                    }));
+                }
+            }
+            awaitAll(futures);
+
+            // The records are on disk.  Update the segment stats, which may queue segments for splitting.
+            SegmentMods segmentMods = new SegmentMods();
+            for (Map.Entry<Segment, List<ByteBuffer>> entry : recordsBySegment.entrySet()) {
+                SegmentMod mod = segmentMods.with(entry.getKey());
+                for (ByteBuffer record : entry.getValue()) {
+                    mod.written(record);
+                }
+            }
+            segmentMods.commit();
+
+            prioritizeSplitting(sortedRecords);
         } finally {
             _writeLock.unlock();
         }
     }
 
+    /**
+     * Do some splitting.  For every byte that's written, allow moving 2 bytes as part of splitting.
+     * The idea is to spread the work of splitting across write requests so that splitting is done in
+     * small chunks that don't hold locks for an extended period of time.
+     */
+    private void doSplitWork(int bytesToAdd) {
+        _splitBudget.credit(bytesToAdd * 2);
+        // If we've accumulated enough budget to do some split work, go do it.
+        while (_splitBudget.debitIfAvailable(_splitWorkBytes)) {
+            splitSegments(_splitWorkBytes);
+        }
+    }
+
+    /** Prioritize splitting of segments being written to. */
+    private void prioritizeSplitting(List<ByteBuffer> sortedRecords) {
+        if (!_splitQueue.isEmpty()) {
+            // Pick one at random.  Odds are we'll pick the one that's written to most frequently.
+            ByteBuffer randomRecord = sortedRecords.get(RANDOM.nextInt(sortedRecords.size()));
+            _splitQueue.prioritize(valueOrNull(_segmentMap.floorEntry(randomRecord)));
+        }
+    }
+
+    /** Waits for all the futures to complete, then throws the first exception, if any. */
+    private void awaitAll(List<Future<?>> futures) {
+        Throwable failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Wait for the writes anyway so nothing is still writing once the lock is released
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw Throwables.propagate(failure);
+        }
+    }
+
     @Override
     public Iterator<ByteBuffer> scan(final @Nullable ByteBuffer fromInclusive, long limit) {
         checkArgument(limit > 0, "Limit must be >0");
@@ -740,6 +857,7 @@ public class PersistentSortedQueue implements SortedQueue {
         private ByteBuffer _min;
         private final List<ByteBuffer> _recordAdds = Lists.newArrayList();
         private final List<ByteBuffer> _recordDeletes = Lists.newArrayList();
+        private final List<ByteBuffer> _recordsWritten = Lists.newArrayList();
 
         SegmentMod(Segment segment) {
             _segment = segment;
@@ -790,6 +908,12 @@ public class PersistentSortedQueue implements SortedQueue {
             return this;
         }
 
+        /** Records a write which has already been persisted, so it's only reflected in the segment stats. */
+        SegmentMod written(ByteBuffer record) {
+            _recordsWritten.add(record);
+            return this;
+        }
+
         private boolean isDelete() {
             return _setMin && _min == MAX;
         }
@@ -833,6 +957,9 @@ public class PersistentSortedQueue implements SortedQueue {
                 for (ByteBuffer record : _recordAdds) {
                     seg.onRecordAdded(record);
                 }
+                for (ByteBuffer record : _recordsWritten) {
+                    seg.onRecordAdded(record);
+                }
             }
         }
 
@@ -872,6 +999,9 @@ public class PersistentSortedQueue implements SortedQueue {
                 if (!_recordDeletes.isEmpty()) {
                     buf.append(",#delete=").append(_recordDeletes.size());
                 }
+                if (!_recordsWritten.isEmpty()) {
+                    buf.append(",#written=").append(_recordsWritten.size());
+                }
             }
             buf.append("]");
             return buf.toString();
@@ -9,10 +9,16 @@ import com.bazaarvoice.emodb.common.dropwizard.task.TaskRegistry;
 import com.bazaarvoice.emodb.event.api.ChannelConfiguration;
 import com.bazaarvoice.emodb.event.api.DedupEventStoreChannels;
 import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.core.ClaimStoreConfiguration;
+import com.bazaarvoice.emodb.event.core.LongPollConfiguration;
+import com.bazaarvoice.emodb.event.core.SizeEstimateConfiguration;
 import com.bazaarvoice.emodb.event.core.DefaultClaimStore;
+import com.bazaarvoice.emodb.event.db.GroupCommitConfiguration;
 import com.bazaarvoice.emodb.event.db.astyanax.AstyanaxEventReaderDAO;
 import com.bazaarvoice.emodb.event.db.astyanax.AstyanaxManifestPersister;
 import com.bazaarvoice.emodb.event.db.astyanax.DefaultSlabAllocator;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocatorConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration;
 import com.bazaarvoice.ostrich.HostDiscovery;
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Supplier;
@@ -48,6 +54,12 @@ public class EventStoreModuleTest {
                 bind(CuratorFramework.class).annotatedWith(EventStoreZooKeeper.class).toInstance(mock(CuratorFramework.class));
                 bind(HostDiscovery.class).annotatedWith(EventStoreHostDiscovery.class).toInstance(mock(HostDiscovery.class));
                 bind(DedupEventStoreChannels.class).toInstance(DedupEventStoreChannels.isolated(":__dedupq_write", ":__dedupq_read"));
+                bind(ClaimStoreConfiguration.class).toInstance(new ClaimStoreConfiguration());
+                bind(GroupCommitConfiguration.class).toInstance(new GroupCommitConfiguration());
+                bind(SlabAllocatorConfiguration.class).toInstance(new SlabAllocatorConfiguration());
+                bind(SlabReadAheadConfiguration.class).toInstance(new SlabReadAheadConfiguration());
+                bind(SizeEstimateConfiguration.class).toInstance(new SizeEstimateConfiguration());
+                bind(LongPollConfiguration.class).toInstance(new LongPollConfiguration());
                 bind(new TypeLiteral<Supplier<Boolean>>() {}).annotatedWith(DedupEnabled.class).toInstance(Suppliers.ofInstance(true));
 
                 MetricRegistry metricRegistry = new MetricRegistry();
@@ -0,0 +1,124 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.bazaarvoice.emodb.event.api.SizeEstimate;
+import com.bazaarvoice.emodb.event.db.EventReaderDAO;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.collect.ImmutableMultimap;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class ChannelSizeTrackerTest {
+
+    private static final SizeEstimateConfiguration ENABLED = new SizeEstimateConfiguration()
+            .setEnabled(true)
+            .setReconcileInterval(Duration.ofMinutes(1))
+            .setIdleTimeout(Duration.ofMinutes(10));
+
+    @Test
+    public void testChangesAreTrackedWithoutCounting() {
+        EventReaderDAO readerDao = mock(EventReaderDAO.class);
+        when(readerDao.count("channel", 1000)).thenReturn(100L);
+        ChannelSizeTracker tracker = new ChannelSizeTracker(readerDao, ENABLED, new Histogram(new UniformReservoir()), mock(Clock.class));
+
+        assertEquals(tracker.getSizeEstimate("channel", 1000).getCount(), 100);
+
+        tracker.recordAdds("channel", 5);
+        tracker.recordAdds(ImmutableMultimap.of("channel", ByteBuffer.allocate(1), "other", ByteBuffer.allocate(1)));
+        tracker.recordDeletes("channel", 2);
+        assertEquals(tracker.getSizeEstimate("channel", 1000).getCount(), 104);
+        assertEquals(tracker.getSizeEstimate("channel", 10).getCount(), 104);
+
+        tracker.recordPurge("channel");
+        assertEquals(tracker.getSizeEstimate("channel", 1000).getCount(), 0);
+
+        verify(readerDao).count("channel", 1000);
+        verifyNoMoreInteractions(readerDao);
+    }
+
+    @Test
+    public void testReconcileReportsError() {
+        EventReaderDAO readerDao = mock(EventReaderDAO.class);
+        when(readerDao.count("channel", 1000)).thenReturn(100L, 110L);
+        Clock clock = mock(Clock.class);
+        Histogram reconcileError = new Histogram(new UniformReservoir());
+        ChannelSizeTracker tracker = new ChannelSizeTracker(readerDao, ENABLED, reconcileError, clock);
+
+        when(clock.millis()).thenReturn(0L);
+        tracker.getSizeEstimate("channel", 1000);
+        tracker.recordAdds("channel", 3);
+
+        // Nothing is due to be reconciled until the reconcile interval has passed
+        tracker.reconcile();
+        verify(readerDao, times(1)).count("channel", 1000);
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(2).toMillis());
+        tracker.reconcile();
+
+        SizeEstimate estimate = tracker.getSizeEstimate("channel", 1000);
+        assertEquals(estimate.getCount(), 110);
+        assertEquals(estimate.getErrorBound(), 7);
+        assertEquals(reconcileError.getSnapshot().getMax(), 7);
+        verify(readerDao, times(2)).count("channel", 1000);
+    }
+
+    @Test
+    public void testLargerLimitIsCountedAgain() {
+        EventReaderDAO readerDao = mock(EventReaderDAO.class);
+        when(readerDao.count("channel", 10)).thenReturn(1000L);
+        when(readerDao.count("channel", 5000)).thenReturn(1234L);
+        ChannelSizeTracker tracker = new ChannelSizeTracker(readerDao, ENABLED, new Histogram(new UniformReservoir()), mock(Clock.class));
+
+        assertEquals(tracker.getSizeEstimate("channel", 10).getCount(), 1000);
+        // The first count was estimated beyond its limit, so a caller wanting more precision causes a recount
+        assertEquals(tracker.getSizeEstimate("channel", 5000).getCount(), 1234);
+        // A count under its limit is exact, so it answers any limit
+        assertEquals(tracker.getSizeEstimate("channel", 10000).getCount(), 1234);
+
+        verify(readerDao).count("channel", 10);
+        verify(readerDao).count("channel", 5000);
+        verifyNoMoreInteractions(readerDao);
+    }
+
+    @Test
+    public void testIdleChannelsAreForgotten() {
+        EventReaderDAO readerDao = mock(EventReaderDAO.class);
+        when(readerDao.count("channel", 1000)).thenReturn(100L);
+        Clock clock = mock(Clock.class);
+        ChannelSizeTracker tracker = new ChannelSizeTracker(readerDao, ENABLED, new Histogram(new UniformReservoir()), clock);
+
+        when(clock.millis()).thenReturn(0L);
+        tracker.getSizeEstimate("channel", 1000);
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(11).toMillis());
+        tracker.reconcile();
+        verify(readerDao, times(1)).count("channel", 1000);
+
+        // No longer tracked, so the next request counts the channel again
+        tracker.getSizeEstimate("channel", 1000);
+        verify(readerDao, times(2)).count("channel", 1000);
+    }
+
+    @Test
+    public void testDisabledAlwaysCounts() {
+        EventReaderDAO readerDao = mock(EventReaderDAO.class);
+        when(readerDao.count("channel", 1000)).thenReturn(100L);
+        ChannelSizeTracker tracker = new ChannelSizeTracker(readerDao);
+
+        tracker.getSizeEstimate("channel", 1000);
+        tracker.recordAdds("channel", 5);
+        assertEquals(tracker.getSizeEstimate("channel", 1000).getCount(), 100);
+
+        verify(readerDao, times(2)).count("channel", 1000);
+    }
+}
@@ -0,0 +1,132 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.codahale.metrics.MetricRegistry;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ChannelWatcherTest {
+
+    @Test
+    public void testChangeBeforeAwaitIsNotMissed() throws Exception {
+        ChannelWatcher watcher = new ChannelWatcher();
+        try (ChannelWatcher.Watch watch = watcher.watch("channel")) {
+            watcher.notifyChanged("other");
+            assertFalse(watch.checkChanged());
+
+            watcher.notifyChanged("channel");
+            assertTrue(watch.await(0, TimeUnit.MILLISECONDS));
+            // The change was consumed by the previous call
+            assertFalse(watch.await(10, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Test
+    public void testAwaitIsWokenByChange() throws Exception {
+        final ChannelWatcher watcher = new ChannelWatcher();
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try (ChannelWatcher.Watch watch = watcher.watch("channel")) {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    watcher.notifyChanged("channel");
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+
+            long start = System.currentTimeMillis();
+            assertTrue(watch.await(1, TimeUnit.MINUTES));
+            assertTrue(System.currentTimeMillis() - start < TimeUnit.SECONDS.toMillis(30));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCallbacksAndListeners() {
+        ChannelWatcher watcher = new ChannelWatcher();
+        final AtomicInteger listened = new AtomicInteger();
+        final AtomicInteger changed = new AtomicInteger();
+        watcher.addListener(new ChannelWatcher.Listener() {
+            @Override
+            public void channelChanged(String channel) {
+                listened.incrementAndGet();
+            }
+        });
+
+        ChannelWatcher.Watch watch = watcher.watch("channel", new Runnable() {
+            @Override
+            public void run() {
+                changed.incrementAndGet();
+            }
+        });
+        watcher.notifyChanged("channel");
+        watch.close();
+        // Closed watches aren't woken, but listeners are still told about every change
+        watcher.notifyChanged("channel");
+
+        assertEquals(changed.get(), 1);
+        assertEquals(listened.get(), 2);
+    }
+
+    @Test
+    public void testEmptyPollsSaved() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        ChannelWatcher watcher = new ChannelWatcher(null, new LongPollConfiguration(), "bv.event", metricRegistry, clock);
+
+        ChannelWatcher.Watch watch = watcher.watch("channel");
+        watch.recordPoll();
+        watch.close();
+        // A watch which polled as often as a caller without one would have doesn't save anything
+        assertEquals(metricRegistry.meter("bv.event.ChannelWatcher.empty_polls_saved").getCount(), 0);
+
+        // A caller without a watch would have polled at 0s, 2s, 4s, 6s, 8s and 10s, but the watch only polled twice
+        watch = watcher.watch("channel");
+        watch.recordPoll();
+        when(clock.millis()).thenReturn(TimeUnit.SECONDS.toMillis(10));
+        watch.recordPoll();
+        watch.close();
+        assertEquals(metricRegistry.meter("bv.event.ChannelWatcher.empty_polls_saved").getCount(), 4);
+    }
+
+    @Test
+    public void testChangeBeforeCallbackIsNotMissed() {
+        ChannelWatcher watcher = new ChannelWatcher();
+        final AtomicInteger changed = new AtomicInteger();
+        try (ChannelWatcher.Watch watch = watcher.watch("channel")) {
+            // A poller watches before its first poll, then sets the callback once it's ready to be woken
+            watcher.notifyChanged("channel");
+            watch.setOnChange(new Runnable() {
+                @Override
+                public void run() {
+                    changed.incrementAndGet();
+                }
+            });
+            assertTrue(watch.checkChanged());
+            assertEquals(changed.get(), 0);
+
+            watcher.notifyChanged("channel");
+            assertEquals(changed.get(), 1);
+        }
+    }
+
+    @Test
+    public void testNodeNames() {
+        for (String channel : new String[] {"__dedupq_write:polloi:provision", "..", "a/b", "x%2Ey", "sub*"}) {
+            String nodeName = ChannelWatcher.toNodeName(channel);
+            assertFalse(nodeName.contains("/") || nodeName.contains("."), nodeName);
+            assertEquals(ChannelWatcher.fromNodeName(nodeName), channel);
+        }
+    }
+}
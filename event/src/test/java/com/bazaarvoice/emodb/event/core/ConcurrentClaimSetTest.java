@@ -0,0 +1,100 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.google.common.collect.Lists;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/** Runs the {@link DefaultClaimSetTest} tests against {@link ConcurrentClaimSet}, plus some concurrency tests. */
+public class ConcurrentClaimSetTest extends DefaultClaimSetTest {
+
+    @Override
+    protected ClaimSet newClaimSet() {
+        return new ConcurrentClaimSet(16);
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        final ClaimSet claimSet = newClaimSet();
+        final int numThreads = 8;
+        final int numClaims = 10000;
+        final CyclicBarrier barrier = new CyclicBarrier(numThreads);
+
+        // Every thread tries to acquire every claim.  Each claim must be acquired by exactly one thread.
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Integer>> futures = Lists.newArrayList();
+            for (int t = 0; t < numThreads; t++) {
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        barrier.await();
+                        int acquired = 0;
+                        for (int i = 0; i < numClaims; i++) {
+                            if (claimSet.acquire(newClaim(i), Duration.ofHours(1))) {
+                                acquired++;
+                            }
+                        }
+                        return acquired;
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+            assertEquals(total, numClaims);
+            assertEquals(claimSet.size(), numClaims);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        claimSet.pump();
+    }
+
+    @Test
+    public void testRenewAllAcrossStripes() {
+        ClaimSet claimSet = newClaimSet();
+        List<byte[]> claims = Lists.newArrayList();
+        for (int i = 0; i < 100; i++) {
+            claims.add(newClaim(i));
+            assertTrue(claimSet.acquire(newClaim(i), Duration.ofHours(1)));
+        }
+
+        // Extending with a shorter ttl leaves every claim in place
+        claimSet.renewAll(claims, Duration.ofMinutes(1), true);
+        assertEquals(claimSet.size(), 100);
+
+        // Releasing every claim empties every stripe
+        claimSet.renewAll(claims, Duration.ZERO, false);
+        assertEquals(claimSet.size(), 0);
+        for (byte[] claim : claims) {
+            assertFalse(claimSet.isClaimed(claim));
+        }
+
+        claimSet.pump();
+    }
+
+    @Test
+    public void testClear() {
+        ClaimSet claimSet = newClaimSet();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(claimSet.acquire(newClaim(i), Duration.ofHours(1)));
+        }
+        claimSet.clear();
+        assertEquals(claimSet.size(), 0);
+        assertTrue(claimSet.acquire(newClaim(0), Duration.ofHours(1)));
+
+        claimSet.pump();
+    }
+}
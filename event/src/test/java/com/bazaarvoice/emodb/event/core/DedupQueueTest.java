@@ -20,6 +20,7 @@ import org.testng.annotations.Test;
 
 import java.time.Duration;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static org.mockito.Matchers.eq;
@@ -35,7 +36,8 @@ public class DedupQueueTest {
         EventStore eventStore = new DefaultEventStore(readerDao, mock(EventWriterDAO.class), new AstyanaxEventIdSerializer(), new MockClaimStore());
 
         DedupQueue q = new DedupQueue("test-queue", "read", "write",
-                mock(QueueDAO.class), eventStore, Suppliers.ofInstance(true), mock(ScheduledExecutorService.class), getPersistentSortedQueueFactory(),
+                mock(QueueDAO.class), eventStore, Suppliers.ofInstance(true), mock(ScheduledExecutorService.class), mock(ExecutorService.class),
+                getPersistentSortedQueueFactory(),
                 mock(MetricRegistry.class));
         q.startAndWait();
 
@@ -58,7 +60,8 @@ public class DedupQueueTest {
         EventStore eventStore = new DefaultEventStore(readerDao, mock(EventWriterDAO.class), new AstyanaxEventIdSerializer(), new MockClaimStore());
 
         DedupQueue q = new DedupQueue("test-queue", "read", "write",
-                mock(QueueDAO.class), eventStore, Suppliers.ofInstance(true), mock(ScheduledExecutorService.class), getPersistentSortedQueueFactory(),
+                mock(QueueDAO.class), eventStore, Suppliers.ofInstance(true), mock(ScheduledExecutorService.class), mock(ExecutorService.class),
+                getPersistentSortedQueueFactory(),
                 mock(MetricRegistry.class));
         q.startAndWait();
 
@@ -0,0 +1,55 @@
+package com.bazaarvoice.emodb.event.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.SimpleLifeCycleRegistry;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class DefaultClaimStoreTest {
+
+    @Test
+    public void testClaimSetTypeByChannelPrefix() {
+        ClaimStoreConfiguration configuration = new ClaimStoreConfiguration()
+                .setType(ClaimStoreConfiguration.ClaimSetType.concurrent)
+                .setChannelTypes(ImmutableMap.of(
+                        "big", ClaimStoreConfiguration.ClaimSetType.offHeap,
+                        "bigger", ClaimStoreConfiguration.ClaimSetType.standard));
+        DefaultClaimStore claimStore = new DefaultClaimStore(new SimpleLifeCycleRegistry(), "bv.event", new MetricRegistry(), configuration);
+
+        assertTrue(claimStore.newClaimSet("subscription") instanceof ConcurrentClaimSet);
+        assertTrue(claimStore.newClaimSet("big-subscription") instanceof OffHeapClaimSet);
+        assertTrue(claimStore.newClaimSet("bigger-subscription") instanceof DefaultClaimSet);
+    }
+
+    @Test
+    public void testOffHeapMemoryGauge() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        DefaultClaimStore claimStore = new DefaultClaimStore(new SimpleLifeCycleRegistry(), "bv.event", metricRegistry,
+                new ClaimStoreConfiguration().setChannelTypes(ImmutableMap.of("big", ClaimStoreConfiguration.ClaimSetType.offHeap)));
+
+        Long expected = claimStore.withClaimSet("big-subscription", new Function<ClaimSet, Long>() {
+            @Override
+            public Long apply(ClaimSet claimSet) {
+                claimSet.acquire(new byte[] {1}, Duration.ofHours(1));
+                return ((OffHeapClaimSet) claimSet).getMemoryUsage();
+            }
+        });
+        claimStore.withClaimSet("subscription", new Function<ClaimSet, Void>() {
+            @Override
+            public Void apply(ClaimSet claimSet) {
+                claimSet.acquire(new byte[] {1}, Duration.ofHours(1));
+                return null;
+            }
+        });
+
+        assertTrue(expected > 0);
+        assertEquals(metricRegistry.getGauges().get("bv.event.DefaultClaimStore.off_heap_bytes").getValue(), expected);
+        assertEquals(claimStore.snapshotClaimCounts(), ImmutableMap.of("big-subscription", 1L, "subscription", 1L));
+    }
+}
@@ -1,12 +1,18 @@
 package com.bazaarvoice.emodb.event.core;
 
 import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.api.SizeEstimate;
 import com.bazaarvoice.emodb.event.db.EventIdSerializer;
 import com.bazaarvoice.emodb.event.db.EventReaderDAO;
 import com.bazaarvoice.emodb.event.db.EventSink;
 import com.bazaarvoice.emodb.event.db.EventWriterDAO;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
+import com.google.common.collect.ImmutableList;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
+import java.time.Clock;
 import java.time.Duration;
 
 import static org.mockito.Matchers.any;
@@ -16,6 +22,8 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
 
 public class DefaultEventStoreTest {
 
@@ -56,4 +64,29 @@ public class DefaultEventStoreTest {
 
         verify(eventReaderDAO, times(2)).readNewer(eq("channelA"), any(EventSink.class));
     }
+
+    @Test
+    public void testSizeEstimateIncludesErrorBound() {
+        EventReaderDAO eventReaderDAO = mock(EventReaderDAO.class);
+        when(eventReaderDAO.count("channelA", 1000)).thenReturn(100L, 110L);
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        ChannelSizeTracker sizeTracker = new ChannelSizeTracker(eventReaderDAO,
+                new SizeEstimateConfiguration().setEnabled(true).setReconcileInterval(Duration.ofMinutes(1)),
+                new Histogram(new UniformReservoir()), clock);
+
+        EventStore eventStore = new DefaultEventStore(eventReaderDAO, mock(EventWriterDAO.class),
+                mock(EventIdSerializer.class), new MockClaimStore(), sizeTracker, new ChannelWatcher());
+
+        assertEquals(eventStore.estimateSize("channelA", 1000), new SizeEstimate(100, 0));
+
+        eventStore.addAll("channelA", ImmutableList.of(ByteBuffer.allocate(1), ByteBuffer.allocate(1), ByteBuffer.allocate(1)));
+        assertEquals(eventStore.estimateSize("channelA", 1000), new SizeEstimate(103, 0));
+
+        // Another server added events, so the next recount finds more events than were tracked here
+        when(clock.millis()).thenReturn(Duration.ofMinutes(2).toMillis());
+        sizeTracker.reconcile();
+        assertEquals(eventStore.estimateSize("channelA", 1000), new SizeEstimate(110, 7));
+        assertEquals(eventStore.getSizeEstimate("channelA", 1000), 110);
+    }
 }
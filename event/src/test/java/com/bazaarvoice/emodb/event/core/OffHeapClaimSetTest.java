@@ -0,0 +1,120 @@
+package com.bazaarvoice.emodb.event.core;
+
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/** Runs the {@link DefaultClaimSetTest} tests against {@link OffHeapClaimSet}, plus tests of its hash table. */
+public class OffHeapClaimSetTest extends DefaultClaimSetTest {
+
+    @Override
+    protected ClaimSet newClaimSet() {
+        return new OffHeapClaimSet();
+    }
+
+    @Test
+    public void testGrowAndShrink() {
+        OffHeapClaimSet claimSet = new OffHeapClaimSet();
+        assertTrue(claimSet.acquire(newEventId(0), Duration.ofHours(1)));
+        long initialMemory = claimSet.getMemoryUsage();
+
+        // Use event-sized claim IDs
+        for (int i = 1; i < 10000; i++) {
+            assertTrue(claimSet.acquire(newEventId(i), Duration.ofHours(1)));
+        }
+        assertEquals(claimSet.size(), 10000);
+        assertTrue(claimSet.getMemoryUsage() > initialMemory);
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(claimSet.isClaimed(newEventId(i)));
+        }
+        assertFalse(claimSet.isClaimed(newEventId(10000)));
+
+        // Release all but a few claims, the table should shrink when pumped
+        for (int i = 10; i < 10000; i++) {
+            claimSet.renew(newEventId(i), Duration.ZERO, false);
+        }
+        claimSet.pump();
+        assertLinked(claimSet);
+        assertEquals(claimSet.size(), 10);
+        assertEquals(claimSet.getMemoryUsage(), initialMemory);
+        for (int i = 0; i < 10000; i++) {
+            assertEquals(claimSet.isClaimed(newEventId(i)), i < 10);
+        }
+    }
+
+    @Test
+    public void testChurn() {
+        // Repeatedly claiming and releasing leaves tombstones behind which must be reclaimed
+        OffHeapClaimSet claimSet = new OffHeapClaimSet();
+        for (int i = 0; i < 100000; i++) {
+            assertTrue(claimSet.acquire(newEventId(i), Duration.ofHours(1)));
+            if (i >= 20) {
+                claimSet.renew(newEventId(i - 20), Duration.ZERO, false);
+            }
+        }
+        assertEquals(claimSet.size(), 20);
+        for (int i = 100000 - 20; i < 100000; i++) {
+            assertTrue(claimSet.isClaimed(newEventId(i)));
+        }
+        assertLinked(claimSet);
+
+        // Renewing moves claims between expiration buckets
+        for (int i = 100000 - 20; i < 100000; i += 2) {
+            claimSet.renew(newEventId(i), Duration.ofHours(2), false);
+        }
+        claimSet.pump();
+        assertLinked(claimSet);
+        assertEquals(claimSet.size(), 20);
+    }
+
+    /** Every occupied slot must be linked into the expiration ring exactly once. */
+    private void assertLinked(OffHeapClaimSet claimSet) {
+        assertEquals(claimSet.getLinkedSlotCount(), claimSet.getOccupiedSlotCount());
+    }
+
+    @Test
+    public void testMemoryAllocatedOnFirstClaim() {
+        OffHeapClaimSet claimSet = new OffHeapClaimSet();
+        assertEquals(claimSet.getMemoryUsage(), 0);
+        assertFalse(claimSet.isClaimed(newEventId(0)));
+        assertEquals(claimSet.size(), 0);
+        claimSet.pump();
+        assertEquals(claimSet.getMemoryUsage(), 0);
+
+        assertTrue(claimSet.acquire(newEventId(0), Duration.ofHours(1)));
+        assertTrue(claimSet.getMemoryUsage() > 0);
+
+        claimSet.clear();
+        assertEquals(claimSet.getMemoryUsage(), 0);
+        assertFalse(claimSet.isClaimed(newEventId(0)));
+        assertTrue(claimSet.acquire(newEventId(0), Duration.ofHours(1)));
+        assertTrue(claimSet.isClaimed(newEventId(0)));
+    }
+
+    @Test(expectedExceptions = ClosedClaimSetException.class)
+    public void testClosedClaimSet() {
+        OffHeapClaimSet claimSet = new OffHeapClaimSet();
+        assertTrue(claimSet.acquire(newEventId(0), Duration.ofHours(1)));
+
+        claimSet.close();
+        assertEquals(claimSet.getMemoryUsage(), 0);
+        assertEquals(claimSet.size(), 0);
+        assertFalse(claimSet.isClaimed(newEventId(0)));
+        claimSet.acquire(newEventId(0), Duration.ofHours(1));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testClaimIdTooLong() {
+        new OffHeapClaimSet().acquire(new byte[OffHeapClaimSet.MAX_CLAIM_ID_LENGTH + 1], Duration.ofHours(1));
+    }
+
+    /** Event IDs are a 16 byte slab ID, 2 byte event index and 2 byte checksum. */
+    private byte[] newEventId(int i) {
+        return ByteBuffer.allocate(20).putLong(0).putLong(i / 1000).putShort((short) (i % 1000)).putShort((short) i).array();
+    }
+}
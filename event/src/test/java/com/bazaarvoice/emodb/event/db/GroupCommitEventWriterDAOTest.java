@@ -0,0 +1,145 @@
+package com.bazaarvoice.emodb.event.db;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.fail;
+
+public class GroupCommitEventWriterDAOTest {
+
+    @Test
+    public void testConcurrentWritesAreCombined() throws Exception {
+        RecordingEventWriterDAO delegate = new RecordingEventWriterDAO(null);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        // A long linger means the batch is only written early once it fills up
+        GroupCommitEventWriterDAO writerDao = new GroupCommitEventWriterDAO(delegate,
+                new GroupCommitConfiguration().setEnabled(true).setLingerMillis(60000).setMaxBatchEvents(8),
+                "bv.event", metricRegistry);
+
+        List<Future<?>> futures = addAllConcurrently(writerDao, 4);
+        for (Future<?> future : futures) {
+            future.get();
+        }
+
+        assertEquals(delegate.calls.size(), 1);
+        Multimap<String, ByteBuffer> combined = delegate.calls.get(0);
+        assertEquals(combined.get("a").size(), 4);
+        assertEquals(combined.get("b").size(), 4);
+        assertEquals(metricRegistry.histogram("bv.event.GroupCommitEventWriterDAO.batch_size").getSnapshot().getMax(), 8);
+        assertEquals(metricRegistry.histogram("bv.event.GroupCommitEventWriterDAO.linger_micros").getCount(), 1);
+    }
+
+    @Test
+    public void testBatchIsWrittenAfterLinger() {
+        RecordingEventWriterDAO delegate = new RecordingEventWriterDAO(null);
+        GroupCommitEventWriterDAO writerDao = new GroupCommitEventWriterDAO(delegate,
+                new GroupCommitConfiguration().setEnabled(true).setLingerMillis(1).setMaxBatchEvents(1000),
+                "bv.event", new MetricRegistry());
+
+        writerDao.addAll(ImmutableMultimap.of("a", ByteBuffer.wrap(new byte[] {1})), null);
+        writerDao.addAll(ImmutableMultimap.of("a", ByteBuffer.wrap(new byte[] {2})), null);
+
+        assertEquals(delegate.calls.size(), 2);
+    }
+
+    @Test
+    public void testFailureIsSeenByEveryCaller() throws Exception {
+        RuntimeException failure = new RuntimeException("write failed");
+        RecordingEventWriterDAO delegate = new RecordingEventWriterDAO(failure);
+        GroupCommitEventWriterDAO writerDao = new GroupCommitEventWriterDAO(delegate,
+                new GroupCommitConfiguration().setEnabled(true).setLingerMillis(60000).setMaxBatchEvents(8),
+                "bv.event", new MetricRegistry());
+
+        for (Future<?> future : addAllConcurrently(writerDao, 4)) {
+            try {
+                future.get();
+                fail("Expected the write to fail");
+            } catch (ExecutionException e) {
+                assertSame(e.getCause(), failure);
+            }
+        }
+        assertEquals(delegate.calls.size(), 1);
+    }
+
+    @Test
+    public void testWritesWithSinkBypassBatching() {
+        RecordingEventWriterDAO delegate = new RecordingEventWriterDAO(null);
+        GroupCommitEventWriterDAO writerDao = new GroupCommitEventWriterDAO(delegate,
+                new GroupCommitConfiguration().setEnabled(true).setLingerMillis(60000).setMaxBatchEvents(1000),
+                "bv.event", new MetricRegistry());
+
+        EventSink sink = (eventId, eventData) -> true;
+        writerDao.addAll(ImmutableMultimap.of("a", ByteBuffer.wrap(new byte[] {1})), sink);
+
+        assertEquals(delegate.calls.size(), 1);
+        assertSame(delegate.sinks.get(0), sink);
+    }
+
+    /** Starts the specified number of callers, each writing one event to channel "a" and one to channel "b". */
+    private List<Future<?>> addAllConcurrently(final EventWriterDAO writerDao, int numCallers) {
+        ExecutorService executor = Executors.newFixedThreadPool(numCallers);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            for (int i = 0; i < numCallers; i++) {
+                final byte id = (byte) i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        writerDao.addAll(ImmutableMultimap.of(
+                                "a", ByteBuffer.wrap(new byte[] {id}),
+                                "b", ByteBuffer.wrap(new byte[] {id})), null);
+                        return null;
+                    }
+                }));
+            }
+            return futures;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static class RecordingEventWriterDAO implements EventWriterDAO {
+        final List<Multimap<String, ByteBuffer>> calls = Lists.newCopyOnWriteArrayList();
+        final List<EventSink> sinks = Lists.newCopyOnWriteArrayList();
+        private final RuntimeException _failure;
+
+        RecordingEventWriterDAO(RuntimeException failure) {
+            _failure = failure;
+        }
+
+        @Override
+        public void addAll(Multimap<String, ByteBuffer> eventsByChannel, EventSink sink) {
+            calls.add(ImmutableMultimap.copyOf(eventsByChannel));
+            if (sink != null) {
+                sinks.add(sink);
+            }
+            if (_failure != null) {
+                throw _failure;
+            }
+        }
+
+        @Override
+        public void delete(String channel, Collection<EventId> eventIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteAll(String channel) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
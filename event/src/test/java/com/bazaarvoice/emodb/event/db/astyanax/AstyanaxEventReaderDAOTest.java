@@ -3,8 +3,14 @@ package com.bazaarvoice.emodb.event.db.astyanax;
 import com.bazaarvoice.emodb.common.cassandra.CassandraKeyspace;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.codahale.metrics.MetricRegistry;
+import com.bazaarvoice.emodb.event.db.EventId;
+import com.bazaarvoice.emodb.event.db.EventSink;
+import com.google.common.base.Ticker;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ForwardingExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.model.ByteBufferRange;
 import com.netflix.astyanax.model.Column;
@@ -26,7 +32,10 @@ import java.time.Instant;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -34,6 +43,14 @@ import static org.testng.Assert.assertEquals;
 
 public class AstyanaxEventReaderDAOTest {
 
+    /** A ticker which never advances, so prefetched slabs never become too old to use unless the max age is zero. */
+    private static final Ticker FROZEN_TICKER = new Ticker() {
+        @Override
+        public long read() {
+            return 0;
+        }
+    };
+
     @Test
     @SuppressWarnings("unchecked")
     public void testCountCleanupOldOpenSlab() throws Exception {
@@ -110,6 +127,71 @@ public class AstyanaxEventReaderDAOTest {
         assertEquals(result, count);
     }
 
+    @Test
+    public void testCountEstimateUsesCountedSlabSizes() {
+        final List<ByteBuffer> slabIds = newClosedSlabIds(5);
+        CassandraKeyspace cassandraKeyspace = mock(CassandraKeyspace.class);
+        when(cassandraKeyspace.prepareQuery(Matchers.<ColumnFamily<String, ByteBuffer>>any(), Matchers.<ConsistencyLevel>any()))
+                .then(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        if (invocation.getArguments()[0] == ColumnFamilies.MANIFEST) {
+                            List<Column<ByteBuffer>> manifestColumns = Lists.newArrayList();
+                            for (ByteBuffer slabId : slabIds) {
+                                Column<ByteBuffer> column = mock(Column.class);
+                                when(column.getName()).thenReturn(slabId);
+                                when(column.getBooleanValue()).thenReturn(false);
+                                manifestColumns.add(column);
+                            }
+                            ColumnList<ByteBuffer> page = mock(ColumnList.class);
+                            when(page.iterator()).thenReturn(manifestColumns.iterator());
+                            OperationResult<ColumnList<ByteBuffer>> pageResult = mock(OperationResult.class);
+                            when(pageResult.getResult()).thenReturn(page);
+                            ColumnList<ByteBuffer> emptyPage = mock(ColumnList.class);
+                            when(emptyPage.isEmpty()).thenReturn(true);
+                            OperationResult<ColumnList<ByteBuffer>> emptyPageResult = mock(OperationResult.class);
+                            when(emptyPageResult.getResult()).thenReturn(emptyPage);
+
+                            // The slabs remaining once the limit is reached: all but the first two
+                            OperationResult<Integer> remainingResult = mock(OperationResult.class);
+                            when(remainingResult.getResult()).thenReturn(3);
+                            ColumnCountQuery remainingQuery = mock(ColumnCountQuery.class);
+                            when(remainingQuery.execute()).thenReturn(remainingResult);
+
+                            RowQuery<String, ByteBuffer> rowQuery = mock(RowQuery.class);
+                            when(rowQuery.withColumnRange(Matchers.<ByteBufferRange>any())).thenReturn(rowQuery);
+                            when(rowQuery.autoPaginate(Matchers.anyBoolean())).thenReturn(rowQuery);
+                            when(rowQuery.execute()).thenReturn(pageResult).thenReturn(emptyPageResult);
+                            when(rowQuery.getCount()).thenReturn(remainingQuery);
+
+                            ColumnFamilyQuery<String, ByteBuffer> cfQuery = mock(ColumnFamilyQuery.class);
+                            when(cfQuery.getKey(Matchers.<String>any())).thenReturn(rowQuery);
+                            return cfQuery;
+                        }
+
+                        // Every slab holds 300 events, well below the default slab size
+                        OperationResult<Integer> result = mock(OperationResult.class);
+                        when(result.getResult()).thenReturn(300);
+                        ColumnCountQuery countQuery = mock(ColumnCountQuery.class);
+                        when(countQuery.execute()).thenReturn(result);
+
+                        RowQuery<ByteBuffer, Integer> rowQuery = mock(RowQuery.class);
+                        when(rowQuery.withColumnRange(0, Constants.OPEN_SLAB_MARKER - 1, false, Integer.MAX_VALUE)).thenReturn(rowQuery);
+                        when(rowQuery.getCount()).thenReturn(countQuery);
+
+                        ColumnFamilyQuery<ByteBuffer, Integer> cfQuery = mock(ColumnFamilyQuery.class);
+                        when(cfQuery.getKey(Matchers.<ByteBuffer>any())).thenReturn(rowQuery);
+                        return cfQuery;
+                    }
+                });
+
+        AstyanaxEventReaderDAO readerDao = new AstyanaxEventReaderDAO(
+                cassandraKeyspace, mock(ManifestPersister.class), "metricsGroup", mock(ExecutorService.class), new MetricRegistry());
+
+        // Two slabs are counted exactly, then the remaining three are assumed to be the same size
+        assertEquals(readerDao.count("channel", 500), 1500);
+    }
+
     @Test
     public void testSlabFilterSince() {
         // Test that SlabFilter returns the correct slabs to read if we are only interested in
@@ -141,4 +223,203 @@ public class AstyanaxEventReaderDAOTest {
             assertEquals(actual, expected, "slabId3, slabId4, and slabId5 are the only ones we care about.");
         }
     }
+
+    @Test
+    public void testReadNewerPrefetchesSlabs() throws Exception {
+        List<ByteBuffer> slabIds = newClosedSlabIds(3);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        AstyanaxEventReaderDAO readerDao = new AstyanaxEventReaderDAO(
+                mockKeyspace(slabIds, 2), mock(ManifestPersister.class), "metricsGroup", mock(ExecutorService.class),
+                MoreExecutors.sameThreadExecutor(), new SlabReadAheadConfiguration(), FROZEN_TICKER, metricRegistry);
+
+        // Read every event.  The first slab is read by the caller, the remaining slabs are read ahead.
+        List<String> events = Lists.newArrayList();
+        readerDao.readNewer("channel", collectingSink(events, Integer.MAX_VALUE));
+
+        assertEquals(events, ImmutableList.of("0:0", "0:1", "1:0", "1:1", "2:0", "2:1"));
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_hits").getCount(), 2);
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_waste").getCount(), 0);
+    }
+
+    @Test
+    public void testReadNewerDiscardsUnusedPrefetches() throws Exception {
+        List<ByteBuffer> slabIds = newClosedSlabIds(3);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        AstyanaxEventReaderDAO readerDao = new AstyanaxEventReaderDAO(
+                mockKeyspace(slabIds, 2), mock(ManifestPersister.class), "metricsGroup", mock(ExecutorService.class),
+                MoreExecutors.sameThreadExecutor(), new SlabReadAheadConfiguration(), FROZEN_TICKER, metricRegistry);
+
+        // The sink stops part way through the second slab, so the prefetched third slab is never used
+        List<String> events = Lists.newArrayList();
+        readerDao.readNewer("channel", collectingSink(events, 3));
+
+        assertEquals(events, ImmutableList.of("0:0", "0:1", "1:0"));
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_hits").getCount(), 1);
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_waste").getCount(), 1);
+    }
+
+    @Test
+    public void testReadNewerDiscardsStalePrefetches() throws Exception {
+        List<ByteBuffer> slabIds = newClosedSlabIds(3);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        AstyanaxEventReaderDAO readerDao = new AstyanaxEventReaderDAO(
+                mockKeyspace(slabIds, 2), mock(ManifestPersister.class), "metricsGroup", mock(ExecutorService.class),
+                MoreExecutors.sameThreadExecutor(), new SlabReadAheadConfiguration().setMaxAge(Duration.ZERO), FROZEN_TICKER,
+                metricRegistry);
+
+        // Every prefetch is too old to use by the time it's needed, so every slab is read again by the caller
+        List<String> events = Lists.newArrayList();
+        readerDao.readNewer("channel", collectingSink(events, Integer.MAX_VALUE));
+
+        assertEquals(events, ImmutableList.of("0:0", "0:1", "1:0", "1:1", "2:0", "2:1"));
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_hits").getCount(), 0);
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_waste").getCount(), 2);
+        assertEquals(readerDao.getPrefetchSlabs("channel"), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPrefetchMaxAgeMustBeLessThanDeleteClaim() {
+        new AstyanaxEventReaderDAO(
+                mock(CassandraKeyspace.class), mock(ManifestPersister.class), "metricsGroup", mock(ExecutorService.class),
+                MoreExecutors.sameThreadExecutor(), new SlabReadAheadConfiguration().setMaxAge(Duration.ofMillis(25)),
+                FROZEN_TICKER, new MetricRegistry());
+    }
+
+    @Test
+    public void testReadNewerPrefetchesAreBoundedPerChannel() throws Exception {
+        List<ByteBuffer> slabIds = newClosedSlabIds(4);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        final AtomicReference<AstyanaxEventReaderDAO> readerDaoRef = new AtomicReference<>();
+        final List<Integer> prefetched = Lists.newArrayList();
+        ExecutorService prefetchExecutor = new ForwardingExecutorService() {
+            @Override
+            protected ExecutorService delegate() {
+                return MoreExecutors.sameThreadExecutor();
+            }
+
+            @Override
+            public <T> Future<T> submit(Callable<T> task) {
+                prefetched.add(readerDaoRef.get().getPrefetchSlabs("channel"));
+                return super.submit(task);
+            }
+        };
+        AstyanaxEventReaderDAO readerDao = new AstyanaxEventReaderDAO(
+                mockKeyspace(slabIds, 2), mock(ManifestPersister.class), "metricsGroup", mock(ExecutorService.class),
+                prefetchExecutor, new SlabReadAheadConfiguration().setSlabsPerRead(2).setMaxSlabsPerChannel(1),
+                FROZEN_TICKER, metricRegistry);
+        readerDaoRef.set(readerDao);
+
+        // Each read may prefetch two slabs but the channel may only have one read ahead at a time
+        List<String> events = Lists.newArrayList();
+        readerDao.readNewer("channel", collectingSink(events, Integer.MAX_VALUE));
+
+        assertEquals(events, ImmutableList.of("0:0", "0:1", "1:0", "1:1", "2:0", "2:1", "3:0", "3:1"));
+        assertEquals(prefetched, ImmutableList.of(1, 1, 1));
+        assertEquals(metricRegistry.meter("metricsGroup.AstyanaxEventReaderDAO.prefetch_hits").getCount(), 3);
+        assertEquals(readerDao.getPrefetchSlabs("channel"), 0);
+    }
+
+    private static List<ByteBuffer> newClosedSlabIds(int count) {
+        List<ByteBuffer> slabIds = Lists.newArrayList();
+        long start = Instant.now().minus(Duration.ofHours(1)).toEpochMilli();
+        for (int i = 0; i < count; i++) {
+            slabIds.add(TimeUUIDSerializer.get().toByteBuffer(TimeUUIDs.uuidForTimeMillis(start + i)));
+        }
+        return slabIds;
+    }
+
+    /** Returns a sink which records events as "slab:index" and stops after the specified number of events. */
+    private static EventSink collectingSink(final List<String> events, final int limit) {
+        return new EventSink() {
+            @Override
+            public boolean accept(EventId eventId, ByteBuffer eventData) {
+                events.add(eventData.getInt() + ":" + ((AstyanaxEventId) eventId).getEventIdx());
+                return events.size() < limit;
+            }
+        };
+    }
+
+    /**
+     * Mocks a keyspace with a manifest of closed slabs, each containing the specified number of events.  Each event's
+     * data is the index of its slab.
+     */
+    @SuppressWarnings("unchecked")
+    private static CassandraKeyspace mockKeyspace(final List<ByteBuffer> slabIds, final int eventsPerSlab) {
+        CassandraKeyspace cassandraKeyspace = mock(CassandraKeyspace.class);
+        when(cassandraKeyspace.prepareQuery(Matchers.<ColumnFamily<String, ByteBuffer>>any(), Matchers.<ConsistencyLevel>any()))
+                .then(new Answer<Object>() {
+                    @Override
+                    public Object answer(InvocationOnMock invocation) throws Throwable {
+                        if (invocation.getArguments()[0] == ColumnFamilies.MANIFEST) {
+                            List<Column<ByteBuffer>> manifestColumns = Lists.newArrayList();
+                            for (ByteBuffer slabId : slabIds) {
+                                Column<ByteBuffer> column = mock(Column.class);
+                                when(column.getName()).thenReturn(slabId);
+                                when(column.getBooleanValue()).thenReturn(false);
+                                manifestColumns.add(column);
+                            }
+
+                            OperationResult<ColumnList<ByteBuffer>> page1 = result(mockColumnList(manifestColumns));
+                            OperationResult<ColumnList<ByteBuffer>> page2 = result(mockColumnList(ImmutableList.<Column<ByteBuffer>>of()));
+
+                            RowQuery<String, ByteBuffer> rowQuery = mock(RowQuery.class);
+                            when(rowQuery.withColumnRange(Matchers.<ByteBufferRange>any())).thenReturn(rowQuery);
+                            when(rowQuery.autoPaginate(Matchers.anyBoolean())).thenReturn(rowQuery);
+                            when(rowQuery.execute())
+                                    .thenReturn(page1)  // first page
+                                    .thenReturn(page2); // second page
+
+                            ColumnFamilyQuery<String, ByteBuffer> cfQuery = mock(ColumnFamilyQuery.class);
+                            when(cfQuery.getKey(Matchers.<String>any())).thenReturn(rowQuery);
+                            return cfQuery;
+                        }
+
+                        ColumnFamilyQuery<ByteBuffer, Integer> cfQuery = mock(ColumnFamilyQuery.class);
+                        for (int slab = 0; slab < slabIds.size(); slab++) {
+                            List<Column<Integer>> eventColumns = Lists.newArrayList();
+                            for (int eventIdx = 0; eventIdx < eventsPerSlab; eventIdx++) {
+                                Column<Integer> column = mock(Column.class);
+                                when(column.getName()).thenReturn(eventIdx);
+                                ByteBuffer eventData = (ByteBuffer) ByteBuffer.allocate(4).putInt(slab).flip();
+                                when(column.getByteBufferValue()).thenReturn(eventData);
+                                eventColumns.add(column);
+                            }
+
+                            OperationResult<ColumnList<Integer>> events = result(mockColumnList(eventColumns));
+
+                            RowQuery<ByteBuffer, Integer> rowQuery = mock(RowQuery.class);
+                            when(rowQuery.withColumnRange(Matchers.anyInt(), Matchers.anyInt(), Matchers.anyBoolean(), Matchers.anyInt()))
+                                    .thenReturn(rowQuery);
+                            when(rowQuery.execute()).thenReturn(events);
+                            when(cfQuery.getKey(slabIds.get(slab))).thenReturn(rowQuery);
+                        }
+                        return cfQuery;
+                    }
+                });
+        return cassandraKeyspace;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <C> ColumnList<C> mockColumnList(final List<Column<C>> columns) {
+        ColumnList<C> columnList = mock(ColumnList.class);
+        when(columnList.isEmpty()).thenReturn(columns.isEmpty());
+        when(columnList.size()).thenReturn(columns.size());
+        when(columnList.iterator()).then(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                return columns.iterator();
+            }
+        });
+        for (int i = 0; i < columns.size(); i++) {
+            when(columnList.getColumnByIndex(i)).thenReturn(columns.get(i));
+        }
+        return columnList;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> OperationResult<R> result(R value) {
+        OperationResult<R> result = mock(OperationResult.class);
+        when(result.getResult()).thenReturn(value);
+        return result;
+    }
 }
@@ -1,15 +1,23 @@
 package com.bazaarvoice.emodb.event.db.astyanax;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.UniformReservoir;
 import com.google.common.collect.Iterators;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 public class ChannelAllocationStateTest {
@@ -142,4 +150,48 @@ public class ChannelAllocationStateTest {
             assertTrue(false, "ERROR: " + e.getClass().getName() + " thrown when second max/2 # (" + Constants.MAX_SLAB_SIZE/2 + ") 64-byte events allocated");
         }
     }
+
+    @Test
+    public void adaptSlabSizeToWriteRate() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        Histogram slabFillPercent = new Histogram(new UniformReservoir());
+        ChannelAllocationState channelAllocationState = new ChannelAllocationState(new SlabAllocatorConfiguration()
+                .setMinSlabSize(10).setMaxSlabSize(5000).setTargetFillTime(Duration.ofMinutes(1))
+                .setMinOpenSlabLifetime(Duration.ofMinutes(1)), slabFillPercent, clock);
+        SlabRef slabRef = mock(SlabRef.class);
+        when(slabRef.addRef()).thenReturn(slabRef);
+        List<Integer> sizes = Collections.nCopies(6000, 64);
+
+        // Nothing has been written yet, so the first slab gets the minimum size
+        SlabAllocation allocation = channelAllocationState.attachAndAllocate(slabRef, Iterators.peekingIterator(sizes.iterator()));
+        assertEquals(allocation.getLength(), 10);
+        assertNull(channelAllocationState.allocate(Iterators.peekingIterator(sizes.iterator())));
+        assertEquals(slabFillPercent.getSnapshot().getMax(), 100);
+
+        // At 100 events per second a slab which fills in a minute holds 6000 events, capped at the maximum
+        for (long second = 1; second <= 600; second++) {
+            when(clock.millis()).thenReturn(second * 1000);
+            channelAllocationState.recordWrites(100);
+        }
+        allocation = channelAllocationState.attachAndAllocate(slabRef, Iterators.peekingIterator(sizes.iterator()));
+        assertEquals(allocation.getLength(), 5000);
+
+        // At 1 event per second a slab holds 60 events
+        for (long second = 601; second <= 3600; second++) {
+            when(clock.millis()).thenReturn(second * 1000);
+            channelAllocationState.recordWrites(1);
+        }
+        allocation = channelAllocationState.attachAndAllocate(slabRef, Iterators.peekingIterator(sizes.subList(0, 30).iterator()));
+        assertEquals(allocation.getLength(), 30);
+
+        // The slab is rotated once it's been open twice as long as it was expected to take to fill
+        when(clock.millis()).thenReturn(3710 * 1000L);
+        channelAllocationState.rotateIfNecessary();
+        assertNotNull(channelAllocationState.allocate(Iterators.peekingIterator(sizes.subList(0, 1).iterator())));
+        when(clock.millis()).thenReturn(3730 * 1000L);
+        channelAllocationState.rotateIfNecessary();
+        assertNull(channelAllocationState.allocate(Iterators.peekingIterator(sizes.subList(0, 1).iterator())));
+        assertEquals(slabFillPercent.getSnapshot().getMin(), 51);
+    }
 }
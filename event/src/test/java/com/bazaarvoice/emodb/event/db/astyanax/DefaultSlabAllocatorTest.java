@@ -24,7 +24,7 @@ public class DefaultSlabAllocatorTest {
         for (int i=0; i<Constants.MAX_SLAB_SIZE*3/2; i++) {
             sizes.add(64);
         }
-        DefaultSlabAllocator slabAllocator = new DefaultSlabAllocator(mock(LifeCycleRegistry.class), mock(ManifestPersister.class), "metrics", mock(MetricRegistry.class));
+        DefaultSlabAllocator slabAllocator = new DefaultSlabAllocator(mock(LifeCycleRegistry.class), mock(ManifestPersister.class), "metrics", new MetricRegistry());
         try {
             slabAllocator.allocate("mychannel", Constants.MAX_SLAB_SIZE*3/2, Iterators.peekingIterator(sizes.iterator()));
             _log.info("SUCCESS: No exception thrown when " + (Constants.MAX_SLAB_SIZE*3/2) + " events allocated");
@@ -40,7 +40,7 @@ public class DefaultSlabAllocatorTest {
         for (int i=0; i<Constants.MAX_SLAB_SIZE; i++) {
             sizes.add(64);
         }
-        DefaultSlabAllocator slabAllocator = new DefaultSlabAllocator(mock(LifeCycleRegistry.class), mock(ManifestPersister.class), "metrics", mock(MetricRegistry.class));
+        DefaultSlabAllocator slabAllocator = new DefaultSlabAllocator(mock(LifeCycleRegistry.class), mock(ManifestPersister.class), "metrics", new MetricRegistry());
         try {
             slabAllocator.allocate("mychannel", Constants.MAX_SLAB_SIZE, Iterators.peekingIterator(sizes.iterator()));
             _log.info("SUCCESS: No exception thrown when " + Constants.MAX_SLAB_SIZE + " events allocated");
@@ -56,7 +56,7 @@ public class DefaultSlabAllocatorTest {
         for (int i=0; i<Constants.MAX_SLAB_SIZE/2; i++) {
             sizes.add(64);
         }
-        DefaultSlabAllocator slabAllocator = new DefaultSlabAllocator(mock(LifeCycleRegistry.class), mock(ManifestPersister.class), "metrics", mock(MetricRegistry.class));
+        DefaultSlabAllocator slabAllocator = new DefaultSlabAllocator(mock(LifeCycleRegistry.class), mock(ManifestPersister.class), "metrics", new MetricRegistry());
         try {
             slabAllocator.allocate("mychannel", Constants.MAX_SLAB_SIZE/2, Iterators.peekingIterator(sizes.iterator()));
             _log.info("SUCCESS: No exception thrown when " + (Constants.MAX_SLAB_SIZE/2) + " events allocated");
@@ -191,10 +191,13 @@ public class InMemoryQueueDAO implements QueueDAO {
                 if (_random != null) {
                     Collections.shuffle(_mutations, _random);
                 }
-                for (Runnable mutation : _mutations) {
-                    mutation.run();
-                    if (--crashAfter == 0) {
-                        throw new SimulatedFailureException();
+                // Bulk loads execute updates from multiple threads at once
+                synchronized (InMemoryQueueDAO.this) {
+                    for (Runnable mutation : _mutations) {
+                        mutation.run();
+                        if (--crashAfter == 0) {
+                            throw new SimulatedFailureException();
+                        }
                     }
                 }
             }
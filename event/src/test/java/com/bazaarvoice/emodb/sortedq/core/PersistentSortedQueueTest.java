@@ -123,6 +123,41 @@ public class PersistentSortedQueueTest {
         assertFalse(q.scan(null, Long.MAX_VALUE).hasNext());
     }
 
+    @Test
+    public void testBulkLoadWithSplitting() throws Exception {
+        // Bulk load 100k random 2-byte buffers in large batches so each batch spans many segments.
+        int n = 100000;
+        int splitThresholdBytes = n / 10;
+
+        InMemoryQueueDAO dao = new InMemoryQueueDAO();
+        SortedQueue q = new PersistentSortedQueue("queue", false, splitThresholdBytes, splitThresholdBytes / 10, dao, new MetricRegistry());
+        TreeSet<ByteBuffer> expected = Sets.newTreeSet(ORDERING);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Iterator<List<ByteBuffer>> batchIter = Iterators.partition(Iterators.limit(randomBufferIter(2), n), 10000);
+            while (batchIter.hasNext()) {
+                List<ByteBuffer> batch = batchIter.next();
+                q.bulkLoad(batch, executor);
+                expected.addAll(batch);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify the size() method returns something within range.
+        assertWithinRange(q.sizeEstimate(), expected.size(), 0.2, "Size");
+
+        // Verify records were spread across segments and splitting kept the row sizes manageable.
+        assertTrue(dao.getRecords().keySet().size() > 1);
+        assertSmallRows(dao, splitThresholdBytes * 2);
+
+        // Verify that scan and drainTo return the expected items in the same order.
+        assertEquals(q.scan(null, Long.MAX_VALUE), expected.iterator());
+        assertDrain(q, expected, Long.MAX_VALUE);
+
+        assertFalse(q.scan(null, Long.MAX_VALUE).hasNext());
+    }
+
     @Test
     public void testMixedReadAndWriteWithSplitting() {
         // Reduce the splitting thresholds so that splitting occurs.
@@ -13,6 +13,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import static org.testng.Assert.fail;
 
@@ -78,6 +79,17 @@ class PersistentSortedQueueWithRetry implements SortedQueue {
         });
     }
 
+    @Override
+    public void bulkLoad(final Collection<ByteBuffer> records, final ExecutorService executor) {
+        retry(false, new Callable<Void>() {
+            @Override
+            public Void call() {
+                _q.bulkLoad(records, executor);
+                return null;
+            }
+        });
+    }
+
     @Override
     public Iterator<ByteBuffer> scan(@Nullable final ByteBuffer fromInclusive, final long limit) {
         // Scan has no side effects and an Iterator is unusable once it has thrown an exception.
@@ -1,13 +1,17 @@
 package com.bazaarvoice.emodb.hadoop.io;
 
+import com.bazaarvoice.emodb.common.json.JsonFieldExtractor;
 import com.bazaarvoice.emodb.sor.api.Coordinate;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Closeables;
 import org.apache.hadoop.io.Text;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -16,9 +20,14 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 abstract public class BaseRecordReader implements Closeable {
 
+    private static final JsonFieldExtractor COORDINATE_EXTRACTOR = new JsonFieldExtractor(
+            ImmutableList.<List<String>>of(ImmutableList.of(Intrinsic.TABLE), ImmutableList.of(Intrinsic.ID)), false);
+
     private final int _approximateSize;
     private final AtomicBoolean _closed = new AtomicBoolean(false);
     private Iterator<Map<String, Object>> _rows;
+    // Set instead of _rows when the rows are read as JSON text
+    private Iterator<byte[]> _jsonRows;
     private int _rowsRead = 0;
 
     public BaseRecordReader(int splitSize) {
@@ -27,15 +36,29 @@ abstract public class BaseRecordReader implements Closeable {
 
     public void initialize()
             throws IOException {
-        _rows = getRowIterator();
+        _jsonRows = getJsonRowIterator();
+        if (_jsonRows == null) {
+            _rows = getRowIterator();
+        }
+    }
 
+    /**
+     * Returns an iterator of EmoDB rows as Java Maps.  Readers must override either this or
+     * {@link #getJsonRowIterator()}.  Only called if {@link #getJsonRowIterator()} returns null.
+     */
+    protected Iterator<Map<String, Object>> getRowIterator()
+            throws IOException {
+        throw new UnsupportedOperationException("Rows are not available as Maps");
     }
 
     /**
-     * Returns an iterator of EmoDB rows as Java Maps.
+     * Returns an iterator of EmoDB rows as UTF-8 JSON, or null if the rows are only available as Java Maps.  Rows read
+     * as JSON are passed on without being parsed, so consumers such as the Hive SerDe only parse the values they use.
      */
-    abstract protected Iterator<Map<String, Object>> getRowIterator()
-            throws IOException;
+    protected Iterator<byte[]> getJsonRowIterator()
+            throws IOException {
+        return null;
+    }
 
     /**
      * Method guaranteed to be called exactly once when this instance is closed, even if {@link #close()} is
@@ -51,15 +74,21 @@ abstract public class BaseRecordReader implements Closeable {
      */
     public boolean setNextKeyValue(Text key, Row value)
             throws IOException {
-        if (!_rows.hasNext()) {
+        if (!hasNext()) {
             Closeables.close(this, true);
             return false;
         }
 
         try {
-            Map<String, Object> content = _rows.next();
-            key.set(Coordinate.fromJson(content).toString());
-            value.set(content);
+            if (_jsonRows != null) {
+                byte[] json = _jsonRows.next();
+                key.set(getCoordinate(json).toString());
+                value.set(json);
+            } else {
+                Map<String, Object> content = _rows.next();
+                key.set(Coordinate.fromJson(content).toString());
+                value.set(content);
+            }
             _rowsRead += 1;
         } catch (Exception e) {
             for (Throwable cause : Throwables.getCausalChain(e)) {
@@ -70,12 +99,26 @@ abstract public class BaseRecordReader implements Closeable {
         return true;
     }
 
+    private boolean hasNext() {
+        return _jsonRows != null ? _jsonRows.hasNext() : _rows.hasNext();
+    }
+
+    /**
+     * Reads the coordinate from a row's intrinsics without parsing the rest of the row.
+     */
+    private Coordinate getCoordinate(byte[] json)
+            throws IOException {
+        String[] intrinsics = new String[2];
+        COORDINATE_EXTRACTOR.extract(json, 0, json.length, (path, parser) -> intrinsics[path] = parser.getValueAsString());
+        return Coordinate.of(intrinsics[0], intrinsics[1]);
+    }
+
     /**
      * Returns a rough approximate of the progress on a scale from 0 to 1
      */
     public float getProgress()
             throws IOException {
-        if (!_rows.hasNext()) {
+        if (!hasNext()) {
             return 1;
         } else if (_rowsRead < _approximateSize) {
             return (float) _rowsRead / _approximateSize;
@@ -138,6 +138,15 @@ public class Row extends BytesWritable {
         return _map;
     }
 
+    /**
+     * Returns true if the row's Map representation is available without parsing the JSON text, such as when the row
+     * was created from a Map or {@link #getMap()} has already been called.  Callers which only need a few values from
+     * a row with no Map may prefer to read them directly from {@link #getBytes()}.
+     */
+    public boolean hasMap() {
+        return _map != null;
+    }
+
     public String getJson() {
         ensureTextSet();
         return new String(_text.array(), 0, _text.limit(), Charsets.UTF_8);
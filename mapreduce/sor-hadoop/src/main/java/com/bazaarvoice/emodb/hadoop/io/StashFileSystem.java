@@ -10,7 +10,7 @@ import com.amazonaws.services.s3.AmazonS3Client;
 import com.bazaarvoice.emodb.common.stash.FixedStashReader;
 import com.bazaarvoice.emodb.common.stash.StandardStashReader;
 import com.bazaarvoice.emodb.common.stash.StashReader;
-import com.bazaarvoice.emodb.common.stash.StashRowIterator;
+import com.bazaarvoice.emodb.common.stash.StashJsonIterator;
 import com.bazaarvoice.emodb.common.stash.StashSplit;
 import com.bazaarvoice.emodb.common.stash.StashTable;
 import com.bazaarvoice.emodb.hadoop.ConfigurationParameters;
@@ -42,7 +42,6 @@ import java.io.InputStream;
 import java.net.URI;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
@@ -309,11 +308,12 @@ public class StashFileSystem extends FileSystem implements EmoInputSplittable {
         addS3ClientReference(reason);
 
         return new BaseRecordReader(splitSize) {
-            private StashRowIterator _iterator;
+            private StashJsonIterator _iterator;
 
             @Override
-            protected Iterator<Map<String, Object>> getRowIterator() throws IOException {
-                _iterator = _stashReader.getSplit(stashSplit);
+            protected Iterator<byte[]> getJsonRowIterator() throws IOException {
+                // Stash stores each row as a line of JSON, so pass it on as-is instead of parsing it
+                _iterator = _stashReader.getSplitJson(stashSplit);
                 return _iterator;
             }
 
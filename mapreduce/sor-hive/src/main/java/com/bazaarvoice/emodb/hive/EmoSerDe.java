@@ -1,7 +1,10 @@
 package com.bazaarvoice.emodb.hive;
 
+import com.bazaarvoice.emodb.common.json.JsonFieldExtractor;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.bazaarvoice.emodb.hadoop.io.Row;
+import com.bazaarvoice.emodb.sor.api.Intrinsic;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -24,9 +27,12 @@ import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 import org.apache.hadoop.hive.serde2.typeinfo.UnionTypeInfo;
 import org.apache.hadoop.io.Writable;
 
+import java.io.IOException;
 import java.sql.Date;
 import java.sql.Timestamp;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -47,10 +53,37 @@ public class EmoSerDe extends AbstractSerDe {
     private List<Object> _values;
     // Object inspector for use by Hive
     private ObjectInspector _inspector;
+    // For each column the implicit column it can fall back to, or null if it has none
+    private ImplicitColumn[] _implicitColumns;
+
+    // Extracts only the values needed by the columns from rows which aren't already parsed into a Map
+    private JsonFieldExtractor _extractor;
+    // For each column the location of its value, and of its fallback intrinsic if any, in the extracted values
+    private ExtractedValue[] _columnValues;
+    private ExtractedValue[] _intrinsicValues;
+    // Values extracted from the current row by extractor path, and whether each path was present
+    private Object[] _extracted;
+    private boolean[] _extractedFound;
+    private final JsonFieldExtractor.ValueHandler _extractHandler = (path, parser) -> {
+        _extracted[path] = parser.readValueAs(Object.class);
+        _extractedFound[path] = true;
+    };
 
     // Columns that have special meaning if not explicitly found in the row's JSON
     private static enum ImplicitColumn {
-        id, table, version, signature, first_update_at, last_update_at, json
+        id(Intrinsic.ID),
+        table(Intrinsic.TABLE),
+        version(Intrinsic.VERSION),
+        signature(Intrinsic.SIGNATURE),
+        first_update_at(Intrinsic.FIRST_UPDATE_AT),
+        last_update_at(Intrinsic.LAST_UPDATE_AT),
+        json(null);
+
+        private final String _intrinsic;
+
+        ImplicitColumn(String intrinsic) {
+            _intrinsic = intrinsic;
+        }
     }
 
     @Override
@@ -96,6 +129,74 @@ public class EmoSerDe extends AbstractSerDe {
         }
 
         _inspector = ObjectInspectorFactory.getStandardStructObjectInspector(columnNames, columnInspectors);
+
+        _implicitColumns = new ImplicitColumn[numColumns];
+        for (int i=0; i < numColumns; i++) {
+            _implicitColumns[i] = getImplicitColumn(columnNames.get(i));
+        }
+
+        initializeExtractor(columnNames);
+    }
+
+    private static ImplicitColumn getImplicitColumn(String columnName) {
+        try {
+            return ImplicitColumn.valueOf(columnName.toLowerCase());
+        } catch (IllegalArgumentException notImplicit) {
+            return null;
+        }
+    }
+
+    /**
+     * Builds the extractor for all column and intrinsic paths.  Since the extractor reports each value only once a
+     * column whose path extends another column's path, such as "about/~id" and "about", is read from the shorter
+     * column's value.  Paths are matched case-insensitively, as in {@link #getRawValue(String, Object)}.
+     */
+    private void initializeExtractor(List<String> columnNames) {
+        int numColumns = columnNames.size();
+        _columnValues = new ExtractedValue[numColumns];
+        _intrinsicValues = new ExtractedValue[numColumns];
+
+        List<List<String>> paths = Lists.newArrayList();
+        Map<List<String>, Integer> pathIndexes = Maps.newHashMap();
+
+        // Register shorter paths first so longer paths can reuse them.  Intrinsics are all top-level keys.
+        for (int i=0; i < numColumns; i++) {
+            ImplicitColumn implicitColumn = _implicitColumns[i];
+            if (implicitColumn != null && implicitColumn._intrinsic != null) {
+                _intrinsicValues[i] = getExtractedValue(implicitColumn._intrinsic, paths, pathIndexes);
+            }
+        }
+
+        List<Integer> columnsByDepth = Lists.newArrayList();
+        for (int i=0; i < numColumns; i++) {
+            columnsByDepth.add(i);
+        }
+        columnsByDepth.sort(Comparator.comparingInt(i -> columnNames.get(i).split("/", -1).length));
+
+        for (int i : columnsByDepth) {
+            _columnValues[i] = getExtractedValue(columnNames.get(i), paths, pathIndexes);
+        }
+
+        _extractor = new JsonFieldExtractor(paths, true);
+        _extracted = new Object[paths.size()];
+        _extractedFound = new boolean[paths.size()];
+    }
+
+    private ExtractedValue getExtractedValue(String columnName, List<List<String>> paths, Map<List<String>, Integer> pathIndexes) {
+        List<String> segments = Arrays.asList(columnName.split("/", -1));
+        List<String> key = Lists.newArrayListWithCapacity(segments.size());
+        for (int depth=0; depth < segments.size(); depth++) {
+            key.add(segments.get(depth).toLowerCase());
+            Integer path = pathIndexes.get(key);
+            if (path != null) {
+                String subPath = depth == segments.size() - 1 ? null : Joiner.on('/').join(segments.subList(depth + 1, segments.size()));
+                return new ExtractedValue(path, subPath);
+            }
+        }
+        int path = paths.size();
+        paths.add(segments);
+        pathIndexes.put(key, path);
+        return new ExtractedValue(path, null);
     }
 
     /**
@@ -148,6 +249,13 @@ public class EmoSerDe extends AbstractSerDe {
             throws SerDeException {
         Row row = (Row) writable;
 
+        // Rows streamed from the EmoDB API already have a Map.  Rows read from Stash are passed on as JSON text, so only
+        // the values needed by the columns are read from the row's JSON rather than parsing the entire row.
+        boolean extracted = !row.hasMap();
+        if (extracted) {
+            extractValues(row);
+        }
+
         // Since this implementation uses a StructObjectInspector return a list of deserialized values in the same
         // order as the original properties.
 
@@ -156,8 +264,8 @@ public class EmoSerDe extends AbstractSerDe {
             String columnName = column.getKey();
             TypeInfo type = column.getValue();
 
-            // Get the raw value from traversing the JSON map
-            Object rawValue = getRawValue(columnName, row);
+            // Get the raw value from traversing the JSON map or from the extracted values
+            Object rawValue = extracted ? getExtractedRawValue(i, row) : getRawValue(i, columnName, row);
             // Deserialize the value to the expected type
             Object value = deserialize(type, rawValue);
 
@@ -184,29 +292,74 @@ public class EmoSerDe extends AbstractSerDe {
      * set to null.  If there is no field called "id" then calling this method with column name "id" will return the
      * intrinsic value for "~id".
      */
-    private Object getRawValue(String columnName, Row row) {
+    private Object getRawValue(int column, String columnName, Row row) {
         try {
             return getRawValue(columnName, row.getMap());
         } catch (ColumnNotFoundException e) {
             // Check if there is an implicit column override then return it
-            try {
-                ImplicitColumn implicitColumn = ImplicitColumn.valueOf(columnName.toLowerCase());
-                return getImplicitValue(implicitColumn, row);
-            } catch (IllegalArgumentException notImplicit) {
+            ImplicitColumn implicitColumn = _implicitColumns[column];
+            if (implicitColumn == null) {
                 // Object not found and column is not implicit.  Return null.
                 return null;
             }
+            return getImplicitValue(implicitColumn, row.getMap(), row);
         }
     }
 
-    private Object getImplicitValue(ImplicitColumn field, Row row) {
+    /**
+     * Reads the values for all columns from the row's JSON in a single pass.
+     */
+    private void extractValues(Row row)
+            throws SerDeException {
+        Arrays.fill(_extracted, null);
+        Arrays.fill(_extractedFound, false);
+        try {
+            _extractor.extract(row.getBytes(), 0, row.getLength(), _extractHandler);
+        } catch (IOException e) {
+            throw new SerDeException(e);
+        }
+    }
+
+    /**
+     * Equivalent to {@link #getRawValue(int, String, Row)} using the values from {@link #extractValues(Row)}.
+     */
+    private Object getExtractedRawValue(int column, Row row) {
+        try {
+            return getExtractedValue(_columnValues[column]);
+        } catch (ColumnNotFoundException e) {
+            ImplicitColumn implicitColumn = _implicitColumns[column];
+            if (implicitColumn == null) {
+                return null;
+            }
+            Map<String, Object> intrinsics;
+            try {
+                intrinsics = implicitColumn._intrinsic != null ?
+                        Collections.singletonMap(implicitColumn._intrinsic, getExtractedValue(_intrinsicValues[column])) :
+                        Collections.<String, Object>emptyMap();
+            } catch (ColumnNotFoundException intrinsicNotFound) {
+                intrinsics = Collections.emptyMap();
+            }
+            return getImplicitValue(implicitColumn, intrinsics, row);
+        }
+    }
+
+    private Object getExtractedValue(ExtractedValue location)
+            throws ColumnNotFoundException {
+        if (!_extractedFound[location._path]) {
+            throw new ColumnNotFoundException();
+        }
+        Object value = _extracted[location._path];
+        return location._subPath != null ? getRawValue(location._subPath, value) : value;
+    }
+
+    private Object getImplicitValue(ImplicitColumn field, Map<String, Object> intrinsics, Row row) {
         switch (field) {
-            case id:                return row.getId();
-            case table:             return row.getTable();
-            case version:           return row.getVersion();
-            case signature:         return row.getSignature();
-            case first_update_at:   return row.getFirstUpdateAt();
-            case last_update_at:    return row.getLastUpdateAt();
+            case id:                return Intrinsic.getId(intrinsics);
+            case table:             return Intrinsic.getTable(intrinsics);
+            case version:           return Intrinsic.getVersion(intrinsics);
+            case signature:         return Intrinsic.getSignature(intrinsics);
+            case first_update_at:   return Intrinsic.getFirstUpdateAt(intrinsics);
+            case last_update_at:    return Intrinsic.getLastUpdateAt(intrinsics);
             case json:              return row.getJson();
             default:
                 // Should be unreachable
@@ -216,10 +369,10 @@ public class EmoSerDe extends AbstractSerDe {
 
     /**
      * Returns the raw value for a given Map.  If the value was found is and is null then null is returned.  If no
-     * value is present then ColumnNotFoundException is thrown.
+     * value is present, or the content is not a Map, then ColumnNotFoundException is thrown.
      * @throws ColumnNotFoundException The column was not found in the map
      */
-    private Object getRawValue(String columnName, Map<String, Object> content)
+    private Object getRawValue(String columnName, Object content)
             throws ColumnNotFoundException {
         String field = columnName;
         Object value = content;
@@ -273,7 +426,7 @@ public class EmoSerDe extends AbstractSerDe {
     }
 
     /**
-     * Like {@link #getRawValue(String, java.util.Map)} except it returns null if the value is not present.
+     * Like {@link #getRawValue(String, Object)} except it returns null if the value is not present.
      */
     private Object getRawValueOrNullIfAbsent(String columnName, Map<String, Object> content)
             throws SerDeException {
@@ -528,6 +681,19 @@ public class EmoSerDe extends AbstractSerDe {
         return null;
     }
 
+    /** Location of a value in the values extracted from a row. */
+    private static class ExtractedValue {
+        // Index of the extractor path whose value contains this value
+        private final int _path;
+        // Path to the value within the extracted value, or null if it is the extracted value
+        private final String _subPath;
+
+        private ExtractedValue(int path, String subPath) {
+            _path = path;
+            _subPath = subPath;
+        }
+    }
+
     /** Exception class used internally when a column is not found. */
     private static class ColumnNotFoundException extends Exception {
         // empty
@@ -1,9 +1,9 @@
 package com.bazaarvoice.emodb.hive.udf;
 
+import com.bazaarvoice.emodb.common.json.JsonFieldExtractor;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableList;
@@ -25,28 +25,40 @@ abstract public class AbstractEmoFieldUDF<T extends WritableComparable<?>> exten
 
     private final JsonFactory _jsonFactory = new ObjectMapper().getFactory();
 
+    // Hive evaluates the same field for every row, so the extractor for the most recent field is kept for reuse
+    private String _field;
+    private JsonFieldExtractor _extractor;
+    // Result of narrowing the extracted value for the current row
+    private T _result;
+    private final JsonFieldExtractor.ValueHandler _narrowToResult = (path, parser) ->
+            _result = parser.getCurrentToken() == JsonToken.VALUE_NULL ? null : narrow(parser);
+
     protected T evaluateAndNarrow(final Text json, @Nullable final Text field) {
         return evaluateAndNarrow(json, field != null ? field.toString() : null);
     }
 
     protected T evaluateAndNarrow(final Text json, @Nullable final String field) {
         try {
-            JsonParser parser = _jsonFactory.createJsonParser(json.toString());
-            // Move to the first token
-            parser.nextToken();
+            if (field == null) {
+                JsonParser parser = _jsonFactory.createParser(json.getBytes(), 0, json.getLength());
+                // Move to the first token
+                parser.nextToken();
 
-            if (field != null) {
-                boolean fieldFound = moveParserToField(parser, field);
-                if (!fieldFound) {
+                if (parser.getCurrentToken() == null || parser.getCurrentToken() == JsonToken.VALUE_NULL) {
                     return null;
                 }
-            }
 
-            if (parser.getCurrentToken() == null || parser.getCurrentToken() == JsonToken.VALUE_NULL) {
-                return null;
+                return narrow(parser);
             }
 
-            return narrow(parser);
+            // Don't materialize the entire parser content, do a targeted search for the value that matches the path.
+            if (!field.equals(_field)) {
+                _extractor = new JsonFieldExtractor(ImmutableList.of(getFieldPath(field)), false);
+                _field = field;
+            }
+            _result = null;
+            _extractor.extract(json.getBytes(), 0, json.getLength(), _narrowToResult);
+            return _result;
         } catch (Exception e) {
             return null;
         }
@@ -65,48 +77,6 @@ abstract public class AbstractEmoFieldUDF<T extends WritableComparable<?>> exten
         return fields.build();
     }
 
-    /**
-     * Don't materialize the entire parser content, do a targeted search for the value that matches the path.
-     */
-    private boolean moveParserToField(JsonParser parser, String path)
-            throws IOException {
-        List<String> segments = getFieldPath(path);
-
-        for (String segment : segments) {
-            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
-                // Always expect the path to be fields in a JSON map
-                return false;
-            }
-
-            boolean found = false;
-
-            JsonToken currentToken = parser.nextToken();
-            while (!found && currentToken != JsonToken.END_OBJECT) {
-                if (currentToken != JsonToken.FIELD_NAME) {
-                    // This should always be a field.  Something is amiss.
-                    throw new IOException("Field not found at expected location");
-                }
-                String fieldName = parser.getText();
-                if (fieldName.equals(segment)) {
-                    // Move to the next token, which is the field value
-                    found = true;
-                    currentToken = parser.nextToken();
-                } else {
-                    parser.nextValue();
-                    currentToken = skipValue(parser);
-                }
-            }
-
-            if (!found) {
-                // Field was not found
-                return false;
-            }
-        }
-
-        // The current location in the parser is the value.
-        return true;
-    }
-
     /**
      * Skips to the first token after the object at the current parser token.
      */
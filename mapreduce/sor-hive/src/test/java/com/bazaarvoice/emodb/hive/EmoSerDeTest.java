@@ -0,0 +1,105 @@
+package com.bazaarvoice.emodb.hive;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.hadoop.io.BaseRecordReader;
+import com.bazaarvoice.emodb.hadoop.io.Row;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde.serdeConstants;
+import org.apache.hadoop.io.Text;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class EmoSerDeTest {
+
+    private static final List<Map<String, Object>> ROWS = ImmutableList.<Map<String, Object>>of(
+            ImmutableMap.<String, Object>builder()
+                    .put("rating", 4)
+                    .put("About", ImmutableMap.of("name", "Bob", "tags", ImmutableList.of("a", "b")))
+                    .put("~id", "row1")
+                    .put("~table", "review:testcustomer")
+                    .put("~version", 3)
+                    .build(),
+            ImmutableMap.<String, Object>builder()
+                    .put("id", "explicit")
+                    .put("~id", "row2")
+                    .put("~table", "review:testcustomer")
+                    .put("~version", 1)
+                    .build());
+
+    @Test
+    public void testDeserializeJsonRowsFromRecordReader() throws Exception {
+        EmoSerDe serDe = newSerDe();
+
+        BaseRecordReader reader = new BaseRecordReader(ROWS.size()) {
+            @Override
+            protected Iterator<byte[]> getJsonRowIterator() {
+                List<byte[]> lines = Lists.newArrayList();
+                for (Map<String, Object> row : ROWS) {
+                    lines.add(JsonHelper.asJson(row).getBytes(Charsets.UTF_8));
+                }
+                return lines.iterator();
+            }
+
+            @Override
+            protected void closeOnce() {
+                // Do nothing
+            }
+        };
+        reader.initialize();
+
+        Text key = new Text();
+        Row row = new Row();
+        List<String> keys = Lists.newArrayList();
+        List<List<Object>> values = Lists.newArrayList();
+        while (reader.setNextKeyValue(key, row)) {
+            keys.add(key.toString());
+            values.add(Lists.newArrayList((List<?>) serDe.deserialize(row)));
+            // The values were read from the row's JSON without parsing the row into a Map
+            assertFalse(row.hasMap());
+        }
+
+        assertEquals(keys, ImmutableList.of("review:testcustomer/row1", "review:testcustomer/row2"));
+        assertEquals(values, ImmutableList.of(
+                Lists.newArrayList("row1", 4, "Bob", ImmutableList.of("a", "b"), 3L),
+                Lists.newArrayList("explicit", null, null, null, 1L)));
+    }
+
+    @Test
+    public void testJsonRowsMatchParsedRows() throws Exception {
+        EmoSerDe serDe = newSerDe();
+        for (Map<String, Object> content : ROWS) {
+            Row jsonRow = new Row(JsonHelper.asJson(content));
+            List<Object> fromJson = Lists.newArrayList((List<?>) serDe.deserialize(jsonRow));
+            Row mapRow = new Row(content);
+            assertTrue(mapRow.hasMap());
+            List<Object> fromMap = Lists.newArrayList((List<?>) serDe.deserialize(mapRow));
+            assertEquals(fromJson, fromMap);
+        }
+    }
+
+    private EmoSerDe newSerDe() throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(serdeConstants.LIST_COLUMNS, "id,rating,about/name,about/tags,version");
+        properties.setProperty(serdeConstants.LIST_COLUMN_TYPES, "string:int:string:array<string>:bigint");
+        EmoSerDe serDe = new EmoSerDe();
+        try {
+            serDe.initialize(new Configuration(), properties);
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+        return serDe;
+    }
+}
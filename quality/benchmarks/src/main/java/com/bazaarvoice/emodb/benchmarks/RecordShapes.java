@@ -0,0 +1,159 @@
+package com.bazaarvoice.emodb.benchmarks;
+
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.MapDeltaBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic documents and delta chains shared by the benchmarks.  All generators are seeded so every benchmark run,
+ * and every fork within a run, operates on identical data.
+ */
+public class RecordShapes {
+
+    public enum Shape {
+        /** A typical UGC record: a dozen top-level attributes, a few of them small lists or maps. */
+        SMALL,
+        /** A flat map with thousands of top-level attributes, such as a catalog record with many localized fields. */
+        WIDE,
+        /** A narrow map with a long chain of nested maps. */
+        DEEP,
+    }
+
+    private static final int WIDE_ATTRIBUTES = 2000;
+    private static final int DEEP_LEVELS = 32;
+
+    private RecordShapes() {
+        // empty
+    }
+
+    public static Random random() {
+        return new Random(0x5eed);
+    }
+
+    /** Returns a new mutable document of the requested shape. */
+    public static Map<String, Object> document(Shape shape, Random random) {
+        switch (shape) {
+            case SMALL:
+                return smallDocument(random);
+            case WIDE:
+                Map<String, Object> wide = smallDocument(random);
+                for (int i = 0; i < WIDE_ATTRIBUTES; i++) {
+                    wide.put(attributeName(i), randomValue(random));
+                }
+                return wide;
+            case DEEP:
+                Map<String, Object> deep = smallDocument(random);
+                Map<String, Object> level = deep;
+                for (int i = 0; i < DEEP_LEVELS; i++) {
+                    Map<String, Object> child = Maps.newLinkedHashMap();
+                    child.put("depth", i);
+                    child.put("label", randomString(random, 16));
+                    level.put("child", child);
+                    level = child;
+                }
+                return deep;
+            default:
+                throw new UnsupportedOperationException(shape.name());
+        }
+    }
+
+    /**
+     * Returns a chain of deltas of the requested length.  The first delta is a literal of {@link #document(Shape, Random)}
+     * and the remainder are the mix of map updates, nested updates, removals and conditional deltas typically
+     * written by clients.
+     */
+    public static List<Delta> deltaChain(Shape shape, int length, Random random) {
+        List<Delta> deltas = Lists.newArrayListWithCapacity(length);
+        deltas.add(Deltas.literal(document(shape, random)));
+        for (int i = 1; i < length; i++) {
+            deltas.add(delta(shape, i, random));
+        }
+        return deltas;
+    }
+
+    /** Returns a single non-literal delta which applies cleanly to any document of the requested shape. */
+    public static Delta delta(Shape shape, int sequence, Random random) {
+        MapDeltaBuilder builder = Deltas.mapBuilder()
+                .put("lastModerated", sequence)
+                .put("status", random.nextBoolean() ? "APPROVED" : "SUBMITTED");
+
+        switch (sequence % 4) {
+            case 0:
+                builder.update("tags", Deltas.setBuilder().add(randomString(random, 6)).build());
+                break;
+            case 1:
+                builder.update("stats", Deltas.mapBuilder().put("views", random.nextInt(100000)).build());
+                break;
+            case 2:
+                builder.remove("note").put("note" + (sequence % 8), randomString(random, 40));
+                break;
+            default:
+                builder.update("rating", Deltas.conditional(Conditions.isNumber(), Deltas.literal(random.nextInt(5) + 1)));
+                break;
+        }
+
+        if (shape == Shape.WIDE) {
+            builder.put(attributeName(random.nextInt(WIDE_ATTRIBUTES)), randomValue(random));
+        } else if (shape == Shape.DEEP) {
+            Delta nested = Deltas.mapBuilder().put("label", randomString(random, 16)).build();
+            for (int i = random.nextInt(DEEP_LEVELS); i >= 0; i--) {
+                nested = Deltas.mapBuilder().update("child", nested).build();
+            }
+            builder.update("child", nested);
+        }
+        return builder.build();
+    }
+
+    private static Map<String, Object> smallDocument(Random random) {
+        Map<String, Object> doc = Maps.newLinkedHashMap();
+        doc.put("type", "review");
+        doc.put("client", "testcustomer");
+        doc.put("status", "SUBMITTED");
+        doc.put("rating", random.nextInt(5) + 1);
+        doc.put("title", randomString(random, 30));
+        doc.put("text", randomString(random, 500));
+        doc.put("authorId", randomString(random, 12));
+        doc.put("productId", randomString(random, 12));
+        doc.put("locale", "en_US");
+        doc.put("tags", ImmutableList.of("verified", "incentivized"));
+        Map<String, Object> stats = Maps.newLinkedHashMap();
+        stats.put("views", random.nextInt(100000));
+        stats.put("helpful", random.nextInt(1000));
+        stats.put("unhelpful", random.nextInt(1000));
+        doc.put("stats", stats);
+        return doc;
+    }
+
+    private static String attributeName(int i) {
+        return "attribute_" + i;
+    }
+
+    private static Object randomValue(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return random.nextInt();
+            case 1:
+                return random.nextDouble();
+            case 2:
+                return random.nextBoolean();
+            default:
+                return randomString(random, 4 + random.nextInt(60));
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        StringBuilder buf = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            buf.append((char) ('a' + random.nextInt(26)));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,82 @@
+package com.bazaarvoice.emodb.common.json;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a few columns from a row's JSON, as the Hive SerDe and UDFs do for every row.  {@link #fullParse()}
+ * is the baseline which parses the entire document into a Map and then walks each column's path.  One of the paths is
+ * absent, so the extractor can't stop early and must scan the whole document just like the full parse.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonFieldExtractorBenchmark {
+
+    private static final List<List<String>> PATHS = ImmutableList.<List<String>>of(
+            ImmutableList.of("rating"), ImmutableList.of("stats", "views"), ImmutableList.of("missing"));
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    private byte[] _json;
+    private JsonFieldExtractor _extractor;
+    private JsonFieldExtractor _caseInsensitiveExtractor;
+
+    @Setup
+    public void setUp() {
+        _json = JsonHelper.asUtf8Bytes(RecordShapes.document(shape, RecordShapes.random()));
+        _extractor = new JsonFieldExtractor(PATHS, false);
+        _caseInsensitiveExtractor = new JsonFieldExtractor(PATHS, true);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object[] fullParse() {
+        Map<String, Object> map = JsonHelper.fromUtf8Bytes(_json, 0, _json.length, Map.class);
+        Object[] values = new Object[PATHS.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = map;
+            for (String key : PATHS.get(i)) {
+                value = value instanceof Map ? ((Map<String, Object>) value).get(key) : null;
+            }
+            values[i] = value;
+        }
+        return values;
+    }
+
+    @Benchmark
+    public Object[] extract() throws IOException {
+        return extract(_extractor);
+    }
+
+    @Benchmark
+    public Object[] extractCaseInsensitive() throws IOException {
+        return extract(_caseInsensitiveExtractor);
+    }
+
+    private Object[] extract(JsonFieldExtractor extractor) throws IOException {
+        Object[] values = new Object[PATHS.size()];
+        extractor.extract(_json, 0, _json.length, (path, parser) -> values[path] = parser.readValueAs(Object.class));
+        return values;
+    }
+}
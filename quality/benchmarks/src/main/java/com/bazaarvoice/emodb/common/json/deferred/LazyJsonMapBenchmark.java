@@ -0,0 +1,79 @@
+package com.bazaarvoice.emodb.common.json.deferred;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures serializing {@link LazyJsonMap} instances back to JSON, as happens for every document returned by the API.
+ * The "untouched" case streams the original JSON, the "overrides" case adds intrinsics without deserializing and the
+ * "deserialized" case is the fallback once the map has been read.  {@link #eagerMap()} is the baseline the lazy
+ * map is meant to beat.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyJsonMapBenchmark {
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    private String _json;
+
+    @Setup
+    public void setUp() {
+        _json = JsonHelper.asJson(RecordShapes.document(shape, RecordShapes.random()));
+    }
+
+    @Benchmark
+    public String untouched() {
+        return JsonHelper.asJson(new LazyJsonMap(_json));
+    }
+
+    @Benchmark
+    public String overrides() {
+        LazyJsonMap map = new LazyJsonMap(_json);
+        putIntrinsics(map);
+        return JsonHelper.asJson(map);
+    }
+
+    @Benchmark
+    public String deserialized() {
+        LazyJsonMap map = new LazyJsonMap(_json);
+        map.get("type");
+        putIntrinsics(map);
+        return JsonHelper.asJson(map);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public String eagerMap() {
+        Map<String, Object> map = JsonHelper.fromJson(_json, Map.class);
+        putIntrinsics(map);
+        return JsonHelper.asJson(map);
+    }
+
+    private void putIntrinsics(Map<String, Object> map) {
+        map.put("~id", "benchmark");
+        map.put("~table", "review:testcustomer");
+        map.put("~version", 1000);
+        map.put("~signature", "abcdef0123456789abcdef0123456789");
+        map.put("~deleted", false);
+    }
+}
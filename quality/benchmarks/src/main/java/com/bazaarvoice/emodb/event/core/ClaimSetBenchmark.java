@@ -0,0 +1,115 @@
+package com.bazaarvoice.emodb.event.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of pollers sharing a single subscription's {@link ClaimSet}.  Each operation is one poll
+ * which claims a batch of events followed by the ack which releases them, as {@link DefaultEventStore} does.  The
+ * benchmark is repeated with 8, 32 and 128 poller threads to show how each implementation behaves under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClaimSetBenchmark {
+
+    private static final int BATCH_SIZE = 10;
+    private static final Duration TTL = Duration.ofSeconds(30);
+
+    @Param({"standard", "concurrent", "offHeap"})
+    public ClaimStoreConfiguration.ClaimSetType type;
+
+    private ClaimSet _claimSet;
+    private final AtomicInteger _nextPoller = new AtomicInteger();
+
+    @Setup
+    public void setUp() {
+        switch (type) {
+            case concurrent:
+                _claimSet = new ConcurrentClaimSet(new ClaimStoreConfiguration().getConcurrencyLevel());
+                break;
+            case offHeap:
+                _claimSet = new OffHeapClaimSet();
+                break;
+            default:
+                _claimSet = new DefaultClaimSet();
+        }
+    }
+
+    /** Each poller claims its own events, like pollers reading different slabs of the same subscription. */
+    @State(Scope.Thread)
+    public static class Poller {
+        private int _poller;
+        private int _sequence;
+        private final List<byte[]> _batch = new ArrayList<>(BATCH_SIZE);
+
+        @Setup
+        public void setUp(ClaimSetBenchmark benchmark) {
+            _poller = benchmark._nextPoller.getAndIncrement();
+        }
+
+        /** Event IDs are a 16 byte slab ID followed by a 4 byte index within the slab. */
+        List<byte[]> nextBatch() {
+            _batch.clear();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                int sequence = _sequence++;
+                _batch.add(ByteBuffer.allocate(20)
+                        .putLong(_poller)
+                        .putLong(sequence / 1000)
+                        .putInt(sequence % 1000)
+                        .array());
+            }
+            return _batch;
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public int poll8(Poller poller) {
+        return pollAndAck(poller);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public int poll32(Poller poller) {
+        return pollAndAck(poller);
+    }
+
+    @Benchmark
+    @Threads(128)
+    public int poll128(Poller poller) {
+        return pollAndAck(poller);
+    }
+
+    private int pollAndAck(Poller poller) {
+        List<byte[]> batch = poller.nextBatch();
+        int claimed = 0;
+        for (byte[] eventId : batch) {
+            if (_claimSet.acquire(eventId, TTL)) {
+                claimed++;
+            }
+        }
+        _claimSet.renewAll(batch, Duration.ZERO, false);
+        return claimed;
+    }
+}
@@ -0,0 +1,83 @@
+package com.bazaarvoice.emodb.sor.condition.eval;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.condition.LikeCondition;
+import com.bazaarvoice.emodb.sor.condition.impl.LikeConditionImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures condition evaluation against documents, as performed by conditional deltas, databus subscription
+ * filters and table filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConditionEvaluatorBenchmark {
+
+    private static final String[] LIKE_INPUTS = {
+            "review:testcustomer", "review:othercustomer", "question:testcustomer",
+            "catalog_global:cat", "answer:testcustomer:with:a:much:longer:suffix"};
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    private Map<String, Object> _document;
+    private Condition _mapCondition;
+    private Condition _compoundCondition;
+    private LikeCondition[] _likeConditions;
+
+    @Setup
+    public void setUp() {
+        _document = RecordShapes.document(shape, RecordShapes.random());
+        _mapCondition = Conditions.fromString("{..,\"type\":\"review\",\"status\":in(\"APPROVED\",\"SUBMITTED\")}");
+        _compoundCondition = Conditions.fromString(
+                "or({..,\"type\":\"question\"}," +
+                        "and({..,\"client\":like(\"test*\")},{..,\"rating\":ge(3)},{..,\"stats\":{..,\"views\":gt(10)}})," +
+                        "{..,\"tags\":containsAny(\"verified\")})");
+        _likeConditions = new LikeCondition[] {
+                LikeConditionImpl.create("review:testcustomer"),
+                LikeConditionImpl.create("review:*"),
+                LikeConditionImpl.create("*:testcustomer"),
+                LikeConditionImpl.create("*test*"),
+                LikeConditionImpl.create("a*:*cust*er*"),
+        };
+    }
+
+    @Benchmark
+    public boolean evalMapCondition() {
+        return ConditionEvaluator.eval(_mapCondition, _document, null);
+    }
+
+    @Benchmark
+    public boolean evalCompoundCondition() {
+        return ConditionEvaluator.eval(_compoundCondition, _document, null);
+    }
+
+    @Benchmark
+    public void likeMatches(Blackhole blackhole) {
+        for (LikeCondition condition : _likeConditions) {
+            for (String input : LIKE_INPUTS) {
+                blackhole.consume(condition.matches(input));
+            }
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.api.ChangeBuilder;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.db.Record;
+import com.bazaarvoice.emodb.sor.db.RecordEntryRawMetadata;
+import com.bazaarvoice.emodb.sor.db.test.DeltaClusteringKey;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures expanding a record read from Cassandra into its resolved content and pending compaction.  With
+ * {@link CompactionState#LEGACY} the expansion is delegated to {@link DefaultCompactor#doExpand}; the other states
+ * exercise {@link DistributedCompactor} directly.  The full consistency timestamp is always after the last delta so
+ * every delta is eligible for compaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactorBenchmark {
+
+    public enum CompactionState {
+        /** No compaction record, every delta must be resolved. */
+        NONE,
+        /** A compaction record without a compacted delta, as written by older versions of EmoDB. */
+        LEGACY,
+        /** A compaction record containing the compacted content of the first delta. */
+        COMPACTED,
+    }
+
+    private static final String CUTOFF_SIGNATURE = "abcdef0123456789abcdef0123456789";
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    @Param({"10", "100", "1000"})
+    public int deltas;
+
+    @Param({"NONE", "LEGACY", "COMPACTED"})
+    public CompactionState compaction;
+
+    private DistributedCompactor _compactor;
+    private Record _record;
+    private Supplier<Record> _requeryFn;
+    private long _now;
+
+    @Setup
+    public void setUp() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        _compactor = new DistributedCompactor(metricRegistry.counter("archivedDeltaSize"), false, metricRegistry);
+
+        Key key = new Key(new InMemoryTable("review:testcustomer", new TableOptionsBuilder().setPlacement("ugc_global:ugc").build(),
+                ImmutableMap.<String, Object>of()), "benchmark");
+        List<Delta> chain = RecordShapes.deltaChain(shape, deltas, RecordShapes.random());
+
+        // Space the deltas 2ms apart so there's room for a compaction record immediately after the first delta.
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        List<Map.Entry<DeltaClusteringKey, Change>> changes = Lists.newArrayList();
+        for (int i = 0; i < chain.size(); i++) {
+            UUID changeId = TimeUUIDs.uuidForTimeMillis(start + 2 * i);
+            changes.add(Maps.immutableEntry(new DeltaClusteringKey(changeId, 1), ChangeBuilder.just(changeId, chain.get(i))));
+        }
+
+        List<Map.Entry<DeltaClusteringKey, Compaction>> compactions = Lists.newArrayList();
+        if (compaction != CompactionState.NONE) {
+            UUID cutoff = changes.get(0).getKey().getChangeId();
+            UUID compactionId = TimeUUIDs.uuidForTimeMillis(start + 1);
+            Compaction compactionRecord = compaction == CompactionState.LEGACY ?
+                    new Compaction(1, cutoff, cutoff, CUTOFF_SIGNATURE, cutoff, cutoff) :
+                    new Compaction(1, cutoff, cutoff, CUTOFF_SIGNATURE, cutoff, cutoff, chain.get(0));
+            DeltaClusteringKey compactionKey = new DeltaClusteringKey(compactionId, 1);
+            compactions.add(Maps.immutableEntry(compactionKey, compactionRecord));
+            changes.add(1, Maps.immutableEntry(compactionKey, ChangeBuilder.just(compactionId, compactionRecord)));
+        }
+
+        _record = new BenchmarkRecord(key, compactions, changes);
+        _requeryFn = Suppliers.ofInstance(_record);
+        _now = System.currentTimeMillis();
+    }
+
+    @Benchmark
+    public Expanded expand() {
+        return _compactor.expand(_record, _now, _now, _now, MutableIntrinsics.create(_record.getKey()), false, _requeryFn);
+    }
+
+    /** In-memory record which, unlike records read from Cassandra, may be iterated any number of times. */
+    private static class BenchmarkRecord implements Record {
+        private final Key _key;
+        private final List<Map.Entry<DeltaClusteringKey, Compaction>> _compactions;
+        private final List<Map.Entry<DeltaClusteringKey, Change>> _changes;
+
+        BenchmarkRecord(Key key, List<Map.Entry<DeltaClusteringKey, Compaction>> compactions,
+                        List<Map.Entry<DeltaClusteringKey, Change>> changes) {
+            _key = key;
+            _compactions = ImmutableList.copyOf(compactions);
+            _changes = ImmutableList.copyOf(changes);
+        }
+
+        @Override
+        public Key getKey() {
+            return _key;
+        }
+
+        @Override
+        public Iterator<Map.Entry<DeltaClusteringKey, Compaction>> passOneIterator() {
+            return _compactions.iterator();
+        }
+
+        @Override
+        public Iterator<Map.Entry<DeltaClusteringKey, Change>> passTwoIterator() {
+            return _changes.iterator();
+        }
+
+        @Override
+        public Iterator<RecordEntryRawMetadata> rawMetadata() {
+            return Iterators.emptyIterator();
+        }
+    }
+}
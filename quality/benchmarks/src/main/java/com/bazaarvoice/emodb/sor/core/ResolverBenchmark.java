@@ -0,0 +1,72 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultResolver#update(UUID, Delta, Set)} over chains of uncompacted deltas, the cost paid on
+ * every read of a record whose deltas haven't been compacted yet.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverBenchmark {
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    @Param({"10", "100", "1000"})
+    public int deltas;
+
+    private Key _key;
+    private List<Delta> _deltas;
+    private UUID[] _changeIds;
+    private Set<String> _tags;
+
+    @Setup
+    public void setUp() {
+        _key = new Key(new InMemoryTable("review:testcustomer", new TableOptionsBuilder().setPlacement("ugc_global:ugc").build(),
+                ImmutableMap.<String, Object>of()), "benchmark");
+        _deltas = RecordShapes.deltaChain(shape, deltas, RecordShapes.random());
+        _changeIds = new UUID[deltas];
+        long start = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < deltas; i++) {
+            _changeIds[i] = TimeUUIDs.uuidForTimeMillis(start + i);
+        }
+        _tags = ImmutableSet.of("ugc");
+    }
+
+    @Benchmark
+    public Resolved resolve() {
+        Resolver resolver = new DefaultResolver(MutableIntrinsics.create(_key));
+        for (int i = 0; i < _changeIds.length; i++) {
+            resolver.update(_changeIds[i], _deltas.get(i), _tags);
+        }
+        return resolver.resolved();
+    }
+}
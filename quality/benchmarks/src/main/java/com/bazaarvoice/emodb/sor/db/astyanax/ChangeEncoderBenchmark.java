@@ -0,0 +1,112 @@
+package com.bazaarvoice.emodb.sor.db.astyanax;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link DefaultChangeEncoder#decodeChange(UUID, ByteBuffer)} for the change types read back from Cassandra.
+ * The "decode" benchmarks measure only decoding, which defers parsing where possible, while the "apply" and "resolve"
+ * benchmarks include the cost of parsing and evaluating the decoded deltas.  Comparing delta encoding versions 3 and 4
+ * compares the JSON and CBOR encodings of literals and compactions; DefaultChangeEncoderTest covers the difference in
+ * encoded size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChangeEncoderBenchmark {
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    @Param({"3", "4"})
+    public int encodingVersion;
+
+    private DefaultChangeEncoder _encoder;
+    private UUID _changeId;
+    private Map<String, Object> _document;
+    private ByteBuffer _literal;
+    private ByteBuffer _update;
+    private ByteBuffer _compaction;
+
+    @Setup
+    public void setUp() {
+        _encoder = new DefaultChangeEncoder(encodingVersion);
+        _changeId = TimeUUIDs.newUUID();
+
+        Random random = RecordShapes.random();
+        Delta literal = RecordShapes.deltaChain(shape, 1, random).get(0);
+        Delta update = RecordShapes.delta(shape, 3, random);
+        Set<String> tags = ImmutableSet.of("ugc");
+
+        _document = RecordShapes.document(shape, RecordShapes.random());
+        _literal = _encoder.encodeDelta(literal, EnumSet.of(ChangeFlag.CONSTANT_DELTA, ChangeFlag.MAP_DELTA), tags, "");
+        _update = _encoder.encodeDelta(update, EnumSet.of(ChangeFlag.MAP_DELTA), tags, "");
+        _compaction = _encoder.encodeCompaction(
+                new Compaction(100, _changeId, _changeId, "abcdef0123456789abcdef0123456789", _changeId, _changeId, literal, tags),
+                "");
+    }
+
+    @Benchmark
+    public Change decodeLiteral() {
+        return _encoder.decodeChange(_changeId, _literal.duplicate());
+    }
+
+    @Benchmark
+    public Object applyLiteral() {
+        Change change = _encoder.decodeChange(_changeId, _literal.duplicate());
+        // Literal map deltas are decoded lazily; force them to deserialize.
+        return ((Map<?, ?>) DeltaEvaluator.eval(change.getDelta(), DeltaEvaluator.UNDEFINED, null)).size();
+    }
+
+    @Benchmark
+    public Change decodeUpdate() {
+        return _encoder.decodeChange(_changeId, _update.duplicate());
+    }
+
+    @Benchmark
+    public Object applyUpdate() {
+        Change change = _encoder.decodeChange(_changeId, _update.duplicate());
+        return DeltaEvaluator.eval(change.getDelta(), _document, null);
+    }
+
+    @Benchmark
+    public Change decodeCompaction() {
+        return _encoder.decodeChange(_changeId, _compaction.duplicate());
+    }
+
+    /** Resolves a record from its compaction and a subsequent update, the most common shape of a compacted record. */
+    @Benchmark
+    public Object resolveCompaction() {
+        Compaction compaction = _encoder.decodeChange(_changeId, _compaction.duplicate()).getCompaction();
+        Object content = DeltaEvaluator.eval(compaction.getCompactedDelta(), DeltaEvaluator.UNDEFINED, null);
+        Change change = _encoder.decodeChange(_changeId, _update.duplicate());
+        return DeltaEvaluator.eval(change.getDelta(), content, null);
+    }
+}
@@ -0,0 +1,75 @@
+package com.bazaarvoice.emodb.sor.delta.deser;
+
+import com.bazaarvoice.emodb.benchmarks.RecordShapes;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing deltas from their string form, the first thing that happens to every delta read from Cassandra.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeltaParserBenchmark {
+
+    @Param({"SMALL", "WIDE", "DEEP"})
+    public RecordShapes.Shape shape;
+
+    private String _literal;
+    private String _update;
+    private ByteBuffer _literalUtf8;
+    private ByteBuffer _updateUtf8;
+
+    @Setup
+    public void setUp() {
+        Random random = RecordShapes.random();
+        _literal = RecordShapes.deltaChain(shape, 1, random).get(0).toString();
+        _update = RecordShapes.delta(shape, 3, random).toString();
+        _literalUtf8 = ByteBuffer.wrap(_literal.getBytes(StandardCharsets.UTF_8));
+        _updateUtf8 = ByteBuffer.wrap(_update.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public Delta parseLiteral() {
+        return DeltaParser.parse(_literal);
+    }
+
+    @Benchmark
+    public Delta parseUpdate() {
+        return DeltaParser.parse(_update);
+    }
+
+    /** Parses the same deltas from their UTF-8 encoding, the way they're read from Cassandra. */
+    @Benchmark
+    public Delta parseLiteralUtf8() {
+        return DeltaParser.parse(_literalUtf8);
+    }
+
+    @Benchmark
+    public Delta parseUpdateUtf8() {
+        return DeltaParser.parse(_updateUtf8);
+    }
+
+    @Benchmark
+    public Object tokenizeLiteral() {
+        return new JsonTokener(_literal).nextValue();
+    }
+}
@@ -26,6 +26,7 @@ import org.junit.Rule;
 import org.junit.Test;
 
 import java.net.URI;
+import java.time.Duration;
 import java.util.List;
 
 import static org.mockito.Mockito.mock;
@@ -72,6 +73,14 @@ public class ReplicationJerseyTest extends ResourceTest {
         verifyNoMoreInteractions(_server);
     }
 
+    @Test
+    public void testPoll() {
+        replicationClient().poll("channel", Duration.ofSeconds(30), 123);
+
+        verify(_server).poll("channel", Duration.ofSeconds(30), 123);
+        verifyNoMoreInteractions(_server);
+    }
+
     @Test
     public void testDelete() {
         List<String> ids = ImmutableList.of("first", "second");
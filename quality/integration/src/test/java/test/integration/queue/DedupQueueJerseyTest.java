@@ -13,9 +13,11 @@ import com.bazaarvoice.emodb.queue.client.DedupQueueServiceAuthenticator;
 import com.bazaarvoice.emodb.test.ResourceTest;
 import com.bazaarvoice.emodb.web.partition.PartitionForwardingException;
 import com.bazaarvoice.emodb.web.resources.queue.DedupQueueResource1;
+import com.bazaarvoice.emodb.web.resources.queue.QueueResourcePoller;
 import com.bazaarvoice.ostrich.PartitionContextBuilder;
 import com.bazaarvoice.ostrich.pool.OstrichAccessors;
 import com.bazaarvoice.ostrich.pool.PartitionContextValidator;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
@@ -56,7 +58,8 @@ public class DedupQueueJerseyTest extends ResourceTest {
 
     @Rule
     public ResourceTestRule _resourceTestRule = setupResourceTestRule(
-            Collections.<Object>singletonList(new DedupQueueResource1(_server, DedupQueueServiceAuthenticator.proxied(_proxy))),
+            Collections.<Object>singletonList(new DedupQueueResource1(_server, DedupQueueServiceAuthenticator.proxied(_proxy),
+                    new QueueResourcePoller(new MetricRegistry()))),
             ImmutableMap.of(
                     APIKEY_QUEUE, new ApiKey("queue", ImmutableSet.of("queue-role")),
                     APIKEY_UNAUTHORIZED, new ApiKey("unauth", ImmutableSet.of("unauthorized-role"))),
@@ -43,6 +43,13 @@ public interface AuthQueueService {
 
     List<Message> poll(@Credential String apiKey, String queue, Duration claimTtl, int limit);
 
+    /**
+     * Polls for messages the same as {@link #poll(String, String, Duration, int)} except that, if no messages are available,
+     * the server waits up to {@code maxWait} for messages to be sent to the queue before returning an empty list.
+     * The server may cap the wait at a shorter time.
+     */
+    List<Message> poll(@Credential String apiKey, String queue, Duration claimTtl, int limit, Duration maxWait);
+
     void renew(@Credential String apiKey, String queue, Collection<String> messageIds, Duration claimTtl);
 
     void acknowledge(@Credential String apiKey, String queue, Collection<String> messageIds);
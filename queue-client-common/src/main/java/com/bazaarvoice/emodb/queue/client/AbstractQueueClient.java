@@ -151,15 +151,23 @@ abstract class AbstractQueueClient {
     }
 
     protected List<Message> doPoll(String apiKey, String queue, Duration claimTtl, int limit) {
+        return doPoll(apiKey, queue, claimTtl, limit, Duration.ZERO);
+    }
+
+    protected List<Message> doPoll(String apiKey, String queue, Duration claimTtl, int limit, Duration maxWait) {
         checkNotNull(queue, "queue");
         checkNotNull(claimTtl, "claimTtl");
+        checkNotNull(maxWait, "maxWait");
         try {
-            URI uri = _queueService.clone()
+            UriBuilder uriBuilder = _queueService.clone()
                     .segment(queue, "poll")
                     .queryParam("ttl", Ttls.toSeconds(claimTtl, 0, Integer.MAX_VALUE))
                     .queryParam("limit", limit)
-                    .queryParam("partitioned", _partitionSafe)
-                    .build();
+                    .queryParam("partitioned", _partitionSafe);
+            if (!maxWait.isZero()) {
+                uriBuilder.queryParam("wait", Ttls.toSeconds(maxWait, 0, Integer.MAX_VALUE));
+            }
+            URI uri = uriBuilder.build();
             return _client.resource(uri)
                     .accept(MediaType.APPLICATION_JSON_TYPE)
                     .header(ApiKeyRequest.AUTHENTICATION_HEADER, apiKey)
@@ -83,6 +83,11 @@ class DedupQueueServiceAuthenticatorProxy implements DedupQueueService {
         return _authDedupQueueService.poll(_apiKey, queue, claimTtl, limit);
     }
 
+    @Override
+    public List<Message> poll(@PartitionKey String queue, Duration claimTtl, int limit, Duration maxWait) {
+        return _authDedupQueueService.poll(_apiKey, queue, claimTtl, limit, maxWait);
+    }
+
     @Override
     public long getMessageCountUpTo(@PartitionKey String queue, long limit) {
         return _authDedupQueueService.getMessageCountUpTo(_apiKey, queue, limit);
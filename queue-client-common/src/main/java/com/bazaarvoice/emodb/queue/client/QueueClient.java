@@ -60,6 +60,11 @@ public class QueueClient extends AbstractQueueClient implements AuthQueueService
         return doPoll(apiKey, queue, claimTtl, limit);
     }
 
+    @Override
+    public List<Message> poll(String apiKey, @PartitionKey String queue, Duration claimTtl, int limit, Duration maxWait) {
+        return doPoll(apiKey, queue, claimTtl, limit, maxWait);
+    }
+
     @Override
     public void renew(String apiKey, @PartitionKey String queue, Collection<String> messageIds, Duration claimTtl) {
         doRenew(apiKey, queue, messageIds, claimTtl);
@@ -83,6 +83,11 @@ class QueueServiceAuthenticatorProxy implements QueueService {
         return _authQueueService.poll(_apiKey, queue, claimTtl, limit);
     }
 
+    @Override
+    public List<Message> poll(@PartitionKey String queue, Duration claimTtl, int limit, Duration maxWait) {
+        return _authQueueService.poll(_apiKey, queue, claimTtl, limit, maxWait);
+    }
+
     @Override
     public long getMessageCountUpTo(String queue, long limit) {
         return _authQueueService.getMessageCountUpTo(_apiKey, queue, limit);
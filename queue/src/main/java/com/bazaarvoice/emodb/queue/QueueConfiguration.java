@@ -1,7 +1,14 @@
 package com.bazaarvoice.emodb.queue;
 
 import com.bazaarvoice.emodb.common.cassandra.CassandraConfiguration;
+import com.bazaarvoice.emodb.event.core.ClaimStoreConfiguration;
+import com.bazaarvoice.emodb.event.core.LongPollConfiguration;
+import com.bazaarvoice.emodb.event.core.SizeEstimateConfiguration;
+import com.bazaarvoice.emodb.event.db.GroupCommitConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocatorConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Optional;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
@@ -16,6 +23,64 @@ public class QueueConfiguration {
     @JsonProperty("cassandra")
     private CassandraConfiguration _cassandraConfiguration;
 
+    @Valid
+    @NotNull
+    @JsonProperty("longPollKeepAliveThreadCount")
+    private Optional<Integer> _longPollKeepAliveThreadCount = Optional.absent();
+
+    @Valid
+    @NotNull
+    @JsonProperty("longPollPollingThreadCount")
+    private Optional<Integer> _longPollPollingThreadCount = Optional.absent();
+
+    /**
+     * Which claim set implementation should track the messages claimed by pollers of each queue?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("claimStore")
+    private ClaimStoreConfiguration _claimStoreConfiguration = new ClaimStoreConfiguration();
+
+    /**
+     * Should messages sent to queues by concurrent callers be combined into larger batches?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("groupCommit")
+    private GroupCommitConfiguration _groupCommitConfiguration = new GroupCommitConfiguration();
+
+    /**
+     * How large should the slabs holding each queue's events be, and how long may they stay open?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("slabAllocator")
+    private SlabAllocatorConfiguration _slabAllocatorConfiguration = new SlabAllocatorConfiguration();
+
+    /**
+     * How many of each queue's slabs may polls read ahead, and how many threads should read them?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("slabReadAhead")
+    private SlabReadAheadConfiguration _slabReadAheadConfiguration = new SlabReadAheadConfiguration();
+
+    /**
+     * Should queue sizes be tracked in memory instead of counting the queue's messages on every request?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("sizeEstimate")
+    private SizeEstimateConfiguration _sizeEstimateConfiguration = new SizeEstimateConfiguration();
+
+    /**
+     * How long may polls of empty queues wait server-side for events, and should other servers wake them?
+     */
+    @Valid
+    @NotNull
+    @JsonProperty("longPoll")
+    private LongPollConfiguration _longPollConfiguration = new LongPollConfiguration();
+
     public CassandraConfiguration getCassandraConfiguration() {
         return _cassandraConfiguration;
     }
@@ -24,4 +89,76 @@ public class QueueConfiguration {
         _cassandraConfiguration = cassandraConfiguration;
         return this;
     }
+
+    public Optional<Integer> getLongPollKeepAliveThreadCount() {
+        return _longPollKeepAliveThreadCount;
+    }
+
+    public QueueConfiguration setLongPollKeepAliveThreadCount(Integer longPollKeepAliveThreadCount) {
+        _longPollKeepAliveThreadCount = Optional.of(longPollKeepAliveThreadCount);
+        return this;
+    }
+
+    public Optional<Integer> getLongPollPollingThreadCount() {
+        return _longPollPollingThreadCount;
+    }
+
+    public QueueConfiguration setLongPollPollingThreadCount(Integer longPollPollingThreadCount) {
+        _longPollPollingThreadCount = Optional.of(longPollPollingThreadCount);
+        return this;
+    }
+
+    public ClaimStoreConfiguration getClaimStoreConfiguration() {
+        return _claimStoreConfiguration;
+    }
+
+    public QueueConfiguration setClaimStoreConfiguration(ClaimStoreConfiguration claimStoreConfiguration) {
+        _claimStoreConfiguration = claimStoreConfiguration;
+        return this;
+    }
+
+    public GroupCommitConfiguration getGroupCommitConfiguration() {
+        return _groupCommitConfiguration;
+    }
+
+    public QueueConfiguration setGroupCommitConfiguration(GroupCommitConfiguration groupCommitConfiguration) {
+        _groupCommitConfiguration = groupCommitConfiguration;
+        return this;
+    }
+
+    public SlabAllocatorConfiguration getSlabAllocatorConfiguration() {
+        return _slabAllocatorConfiguration;
+    }
+
+    public QueueConfiguration setSlabAllocatorConfiguration(SlabAllocatorConfiguration slabAllocatorConfiguration) {
+        _slabAllocatorConfiguration = slabAllocatorConfiguration;
+        return this;
+    }
+
+    public SlabReadAheadConfiguration getSlabReadAheadConfiguration() {
+        return _slabReadAheadConfiguration;
+    }
+
+    public QueueConfiguration setSlabReadAheadConfiguration(SlabReadAheadConfiguration slabReadAheadConfiguration) {
+        _slabReadAheadConfiguration = slabReadAheadConfiguration;
+        return this;
+    }
+
+    public SizeEstimateConfiguration getSizeEstimateConfiguration() {
+        return _sizeEstimateConfiguration;
+    }
+
+    public QueueConfiguration setSizeEstimateConfiguration(SizeEstimateConfiguration sizeEstimateConfiguration) {
+        _sizeEstimateConfiguration = sizeEstimateConfiguration;
+        return this;
+    }
+
+    public LongPollConfiguration getLongPollConfiguration() {
+        return _longPollConfiguration;
+    }
+
+    public QueueConfiguration setLongPollConfiguration(LongPollConfiguration longPollConfiguration) {
+        _longPollConfiguration = longPollConfiguration;
+        return this;
+    }
 }
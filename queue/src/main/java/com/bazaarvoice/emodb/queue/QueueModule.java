@@ -14,6 +14,13 @@ import com.bazaarvoice.emodb.event.EventStoreModule;
 import com.bazaarvoice.emodb.event.EventStoreZooKeeper;
 import com.bazaarvoice.emodb.event.api.ChannelConfiguration;
 import com.bazaarvoice.emodb.event.api.DedupEventStoreChannels;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
+import com.bazaarvoice.emodb.event.core.ClaimStoreConfiguration;
+import com.bazaarvoice.emodb.event.core.LongPollConfiguration;
+import com.bazaarvoice.emodb.event.core.SizeEstimateConfiguration;
+import com.bazaarvoice.emodb.event.db.GroupCommitConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabAllocatorConfiguration;
+import com.bazaarvoice.emodb.event.db.astyanax.SlabReadAheadConfiguration;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.queue.api.DedupQueueService;
@@ -26,6 +33,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.net.HostAndPort;
+import com.google.inject.Exposed;
 import com.google.inject.Key;
 import com.google.inject.PrivateModule;
 import com.google.inject.Provides;
@@ -60,10 +68,13 @@ import static com.google.common.base.Preconditions.checkArgument;
  * <ul>
  * <li> {@link QueueService}
  * <li> {@link DedupQueueService}
+ * <li> @{@link QueueChannelWatcher} {@link ChannelWatcher}
  * </ul>
  */
 public class QueueModule extends PrivateModule {
 
+    private static final DedupEventStoreChannels DEDUP_CHANNELS = DedupEventStoreChannels.isolated("__dedupq_write:", "__dedupq_read:");
+
     private MetricRegistry _metricRegistry;
 
     public QueueModule(MetricRegistry metricRegistry) {
@@ -78,7 +89,7 @@ public class QueueModule extends PrivateModule {
         bind(ChannelConfiguration.class).to(QueueChannelConfiguration.class).asEagerSingleton();
         bind(CuratorFramework.class).annotatedWith(EventStoreZooKeeper.class).to(Key.get(CuratorFramework.class, QueueZooKeeper.class));
         bind(HostDiscovery.class).annotatedWith(EventStoreHostDiscovery.class).to(Key.get(HostDiscovery.class, DedupQueueHostDiscovery.class));
-        bind(DedupEventStoreChannels.class).toInstance(DedupEventStoreChannels.isolated("__dedupq_write:", "__dedupq_read:"));
+        bind(DedupEventStoreChannels.class).toInstance(DEDUP_CHANNELS);
         bind(new TypeLiteral<Supplier<Boolean>>() {}).annotatedWith(DedupEnabled.class).toInstance(Suppliers.ofInstance(true));
         install(new EventStoreModule("bv.emodb.queue", _metricRegistry));
 
@@ -92,6 +103,17 @@ public class QueueModule extends PrivateModule {
 
     }
 
+    /** Returns the event store channels which hold the messages of each dedup queue. */
+    public static DedupEventStoreChannels dedupChannels() {
+        return DEDUP_CHANNELS;
+    }
+
+    @Provides @Singleton @Exposed
+    @QueueChannelWatcher
+    ChannelWatcher provideQueueChannelWatcher(ChannelWatcher channelWatcher) {
+        return channelWatcher;
+    }
+
     @Provides @Singleton
     CassandraKeyspace provideKeyspace(QueueConfiguration configuration, CassandraFactory factory) {
         Map<String, CassandraKeyspace> keyspaces = factory.build(configuration.getCassandraConfiguration());
@@ -99,4 +121,34 @@ public class QueueModule extends PrivateModule {
         checkArgument(keyspaces.size() == 1, "Only one keyspace expected for queue, found %s", keyspaces.keySet());
         return keyspaces.values().iterator().next();
     }
+
+    @Provides @Singleton
+    ClaimStoreConfiguration provideClaimStoreConfiguration(QueueConfiguration configuration) {
+        return configuration.getClaimStoreConfiguration();
+    }
+
+    @Provides @Singleton
+    GroupCommitConfiguration provideGroupCommitConfiguration(QueueConfiguration configuration) {
+        return configuration.getGroupCommitConfiguration();
+    }
+
+    @Provides @Singleton
+    SlabAllocatorConfiguration provideSlabAllocatorConfiguration(QueueConfiguration configuration) {
+        return configuration.getSlabAllocatorConfiguration();
+    }
+
+    @Provides @Singleton
+    SlabReadAheadConfiguration provideSlabReadAheadConfiguration(QueueConfiguration configuration) {
+        return configuration.getSlabReadAheadConfiguration();
+    }
+
+    @Provides @Singleton
+    SizeEstimateConfiguration provideSizeEstimateConfiguration(QueueConfiguration configuration) {
+        return configuration.getSizeEstimateConfiguration();
+    }
+
+    @Provides @Singleton
+    LongPollConfiguration provideLongPollConfiguration(QueueConfiguration configuration) {
+        return configuration.getLongPollConfiguration();
+    }
 }
@@ -4,6 +4,7 @@ import com.bazaarvoice.emodb.common.dropwizard.time.ClockTicker;
 import com.bazaarvoice.emodb.common.json.JsonValidator;
 import com.bazaarvoice.emodb.event.api.BaseEventStore;
 import com.bazaarvoice.emodb.event.api.EventData;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.bazaarvoice.emodb.event.core.SizeCacheKey;
 import com.bazaarvoice.emodb.job.api.JobHandler;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
@@ -43,6 +44,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 abstract class AbstractQueueService implements BaseQueueService {
     private final BaseEventStore _eventStore;
+    private final ChannelWatcher _channelWatcher;
     private final JobService _jobService;
     private final JobType<MoveQueueRequest, MoveQueueResult> _moveQueueJobType;
     private final LoadingCache<SizeCacheKey, Map.Entry<Long, Long>> _queueSizeCache;
@@ -52,8 +54,9 @@ abstract class AbstractQueueService implements BaseQueueService {
     protected AbstractQueueService(BaseEventStore eventStore, JobService jobService,
                                    JobHandlerRegistry jobHandlerRegistry,
                                    JobType<MoveQueueRequest, MoveQueueResult> moveQueueJobType,
-                                   Clock clock) {
+                                   ChannelWatcher channelWatcher, Clock clock) {
         _eventStore = eventStore;
+        _channelWatcher = checkNotNull(channelWatcher, "channelWatcher");
         _jobService = jobService;
         _moveQueueJobType = moveQueueJobType;
 
@@ -182,6 +185,42 @@ abstract class AbstractQueueService implements BaseQueueService {
         return toMessages(_eventStore.poll(queue, claimTtl, limit));
     }
 
+    @Override
+    public List<Message> poll(String queue, Duration claimTtl, int limit, Duration maxWait) {
+        checkLegalQueueName(queue);
+        checkArgument(claimTtl.toMillis() >= 0, "ClaimTtl must be >=0");
+        checkArgument(limit > 0, "Limit must be >0");
+        checkArgument(!maxWait.isNegative(), "MaxWait must be >=0");
+
+        long waitMillis = Math.min(maxWait.toMillis(), _channelWatcher.getMaxWait().toMillis());
+        if (waitMillis <= 0) {
+            return toMessages(_eventStore.poll(queue, claimTtl, limit));
+        }
+
+        // Start watching before the first poll so messages sent while polling still wake the wait that follows
+        long stopTime = System.currentTimeMillis() + waitMillis;
+        long recheckMillis = _channelWatcher.getRecheckInterval().toMillis();
+        try (ChannelWatcher.Watch watch = _channelWatcher.watch(getWatchedChannel(queue))) {
+            for (;;) {
+                List<EventData> events = _eventStore.poll(queue, claimTtl, limit);
+                watch.recordPoll();
+                long remaining = stopTime - System.currentTimeMillis();
+                if (!events.isEmpty() || remaining <= 0) {
+                    return toMessages(events);
+                }
+                watch.await(Math.min(remaining, recheckMillis), TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Collections.emptyList();
+        }
+    }
+
+    /** Returns the event store channel which messages sent to the queue are added to. */
+    protected String getWatchedChannel(String queue) {
+        return queue;
+    }
+
     @Override
     public void renew(String queue, Collection<String> messageIds, Duration claimTtl) {
         checkLegalQueueName(queue);
@@ -1,6 +1,8 @@
 package com.bazaarvoice.emodb.queue.core;
 
 import com.bazaarvoice.emodb.event.api.DedupEventStore;
+import com.bazaarvoice.emodb.event.api.DedupEventStoreChannels;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.queue.api.DedupQueueService;
@@ -8,10 +10,21 @@ import com.google.inject.Inject;
 
 import java.time.Clock;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
 public class DefaultDedupQueueService extends AbstractQueueService implements DedupQueueService {
+    private final DedupEventStoreChannels _channels;
+
     @Inject
     public DefaultDedupQueueService(DedupEventStore eventStore, JobService jobService, JobHandlerRegistry jobHandlerRegistry,
-                                    Clock clock) {
-        super(eventStore, jobService, jobHandlerRegistry, MoveDedupQueueJob.INSTANCE, clock);
+                                    DedupEventStoreChannels channels, ChannelWatcher channelWatcher, Clock clock) {
+        super(eventStore, jobService, jobHandlerRegistry, MoveDedupQueueJob.INSTANCE, channelWatcher, clock);
+        _channels = checkNotNull(channels, "channels");
+    }
+
+    @Override
+    protected String getWatchedChannel(String queue) {
+        // Messages are sent to the write channel, then moved to the read channel when the queue is polled
+        return _channels.writeChannel(queue);
     }
 }
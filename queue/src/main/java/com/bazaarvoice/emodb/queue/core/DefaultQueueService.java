@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.queue.core;
 
 import com.bazaarvoice.emodb.event.api.EventStore;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.queue.api.QueueService;
@@ -11,7 +12,7 @@ import java.time.Clock;
 public class DefaultQueueService extends AbstractQueueService implements QueueService {
     @Inject
     public DefaultQueueService(EventStore eventStore, JobService jobService, JobHandlerRegistry jobHandlerRegistry,
-                               Clock clock) {
-        super(eventStore, jobService, jobHandlerRegistry, MoveQueueJob.INSTANCE, clock);
+                               ChannelWatcher channelWatcher, Clock clock) {
+        super(eventStore, jobService, jobHandlerRegistry, MoveQueueJob.INSTANCE, channelWatcher, clock);
     }
 }
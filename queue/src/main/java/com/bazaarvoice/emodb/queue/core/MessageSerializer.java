@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.queue.core;
 
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
 import com.fasterxml.jackson.databind.MappingJsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Throwables;
@@ -21,6 +22,14 @@ class MessageSerializer {
     }
 
     static Object fromByteBuffer(ByteBuffer buf) {
+        // Messages are almost always JSON objects.  Leave those as UTF-8 JSON until they're used so a message which is
+        // only returned to a REST caller has its stored bytes copied to the response instead of being parsed and
+        // re-serialized.
+        if (buf.hasRemaining() && buf.get(buf.position()) == '{') {
+            byte[] utf8 = new byte[buf.remaining()];
+            buf.duplicate().get(utf8);
+            return new LazyJsonMap(utf8);
+        }
         try {
             return JSON.readValue(new ByteBufferInputStream(buf.duplicate()), Object.class);
         } catch (IOException e) {
@@ -36,6 +36,11 @@ public class TrustedDedupQueueService implements AuthDedupQueueService {
         return _dedupQueueService.poll(queue, claimTtl, limit);
     }
 
+    @Override
+    public List<Message> poll(String apiKey, String queue, Duration claimTtl, int limit, Duration maxWait) {
+        return _dedupQueueService.poll(queue, claimTtl, limit, maxWait);
+    }
+
     @Override
     public long getMessageCount(String apiKey, String queue) {
         return _dedupQueueService.getMessageCount(queue);
@@ -36,6 +36,11 @@ public class TrustedQueueService implements AuthQueueService {
         return _queueService.poll(queue, claimTtl, limit);
     }
 
+    @Override
+    public List<Message> poll(String apiKey, String queue, Duration claimTtl, int limit, Duration maxWait) {
+        return _queueService.poll(queue, claimTtl, limit, maxWait);
+    }
+
     @Override
     public long getMessageCount(String apiKey, String queue) {
         return _queueService.getMessageCount(queue);
@@ -0,0 +1,82 @@
+package com.bazaarvoice.emodb.queue.core;
+
+import com.bazaarvoice.emodb.event.api.BaseEventStore;
+import com.bazaarvoice.emodb.event.api.EventData;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
+import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
+import com.bazaarvoice.emodb.job.api.JobService;
+import com.bazaarvoice.emodb.job.api.JobType;
+import com.bazaarvoice.emodb.queue.api.Message;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class LongPollQueueTest {
+
+    @Test
+    public void testPollWaitsForMessages() {
+        final ChannelWatcher channelWatcher = new ChannelWatcher();
+        BaseEventStore eventStore = mock(BaseEventStore.class);
+        AbstractQueueService queueService = newQueueService(eventStore, channelWatcher);
+
+        EventData event = mock(EventData.class);
+        when(event.getId()).thenReturn("id");
+        when(event.getData()).thenReturn(MessageSerializer.toByteBuffer("message"));
+        List<EventData> events = ImmutableList.of(event);
+        when(eventStore.poll("queue", Duration.ofSeconds(30), 10))
+                .thenReturn(Collections.<EventData>emptyList())
+                .thenReturn(events);
+
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    channelWatcher.notifyChanged("queue");
+                }
+            }, 50, TimeUnit.MILLISECONDS);
+
+            long start = System.currentTimeMillis();
+            List<Message> messages = queueService.poll("queue", Duration.ofSeconds(30), 10, Duration.ofSeconds(20));
+
+            assertEquals(messages.size(), 1);
+            assertEquals(messages.get(0).getPayload(), "message");
+            // Woken by the notification, well before the 2 second recheck
+            assertTrue(System.currentTimeMillis() - start < 1500);
+            verify(eventStore, times(2)).poll("queue", Duration.ofSeconds(30), 10);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testPollGivesUpAfterMaxWait() {
+        BaseEventStore eventStore = mock(BaseEventStore.class);
+        AbstractQueueService queueService = newQueueService(eventStore, new ChannelWatcher());
+        when(eventStore.poll("queue", Duration.ofSeconds(30), 10)).thenReturn(Collections.<EventData>emptyList());
+
+        List<Message> messages = queueService.poll("queue", Duration.ofSeconds(30), 10, Duration.ofMillis(100));
+
+        assertTrue(messages.isEmpty());
+    }
+
+    @SuppressWarnings("unchecked")
+    private AbstractQueueService newQueueService(BaseEventStore eventStore, ChannelWatcher channelWatcher) {
+        return new AbstractQueueService(eventStore, mock(JobService.class), mock(JobHandlerRegistry.class),
+                mock(JobType.class), channelWatcher, Clock.systemUTC()) {};
+    }
+}
@@ -1,13 +1,20 @@
 package com.bazaarvoice.emodb.queue.core;
 
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
+import com.bazaarvoice.emodb.queue.api.Message;
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.Random;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class MessageSerializerTest {
     @Test
@@ -71,6 +78,34 @@ public class MessageSerializerTest {
         doRoundTrip(ImmutableMap.of("a", 1, "b", "c", "d", ImmutableMap.of("k", "v")));
     }
 
+    @Test
+    public void testMapIsCopiedToJsonVerbatim() {
+        ImmutableMap<String, Object> map = ImmutableMap.<String, Object>of("a", 1, "b", ImmutableList.of("c", ImmutableMap.of("k", "v")));
+        Object payload = MessageSerializer.fromByteBuffer(MessageSerializer.toByteBuffer(map));
+        assertTrue(payload instanceof LazyJsonMap);
+
+        List<Message> messages = ImmutableList.of(new Message("1", payload), new Message("2", payload));
+        assertEquals(JsonHelper.asJson(messages),
+                "[{\"id\":\"1\",\"payload\":{\"a\":1,\"b\":[\"c\",{\"k\":\"v\"}]}}," +
+                        "{\"id\":\"2\",\"payload\":{\"a\":1,\"b\":[\"c\",{\"k\":\"v\"}]}}]");
+        // The payload is still usable as a map
+        assertEquals(payload, map);
+    }
+
+    @Test
+    public void testStoredBytesAreWrittenAsIs() throws Exception {
+        // Whitespace and key order which re-serializing would not preserve
+        String stored = "{ \"b\" : [\"c\", {\"k\":\"v\u00e9\"}],\n  \"a\":1.50 }";
+        Object payload = MessageSerializer.fromByteBuffer(ByteBuffer.wrap(stored.getBytes(Charsets.UTF_8)));
+
+        // UTF-8 generators, such as for REST responses, copy the bytes and other generators copy the decoded text
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonHelper.writeJson(out, new Message("1", payload));
+        assertEquals(out.toString(Charsets.UTF_8.name()), "{\"id\":\"1\",\"payload\":" + stored + "}");
+        assertEquals(JsonHelper.asJson(new Message("1", payload)), "{\"id\":\"1\",\"payload\":" + stored + "}");
+        assertEquals(payload, ImmutableMap.of("a", 1.5, "b", ImmutableList.of("c", ImmutableMap.of("k", "v\u00e9"))));
+    }
+
     private void doRoundTrip(Object expected) {
         ByteBuffer buf = MessageSerializer.toByteBuffer(expected);
         Object actual = MessageSerializer.fromByteBuffer(buf);
@@ -1,6 +1,7 @@
 package com.bazaarvoice.emodb.queue.core;
 
 import com.bazaarvoice.emodb.event.api.BaseEventStore;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.bazaarvoice.emodb.job.api.JobHandlerRegistry;
 import com.bazaarvoice.emodb.job.api.JobService;
 import com.bazaarvoice.emodb.job.api.JobType;
@@ -37,7 +38,7 @@ public class SizeQueueCacheTest {
 
         BaseEventStore mockEventStore = mock(BaseEventStore.class);
         AbstractQueueService queueService = new AbstractQueueService(mockEventStore, mock(JobService.class),
-                mock(JobHandlerRegistry.class), mock(JobType.class), clock){};
+                mock(JobHandlerRegistry.class), mock(JobType.class), new ChannelWatcher(), clock){};
 
         // At limit=500, size estimate should be at 4800
         // At limit=50, size estimate should be at 5000
@@ -13,6 +13,7 @@ import com.bazaarvoice.emodb.sor.delta.impl.NoopDeltaImpl;
 import com.bazaarvoice.emodb.sor.delta.impl.SetDeltaBuilderImpl;
 
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 public abstract class Deltas {
@@ -25,6 +26,10 @@ public abstract class Deltas {
         return DeltaParser.parse(jsonTokener);
     }
 
+    public static Delta fromByteBuffer(ByteBuffer utf8) {
+        return DeltaParser.parse(utf8);
+    }
+
     public static Literal literal(Object json) {
         return new LiteralImpl(json);
     }
@@ -19,6 +19,7 @@ import com.google.common.collect.Maps;
 
 import javax.annotation.Nullable;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -53,6 +54,13 @@ public class DeltaParser {
         return delta;
     }
 
+    /**
+     * Parses a delta from the remaining UTF-8 encoded bytes in the buffer without first decoding them to a string.
+     */
+    public static Delta parse(ByteBuffer utf8) {
+        return parse(new Utf8JsonTokener(utf8));
+    }
+
     public static Condition parseCondition(String string) {
         JsonTokener t = new JsonTokener(string);
         Condition condition = new DeltaParser(t).parseCondition();
@@ -96,6 +104,11 @@ public class DeltaParser {
         }
 
         // We're probably looking at a word (true,false,null,if,or,...) or a number.
+        if (ch != 'i') {
+            // Let the tokener parse literals directly, it may be able to do so without creating a token string.
+            return Deltas.literal(_t.nextValue());
+        }
+
         String token = _t.nextToken();
 
         if ("if".equals(token)) {
@@ -221,6 +234,10 @@ public class DeltaParser {
         }
 
         // We're probably looking at a word (true,false,null,if,or,...) or a number.
+        if (ch == '-' || (ch >= '0' && ch <= '9')) {
+            return Conditions.equal(_t.nextValue());
+        }
+
         String token = _t.nextToken();
 
         if (ch >= 'a' && ch <= 'z') {
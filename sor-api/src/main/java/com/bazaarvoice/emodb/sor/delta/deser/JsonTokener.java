@@ -61,6 +61,16 @@ public class JsonTokener {
         this.mySource = s;
     }
 
+    /**
+     * Constructor for subclasses which tokenize a source other than a string.  Such subclasses must override every
+     * method which reads the source directly: {@link #back()}, {@link #more()}, {@link #next()}, {@link #next(int)},
+     * {@link #nextToken()}, {@link #toString()} and {@link #pos()}.
+     */
+    protected JsonTokener() {
+        this.myIndex = 0;
+        this.mySource = null;
+    }
+
     /**
      * Back up one character. This provides a sort of lookahead capability,
      * so that you can test for a digit or letter before attempting to parse
@@ -0,0 +1,305 @@
+package com.bazaarvoice.emodb.sor.delta.deser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link JsonTokener} which reads UTF-8 encoded bytes directly instead of a string.  Deltas are stored in Cassandra
+ * as UTF-8, so this avoids decoding the entire delta into a temporary string before parsing it.  Strings are decoded
+ * straight from the source bytes and integers and the literals 'true', 'false' and 'null' are parsed without creating
+ * intermediate token strings.
+ * <p>
+ * The values returned are identical to those returned by {@link JsonTokener} for the decoded string.  The one
+ * difference is that positions, as returned by {@link #pos()} and in error messages, are byte offsets and not
+ * character offsets.
+ */
+public class Utf8JsonTokener extends JsonTokener {
+
+    private static final boolean[] DELIMITERS = new boolean[128];
+
+    static {
+        for (char c : ",:]})>/\\\"[{(<;=#?".toCharArray()) {
+            DELIMITERS[c] = true;
+        }
+    }
+
+    private final byte[] _source;
+    private final int _start;
+    private final int _end;
+    /** The index of the next byte. */
+    private int _index;
+    /** The index of the first byte of the character most recently returned by {@link #next()}. */
+    private int _previous;
+
+    /**
+     * Construct a tokener for the remaining bytes in a buffer.  The buffer's position is not modified.  The tokener
+     * may read the buffer lazily, so the caller must not modify its contents while the tokener is in use.
+     */
+    public Utf8JsonTokener(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            _source = buf.array();
+            _start = buf.arrayOffset() + buf.position();
+        } else {
+            _source = new byte[buf.remaining()];
+            buf.duplicate().get(_source);
+            _start = 0;
+        }
+        _end = _start + buf.remaining();
+        _index = _previous = _start;
+    }
+
+    public Utf8JsonTokener(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+    public Utf8JsonTokener(byte[] bytes, int offset, int length) {
+        checkNotNull(bytes, "bytes");
+        checkPositionIndexes(offset, offset + length, bytes.length);
+        _source = bytes;
+        _start = offset;
+        _end = offset + length;
+        _index = _previous = offset;
+    }
+
+    @Override
+    public void back() {
+        checkState(_index > _start);
+        _index = _previous;
+    }
+
+    @Override
+    public boolean more() {
+        return _index < _end;
+    }
+
+    @Override
+    public char next() {
+        _previous = _index;
+        if (_index >= _end) {
+            _index += 1;
+            return 0;
+        }
+        int b = _source[_index] & 0xff;
+        if (b < 0x80) {
+            _index += 1;
+            return (char) b;
+        }
+        // Outside of strings any non-ASCII character is a syntax error, so this is only used for error reporting
+        int width = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : 2;
+        width = Math.min(width, _end - _index);
+        String ch = new String(_source, _index, width, StandardCharsets.UTF_8);
+        _index += width;
+        return ch.charAt(0);
+    }
+
+    @Override
+    public String next(int n) {
+        int i = _index;
+        int j = i + n;
+        if (j >= _end) {
+            throw syntaxError("Substring bounds error");
+        }
+        _previous = _index = j;
+        return new String(_source, i, n, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String nextString() {
+        nextClean('"');
+        int start = _index;
+        for (int i = start; i < _end; i++) {
+            int c = _source[i] & 0xff;
+            if (c == '"') {
+                _previous = i;
+                _index = i + 1;
+                return new String(_source, start, i - start, StandardCharsets.UTF_8);
+            }
+            if (c == '\\' || c < ' ') {
+                return nextEscapedString(start, i);
+            }
+        }
+        _index = _end + 1;
+        throw syntaxError("Unterminated string");
+    }
+
+    /**
+     * Slow path of {@link #nextString()} for strings which contain escape sequences.
+     */
+    private String nextEscapedString(int start, int from) {
+        StringBuilder sb = new StringBuilder();
+        int segment = start;
+        for (int i = from; ; i++) {
+            int c = i < _end ? _source[i] & 0xff : 0;
+            if (c != '"' && c != '\\' && c >= ' ') {
+                continue;
+            }
+            sb.append(new String(_source, segment, i - segment, StandardCharsets.UTF_8));
+            _previous = i;
+            _index = i + 1;
+            switch (c) {
+                case '"':
+                    return sb.toString();
+                case 0:
+                case '\n':
+                case '\r':
+                    throw syntaxError("Unterminated string");
+                case '\\':
+                    if (_index < _end && _source[_index] < 0) {
+                        // An escaped non-ASCII character is just the character, so leave it in the next segment
+                        segment = _index;
+                        i = segment - 1;
+                        continue;
+                    }
+                    char e = next();
+                    switch (e) {
+                        case 'b':
+                            sb.append('\b');
+                            break;
+                        case 't':
+                            sb.append('\t');
+                            break;
+                        case 'n':
+                            sb.append('\n');
+                            break;
+                        case 'f':
+                            sb.append('\f');
+                            break;
+                        case 'r':
+                            sb.append('\r');
+                            break;
+                        case 'u':
+                            sb.append((char) Integer.parseInt(next(4), 16));
+                            break;
+                        case 0:
+                            throw syntaxError("Unterminated string");
+                        default:
+                            sb.append(e);
+                    }
+                    segment = _index;
+                    i = segment - 1;
+                    break;
+                default:
+                    throw syntaxError("Unescaped control character (ascii " + c + ") in string");
+            }
+        }
+    }
+
+    @Override
+    public Object nextValue() {
+        char c = lookAhead();
+        switch (c) {
+            case '"':
+                return nextString();
+            case '{':
+                return nextObject();
+            case '[':
+                return nextArray();
+        }
+
+        int start = skipToken();
+        int length = _index - start;
+        if (length == 0) {
+            throw syntaxError("Missing value");
+        }
+        if (matches(start, length, "true")) {
+            return Boolean.TRUE;
+        }
+        if (matches(start, length, "false")) {
+            return Boolean.FALSE;
+        }
+        if (matches(start, length, "null")) {
+            return null;
+        }
+        Number number = parseInteger(start, length);
+        if (number != null) {
+            return number;
+        }
+        // Decimals, integers too large for a long and invalid tokens
+        return tokenToValue(new String(_source, start, length, StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String nextToken() {
+        int start = skipToken();
+        String token = new String(_source, start, _index - start, StandardCharsets.UTF_8).trim();
+        if (token.isEmpty()) {
+            throw syntaxError("Missing value");
+        }
+        return token;
+    }
+
+    /**
+     * Skips whitespace and then the token which follows it, returning the index of the first byte of the token.
+     */
+    private int skipToken() {
+        nextClean();
+        int start = _previous;
+        int i = start;
+        while (i < _end && !isDelimiter(_source[i])) {
+            i++;
+        }
+        _previous = _index = i;
+        return start;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        int c = b & 0xff;
+        return c <= ' ' || (c < 0x80 && DELIMITERS[c]);
+    }
+
+    private boolean matches(int start, int length, String literal) {
+        if (length != literal.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (_source[start + i] != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses an optionally negative sequence of digits which is guaranteed to fit in a long, boxing it the same way
+     * {@link #tokenToValue(String)} would.  Returns null if the token isn't such a sequence.
+     */
+    private Number parseInteger(int start, int length) {
+        boolean negative = _source[start] == '-';
+        int digits = negative ? length - 1 : length;
+        if (digits == 0 || digits > 18) {
+            return null;
+        }
+        long value = 0;
+        for (int i = length - digits; i < length; i++) {
+            int digit = _source[start + i] - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            value = value * 10 + digit;
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value == (int) value) {
+            return (int) value;
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return " at character " + pos() + " of " + new String(_source, _start, _end - _start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the current position in the source from the beginning, in bytes.
+     */
+    @Override
+    public int pos() {
+        return _index - _start;
+    }
+}
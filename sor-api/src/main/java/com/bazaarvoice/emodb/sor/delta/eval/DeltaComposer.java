@@ -0,0 +1,183 @@
+package com.bazaarvoice.emodb.sor.delta.eval;
+
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.bazaarvoice.emodb.sor.delta.MapDelta;
+import com.bazaarvoice.emodb.sor.delta.MapDeltaBuilder;
+import com.bazaarvoice.emodb.sor.delta.NoopDelta;
+import com.bazaarvoice.emodb.sor.delta.SetDelta;
+import com.bazaarvoice.emodb.sor.delta.SetDeltaBuilder;
+import com.google.common.collect.Sets;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Composes two deltas into a single delta which has the same effect as applying the first and then the second.
+ * <p>
+ * Not every pair of deltas can be composed.  For example, a conditional delta followed by a map delta can't be
+ * expressed as a single delta, and neither can a delta which tests intrinsics such as "~id" since the composition
+ * can't evaluate it.  In those cases {@link #compose(Delta, Delta)} returns null and both deltas must be applied.
+ */
+public class DeltaComposer {
+
+    private static final Intrinsics UNAVAILABLE_INTRINSICS = new UnavailableIntrinsics();
+
+    private DeltaComposer() {
+        // empty
+    }
+
+    /**
+     * Returns a delta equivalent to applying {@code first} followed by {@code second}, or null if there is no such
+     * delta or it can't be determined without knowing the value the deltas are applied to.
+     */
+    @Nullable
+    public static Delta compose(Delta first, Delta second) {
+        if (second.isConstant()) {
+            return second;
+        }
+        if (second instanceof NoopDelta) {
+            return first;
+        }
+        if (first instanceof NoopDelta) {
+            return second;
+        }
+        if (first.isConstant()) {
+            return evalAsConstant(second, DeltaEvaluator.eval(first, DeltaEvaluator.UNDEFINED, UNAVAILABLE_INTRINSICS));
+        }
+        if (first instanceof MapDelta && second instanceof MapDelta) {
+            return composeMaps((MapDelta) first, (MapDelta) second);
+        }
+        if (first instanceof SetDelta && second instanceof SetDelta) {
+            return composeSets((SetDelta) first, (SetDelta) second);
+        }
+        return null;
+    }
+
+    @Nullable
+    private static Delta evalAsConstant(Delta delta, @Nullable Object json) {
+        Object result;
+        try {
+            result = DeltaEvaluator.eval(delta, json, UNAVAILABLE_INTRINSICS);
+        } catch (IntrinsicsUnavailableException e) {
+            return null;
+        }
+        return (result == DeltaEvaluator.UNDEFINED) ? Deltas.delete() : Deltas.literal(result);
+    }
+
+    /**
+     * A map delta evaluates an undefined or non-map value the same as an empty map, so the second delta's result
+     * depends only on the values of the keys after the first delta.  Those can be composed key by key.
+     */
+    @Nullable
+    private static Delta composeMaps(MapDelta first, MapDelta second) {
+        boolean removeRest = first.getRemoveRest() || second.getRemoveRest();
+        MapDeltaBuilder builder = Deltas.mapBuilder()
+                .removeRest(removeRest)
+                .deleteIfEmpty(second.getDeleteIfEmpty());
+
+        for (String key : Sets.union(first.getEntries().keySet(), second.getEntries().keySet())) {
+            Delta firstDelta = first.getEntries().get(key);
+            Delta secondDelta = second.getEntries().get(key);
+            Delta delta;
+            if (firstDelta == null) {
+                // The first delta either removed the key or left it unchanged
+                delta = first.getRemoveRest() ? compose(Deltas.delete(), secondDelta) : secondDelta;
+            } else if (secondDelta == null) {
+                if (second.getRemoveRest()) {
+                    continue;  // The second delta removes the key
+                }
+                delta = firstDelta;
+            } else {
+                delta = compose(firstDelta, secondDelta);
+            }
+            if (delta == null) {
+                return null;
+            }
+            // Keys which aren't in a map delta are left unchanged unless "remove rest" is set
+            if (!(delta instanceof NoopDelta) || removeRest) {
+                builder.update(key, delta);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * A set delta without "remove rest" is a set of additions and removals, so the composition adds what either delta
+     * adds, except for values the second removes, and removes what either removes, except for values the second adds.
+     * A first delta with "remove rest" is constant, and a second one overrides the first, so both are handled by
+     * {@link #compose(Delta, Delta)}.
+     */
+    private static Delta composeSets(SetDelta first, SetDelta second) {
+        Set<Literal> added = Sets.newHashSet(second.getAddedValues());
+        for (Literal value : first.getAddedValues()) {
+            if (!second.getRemovedValues().contains(value)) {
+                added.add(value);
+            }
+        }
+        Set<Literal> removed = Sets.newHashSet(Sets.union(first.getRemovedValues(), second.getRemovedValues()));
+        removed.removeAll(added);
+
+        SetDeltaBuilder builder = Deltas.setBuilder().deleteIfEmpty(second.getDeleteIfEmpty());
+        for (Literal value : added) {
+            builder.add(value.getValue());
+        }
+        for (Literal value : removed) {
+            builder.remove(value.getValue());
+        }
+        return builder.build();
+    }
+
+    private static class IntrinsicsUnavailableException extends RuntimeException {
+        IntrinsicsUnavailableException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Intrinsics for evaluating deltas without a record.  Conditions which depend on intrinsics can't be composed.
+     */
+    private static class UnavailableIntrinsics implements Intrinsics {
+        @Override
+        public String getId() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public String getTable() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public String getSignature() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public boolean isDeleted() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public String getFirstUpdateAt() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public String getLastUpdateAt() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public String getLastMutateAt() {
+            throw new IntrinsicsUnavailableException();
+        }
+
+        @Override
+        public String getTablePlacement() {
+            throw new IntrinsicsUnavailableException();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.bazaarvoice.emodb.sor.delta.deser;
+
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+/**
+ * Verifies that parsing deltas from UTF-8 bytes returns exactly the same deltas, including the boxed types of
+ * numbers, as parsing them from strings.
+ */
+public class Utf8JsonTokenerTest {
+
+    private static final List<String> VALID = ImmutableList.of(
+            "..",
+            "~",
+            "{}",
+            "[]",
+            "\"\"",
+            "true", "false", "null",
+            "0", "-0", "007", "-1", "42", "2147483647", "2147483648", "-2147483648", "-2147483649",
+            "123456789012345678", "-123456789012345678", "1234567890123456789", "9223372036854775807",
+            "9223372036854775808", "-9223372036854775808", "-9223372036854775809", "99999999999999999999",
+            "0.0", "1.5", "-3.2e14", "2E-5", "123456789e+88", "1.", "1e5",
+            "\"plain ascii\"",
+            "\"caf\u00e9 \u00fcber \u4e2d\u6587 \ud83d\ude00\"",
+            "\"escapes \\\" \\\\ \\/ \\b \\f \\n \\r \\t\"",
+            "\"unicode escapes \\u0063\\u00e9\\u4e2d\\ud83d\\ude00\\u0000\"",
+            "\"escaped non-ascii \\\u00e9\\\ud83d\ude00 done\"",
+            "\"\\\"leading and trailing\\\"\"",
+            "{\"name\":\"Bob\",\"rating\":5,\"tags\":[\"verified\",\"\u00e9l\u00e8ve\"],\"nested\":{\"a\":null,\"b\":[1,2.5,-3]}}",
+            "  {  \"name\" : \"Bob\" ,\t\"state\"\n:\r\"SUBMITTED\"  }  ",
+            "{\"\u00e9\":1,\"\ud83d\ude00\":[true,false,null]}",
+            "{..,\"rating\":5}",
+            "{..,\"tags\":{..,\"missing\":~,\"caf\u00e9\":\"EXPERT\"},\"missing\":if -3.2e14 then ~ end}",
+            "{..,\"counter\":if 5 then 6 elif 6 then 7 else .. end}",
+            "{..,\"state\":if in(\"SUBMITTED\",\"\u00e9\") then \"APPROVED\" end}",
+            "if {..,\"type\":\"review\",\"rating\":gt(3)} then {..,\"featured\":true} end",
+            "if intrinsic(\"~table\":like(\"review:*\")) then .. else ~ end",
+            "if or(alwaysTrue(),not(~),+) then [1,2] end",
+            "if containsAny(\"a\",1,2.5) then {..,\"x\":-1} end",
+            "if le(-5) then null end",
+            "if is(string) then \"\u4e2d\" end",
+            "if partition(4:in(1,2)) then .. end",
+            "(..,\"a\",\"\u00e9\",3,~\"b\")",
+            "(\"a\",\"b\")?",
+            "{..,\"a\":1}?",
+            "(..,{\"a\":1})",
+            "{\"a\":1,\"b\":{..,\"c\":~}}");
+
+    private static final List<String> INVALID = ImmutableList.of(
+            "",
+            "   ",
+            "{",
+            "[1,",
+            "\"unterminated",
+            "\"unterminated\\",
+            "\"new\nline\"",
+            "\"control \u0001 char\"",
+            "\"short escape \\u12\"",
+            "\"bad escape \\uzzzz\"",
+            "{\"a\":1,\"a\":2}",
+            "{\"a\" 1}",
+            "tru",
+            "nul",
+            "+1",
+            "-",
+            "1-2",
+            "0x10",
+            "\u00e9",
+            "{\"a\":\u00e9}",
+            "1 2",
+            "[1] x",
+            "if 1 then 2",
+            "if 1 else 2 end",
+            "if bogus(1) then 2 end",
+            "inf");
+
+    @DataProvider(name = "valid")
+    public Object[][] valid() {
+        return toDataProvider(VALID);
+    }
+
+    @DataProvider(name = "invalid")
+    public Object[][] invalid() {
+        return toDataProvider(INVALID);
+    }
+
+    @Test(dataProvider = "valid")
+    public void testParity(String string) {
+        Delta expected = DeltaParser.parse(string);
+        assertSameDelta(DeltaParser.parse(utf8(string)), expected);
+        assertSameDelta(DeltaParser.parse(new Utf8JsonTokener(string.getBytes(Charsets.UTF_8))), expected);
+        assertSameDelta(DeltaParser.parse(offsetUtf8(string)), expected);
+        assertSameDelta(DeltaParser.parse(directUtf8(string)), expected);
+    }
+
+    @Test(dataProvider = "invalid")
+    public void testInvalidParity(String string) {
+        Class<? extends RuntimeException> expected = failure(string);
+        assertNotNull(expected, string);
+
+        try {
+            DeltaParser.parse(offsetUtf8(string));
+            fail(string);
+        } catch (RuntimeException e) {
+            assertEquals(e.getClass(), expected, string);
+        }
+    }
+
+    @Test
+    public void testRandomDeltas() {
+        Random random = new Random(1234);
+        for (int i = 0; i < 500; i++) {
+            String string = Deltas.literal(randomJson(random, 3)).toString();
+            assertSameDelta(DeltaParser.parse(utf8(string)), DeltaParser.parse(string));
+        }
+    }
+
+    @Test
+    public void testBackAfterEof() {
+        JsonTokener t = new Utf8JsonTokener(utf8("\u00e9"));
+        t.next();
+        assertEquals(t.pos(), 2);
+        assertEquals(t.next(), 0);
+        t.back();
+        assertEquals(t.next(), 0);
+    }
+
+    @Test
+    public void testBufferNotModified() {
+        ByteBuffer buf = utf8("D3:{\"a\":[1,2,3]}");
+        buf.position(3);
+        assertEquals(DeltaParser.parse(buf), DeltaParser.parse("{\"a\":[1,2,3]}"));
+        assertEquals(buf.position(), 3);
+    }
+
+    @Test
+    public void testErrorReportsBytePosition() {
+        try {
+            DeltaParser.parse(utf8("{\"caf\u00e9\":?}"));
+            fail();
+        } catch (ParseException e) {
+            assertTrue(e.getMessage().endsWith(" at character 9 of {\"caf\u00e9\":?}"), e.getMessage());
+        }
+    }
+
+    private static void assertSameDelta(Delta actual, Delta expected) {
+        assertEquals(actual, expected);
+        assertEquals(actual.toString(), expected.toString());
+    }
+
+    private static Class<? extends RuntimeException> failure(String string) {
+        try {
+            DeltaParser.parse(string);
+            return null;
+        } catch (RuntimeException e) {
+            return e.getClass();
+        }
+    }
+
+    private static Object randomJson(Random random, int depth) {
+        switch (random.nextInt(depth > 0 ? 9 : 7)) {
+            case 0:
+                return null;
+            case 1:
+                return random.nextBoolean();
+            case 2:
+                return random.nextInt();
+            case 3:
+                return random.nextLong();
+            case 4:
+                return random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+            case 5:
+            case 6:
+                return randomString(random);
+            case 7:
+                List<Object> list = Lists.newArrayList();
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    list.add(randomJson(random, depth - 1));
+                }
+                return list;
+            default:
+                Map<String, Object> map = Maps.newLinkedHashMap();
+                for (int i = random.nextInt(5); i > 0; i--) {
+                    map.put(randomString(random), randomJson(random, depth - 1));
+                }
+                return map;
+        }
+    }
+
+    private static String randomString(Random random) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = random.nextInt(12); i > 0; i--) {
+            switch (random.nextInt(6)) {
+                case 0:
+                    sb.append((char) random.nextInt(0x20));  // control characters are escaped
+                    break;
+                case 1:
+                    sb.append("\"\\/".charAt(random.nextInt(3)));
+                    break;
+                case 2:
+                    sb.append((char) (0x80 + random.nextInt(0x700)));
+                    break;
+                case 3:
+                    sb.append((char) (0x800 + random.nextInt(0xd000)));
+                    break;
+                case 4:
+                    sb.appendCodePoint(0x10000 + random.nextInt(0x10000));
+                    break;
+                default:
+                    sb.append((char) (0x20 + random.nextInt(0x5f)));
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static Object[][] toDataProvider(List<String> strings) {
+        Object[][] data = new Object[strings.size()][];
+        for (int i = 0; i < strings.size(); i++) {
+            data[i] = new Object[] {strings.get(i)};
+        }
+        return data;
+    }
+
+    private static ByteBuffer utf8(String string) {
+        return ByteBuffer.wrap(string.getBytes(Charsets.UTF_8));
+    }
+
+    /** Returns a buffer which doesn't start at the beginning of its backing array, as is typical of column values. */
+    private static ByteBuffer offsetUtf8(String string) {
+        byte[] bytes = ("D3:[]:" + string + ":trailer").getBytes(Charsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.position(6).limit(bytes.length - ":trailer".length());
+        return buf.slice();
+    }
+
+    private static ByteBuffer directUtf8(String string) {
+        byte[] bytes = string.getBytes(Charsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes).flip();
+        return buf;
+    }
+}
@@ -0,0 +1,121 @@
+package com.bazaarvoice.emodb.sor.delta.eval;
+
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.mockito.Mockito;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+public class DeltaComposerTest {
+
+    private static final List<String> DELTAS = ImmutableList.of(
+            "..",
+            "~",
+            "{}",
+            "{\"name\":\"Bob\",\"tags\":[\"new\"]}",
+            "[1,2]",
+            "5",
+            "{..,\"name\":\"Tom\"}",
+            "{..,\"name\":~}",
+            "{..,\"rating\":5,\"state\":\"SUBMITTED\"}",
+            "{..,\"name\":..}",
+            "{\"name\":..}",
+            "{\"name\":..,\"rating\":if ~ then 1 end}",
+            "{..,\"name\":~}?",
+            "{..,\"state\":if \"SUBMITTED\" then \"APPROVED\" end}",
+            "{..,\"nested\":{..,\"a\":1}}",
+            "{..,\"nested\":{..,\"a\":~}?}",
+            "{..,\"nested\":{\"b\":2}}",
+            "{..,\"tags\":(..,\"verified\")}",
+            "{..,\"tags\":(..,~\"new\",\"old\")}",
+            "{..,\"tags\":(..,~\"verified\")?}",
+            "{..,\"tags\":(\"only\")}",
+            "(..,1,~2)",
+            "(..,~1,3)?",
+            "if {..,\"state\":\"SUBMITTED\"} then {..,\"state\":\"APPROVED\"} end",
+            "if intrinsic(\"~id\":\"key\") then {..,\"matched\":true} end",
+            "{..,\"id\":if intrinsic(\"~id\":\"other\") then ~ end}",
+            "if ~ then {\"created\":true} else .. end");
+
+    private static final List<String> VALUES = ImmutableList.of(
+            "{}",
+            "{\"name\":\"Bob\",\"state\":\"SUBMITTED\",\"tags\":[\"new\",\"verified\"]}",
+            "{\"rating\":3,\"nested\":{\"a\":5,\"c\":6}}",
+            "{\"nested\":\"text\",\"tags\":\"text\"}",
+            "[1,2,3]",
+            "\"text\"",
+            "null");
+
+    @Test
+    public void testComposition() {
+        Intrinsics intrinsics = Mockito.mock(Intrinsics.class);
+        when(intrinsics.getId()).thenReturn("key");
+
+        // Values may be null, so use a list which permits them
+        List<Object> values = Lists.newArrayList(DeltaEvaluator.UNDEFINED);
+        for (String value : VALUES) {
+            values.add(((Literal) Deltas.fromString(value)).getValue());
+        }
+
+        for (String first : DELTAS) {
+            for (String second : DELTAS) {
+                Delta composed = DeltaComposer.compose(Deltas.fromString(first), Deltas.fromString(second));
+                if (composed == null) {
+                    continue;
+                }
+                for (Object value : values) {
+                    Object expected = DeltaEvaluator.eval(Deltas.fromString(second),
+                            DeltaEvaluator.eval(Deltas.fromString(first), value, intrinsics), intrinsics);
+                    Object actual = DeltaEvaluator.eval(composed, value, intrinsics);
+                    assertEquals(actual, expected, first + " then " + second + " = " + composed + " applied to " + value);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testComposedDeltas() {
+        assertComposed("{..,\"name\":\"Bob\"}", "{..,\"rating\":5}", "{..,\"name\":\"Bob\",\"rating\":5}");
+        assertComposed("{..,\"name\":\"Bob\"}", "{..,\"name\":~}", "{..,\"name\":~}");
+        assertComposed("{\"name\":\"Bob\"}", "{..,\"rating\":5}", "{\"name\":\"Bob\",\"rating\":5}");
+        assertComposed("{..,\"rating\":5}", "{\"name\":\"Bob\"}", "{\"name\":\"Bob\"}");
+        assertComposed("{..,\"a\":1}", "{\"b\":..}", "{\"b\":..}");
+        assertComposed("{\"a\":..}", "{..,\"a\":~,\"b\":{..,\"c\":1}}", "{\"b\":{\"c\":1}}");
+        assertComposed("{..,\"nested\":{..,\"a\":1}}", "{..,\"nested\":{..,\"b\":2}}", "{..,\"nested\":{..,\"a\":1,\"b\":2}}");
+        assertComposed("(..,1,~2)", "(..,2,~3)", "(..,1,2,~3)");
+        assertComposed("(..,1,2)", "(..,~1)?", "(..,2,~1)?");
+        assertComposed("~", "{..,\"state\":if ~ then \"NEW\" end}", "{\"state\":\"NEW\"}");
+        assertComposed("if ~ then {} end", "..", "if ~ then {} end");
+    }
+
+    @Test
+    public void testNotComposable() {
+        // Conditional deltas can only be followed by a constant
+        assertNull(compose("if ~ then {} end", "{..,\"a\":1}"));
+        assertNull(compose("{..,\"a\":if 1 then 2 end}", "{..,\"a\":if 2 then 3 end}"));
+        // Intrinsics aren't available without the record
+        assertNull(compose("{}", "if intrinsic(\"~id\":\"key\") then {..,\"matched\":true} end"));
+        assertNull(compose("~", "{..,\"a\":if partition(2:1) then 1 end}"));
+        // Different kinds of deltas
+        assertNull(compose("{..,\"a\":1}", "(..,1)"));
+    }
+
+    private static void assertComposed(String first, String second, String expected) {
+        Delta composed = compose(first, second);
+        assertNotNull(composed, first + " then " + second);
+        assertEquals(composed, Deltas.fromString(expected));
+    }
+
+    private static Delta compose(String first, String second) {
+        return DeltaComposer.compose(Deltas.fromString(first), Deltas.fromString(second));
+    }
+}
@@ -2,6 +2,8 @@ package com.bazaarvoice.emodb.sor;
 
 import com.bazaarvoice.emodb.common.cassandra.CassandraConfiguration;
 import com.bazaarvoice.emodb.sor.audit.AuditWriterConfiguration;
+import com.bazaarvoice.emodb.sor.core.CompactionSchedulerConfiguration;
+import com.bazaarvoice.emodb.sor.core.ResolvedRecordCacheConfiguration;
 import com.bazaarvoice.emodb.sor.log.SlowQueryLogConfiguration;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Optional;
@@ -71,6 +73,29 @@ public class DataStoreConfiguration {
     @JsonProperty("cellTombstoneBlockLimit")
     private int _cellTombstoneBlockLimit = 2;
 
+    /**
+     * Maximum encoded size of the deltas kept in the parsed delta cache, or 0 to disable the cache.
+     */
+    @Valid
+    @JsonProperty("parsedDeltaCacheSizeInMb")
+    private int _parsedDeltaCacheSizeInMb = 0;
+
+    @Valid
+    @NotNull
+    @JsonProperty("resolvedRecordCache")
+    private ResolvedRecordCacheConfiguration _resolvedRecordCacheConfiguration = new ResolvedRecordCacheConfiguration();
+
+    /**
+     * Whether to coalesce consecutive updates to the same record within a batch into a single delta.
+     */
+    @JsonProperty("coalesceUpdates")
+    private boolean _coalesceUpdates = false;
+
+    @Valid
+    @NotNull
+    @JsonProperty("compactionScheduler")
+    private CompactionSchedulerConfiguration _compactionSchedulerConfiguration = new CompactionSchedulerConfiguration();
+
     @Valid
     @NotNull
     @JsonProperty("stashBlackListTableCondition")
@@ -183,6 +208,42 @@ public class DataStoreConfiguration {
         return _cellTombstoneBlockLimit;
     }
 
+    public int getParsedDeltaCacheSizeInMb() {
+        return _parsedDeltaCacheSizeInMb;
+    }
+
+    public DataStoreConfiguration setParsedDeltaCacheSizeInMb(int parsedDeltaCacheSizeInMb) {
+        _parsedDeltaCacheSizeInMb = parsedDeltaCacheSizeInMb;
+        return this;
+    }
+
+    public ResolvedRecordCacheConfiguration getResolvedRecordCacheConfiguration() {
+        return _resolvedRecordCacheConfiguration;
+    }
+
+    public DataStoreConfiguration setResolvedRecordCacheConfiguration(ResolvedRecordCacheConfiguration resolvedRecordCacheConfiguration) {
+        _resolvedRecordCacheConfiguration = resolvedRecordCacheConfiguration;
+        return this;
+    }
+
+    public boolean isCoalesceUpdates() {
+        return _coalesceUpdates;
+    }
+
+    public DataStoreConfiguration setCoalesceUpdates(boolean coalesceUpdates) {
+        _coalesceUpdates = coalesceUpdates;
+        return this;
+    }
+
+    public CompactionSchedulerConfiguration getCompactionSchedulerConfiguration() {
+        return _compactionSchedulerConfiguration;
+    }
+
+    public DataStoreConfiguration setCompactionSchedulerConfiguration(CompactionSchedulerConfiguration compactionSchedulerConfiguration) {
+        _compactionSchedulerConfiguration = compactionSchedulerConfiguration;
+        return this;
+    }
+
     public AuditWriterConfiguration getAuditWriterConfiguration() {
         return _auditWriterConfiguration;
     }
@@ -130,6 +130,7 @@ import static com.google.common.base.Preconditions.checkState;
  * <li> {@link DataStore}
  * <li> {@link DataProvider}
  * <li> {@link DataTools}
+ * <li> @{@link DataStoreFullConsistency} {@link FullConsistencyTimeProvider}
  * </ul>
  */
 public class DataStoreModule extends PrivateModule {
@@ -382,6 +383,11 @@ public class DataStoreModule extends PrivateModule {
                 minLagConsistencyTimeProvider), metricRegistry);
     }
 
+    @Provides @Singleton @Exposed @DataStoreFullConsistency
+    FullConsistencyTimeProvider provideDataStoreFullConsistencyTimeProvider(FullConsistencyTimeProvider fullConsistencyTimeProvider) {
+        return fullConsistencyTimeProvider;
+    }
+
     @Provides @Singleton @HintsConsistencyTimeValues
     Map<String, ValueStore<Long>> provideHintsTimestampValues(@CassandraClusters Collection<String> cassandraClusters,
                                                               @GlobalFullConsistencyZooKeeper CuratorFramework curator,
@@ -448,6 +454,31 @@ public class DataStoreModule extends PrivateModule {
                 .or(Conditions.alwaysFalse());
     }
 
+    @Provides @Singleton
+    ResolvedRecordCache provideResolvedRecordCache(DataStoreConfiguration configuration, Clock clock, MetricRegistry metricRegistry) {
+        ResolvedRecordCacheConfiguration cacheConfiguration = configuration.getResolvedRecordCacheConfiguration();
+        if (!cacheConfiguration.getTableCondition().isPresent()) {
+            return ResolvedRecordCache.disabled();
+        }
+        return new ResolvedRecordCache(Conditions.fromString(cacheConfiguration.getTableCondition().get()),
+                cacheConfiguration.getMaximumSizeInMb() * 1024L * 1024L, cacheConfiguration.getTtl(), clock, metricRegistry);
+    }
+
+    @Provides @Singleton @CoalesceUpdates
+    boolean provideCoalesceUpdates(DataStoreConfiguration configuration) {
+        return configuration.isCoalesceUpdates();
+    }
+
+    @Provides @Singleton
+    CompactionScheduler provideCompactionScheduler(DataStoreConfiguration configuration, MetricRegistry metricRegistry) {
+        CompactionSchedulerConfiguration schedulerConfiguration = configuration.getCompactionSchedulerConfiguration();
+        if (!schedulerConfiguration.isEnabled()) {
+            return CompactionScheduler.disabled();
+        }
+        return new CompactionScheduler(schedulerConfiguration.getMaxTrackedRecords(), schedulerConfiguration.getMinDeltas(),
+                schedulerConfiguration.getCompactionsPerMinute() / 60.0, metricRegistry);
+    }
+
     private Collection<ClusterInfo> getClusterInfos(DataStoreConfiguration configuration) {
         Map<String, ClusterInfo> clusterInfoMap = Maps.newLinkedHashMap();
         for (CassandraConfiguration config : configuration.getCassandraClusters().values()) {
@@ -0,0 +1,19 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.google.inject.BindingAnnotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Whether {@link DefaultDataStore} coalesces consecutive updates to the same record in a batch into a single delta.
+ */
+@BindingAnnotation
+@Target ({ FIELD, PARAMETER, METHOD }) @Retention (RUNTIME)
+public @interface CoalesceUpdates {
+}
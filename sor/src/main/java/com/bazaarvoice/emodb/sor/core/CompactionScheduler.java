@@ -0,0 +1,317 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AbstractScheduledService;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Opt-in scheduler which proactively compacts the records with the longest delta chains.
+ * <p>
+ * Records are normally compacted when they're read.  Records which are written frequently but rarely read can
+ * accumulate a very long chain of deltas which makes the eventual read slow and the row expensive for Cassandra to
+ * read.  Writes and reads report the records they touch to a bounded heavy-hitters summary which estimates the number
+ * and size of the uncompacted deltas of the worst offenders.  A background service compacts the record with the most
+ * deltas, provided it has at least a minimum number of them, at a fixed maximum rate.
+ * <p>
+ * The summary is a variation of the Misra-Gries frequent items algorithm.  When it tracks more records than its
+ * capacity the median count is subtracted from every record and records whose count drops to zero are evicted.
+ * Counts are therefore underestimates, but a record with a long delta chain is never evicted in favor of records
+ * which are only written occasionally.
+ */
+public class CompactionScheduler {
+
+    private static final Logger _log = LoggerFactory.getLogger(CompactionScheduler.class);
+
+    private static final long POLL_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Compacts a record, returning the number of deltas which were deleted by the compaction.
+     */
+    public interface Target {
+        long compact(String table, String key);
+    }
+
+    private final int _capacity;
+    private final int _minDeltas;
+    private final double _compactionsPerSecond;
+    private final ConcurrentMap<Map.Entry<String, String>, Entry> _entries;
+    private final Lock _trimLock = new ReentrantLock();
+    private final Meter _compactions;
+    private final Meter _deltasDeleted;
+    private final Meter _bytesReclaimed;
+
+    /**
+     * Returns a scheduler which doesn't track or compact any records.
+     */
+    public static CompactionScheduler disabled() {
+        return new CompactionScheduler();
+    }
+
+    private CompactionScheduler() {
+        _capacity = 0;
+        _minDeltas = Integer.MAX_VALUE;
+        _compactionsPerSecond = 0;
+        _entries = null;
+        _compactions = null;
+        _deltasDeleted = null;
+        _bytesReclaimed = null;
+    }
+
+    public CompactionScheduler(int capacity, int minDeltas, double compactionsPerSecond, MetricRegistry metricRegistry) {
+        checkArgument(capacity > 0, "capacity must be >0");
+        checkArgument(minDeltas > 0, "minDeltas must be >0");
+        checkArgument(compactionsPerSecond > 0, "compactionsPerSecond must be >0");
+        checkNotNull(metricRegistry, "metricRegistry");
+
+        _capacity = capacity;
+        _minDeltas = minDeltas;
+        _compactionsPerSecond = compactionsPerSecond;
+        _entries = Maps.newConcurrentMap();
+
+        metricRegistry.register(getMetricName("queue-depth"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return getQueueDepth();
+            }
+        });
+        _compactions = metricRegistry.meter(getMetricName("compactions"));
+        _deltasDeleted = metricRegistry.meter(getMetricName("deltas-deleted"));
+        _bytesReclaimed = metricRegistry.meter(getMetricName("delta-bytes-reclaimed"));
+    }
+
+    public boolean isEnabled() {
+        return _entries != null;
+    }
+
+    /**
+     * Records a delta of approximately the given size in bytes written to a record.
+     */
+    public void recordWrite(String table, String key, int deltaSize) {
+        if (_entries == null) {
+            return;
+        }
+        Map.Entry<String, String> id = Maps.immutableEntry(table, key);
+        Entry entry = _entries.get(id);
+        if (entry == null) {
+            Entry existing = _entries.putIfAbsent(id, entry = new Entry());
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        entry.add(deltaSize);
+
+        if (_entries.size() > _capacity) {
+            trim();
+        }
+    }
+
+    /**
+     * Records the number of deltas which remain in a record after it was read, and after the compaction the read
+     * scheduled, if any.  Reads count deltas exactly, so this replaces the estimate from writes.
+     */
+    public void recordRead(String table, String key, int numPersistentDeltas) {
+        if (_entries == null) {
+            return;
+        }
+        Map.Entry<String, String> id = Maps.immutableEntry(table, key);
+        Entry entry = _entries.get(id);
+        if (entry != null) {
+            if (numPersistentDeltas < _minDeltas) {
+                _entries.remove(id, entry);
+            } else {
+                entry.set(numPersistentDeltas);
+            }
+        } else if (numPersistentDeltas >= _minDeltas) {
+            // The deltas were likely too recent to compact.  Track the record so it's compacted once they aren't.
+            entry = new Entry();
+            entry.set(numPersistentDeltas);
+            _entries.putIfAbsent(id, entry);
+            if (_entries.size() > _capacity) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * Returns a service which compacts the worst offenders using the provided target.  The caller is responsible for
+     * managing the service's life cycle.
+     */
+    public Service newService(Target target) {
+        checkState(isEnabled(), "Compaction scheduler is disabled");
+        return new CompactionService(checkNotNull(target, "target"));
+    }
+
+    /**
+     * Returns the number of tracked records with enough deltas to be compacted.
+     */
+    @VisibleForTesting
+    int getQueueDepth() {
+        int depth = 0;
+        for (Entry entry : _entries.values()) {
+            if (entry.getDeltas() >= _minDeltas) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Removes and returns the record with the most deltas, or null if no record has enough deltas to compact.
+     */
+    @VisibleForTesting
+    @Nullable
+    Candidate poll() {
+        Map.Entry<Map.Entry<String, String>, Entry> worst = null;
+        long worstDeltas = _minDeltas - 1;
+        for (Map.Entry<Map.Entry<String, String>, Entry> candidate : _entries.entrySet()) {
+            long deltas = candidate.getValue().getDeltas();
+            if (deltas > worstDeltas) {
+                worst = candidate;
+                worstDeltas = deltas;
+            }
+        }
+        if (worst == null || !_entries.remove(worst.getKey(), worst.getValue())) {
+            return null;
+        }
+        Entry entry = worst.getValue();
+        return new Candidate(worst.getKey().getKey(), worst.getKey().getValue(), entry.getDeltas(), entry.getBytes());
+    }
+
+    /**
+     * Evicts the records with the fewest deltas by subtracting the median delta count from every record.
+     */
+    private void trim() {
+        // Writers which find the summary over capacity while another thread is trimming it needn't wait
+        if (!_trimLock.tryLock()) {
+            return;
+        }
+        try {
+            if (_entries.size() <= _capacity) {
+                return;
+            }
+            long[] counts = new long[_entries.size()];
+            int n = 0;
+            for (Entry entry : _entries.values()) {
+                if (n == counts.length) {
+                    break;
+                }
+                counts[n++] = entry.getDeltas();
+            }
+            Arrays.sort(counts, 0, n);
+            long median = Math.max(counts[n / 2], 1);
+
+            for (Map.Entry<Map.Entry<String, String>, Entry> entry : _entries.entrySet()) {
+                if (entry.getValue().subtract(median) <= 0) {
+                    _entries.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        } finally {
+            _trimLock.unlock();
+        }
+    }
+
+    private void compact(Target target, Candidate candidate) {
+        long deltasDeleted = target.compact(candidate.table, candidate.key);
+        _compactions.mark();
+        _deltasDeleted.mark(deltasDeleted);
+        if (deltasDeleted > 0 && candidate.deltas > 0) {
+            // Sizes are only known for deltas observed being written, so estimate from their average size
+            _bytesReclaimed.mark(candidate.bytes * Math.min(deltasDeleted, candidate.deltas) / candidate.deltas);
+        }
+    }
+
+    private static String getMetricName(String name) {
+        return MetricRegistry.name("bv.emodb.sor", "CompactionScheduler", name);
+    }
+
+    /** A record chosen for compaction with its estimated number and total size of deltas. */
+    @VisibleForTesting
+    static final class Candidate {
+        final String table;
+        final String key;
+        final long deltas;
+        final long bytes;
+
+        Candidate(String table, String key, long deltas, long bytes) {
+            this.table = table;
+            this.key = key;
+            this.deltas = deltas;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Entry {
+        private long _deltas;
+        private long _bytes;
+
+        synchronized void add(int bytes) {
+            _deltas += 1;
+            _bytes += bytes;
+        }
+
+        synchronized void set(long deltas) {
+            // Keep the estimated average delta size
+            _bytes = _deltas > 0 ? _bytes * deltas / _deltas : 0;
+            _deltas = deltas;
+        }
+
+        synchronized long subtract(long deltas) {
+            set(Math.max(_deltas - deltas, 0));
+            return _deltas;
+        }
+
+        synchronized long getDeltas() {
+            return _deltas;
+        }
+
+        synchronized long getBytes() {
+            return _bytes;
+        }
+    }
+
+    private class CompactionService extends AbstractScheduledService {
+        private final Target _target;
+        private final RateLimiter _rateLimiter = RateLimiter.create(_compactionsPerSecond);
+
+        CompactionService(Target target) {
+            _target = target;
+        }
+
+        @Override
+        protected Scheduler scheduler() {
+            return Scheduler.newFixedDelaySchedule(POLL_INTERVAL_MILLIS, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        protected void runOneIteration() {
+            Candidate candidate;
+            while (isRunning() && (candidate = poll()) != null) {
+                _rateLimiter.acquire();
+                try {
+                    compact(_target, candidate);
+                } catch (Exception e) {
+                    _log.warn("Scheduled compaction failed for {}/{}", candidate.table, candidate.key, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration for the {@link CompactionScheduler}.  The scheduler is disabled by default.
+ */
+public class CompactionSchedulerConfiguration {
+
+    @JsonProperty("enabled")
+    private boolean _enabled;
+
+    // Maximum number of records tracked by the heavy-hitters summary
+    @Min(1)
+    @JsonProperty("maxTrackedRecords")
+    private int _maxTrackedRecords = 10000;
+
+    // Records with fewer deltas than this are left to be compacted when they're read
+    @Min(2)
+    @JsonProperty("minDeltas")
+    private int _minDeltas = 100;
+
+    @Min(1)
+    @JsonProperty("compactionsPerMinute")
+    private int _compactionsPerMinute = 60;
+
+    public boolean isEnabled() {
+        return _enabled;
+    }
+
+    public CompactionSchedulerConfiguration setEnabled(boolean enabled) {
+        _enabled = enabled;
+        return this;
+    }
+
+    public int getMaxTrackedRecords() {
+        return _maxTrackedRecords;
+    }
+
+    public CompactionSchedulerConfiguration setMaxTrackedRecords(int maxTrackedRecords) {
+        _maxTrackedRecords = maxTrackedRecords;
+        return this;
+    }
+
+    public int getMinDeltas() {
+        return _minDeltas;
+    }
+
+    public CompactionSchedulerConfiguration setMinDeltas(int minDeltas) {
+        _minDeltas = minDeltas;
+        return this;
+    }
+
+    public int getCompactionsPerMinute() {
+        return _compactionsPerMinute;
+    }
+
+    public CompactionSchedulerConfiguration setCompactionsPerMinute(int compactionsPerMinute) {
+        _compactionsPerMinute = compactionsPerMinute;
+        return this;
+    }
+}
@@ -2,12 +2,14 @@ package com.bazaarvoice.emodb.sor.core;
 
 import com.bazaarvoice.emodb.common.api.impl.LimitCounter;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.ManagedGuavaService;
 import com.bazaarvoice.emodb.common.json.deferred.LazyJsonMap;
 import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
 import com.bazaarvoice.emodb.common.zookeeper.store.MapStore;
 import com.bazaarvoice.emodb.sor.api.Audit;
 import com.bazaarvoice.emodb.sor.api.AuditBuilder;
 import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.api.Compaction;
 import com.bazaarvoice.emodb.sor.api.CompactionControlSource;
 import com.bazaarvoice.emodb.sor.api.Coordinate;
 import com.bazaarvoice.emodb.sor.api.DataStore;
@@ -42,6 +44,7 @@ import com.bazaarvoice.emodb.sor.db.RecordUpdate;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
 import com.bazaarvoice.emodb.sor.db.ScanRangeSplits;
 import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaComposer;
 import com.bazaarvoice.emodb.sor.log.SlowQueryLog;
 import com.bazaarvoice.emodb.table.db.DroppedTableException;
 import com.bazaarvoice.emodb.table.db.StashBlackListTableCondition;
@@ -65,6 +68,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.PeekingIterator;
 import com.google.common.hash.Hashing;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
@@ -125,6 +129,10 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
     private final Compactor _compactor;
     private final CompactionControlSource _compactionControlSource;
     private final MapStore<DataStoreMinSplitSize> _minSplitSizeMap;
+    private final ResolvedRecordCache _resolvedRecordCache;
+    private final CompactionScheduler _compactionScheduler;
+    private final boolean _coalesceUpdates;
+    private final Meter _coalescedUpdates;
     private final Clock _clock;
 
     private StashTableDAO _stashTableDao;
@@ -134,10 +142,15 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
                             DataReaderDAO dataReaderDao, DataWriterDAO dataWriterDao, SlowQueryLog slowQueryLog, HistoryStore historyStore,
                             @StashRoot Optional<URI> stashRootDirectory, @LocalCompactionControl CompactionControlSource compactionControlSource,
                             @StashBlackListTableCondition Condition stashBlackListTableCondition, AuditWriter auditWriter,
-                            @MinSplitSizeMap MapStore<DataStoreMinSplitSize> minSplitSizeMap, Clock clock) {
+                            @MinSplitSizeMap MapStore<DataStoreMinSplitSize> minSplitSizeMap, ResolvedRecordCache resolvedRecordCache,
+                            CompactionScheduler compactionScheduler, @CoalesceUpdates boolean coalesceUpdates, Clock clock) {
         this(eventWriterRegistry, tableDao, dataReaderDao, dataWriterDao, slowQueryLog, defaultCompactionExecutor(lifeCycle),
                 historyStore, stashRootDirectory, compactionControlSource, stashBlackListTableCondition, auditWriter,
-                minSplitSizeMap, metricRegistry, clock);
+                minSplitSizeMap, resolvedRecordCache, compactionScheduler, coalesceUpdates, metricRegistry, clock);
+
+        if (compactionScheduler.isEnabled()) {
+            lifeCycle.manage(new ManagedGuavaService(compactionScheduler.newService(this::compactScheduled)));
+        }
     }
 
     @VisibleForTesting
@@ -147,6 +160,33 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
                             Optional<URI> stashRootDirectory, CompactionControlSource compactionControlSource,
                             Condition stashBlackListTableCondition, AuditWriter auditWriter,
                             MapStore<DataStoreMinSplitSize> minSplitSizeMap, MetricRegistry metricRegistry, Clock clock) {
+        this(eventWriterRegistry, tableDao, dataReaderDao, dataWriterDao, slowQueryLog, compactionExecutor, historyStore,
+                stashRootDirectory, compactionControlSource, stashBlackListTableCondition, auditWriter, minSplitSizeMap,
+                ResolvedRecordCache.disabled(), metricRegistry, clock);
+    }
+
+    @VisibleForTesting
+    public DefaultDataStore(DatabusEventWriterRegistry eventWriterRegistry,TableDAO tableDao,
+                            DataReaderDAO dataReaderDao, DataWriterDAO dataWriterDao,
+                            SlowQueryLog slowQueryLog, ExecutorService compactionExecutor, HistoryStore historyStore,
+                            Optional<URI> stashRootDirectory, CompactionControlSource compactionControlSource,
+                            Condition stashBlackListTableCondition, AuditWriter auditWriter,
+                            MapStore<DataStoreMinSplitSize> minSplitSizeMap, ResolvedRecordCache resolvedRecordCache,
+                            MetricRegistry metricRegistry, Clock clock) {
+        this(eventWriterRegistry, tableDao, dataReaderDao, dataWriterDao, slowQueryLog, compactionExecutor, historyStore,
+                stashRootDirectory, compactionControlSource, stashBlackListTableCondition, auditWriter, minSplitSizeMap,
+                resolvedRecordCache, CompactionScheduler.disabled(), false, metricRegistry, clock);
+    }
+
+    @VisibleForTesting
+    public DefaultDataStore(DatabusEventWriterRegistry eventWriterRegistry,TableDAO tableDao,
+                            DataReaderDAO dataReaderDao, DataWriterDAO dataWriterDao,
+                            SlowQueryLog slowQueryLog, ExecutorService compactionExecutor, HistoryStore historyStore,
+                            Optional<URI> stashRootDirectory, CompactionControlSource compactionControlSource,
+                            Condition stashBlackListTableCondition, AuditWriter auditWriter,
+                            MapStore<DataStoreMinSplitSize> minSplitSizeMap, ResolvedRecordCache resolvedRecordCache,
+                            CompactionScheduler compactionScheduler, boolean coalesceUpdates, MetricRegistry metricRegistry,
+                            Clock clock) {
         _eventWriterRegistry = checkNotNull(eventWriterRegistry, "eventWriterRegistry");
         _tableDao = checkNotNull(tableDao, "tableDao");
         _dataReaderDao = checkNotNull(dataReaderDao, "dataReaderDao");
@@ -165,6 +205,10 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
 
         _compactionControlSource = checkNotNull(compactionControlSource, "compactionControlSource");
         _minSplitSizeMap = checkNotNull(minSplitSizeMap, "minSplitSizeMap");
+        _resolvedRecordCache = checkNotNull(resolvedRecordCache, "resolvedRecordCache");
+        _compactionScheduler = checkNotNull(compactionScheduler, "compactionScheduler");
+        _coalesceUpdates = coalesceUpdates;
+        _coalescedUpdates = metricRegistry.meter(getMetricName("coalesced_updates"));
         _clock = checkNotNull(clock, "clock");
     }
 
@@ -241,6 +285,7 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
         _tableDao.writeUnpublishedDatabusEvent(tableName, UnpublishedDatabusEventType.PURGE);
         _tableDao.audit(tableName, "purge", audit);
         _dataWriterDao.purgeUnsafe(table);
+        _resolvedRecordCache.invalidateAll(tableName);
     }
 
     @Override
@@ -318,6 +363,11 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
 
         Table table = _tableDao.get(tableName);
 
+        // Hot records may be resolved incrementally from a cached snapshot
+        if (_resolvedRecordCache.isCached(table)) {
+            return toContent(resolveCached(new Key(table, key), consistency), consistency);
+        }
+
         // Query from the database
         Record record = _dataReaderDao.read(new Key(table, key), consistency);
 
@@ -361,17 +411,40 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
                 if (_keys.isEmpty()) {
                     return Iterators.emptyIterator();
                 }
+                // Records with a cached snapshot only need the deltas which follow it.  Read the rest in bulk.
+                List<Key> cachedKeys = Lists.newArrayList();
+                List<Key> uncachedKeys = Lists.newArrayListWithCapacity(_keys.size());
+                for (Key key : _keys) {
+                    if (_resolvedRecordCache.isCached(key.getTable()) && _resolvedRecordCache.getIfPresent(key) != null) {
+                        cachedKeys.add(key);
+                    } else {
+                        uncachedKeys.add(key);
+                    }
+                }
+
                 // Limit memory usage using an iterator such that only one row's change list is in memory at a time.
-                Iterator<Record> recordIterator = _dataReaderDao.readAll(_keys, consistency);
-                return Iterators.transform(recordIterator, new Function<Record, AnnotatedContent>() {
+                Iterator<Record> recordIterator = !uncachedKeys.isEmpty() ?
+                        _dataReaderDao.readAll(uncachedKeys, consistency) :
+                        Iterators.<Record>emptyIterator();
+                Iterator<AnnotatedContent> uncachedContent = Iterators.transform(recordIterator, new Function<Record, AnnotatedContent>() {
                     @Override
                     public AnnotatedContent apply(Record record) {
                         Timer.Context timerCtx = _resolveAnnotatedEventTimer.time();
-                        AnnotatedContent result = resolveAnnotated(record, consistency);
+                        AnnotatedContent result = annotate(record.getKey().getTable(), resolve(record, consistency), consistency);
+                        timerCtx.stop();
+                        return result;
+                    }
+                });
+                Iterator<AnnotatedContent> cachedContent = Iterators.transform(cachedKeys.iterator(), new Function<Key, AnnotatedContent>() {
+                    @Override
+                    public AnnotatedContent apply(Key key) {
+                        Timer.Context timerCtx = _resolveAnnotatedEventTimer.time();
+                        AnnotatedContent result = annotate(key.getTable(), resolveCached(key, consistency), consistency);
                         timerCtx.stop();
                         return result;
                     }
                 });
+                return Iterators.concat(cachedContent, uncachedContent);
             }
         };
     }
@@ -390,6 +463,7 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
 
         // Log records with too many uncompacted deltas as a potential performance problem.
         _slowQueryLog.log(table.getName(), key, expanded);
+        _compactionScheduler.recordRead(table.getName(), key, expanded.getNumPersistentDeltas());
 
         // Are there deltas in this record that we no longer need?  If so, schedule an asynchronous compaction.
         if (scheduleCompactionIfPresent && expanded.getPendingCompaction() != null) {
@@ -399,6 +473,99 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
         return expanded.getResolved();
     }
 
+    /**
+     * Resolves a record starting from its snapshot in the {@link ResolvedRecordCache}, reading and applying only the
+     * deltas which follow the snapshot.  On a miss the record is read in full and the snapshot is created from only the
+     * deltas older than the full consistency timestamp, with the newer deltas always replayed on top of a copy.
+     * Deltas following the snapshot which have since become fully consistent are rolled into the cached snapshot.
+     */
+    private Resolved resolveCached(Key key, ReadConsistency consistency) {
+        Table table = key.getTable();
+
+        // Bound the # of times we attempt to resolve race conditions with compaction, same as compactors do.
+        for (int i = 0; i < 10; i++) {
+            // Deltas older than this timestamp are guaranteed to be present in the reads which follow
+            long fullConsistencyTimestamp = _dataWriterDao.getFullConsistencyTimestamp(table);
+
+            Resolved snapshot = _resolvedRecordCache.getIfPresent(key);
+            if (snapshot != null && snapshot.getLastAppliedChangeId() != null &&
+                    TimeUUIDs.getTimeMillis(snapshot.getLastAppliedChangeId()) >= fullConsistencyTimestamp) {
+                // The full consistency timestamp moved backwards, so deltas which sort before the snapshot's last
+                // delta may still arrive.  The snapshot can't be trusted to include them.
+                _resolvedRecordCache.invalidate(key);
+                snapshot = null;
+            }
+
+            boolean cached = snapshot != null;
+            boolean snapshotChanged = false;
+            if (!cached) {
+                Record record = _dataReaderDao.read(key, consistency);
+                Expanded expanded = expand(record, fullConsistencyTimestamp, true, consistency);
+                _slowQueryLog.log(table.getName(), key.getKey(), expanded);
+                _compactionScheduler.recordRead(table.getName(), key.getKey(), expanded.getNumPersistentDeltas());
+                if (expanded.getPendingCompaction() != null) {
+                    compactAsync(table, key.getKey(), expanded.getPendingCompaction());
+                }
+                snapshot = expanded.getResolved();
+                snapshotChanged = true;
+            }
+
+            UUID lastAppliedChangeId = snapshot.getLastAppliedChangeId();
+            Iterator<Change> changes = _dataReaderDao.readTimeline(
+                    key, true, lastAppliedChangeId, null, false, Long.MAX_VALUE, consistency);
+
+            // The resolver works on a copy, so neither the snapshot nor the content returned to the caller can be
+            // modified through the other
+            DefaultResolver resolver = new DefaultResolver(snapshot, table);
+            int deltasApplied = 0;
+            boolean compacted = false;
+            boolean recent = false;
+            while (changes.hasNext()) {
+                Change change = changes.next();
+                Compaction compaction = change.getCompaction();
+                if (compaction != null && (lastAppliedChangeId == null ||
+                        TimeUUIDs.compare(compaction.getCutoff(), lastAppliedChangeId) > 0)) {
+                    // The record was compacted past the snapshot and the deltas which followed it may be gone
+                    compacted = true;
+                    break;
+                }
+                if (change.getDelta() == null || change.getId().equals(lastAppliedChangeId)) {
+                    continue;  // Compaction or history entries, or the last delta already in the snapshot
+                }
+                if (!recent && TimeUUIDs.getTimeMillis(change.getId()) >= fullConsistencyTimestamp) {
+                    recent = true;
+                    if (deltasApplied > 0) {
+                        // Deltas up to this point are fully consistent.  Roll them into the snapshot.
+                        snapshot = resolver.resolved();
+                        snapshotChanged = true;
+                        resolver = new DefaultResolver(snapshot, table);
+                    }
+                }
+                resolver.update(change.getId(), change.getDelta(), change.getTags());
+                deltasApplied++;
+            }
+
+            if (compacted) {
+                _resolvedRecordCache.invalidate(key);
+                continue;
+            }
+            if (!recent && deltasApplied > 0) {
+                snapshot = resolver.resolved();
+                snapshotChanged = true;
+                resolver = new DefaultResolver(snapshot, table);
+            }
+            if (snapshotChanged) {
+                _resolvedRecordCache.put(key, snapshot);
+            }
+            if (cached) {
+                _resolvedRecordCache.markIncrementalResolve(deltasApplied);
+            }
+            return resolver.resolved();
+        }
+        throw new IllegalStateException("Unable to resolve object, " +
+                "repeated attempts failed due to apparent race conditions: " + key);
+    }
+
     /**
      * Convenience call to {@link #resolve(Record, ReadConsistency, boolean)} which always schedules asynchronous
      * compaction is applicable.
@@ -409,6 +576,10 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
 
     private Expanded expand(final Record record, boolean ignoreRecent, final ReadConsistency consistency) {
         long fullConsistencyTimeStamp = _dataWriterDao.getFullConsistencyTimestamp(record.getKey().getTable());
+        return expand(record, fullConsistencyTimeStamp, ignoreRecent, consistency);
+    }
+
+    private Expanded expand(final Record record, long fullConsistencyTimeStamp, boolean ignoreRecent, final ReadConsistency consistency) {
         long rawConsistencyTimeStamp = _dataWriterDao.getRawConsistencyTimestamp(record.getKey().getTable());
         Map<StashTimeKey, StashRunTimeInfo> stashTimeInfoMap = _compactionControlSource.getStashTimesForPlacement(record.getKey().getTable().getAvailability().getPlacement());
         // we will consider the earliest timestamp found as our compactionControlTimestamp.
@@ -430,12 +601,9 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
     }
 
     /**
-     * Resolve a set of changes, returning an interface that includes info about specific change IDs.
+     * Wraps a resolved record in an interface that includes info about specific change IDs.
      */
-    private AnnotatedContent resolveAnnotated(Record record, final ReadConsistency consistency) {
-        final Resolved resolved = resolve(record, consistency);
-
-        final Table table = record.getKey().getTable();
+    private AnnotatedContent annotate(final Table table, final Resolved resolved, final ReadConsistency consistency) {
         return new AnnotatedContent() {
             @Override
             public Map<String, Object> getContent() {
@@ -689,7 +857,7 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
             return;
         }
 
-        _dataWriterDao.updateAll(Iterators.transform(updatesIter, new Function<Update, RecordUpdate>() {
+        Iterator<RecordUpdate> recordUpdates = Iterators.transform(updatesIter, new Function<Update, RecordUpdate>() {
             @Override
             public RecordUpdate apply(Update update) {
                 checkNotNull(update, "update");
@@ -722,7 +890,15 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
 
                 return new RecordUpdate(table, key, changeId, delta, audit, tags, update.getConsistency());
             }
-        }), new DataWriterDAO.UpdateListener() {
+        });
+
+        // Coalesced updates are audited as the original updates they replaced
+        final Map<RecordUpdate, List<RecordUpdate>> coalescedUpdates = Maps.newIdentityHashMap();
+        if (_coalesceUpdates) {
+            recordUpdates = coalesce(recordUpdates, coalescedUpdates);
+        }
+
+        _dataWriterDao.updateAll(recordUpdates, new DataWriterDAO.UpdateListener() {
             @Override
             public void beforeWrite(Collection<RecordUpdate> updateBatch) {
                 // Tell the databus we're about to write.
@@ -757,12 +933,27 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
                 // Add the hash of the delta to the audit log to make it easy to tell when the same delta is written multiple times
                 // Update the audit to include the tags associated with the update
                 updateBatch.forEach(update -> {
-                    Audit augmentedAudit = AuditBuilder.from(update.getAudit())
-                            .set(Audit.SHA1, Hashing.sha1().hashUnencodedChars(update.getDelta().toString()).toString())
-                            .set(Audit.TAGS, tags)
-                            .build();
+                    List<RecordUpdate> originalUpdates = coalescedUpdates.remove(update);
+                    String deltaString = null;
+                    for (RecordUpdate originalUpdate : originalUpdates != null ? originalUpdates : Collections.singletonList(update)) {
+                        String originalDeltaString = originalUpdate.getDelta().toString();
+                        if (originalUpdate == update) {
+                            deltaString = originalDeltaString;
+                        }
+                        Audit augmentedAudit = AuditBuilder.from(originalUpdate.getAudit())
+                                .set(Audit.SHA1, Hashing.sha1().hashUnencodedChars(originalDeltaString).toString())
+                                .set(Audit.TAGS, tags)
+                                .build();
 
-                    _auditWriter.persist(update.getTable().getName(), update.getKey(), augmentedAudit, TimeUUIDs.getTimeMillis(update.getChangeId()));
+                        _auditWriter.persist(update.getTable().getName(), update.getKey(), augmentedAudit, TimeUUIDs.getTimeMillis(originalUpdate.getChangeId()));
+                    }
+                    if (deltaString == null) {
+                        // Coalesced updates were written as a single merged delta
+                        deltaString = update.getDelta().toString();
+                    }
+
+                    // The string length is a close enough estimate of the encoded size of the delta
+                    _compactionScheduler.recordWrite(update.getTable().getName(), update.getKey(), deltaString.length());
 
                 });
             }
@@ -780,6 +971,57 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
         _tableDao.createFacade(table, facadeOptions, audit);
     }
 
+    /**
+     * Coalesces runs of consecutive updates to the same record into a single update whose delta is the composition of
+     * the updates' deltas.  The coalesced update takes the change ID and audit of the last update in the run, so the
+     * databus is only notified of the final change.  Updates are only coalesced if their change IDs are increasing,
+     * since otherwise the deltas would be resolved in a different order than they appear, if they have the same tags,
+     * since the resolver and databus only see the tags of the coalesced update, and if their deltas can be composed into
+     * one.  The original updates of each coalesced update are added to {@code coalescedUpdates}.
+     */
+    @VisibleForTesting
+    Iterator<RecordUpdate> coalesce(Iterator<RecordUpdate> updates,
+                                            final Map<RecordUpdate, List<RecordUpdate>> coalescedUpdates) {
+        final PeekingIterator<RecordUpdate> peekingUpdates = Iterators.peekingIterator(updates);
+        return new AbstractIterator<RecordUpdate>() {
+            @Override
+            protected RecordUpdate computeNext() {
+                if (!peekingUpdates.hasNext()) {
+                    return endOfData();
+                }
+                RecordUpdate update = peekingUpdates.next();
+                List<RecordUpdate> originalUpdates = null;
+                while (peekingUpdates.hasNext() && canCoalesce(update, peekingUpdates.peek())) {
+                    RecordUpdate next = peekingUpdates.peek();
+                    Delta delta = DeltaComposer.compose(update.getDelta(), next.getDelta());
+                    if (delta == null) {
+                        break;
+                    }
+                    peekingUpdates.next();
+                    if (originalUpdates == null) {
+                        originalUpdates = Lists.newArrayList(update);
+                    }
+                    originalUpdates.add(next);
+                    update = new RecordUpdate(next.getTable(), next.getKey(), next.getChangeId(), delta, next.getAudit(),
+                            next.getTags(), next.getConsistency());
+                }
+                if (originalUpdates != null) {
+                    coalescedUpdates.put(update, originalUpdates);
+                    _coalescedUpdates.mark(originalUpdates.size() - 1);
+                }
+                return update;
+            }
+        };
+    }
+
+    private static boolean canCoalesce(RecordUpdate update, RecordUpdate next) {
+        return update.getTable().getName().equals(next.getTable().getName()) &&
+                update.getKey().equals(next.getKey()) &&
+                update.getConsistency() == next.getConsistency() &&
+                update.getTags().equals(next.getTags()) &&
+                TimeUUIDs.compare(update.getChangeId(), next.getChangeId()) < 0;
+    }
+
     @Override
     public void updateAllForFacade(Iterable<Update> updates) {
         updateAll(updates, true, ImmutableSet.<String>of());
@@ -838,6 +1080,25 @@ public class DefaultDataStore implements DataStore, DataProvider, DataTools, Tab
         return _tableDao.getTablePlacements(includeInternal, localOnly);
     }
 
+    /**
+     * Compacts a record chosen by the {@link CompactionScheduler}, returning the number of deltas deleted.
+     */
+    private long compactScheduled(String tableName, String key) {
+        Table table;
+        try {
+            table = _tableDao.get(tableName);
+        } catch (UnknownTableException e) {
+            return 0;  // The table was dropped since the record was written
+        }
+        Record record = _dataReaderDao.read(new Key(table, key), ReadConsistency.STRONG);
+        Expanded expanded = expand(record, true, ReadConsistency.STRONG);
+        if (expanded.getPendingCompaction() == null) {
+            return 0;
+        }
+        doCompact(table, key, expanded.getPendingCompaction(), WriteConsistency.STRONG);
+        return expanded.getNumDeletedDeltas();
+    }
+
     private void compactAsync(final Table table, final String key, final PendingCompaction pendingCompaction) {
         try {
             _compactionExecutor.submit(new Runnable() {
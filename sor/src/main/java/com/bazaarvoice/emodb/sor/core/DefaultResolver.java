@@ -1,9 +1,11 @@
 package com.bazaarvoice.emodb.sor.core;
 
+import com.bazaarvoice.emodb.common.json.JsonHelper;
 import com.bazaarvoice.emodb.common.uuid.UUIDs;
 import com.bazaarvoice.emodb.sor.api.Compaction;
 import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.bazaarvoice.emodb.table.db.Table;
 import com.google.common.base.Objects;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
@@ -63,6 +65,30 @@ public class DefaultResolver implements Resolver {
         }
     }
 
+    /**
+     * Creates a resolver which resumes from a previously resolved state, such that applying the changes which
+     * followed {@link Resolved#getLastAppliedChangeId()} produces the same result as resolving the record from
+     * scratch.  This includes the change IDs seen since the last compaction, the compaction cutoff signature and the
+     * last mutation, so redundant and pending change checks on the result behave the same as well.
+     * <p>
+     * The snapshot is copied and is not modified by the new resolver, so one snapshot may be resumed any number of
+     * times, concurrently.  The caller must ensure no changes which precede the last applied change are still to come,
+     * for example by only capturing snapshots of changes older than the full consistency timestamp.
+     */
+    public DefaultResolver(Resolved resolved, Table table) {
+        // Deltas carry unchanged maps and lists into their result, and callers may modify the resolved content
+        _content = JsonHelper.deepCopy(resolved.getContentOrUndefined());
+        _intrinsics = resolved.getIntrinsics().copy();
+        _intrinsics.setTable(table);
+        _compactionCutoffId = resolved.getLastCompactionCutoff();
+        _compactionCutoffSignature = resolved.getLastCompactionCutoffSignature();
+        _lastCompactedMutationId = resolved.getLastCompactedMutation();
+        _lastMutationId = resolved.getLastMutation();
+        _changeIds = Sets.newHashSet(resolved.getChangesSinceLastCompaction());
+        _redundantChangeIds = Sets.newHashSet(resolved.getRedundantChangesSinceLastCompaction());
+        _lastAppliedTags = resolved.getLastTags();
+    }
+
     @Override
     public void update(UUID changeId, Delta delta, Set<String> tags) {
         _changeIds.add(changeId);
@@ -112,7 +138,7 @@ public class DefaultResolver implements Resolver {
 
     @Override
     public Resolved resolved() {
-        return new Resolved(_content, _intrinsics, _compactionCutoffId, _lastCompactedMutationId, _lastMutationId,
+        return new Resolved(_content, _intrinsics, _compactionCutoffId, _compactionCutoffSignature, _lastCompactedMutationId, _lastMutationId,
                 _changeIds, _redundantChangeIds, _lastAppliedTags);
     }
 
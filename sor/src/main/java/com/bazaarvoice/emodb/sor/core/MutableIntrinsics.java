@@ -29,6 +29,21 @@ class MutableIntrinsics implements Intrinsics {
         _id = key.getKey();
     }
 
+    private MutableIntrinsics(MutableIntrinsics intrinsics) {
+        _id = intrinsics._id;
+        _table = intrinsics._table;
+        _version = intrinsics._version;
+        _signature = intrinsics._signature;
+        _deleted = intrinsics._deleted;
+        _firstUpdateAt = intrinsics._firstUpdateAt;
+        _lastUpdateAt = intrinsics._lastUpdateAt;
+        _lastMutateAt = intrinsics._lastMutateAt;
+    }
+
+    MutableIntrinsics copy() {
+        return new MutableIntrinsics(this);
+    }
+
     @Override
     public String getId() {
         return _id;
@@ -22,6 +22,8 @@ public class Resolved {
     private final Object _content;
     private final MutableIntrinsics _intrinsics;
     private final UUID _lastCompactionCutoff;
+    @Nullable
+    private final String _lastCompactionCutoffSignature;
     private final UUID _lastCompactedMutation;
     private final UUID _lastMutation;
     private final Set<UUID> _changesSinceLastCompaction;
@@ -30,12 +32,13 @@ public class Resolved {
     private final Set<String> _lastTags;
 
     public Resolved(@Nullable Object content, MutableIntrinsics intrinsics, @Nullable UUID lastCompactionCutoff,
-                    @Nullable UUID lastCompactedMutation, @Nullable UUID lastMutation,
+                    @Nullable String lastCompactionCutoffSignature, @Nullable UUID lastCompactedMutation, @Nullable UUID lastMutation,
                     Set<UUID> changesSinceLastCompaction, Set<UUID> redundantChangesSinceLastCompaction,
                     @Nullable Set<String> lastTags) {
         _content = content;
         _intrinsics = intrinsics;
         _lastCompactionCutoff = lastCompactionCutoff;
+        _lastCompactionCutoffSignature = lastCompactionCutoffSignature;
         _lastCompactedMutation = lastCompactedMutation;
         _lastMutation = lastMutation;
         _changesSinceLastCompaction = changesSinceLastCompaction;
@@ -74,6 +77,15 @@ public class Resolved {
         return _lastMutation;
     }
 
+    /**
+     * Returns the ID of the most recent change applied to the content, compacted or not, or null if no changes
+     * have been applied.
+     */
+    @Nullable
+    public UUID getLastAppliedChangeId() {
+        return _intrinsics.getLastUpdateAtUuid();
+    }
+
     public boolean isChangeDeltaPending(UUID changeId, long fullConsistencyTimestamp) {
         // Deltas older than the full consistency timestamp must be present, or else they don't exist. Also, deltas
         // that pre-date the last compaction cutoff are assumed to be deleted and in any case now irrelevant. (They're
@@ -94,4 +106,34 @@ public class Resolved {
                     TimeUUIDs.compare(changeId, _lastCompactionCutoff) <= 0
                 );
     }
+
+    // The following expose the resolver state so a DefaultResolver can resume from this snapshot.
+
+    @Nullable
+    Object getContentOrUndefined() {
+        return _content;
+    }
+
+    @Nullable
+    UUID getLastCompactionCutoff() {
+        return _lastCompactionCutoff;
+    }
+
+    @Nullable
+    String getLastCompactionCutoffSignature() {
+        return _lastCompactionCutoffSignature;
+    }
+
+    @Nullable
+    UUID getLastCompactedMutation() {
+        return _lastCompactedMutation;
+    }
+
+    Set<UUID> getChangesSinceLastCompaction() {
+        return _changesSinceLastCompaction;
+    }
+
+    Set<UUID> getRedundantChangesSinceLastCompaction() {
+        return _redundantChangesSinceLastCompaction;
+    }
 }
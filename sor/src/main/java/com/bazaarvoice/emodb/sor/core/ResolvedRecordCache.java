@@ -0,0 +1,169 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.dropwizard.metrics.InstrumentedCache;
+import com.bazaarvoice.emodb.common.dropwizard.time.ClockTicker;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.sor.condition.Condition;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.condition.eval.ConditionEvaluator;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.TableFilterIntrinsics;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Opt-in, per-table cache of resolved records for tables whose reads are heavily skewed toward a small set of keys.
+ * <p>
+ * Each entry is a snapshot of the record resolved through the deltas older than the full consistency timestamp at
+ * the time the snapshot was taken.  Those deltas are guaranteed to be fully replicated, so any delta written later
+ * sorts after the snapshot's {@link Resolved#getLastAppliedChangeId()}.  Readers revalidate a snapshot by reading
+ * only the deltas which follow it and applying them to a copy, see {@link DefaultDataStore}.  That guarantee only holds
+ * while the snapshot's last delta remains older than the current full consistency timestamp, so readers discard
+ * snapshots for which it doesn't.
+ * <p>
+ * The cache is weighed by the JSON size of the resolved content and entries expire after a fixed TTL.  The TTL also
+ * bounds how long other servers may serve a record from a table which was purged.
+ */
+public class ResolvedRecordCache {
+
+    // Rough per-entry cost of the key, intrinsics and change ID sets.
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Condition _tableCondition;
+    private final Cache<Key, CacheEntry> _cache;
+    private final Meter _incrementalResolves;
+    private final Histogram _deltasApplied;
+
+    /**
+     * Returns a cache which is not enabled for any table.
+     */
+    public static ResolvedRecordCache disabled() {
+        return new ResolvedRecordCache(Conditions.alwaysFalse(), 0, Duration.ZERO, Clock.systemUTC(), null);
+    }
+
+    public ResolvedRecordCache(Condition tableCondition, long maximumWeightInBytes, Duration ttl, Clock clock,
+                               @Nullable MetricRegistry metricRegistry) {
+        _tableCondition = checkNotNull(tableCondition, "tableCondition");
+        checkArgument(maximumWeightInBytes >= 0, "maximumWeightInBytes must be >= 0");
+        checkNotNull(ttl, "ttl");
+        checkNotNull(clock, "clock");
+
+        if (Conditions.alwaysFalse().equals(tableCondition) || maximumWeightInBytes == 0) {
+            _cache = null;
+            _incrementalResolves = null;
+            _deltasApplied = null;
+            return;
+        }
+
+        checkNotNull(metricRegistry, "metricRegistry");
+        _cache = CacheBuilder.newBuilder()
+                .ticker(ClockTicker.getTicker(clock))
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .maximumWeight(maximumWeightInBytes)
+                .weigher(new Weigher<Key, CacheEntry>() {
+                    @Override
+                    public int weigh(Key key, CacheEntry entry) {
+                        return entry.weight;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        InstrumentedCache.instrument(_cache, metricRegistry, "bv.emodb.sor", "resolvedRecordCache", false);
+        _incrementalResolves = metricRegistry.meter(MetricRegistry.name("bv.emodb.sor", "ResolvedRecordCache", "incremental-resolves"));
+        _deltasApplied = metricRegistry.histogram(MetricRegistry.name("bv.emodb.sor", "ResolvedRecordCache", "deltas-applied"));
+    }
+
+    /**
+     * Returns true if records from the provided table should be read through the cache.
+     */
+    public boolean isCached(Table table) {
+        return _cache != null &&
+                ConditionEvaluator.eval(_tableCondition, table.getAttributes(), new TableFilterIntrinsics(table));
+    }
+
+    /**
+     * Returns the cached snapshot for the record, or null if there is none.  The returned snapshot must not be
+     * modified; use {@link DefaultResolver#DefaultResolver(Resolved, Table)} to apply newer deltas to a copy.
+     */
+    @Nullable
+    public Resolved getIfPresent(Key key) {
+        CacheEntry entry = _cache.getIfPresent(key);
+        return entry != null ? entry.snapshot : null;
+    }
+
+    /**
+     * Caches a snapshot which includes every delta for the record older than the full consistency timestamp.
+     * The caller gives up ownership of the snapshot and must not apply further deltas to it.
+     */
+    public void put(Key key, Resolved snapshot) {
+        _cache.put(key, new CacheEntry(snapshot, weigh(snapshot)));
+    }
+
+    public void invalidate(Key key) {
+        _cache.invalidate(key);
+    }
+
+    /**
+     * Invalidates all cached records for a table, such as when the table is purged.
+     */
+    public void invalidateAll(String tableName) {
+        if (_cache == null) {
+            return;
+        }
+        for (Key key : _cache.asMap().keySet()) {
+            if (key.getTable().getName().equals(tableName)) {
+                _cache.invalidate(key);
+            }
+        }
+    }
+
+    /**
+     * Records a read which was served from a cached snapshot by applying the provided number of newer deltas.
+     */
+    public void markIncrementalResolve(int deltasApplied) {
+        _incrementalResolves.mark();
+        _deltasApplied.update(deltasApplied);
+    }
+
+    private static int weigh(Resolved snapshot) {
+        if (snapshot.isUndefined()) {
+            return ENTRY_OVERHEAD;
+        }
+        // Count the serialized size without holding the JSON in memory
+        CountingOutputStream out = new CountingOutputStream(ByteStreams.nullOutputStream());
+        try {
+            JsonHelper.writeJson(out, snapshot.getContent());
+        } catch (IOException e) {
+            // Shouldn't happen writing to a null stream
+            throw new AssertionError(e);
+        }
+        return (int) Math.min(Integer.MAX_VALUE - ENTRY_OVERHEAD, out.getCount()) + ENTRY_OVERHEAD;
+    }
+
+    private static final class CacheEntry {
+        final Resolved snapshot;
+        final int weight;
+
+        CacheEntry(Resolved snapshot, int weight) {
+            this.snapshot = snapshot;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Optional;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.time.Duration;
+
+/**
+ * Configuration for the {@link ResolvedRecordCache}.  The cache is disabled unless a table condition is configured,
+ * for example <code>intrinsic("~table":like("review:*"))</code>.
+ */
+public class ResolvedRecordCacheConfiguration {
+
+    @NotNull
+    @JsonProperty("tableCondition")
+    private Optional<String> _tableCondition = Optional.absent();
+
+    @Min(1)
+    @JsonProperty("maximumSizeInMb")
+    private int _maximumSizeInMb = 64;
+
+    @NotNull
+    @JsonProperty("ttl")
+    private Duration _ttl = Duration.ofMinutes(5);
+
+    public Optional<String> getTableCondition() {
+        return _tableCondition;
+    }
+
+    public ResolvedRecordCacheConfiguration setTableCondition(Optional<String> tableCondition) {
+        _tableCondition = tableCondition;
+        return this;
+    }
+
+    public int getMaximumSizeInMb() {
+        return _maximumSizeInMb;
+    }
+
+    public ResolvedRecordCacheConfiguration setMaximumSizeInMb(int maximumSizeInMb) {
+        _maximumSizeInMb = maximumSizeInMb;
+        return this;
+    }
+
+    public Duration getTtl() {
+        return _ttl;
+    }
+
+    public ResolvedRecordCacheConfiguration setTtl(Duration ttl) {
+        _ttl = ttl;
+        return this;
+    }
+}
@@ -43,9 +43,7 @@ public class DAOUtils {
             int limit = Math.min(currentPosition + _deltaBlockSize, split.limit());
             if (limit < split.limit()) {
                 // if current limit is in the middle of the utf-8 character, then backtrack to the beginning of said character
-                while ((encodedDelta.get(limit) & 0x80) != 0 && (encodedDelta.get(limit) & 0x40) == 0) {
-                    limit--;
-                }
+                limit = backtrackToCharacterStart(encodedDelta, limit);
                 split.limit(limit);
             }
             split.position(currentPosition);
@@ -70,9 +68,7 @@ public class DAOUtils {
         while (currentPosition < encodedDelta.limit()) {
             currentPosition += _deltaBlockSize;
             if (currentPosition < encodedDelta.limit()) {
-                while ((encodedDelta.get(currentPosition) & 0x80) != 0 && (encodedDelta.get(currentPosition) & 0x40) == 0) {
-                    currentPosition--;
-                }
+                currentPosition = backtrackToCharacterStart(encodedDelta, currentPosition);
             }
             numBlocks++;
         }
@@ -82,6 +78,16 @@ public class DAOUtils {
         return numBlocks;
     }
 
+    // A utf-8 character is at most 4 bytes, so never backtrack over more than 3 continuation bytes.  Binary encoded
+    // deltas have no character boundaries and may contain long runs of bytes which look like continuation bytes.
+    private int backtrackToCharacterStart(ByteBuffer encodedDelta, int limit) {
+        int minLimit = limit - 3;
+        while (limit > minLimit && (encodedDelta.get(limit) & 0x80) != 0 && (encodedDelta.get(limit) & 0x40) == 0) {
+            limit--;
+        }
+        return limit;
+    }
+
     // removes the hex prefix that indicates the number of blocks in the delta
     public ByteBuffer skipPrefix(ByteBuffer value) {
         value.position(value.position() + _prefixLength);
@@ -5,6 +5,7 @@ import com.bazaarvoice.emodb.sor.delta.DeltaVisitor;
 import com.bazaarvoice.emodb.sor.delta.deser.DeltaParser;
 import com.bazaarvoice.emodb.sor.delta.deser.JsonTokener;
 import com.bazaarvoice.emodb.sor.delta.impl.AbstractDelta;
+import com.google.common.base.Supplier;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -12,7 +13,8 @@ import java.io.IOException;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Delta implementation which takes an JSON token stream amd lazily deserializes it if needed.  There are numerous
+ * Delta implementation which takes an JSON token stream amd lazily deserializes it if needed, or more generally any
+ * source of a delta which is only decoded on demand.  There are numerous
  * circumstances where a delta is read but never used, such as if the delta is behind a compaction record but has
  * not yet been deleted.
  *
@@ -22,21 +24,29 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class LazyDelta extends AbstractDelta {
 
-    private volatile JsonTokener _tokener;
+    private volatile Supplier<Delta> _source;
     private volatile Delta _delta;
     private final boolean _constant;
 
     public LazyDelta(JsonTokener tokener, boolean constant) {
-        _tokener = checkNotNull(tokener, "tokener");
+        this(parser(checkNotNull(tokener, "tokener")), constant);
+    }
+
+    public LazyDelta(Supplier<Delta> source, boolean constant) {
+        _source = checkNotNull(source, "source");
         _constant = constant;
     }
 
+    private static Supplier<Delta> parser(JsonTokener tokener) {
+        return () -> DeltaParser.parse(tokener);
+    }
+
     private Delta getDelta() {
         if (_delta == null) {
             synchronized (this) {
                 if (_delta == null) {
-                    _delta = DeltaParser.parse(_tokener);
-                    _tokener = null;
+                    _delta = _source.get();
+                    _source = null;
                 }
             }
         }
@@ -122,6 +122,7 @@ public class AstyanaxBlockedDataReaderDAO implements DataReaderDAO, DataCopyRead
     private static final ByteBufferRange _maxColumnsRange = new RangeBuilder().setLimit(MAX_COLUMNS_BATCH).build();
 
     private final ChangeEncoder _changeEncoder;
+    private final ParsedDeltaCache _parsedDeltaCache;
     private final PlacementCache _placementCache;
     private final Timer _readBatchTimer;
     private final Timer _scanBatchTimer;
@@ -133,12 +134,13 @@ public class AstyanaxBlockedDataReaderDAO implements DataReaderDAO, DataCopyRead
     private final int _deltaPrefixLength;
 
     @Inject
-    public AstyanaxBlockedDataReaderDAO(PlacementCache placementCache, ChangeEncoder changeEncoder, MetricRegistry metricRegistry,
-                                 DAOUtils daoUtils, @PrefixLength int deltaPrefixLength) {
+    public AstyanaxBlockedDataReaderDAO(PlacementCache placementCache, ChangeEncoder changeEncoder, ParsedDeltaCache parsedDeltaCache,
+                                 MetricRegistry metricRegistry, DAOUtils daoUtils, @PrefixLength int deltaPrefixLength) {
         checkArgument(deltaPrefixLength > 0, "delta prefix length must be > 0");
 
         _placementCache = placementCache;
         _changeEncoder = changeEncoder;
+        _parsedDeltaCache = parsedDeltaCache;
         _readBatchTimer = metricRegistry.timer(getMetricName("readBatch"));
         _scanBatchTimer = metricRegistry.timer(getMetricName("scanBatch"));
         _randomReadMeter = metricRegistry.meter(getMetricName("random-reads"));
@@ -1205,7 +1207,7 @@ public class AstyanaxBlockedDataReaderDAO implements DataReaderDAO, DataCopyRead
                     getFilteredColumnIter(columnScan(rowKey, placement, columnFamily, lastColumn, null, false, _deltaKeyInc, Long.MAX_VALUE, 1, consistency), cutoffTime));
         }
 
-        Iterator<Map.Entry<DeltaClusteringKey, Change>> deltaChangeIter = decodeChanges(new AstyanaxDeltaIterator(changeIter, false, _deltaPrefixLength, ByteBufferUtil.bytesToHex((rowKey))));
+        Iterator<Map.Entry<DeltaClusteringKey, Change>> deltaChangeIter = decodeChanges(AstyanaxStorage.getTableUuid(rowKey), new AstyanaxDeltaIterator(changeIter, false, _deltaPrefixLength, ByteBufferUtil.bytesToHex((rowKey))));
         Iterator<Map.Entry<DeltaClusteringKey, Compaction>> deltaCompactionIter = decodeCompactions(new AstyanaxDeltaIterator(compactionIter, false, _deltaPrefixLength, ByteBufferUtil.bytesToHex((rowKey))));
         Iterator<RecordEntryRawMetadata> deltaRawMetadataIter = rawMetadata(new AstyanaxDeltaIterator(rawMetadataIter, false, _deltaPrefixLength, ByteBufferUtil.bytesToHex((rowKey))));
 
@@ -1227,11 +1229,11 @@ public class AstyanaxBlockedDataReaderDAO implements DataReaderDAO, DataCopyRead
         return Iterators.transform(iter, column -> _changeEncoder.decodeChange(column.getName(), _daoUtils.skipPrefix(column.getByteBufferValue())));
     }
 
-    private Iterator<Map.Entry<DeltaClusteringKey, Change>> decodeChanges(final Iterator<StitchedColumn> iter) {
+    private Iterator<Map.Entry<DeltaClusteringKey, Change>> decodeChanges(final long tableUuid, final Iterator<StitchedColumn> iter) {
         return Iterators.transform(iter, new Function<StitchedColumn, Map.Entry<DeltaClusteringKey, Change>>() {
             @Override
             public Map.Entry<DeltaClusteringKey, Change> apply(StitchedColumn column) {
-                Change change = _changeEncoder.decodeChange(column.getName(), _daoUtils.skipPrefix(column.getByteBufferValue()));
+                Change change = _parsedDeltaCache.decodeChange(tableUuid, column.getName(), _daoUtils.skipPrefix(column.getByteBufferValue()));
                 return Maps.immutableEntry(new DeltaClusteringKey(column.getName(), column.getNumBlocks()), change);
             }
         });
@@ -42,7 +42,6 @@ import com.netflix.astyanax.MutationBatch;
 import com.netflix.astyanax.connectionpool.OperationResult;
 import com.netflix.astyanax.connectionpool.exceptions.ConnectionException;
 import com.netflix.astyanax.model.ConsistencyLevel;
-import com.netflix.astyanax.serializers.StringSerializer;
 import com.netflix.astyanax.thrift.AbstractThriftMutationBatchImpl;
 import org.apache.cassandra.thrift.Cassandra;
 import org.apache.commons.lang3.StringUtils;
@@ -205,7 +204,6 @@ public class AstyanaxDataWriterDAO implements DataWriterDAO, DataPurgeDAO {
             ByteBuffer rowKey = storage.getRowKey(update.getKey());
 
             Delta delta = update.getDelta();
-            String deltaString = delta.toString();
             Set<String> tags = update.getTags();
 
             // Set any change flags which may make reading this delta back more efficient.  Currently the only case
@@ -221,7 +219,7 @@ public class AstyanaxDataWriterDAO implements DataWriterDAO, DataPurgeDAO {
             // Regardless of migration stage, we will still encode both deltas versions
 
             // The values are encoded in a flexible format that allows versioning of the strings
-            ByteBuffer encodedBlockDelta = stringToByteBuffer(_changeEncoder.encodeDelta(deltaString, changeFlags, tags, new StringBuilder(_deltaPrefix)).toString());
+            ByteBuffer encodedBlockDelta = _changeEncoder.encodeDelta(delta, changeFlags, tags, _deltaPrefix);
             ByteBuffer encodedDelta = encodedBlockDelta.duplicate();
             encodedDelta.position(encodedDelta.position() + _deltaPrefixLength);
 
@@ -268,10 +266,6 @@ public class AstyanaxDataWriterDAO implements DataWriterDAO, DataPurgeDAO {
         _updateMeter.mark(updates.size());
     }
 
-    private ByteBuffer stringToByteBuffer(String str) {
-        return StringSerializer.get().toByteBuffer(str);
-    }
-
     /**
      * We need to make sure that compaction is written *before* the compacted deltas are deleted.
      * This should be a synchronous operation.
@@ -0,0 +1,258 @@
+package com.bazaarvoice.emodb.sor.db.astyanax;
+
+import com.bazaarvoice.emodb.common.json.CustomJsonObjectMapperFactory;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.db.LazyDelta;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORParser;
+import com.google.common.base.Charsets;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * CBOR encoding of the JSON content of changes, used by {@link DefaultChangeEncoder} starting with delta encoding
+ * version 4.  Compared with JSON text numbers are stored in binary and strings are length-prefixed, so documents are
+ * smaller on disk and decoding them doesn't require tokenizing and unescaping text.
+ * <p>
+ * Documents usually repeat the same keys many times, such as in lists of objects, so each encoded value carries a
+ * dictionary of its keys.  A JSON object is written as a CBOR array tagged {@link #KEYED_MAP_TAG} which alternates keys
+ * and values.  The first time a key appears in the value it is written as a text string and added to the dictionary;
+ * after that it is written as its integer index in the dictionary.  Lists are plain CBOR arrays.
+ */
+final class CborChanges {
+
+    // Tag from the CBOR first come first served range which marks an object written with dictionary keys
+    private static final int KEYED_MAP_TAG = 0x454d;
+
+    private static final CBORFactory CBOR = (CBORFactory) CustomJsonObjectMapperFactory.build(new CBORFactory()).getFactory();
+
+    private CborChanges() {
+        // empty
+    }
+
+    /**
+     * Returns the UTF-8 encoded header followed by the CBOR encoded JSON value.
+     */
+    static ByteBuffer encode(CharSequence header, Object json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            out.write(header.toString().getBytes(Charsets.UTF_8));
+            write(out, json);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    static byte[] encode(Object json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        try {
+            write(out, json);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(OutputStream out, Object json) throws IOException {
+        try (CBORGenerator generator = CBOR.createGenerator(out)) {
+            writeValue(generator, json, Maps.<String, Integer>newHashMap());
+        }
+    }
+
+    private static void writeValue(CBORGenerator generator, @Nullable Object value, Map<String, Integer> keys)
+            throws IOException {
+        if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            generator.writeTag(KEYED_MAP_TAG);
+            generator.writeStartArray(map.size() * 2);
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                String key = entry.getKey().toString();
+                Integer index = keys.get(key);
+                if (index != null) {
+                    generator.writeNumber(index);
+                } else {
+                    keys.put(key, keys.size());
+                    generator.writeString(key);
+                }
+                writeValue(generator, entry.getValue(), keys);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof Collection) {
+            Collection<?> collection = (Collection<?>) value;
+            generator.writeStartArray(collection.size());
+            for (Object element : collection) {
+                writeValue(generator, element, keys);
+            }
+            generator.writeEndArray();
+        } else if (value instanceof String) {
+            generator.writeString((String) value);
+        } else if (value instanceof byte[]) {
+            generator.writeBinary((byte[]) value);
+        } else {
+            // Numbers, booleans and null
+            generator.writeObject(value);
+        }
+    }
+
+    /**
+     * Decodes the CBOR encoded JSON object in the remaining bytes of the buffer.
+     */
+    static Map<String, Object> decodeMap(ByteBuffer buf) {
+        try {
+            JsonParser parser;
+            if (buf.hasArray()) {
+                parser = CBOR.createParser(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+            } else {
+                byte[] bytes = new byte[buf.remaining()];
+                buf.duplicate().get(bytes);
+                parser = CBOR.createParser(bytes);
+            }
+            try {
+                parser.nextToken();
+                Object json = readValue((CBORParser) parser, Lists.<String>newArrayList());
+                checkState(json instanceof Map, "Encoded value is not a map");
+                //noinspection unchecked
+                return (Map<String, Object>) json;
+            } finally {
+                parser.close();
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Nullable
+    private static Object readValue(CBORParser parser, List<String> keys)
+            throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        switch (token) {
+            case START_ARRAY:
+                if (parser.getCurrentTag() == KEYED_MAP_TAG) {
+                    Map<String, Object> map = Maps.newLinkedHashMap();
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        String key;
+                        if (parser.getCurrentToken() == JsonToken.VALUE_STRING) {
+                            key = parser.getText();
+                            keys.add(key);
+                        } else {
+                            key = keys.get(parser.getIntValue());
+                        }
+                        parser.nextToken();
+                        map.put(key, readValue(parser, keys));
+                    }
+                    return map;
+                }
+                List<Object> list = Lists.newArrayList();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    list.add(readValue(parser, keys));
+                }
+                return list;
+            case VALUE_STRING:
+                return parser.getText();
+            case VALUE_NUMBER_INT:
+                return parser.getNumberValue();
+            case VALUE_NUMBER_FLOAT:
+                return parser.getDoubleValue();
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_NULL:
+                return null;
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.getBinaryValue();
+            default:
+                throw new IOException("Unexpected CBOR token: " + token);
+        }
+    }
+
+    /**
+     * Encodes a compaction with the same attributes as its JSON form, except that a compacted literal map is stored
+     * as CBOR named "compactedContent" instead of as a delta string.  The content is nested as a byte string so that
+     * it can be decoded lazily, the same as the compacted delta in a JSON compaction, since most compactions which
+     * are read are never resolved.
+     */
+    static ByteBuffer encodeCompaction(CharSequence header, Compaction compaction) {
+        Map<String, Object> json = Maps.newLinkedHashMap();
+        json.put("count", compaction.getCount());
+        putIfNotNull(json, "first", compaction.getFirst());
+        putIfNotNull(json, "cutoff", compaction.getCutoff());
+        putIfNotNull(json, "cutoffSignature", compaction.getCutoffSignature());
+        putIfNotNull(json, "lastContentMutation", compaction.getLastContentMutation());
+        putIfNotNull(json, "lastMutation", compaction.getLastMutation());
+        putIfNotNull(json, "lastTags", compaction.getLastTags());
+
+        Delta compactedDelta = compaction.getCompactedDelta();
+        if (compactedDelta instanceof Literal && ((Literal) compactedDelta).getValue() instanceof Map) {
+            json.put("compactedContent", encode(((Literal) compactedDelta).getValue()));
+        } else if (compactedDelta != null) {
+            json.put("compactedDelta", compactedDelta.toString());
+        }
+        return encode(header, json);
+    }
+
+    static Compaction decodeCompaction(ByteBuffer buf) {
+        Map<String, Object> json = decodeMap(buf);
+
+        Delta compactedDelta = null;
+        if (json.containsKey("compactedContent")) {
+            compactedDelta = lazyLiteral((byte[]) json.get("compactedContent"));
+        } else if (json.containsKey("compactedDelta")) {
+            compactedDelta = Deltas.fromString((String) json.get("compactedDelta"));
+        }
+
+        @SuppressWarnings("unchecked")
+        Collection<String> lastTags = (Collection<String>) json.get("lastTags");
+
+        return new Compaction(
+                ((Number) json.get("count")).longValue(),
+                toUuid(json.get("first")),
+                toUuid(json.get("cutoff")),
+                (String) json.get("cutoffSignature"),
+                toUuid(json.get("lastContentMutation")),
+                toUuid(json.get("lastMutation")),
+                compactedDelta,
+                lastTags != null ? ImmutableSet.copyOf(lastTags) : null);
+    }
+
+    /**
+     * Returns a literal delta for the CBOR encoded map which is only decoded if needed.
+     */
+    static Delta lazyLiteral(byte[] cbor) {
+        return new LazyDelta(() -> Deltas.literal(decodeMap(ByteBuffer.wrap(cbor))), true);
+    }
+
+    private static void putIfNotNull(Map<String, Object> json, String key, @Nullable Object value) {
+        if (value instanceof UUID) {
+            json.put(key, value.toString());
+        } else if (value != null) {
+            json.put(key, value);
+        }
+    }
+
+    @Nullable
+    private static UUID toUuid(@Nullable Object value) {
+        return value != null ? UUID.fromString((String) value) : null;
+    }
+}
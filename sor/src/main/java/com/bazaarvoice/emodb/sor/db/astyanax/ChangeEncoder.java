@@ -3,6 +3,7 @@ package com.bazaarvoice.emodb.sor.db.astyanax;
 import com.bazaarvoice.emodb.sor.api.Change;
 import com.bazaarvoice.emodb.sor.api.Compaction;
 import com.bazaarvoice.emodb.sor.api.History;
+import com.bazaarvoice.emodb.sor.delta.Delta;
 
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
@@ -16,6 +17,18 @@ public interface ChangeEncoder {
 
     StringBuilder encodeCompaction(Compaction compaction, StringBuilder builder);
 
+    /**
+     * Encodes a delta following the provided prefix.  Depending on the delta encoding version the result may be binary,
+     * so unlike {@link #encodeDelta(String, EnumSet, Set, StringBuilder)} it is returned as bytes.
+     */
+    ByteBuffer encodeDelta(Delta delta, @Nullable EnumSet<ChangeFlag> changeFlags, Set<String> tags, String prefix);
+
+    /**
+     * Encodes a compaction following the provided prefix.  Depending on the delta encoding version the result may be
+     * binary.
+     */
+    ByteBuffer encodeCompaction(Compaction compaction, String prefix);
+
     String encodeHistory(History history);
 
     Change decodeChange(UUID changeId, ByteBuffer buf);
@@ -73,6 +73,7 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
 
     private final DataReaderDAO _astyanaxReaderDAO;
     private final ChangeEncoder _changeEncoder;
+    private final ParsedDeltaCache _parsedDeltaCache;
     private final PlacementCache _placementCache;
     private final CqlDriverConfiguration _driverConfig;
     private final Meter _randomReadMeter;
@@ -86,12 +87,13 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
 
     @Inject
     public CqlBlockedDataReaderDAO(@CqlReaderDAODelegate DataReaderDAO delegate, PlacementCache placementCache,
-                                   CqlDriverConfiguration driverConfig, ChangeEncoder changeEncoder,
+                                   CqlDriverConfiguration driverConfig, ChangeEncoder changeEncoder, ParsedDeltaCache parsedDeltaCache,
                                    MetricRegistry metricRegistry, DAOUtils daoUtils, @PrefixLength int deltaPrefixLength) {
         _astyanaxReaderDAO = checkNotNull(delegate, "delegate");
         _placementCache = placementCache;
         _driverConfig = driverConfig;
         _changeEncoder = changeEncoder;
+        _parsedDeltaCache = parsedDeltaCache;
         _randomReadMeter = metricRegistry.meter(getMetricName("random-reads"));
         _readBatchTimer = metricRegistry.timer(getMetricName("readBatch"));
         _deltaPrefixLength = deltaPrefixLength;
@@ -188,7 +190,7 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
         }
 
         // Convert the results into a Record object, lazily fetching the rest of the columns as necessary.
-        return newRecordFromCql(key, rows, placement, ByteBufferUtil.bytesToHex(rowKey));
+        return newRecordFromCql(key, rows, placement, rowKey);
     }
 
     /**
@@ -249,12 +251,13 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
      * in other words, it is expected that row.getBytesUnsafe(ROW_KEY_RESULT_SET_COLUMN) returns the same value for
      * each row in rows.
      */
-    private Record newRecordFromCql(Key key, Iterable<Row> rows, Placement placement, String rowKey) {
+    private Record newRecordFromCql(Key key, Iterable<Row> rows, Placement placement, ByteBuffer rawRowKey) {
         Session session = placement.getKeyspace().getCqlSession();
         ProtocolVersion protocolVersion = session.getCluster().getConfiguration().getProtocolOptions().getProtocolVersion();
         CodecRegistry codecRegistry = session.getCluster().getConfiguration().getCodecRegistry();
+        String rowKey = ByteBufferUtil.bytesToHex(rawRowKey);
 
-        Iterator<Map.Entry<DeltaClusteringKey, Change>> changeIter = decodeChangesFromCql(new CqlDeltaIterator(rows.iterator(), BLOCK_RESULT_SET_COLUMN, CHANGE_ID_RESULT_SET_COLUMN, VALUE_RESULT_SET_COLUMN, false, _deltaPrefixLength, protocolVersion, codecRegistry, rowKey));
+        Iterator<Map.Entry<DeltaClusteringKey, Change>> changeIter = decodeChangesFromCql(AstyanaxStorage.getTableUuid(rawRowKey), new CqlDeltaIterator(rows.iterator(), BLOCK_RESULT_SET_COLUMN, CHANGE_ID_RESULT_SET_COLUMN, VALUE_RESULT_SET_COLUMN, false, _deltaPrefixLength, protocolVersion, codecRegistry, rowKey));
         Iterator<Map.Entry<DeltaClusteringKey, Compaction>> compactionIter = decodeCompactionsFromCql(new CqlDeltaIterator(rows.iterator(), BLOCK_RESULT_SET_COLUMN, CHANGE_ID_RESULT_SET_COLUMN, VALUE_RESULT_SET_COLUMN, false, _deltaPrefixLength, protocolVersion, codecRegistry, rowKey));
         Iterator<RecordEntryRawMetadata> rawMetadataIter = rawMetadataFromCql(new CqlDeltaIterator(rows.iterator(), BLOCK_RESULT_SET_COLUMN, CHANGE_ID_RESULT_SET_COLUMN, VALUE_RESULT_SET_COLUMN, false, _deltaPrefixLength, protocolVersion, codecRegistry, rowKey));
 
@@ -264,13 +267,13 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
     /**
      * Converts a list of rows into Change instances.
      */
-    private Iterator<Map.Entry<DeltaClusteringKey, Change>> decodeChangesFromCql(final Iterator<StitchedRow> iter) {
+    private Iterator<Map.Entry<DeltaClusteringKey, Change>> decodeChangesFromCql(final long tableUuid, final Iterator<StitchedRow> iter) {
         return Iterators.transform(iter, row ->
-                Maps.immutableEntry(new DeltaClusteringKey(getChangeId(row), row.getNumBlocks()), _changeEncoder.decodeChange(getChangeId(row), _daoUtils.skipPrefix(getValue(row)))));
+                Maps.immutableEntry(new DeltaClusteringKey(getChangeId(row), row.getNumBlocks()), _parsedDeltaCache.decodeChange(tableUuid, getChangeId(row), _daoUtils.skipPrefix(getValue(row)))));
     }
 
     /**
-     * Like {@link #decodeChangesFromCql(java.util.Iterator)} except filtered to only include compactions.
+     * Like {@link #decodeChangesFromCql(long, java.util.Iterator)} except filtered to only include compactions.
      */
     private Iterator<Map.Entry<DeltaClusteringKey, Compaction>> decodeCompactionsFromCql(final Iterator<StitchedRow> iter) {
         return new AbstractIterator<Map.Entry<DeltaClusteringKey, Compaction>>() {
@@ -361,7 +364,7 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
                     ByteBuffer keyBytes = getRawKeyFromRowGroup(rows);
                     Key key = rawKeyMap.remove(keyBytes);
                     assert key != null : "Query returned row with a key out of bound";
-                    return newRecordFromCql(key, rows, placement, ByteBufferUtil.bytesToHex(keyBytes));
+                    return newRecordFromCql(key, rows, placement, keyBytes);
                 }),
                 // Second iterator returns an empty Record for each key queried but not found.
                 new AbstractIterator<Record>() {
@@ -552,7 +555,7 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
     private Iterator<Record> decodeRows(Iterator<Iterable<Row>> rowGroups, final AstyanaxTable table, Placement placement) {
         return Iterators.transform(rowGroups, rowGroup -> {
             String key = AstyanaxStorage.getContentKey(getRawKeyFromRowGroup(rowGroup));
-            return newRecordFromCql(new Key(table, key), rowGroup, placement, ByteBufferUtil.bytesToHex(getRawKeyFromRowGroupOrNull(rowGroup)));
+            return newRecordFromCql(new Key(table, key), rowGroup, placement, getRawKeyFromRowGroup(rowGroup));
         });
     }
 
@@ -639,7 +642,7 @@ public class CqlBlockedDataReaderDAO implements DataReaderDAO, StorageReaderDAO
 
                     int shardId = AstyanaxStorage.getShardId(rowKey);
                     String key = AstyanaxStorage.getContentKey(rowKey);
-                    Record record = newRecordFromCql(new Key(_table, key), filteredRows, placement, ByteBufferUtil.bytesToHex(rowKey));
+                    Record record = newRecordFromCql(new Key(_table, key), filteredRows, placement, rowKey);
                     return new MultiTableScanResult(rowKey, shardId, tableUuid, _droppedTable, record);
                 }
 
@@ -148,7 +148,7 @@ public class CqlDataWriterDAO implements DataWriterDAO, DataCopyWriterDAO {
                                  CassandraKeyspace keyspace) {
 
         // Add the compaction record
-        ByteBuffer encodedBlockedCompaction = ByteBuffer.wrap(_changeEncoder.encodeCompaction(compaction, new StringBuilder(_deltaPrefix)).toString().getBytes(Charsets.UTF_8));
+        ByteBuffer encodedBlockedCompaction = _changeEncoder.encodeCompaction(compaction, _deltaPrefix);
         Session session = keyspace.getCqlSession();
         ConsistencyLevel consistencyLevel = SorConsistencies.toCql(consistency);
 
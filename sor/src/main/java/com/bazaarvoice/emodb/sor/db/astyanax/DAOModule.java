@@ -7,6 +7,7 @@ import com.bazaarvoice.emodb.sor.db.cql.CqlWriterDAODelegate;
 import com.bazaarvoice.emodb.table.db.astyanax.DataCopyDAO;
 import com.bazaarvoice.emodb.table.db.astyanax.DataPurgeDAO;
 import com.bazaarvoice.emodb.table.db.eventregistry.StorageReaderDAO;
+import com.codahale.metrics.MetricRegistry;
 import com.google.inject.PrivateModule;
 import com.google.inject.Provides;
 import com.google.inject.Singleton;
@@ -61,6 +62,13 @@ public class DAOModule extends PrivateModule {
         return new DefaultChangeEncoder(configuration.getDeltaEncodingVersion());
     }
 
+    @Provides
+    @Singleton
+    ParsedDeltaCache provideParsedDeltaCache(DataStoreConfiguration configuration, ChangeEncoder changeEncoder,
+                                             MetricRegistry metricRegistry) {
+        return new ParsedDeltaCache(changeEncoder, configuration.getParsedDeltaCacheSizeInMb() * 1024L * 1024L, metricRegistry);
+    }
+
     @Provides
     @Singleton
     @BlockSize
@@ -8,8 +8,11 @@ import com.bazaarvoice.emodb.sor.api.ChangeBuilder;
 import com.bazaarvoice.emodb.sor.api.Compaction;
 import com.bazaarvoice.emodb.sor.api.History;
 import com.bazaarvoice.emodb.sor.db.LazyDelta;
+import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.Literal;
 import com.bazaarvoice.emodb.sor.delta.deser.JsonTokener;
+import com.bazaarvoice.emodb.sor.delta.deser.Utf8JsonTokener;
 import com.google.common.base.Charsets;
 import com.google.common.base.Functions;
 import com.google.common.collect.FluentIterable;
@@ -19,6 +22,7 @@ import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -30,14 +34,17 @@ class DefaultChangeEncoder implements ChangeEncoder {
         D1,  // delta (version 1 encoding)
         D2,  // delta (version 2 encoding includes tags)
         D3,  // delta (version 3 encoding, adds change flags to D2
+        D4,  // delta (version 4 encoding, D3 with a CBOR encoded literal map in place of the delta string)
         C1,  // compaction (version 1 encoding)
+        C2,  // compaction (version 2 encoding, CBOR)
         H1,  // historical deltas (version 1 encoding)
     }
 
     private final Encoding _deltaEncoding;
+    private final boolean _binaryEncoding;
 
     public DefaultChangeEncoder() {
-        // Default constructor uses the latest version.
+        // Default constructor uses the latest textual version.
         this(3);
     }
 
@@ -46,9 +53,13 @@ class DefaultChangeEncoder implements ChangeEncoder {
         // delta encoding versions to use.  When upgrading the version should be deployed as the old version so that
         // old instances can read deltas written by the new instances.  Once all old instances have been terminated
         // the encoding version can be flipped to the new version.
+        //
+        // Version 4 writes literal map deltas as D4 and compactions as C2, both binary.  All other deltas are written
+        // as D3, so version 4 is only safe once every instance reading the data is able to decode version 4.
 
-        checkArgument(deltaEncodingVersion == 2 || deltaEncodingVersion == 3, "Only delta encoding versions 2 and 3 are permitted");
+        checkArgument(deltaEncodingVersion >= 2 && deltaEncodingVersion <= 4, "Only delta encoding versions 2, 3 and 4 are permitted");
         _deltaEncoding = deltaEncodingVersion == 2 ? Encoding.D2 : Encoding.D3;
+        _binaryEncoding = deltaEncodingVersion == 4;
     }
 
     @Override
@@ -57,11 +68,32 @@ class DefaultChangeEncoder implements ChangeEncoder {
         // Spec for D2 is <tags>:<delta>
         // Spec for D3 is <tags>:<change flags>:<Delta>
 
-        changeBody.append(_deltaEncoding)
+        appendHeader(_deltaEncoding, changeFlags, tags, changeBody);
+
+        changeBody.append(":")
+                .append(deltaString);
+
+
+        return changeBody;
+    }
+
+    @Override
+    public ByteBuffer encodeDelta(Delta delta, @Nullable EnumSet<ChangeFlag> changeFlags, @Nonnull Set<String> tags, String prefix) {
+        if (_binaryEncoding && delta instanceof Literal && ((Literal) delta).getValue() instanceof Map) {
+            // Spec for D4 is <tags>:<change flags>:<CBOR encoded literal map>
+            StringBuilder header = appendHeader(Encoding.D4, changeFlags, tags, new StringBuilder(prefix)).append(":");
+            return CborChanges.encode(header, ((Literal) delta).getValue());
+        }
+        return toUtf8(encodeDelta(delta.toString(), changeFlags, tags, new StringBuilder(prefix)));
+    }
+
+    private StringBuilder appendHeader(Encoding encoding, @Nullable EnumSet<ChangeFlag> changeFlags, Set<String> tags,
+                                       StringBuilder changeBody) {
+        changeBody.append(encoding)
                 .append(":")
                 .append(tags.isEmpty() ? "[]" : JsonHelper.asJson(tags));
 
-        if (_deltaEncoding == Encoding.D3) {
+        if (encoding != Encoding.D2) {
             changeBody.append(":");
             if (changeFlags != null) {
                 for (ChangeFlag changeFlag : changeFlags) {
@@ -69,11 +101,6 @@ class DefaultChangeEncoder implements ChangeEncoder {
                 }
             }
         }
-
-        changeBody.append(":")
-                .append(deltaString);
-
-
         return changeBody;
     }
 
@@ -82,6 +109,14 @@ class DefaultChangeEncoder implements ChangeEncoder {
         return encodeChange(Encoding.C1, JsonHelper.asJson(compaction), prefix);
     }
 
+    @Override
+    public ByteBuffer encodeCompaction(Compaction compaction, String prefix) {
+        if (_binaryEncoding) {
+            return CborChanges.encodeCompaction(new StringBuilder(prefix).append(Encoding.C2).append(":"), compaction);
+        }
+        return toUtf8(encodeCompaction(compaction, new StringBuilder(prefix)));
+    }
+
     @Override
     public String encodeHistory(History history) {
         return encodeChange(Encoding.H1, JsonHelper.asJson(history), new StringBuilder()).toString();
@@ -98,19 +133,18 @@ class DefaultChangeEncoder implements ChangeEncoder {
     public Change decodeChange(UUID changeId, ByteBuffer buf) {
         int sep = getSeparatorIndex(buf);
         Encoding encoding = getEncoding(buf, sep);
-        String body = getBody(buf, sep);
         JsonTokener tokener;
         Set<String> tags;
 
         ChangeBuilder builder = new ChangeBuilder(changeId);
         switch (encoding) {
             case D1:
-                builder.with(Deltas.fromString(body));
+                builder.with(Deltas.fromByteBuffer(getBodyBuffer(buf, sep)));
                 break;
             case D2:
                 // Spec for D2 is as follows:
                 // D2:<tags>:<Delta>
-                tokener = new JsonTokener(body);
+                tokener = new Utf8JsonTokener(getBodyBuffer(buf, sep));
                 tags = FluentIterable.from(tokener.nextArray()).transform(Functions.toStringFunction()).toSet();
                 tokener.next(':');
                 builder.with(Deltas.fromString(tokener)).with(tags);
@@ -118,7 +152,10 @@ class DefaultChangeEncoder implements ChangeEncoder {
             case D3:
                 // Spec for D3 is as follows:
                 // D3:<tags>:<change flags>:<Delta>
-                tokener = new JsonTokener(body);
+                // The delta may be parsed lazily, so copy the body rather than hold a reference to the buffer, which
+                // may be a view into a much larger response buffer.
+                byte[] body = getBodyBytes(buf, sep);
+                tokener = new Utf8JsonTokener(body);
                 tags = FluentIterable.from(tokener.nextArray()).transform(Functions.toStringFunction()).toSet();
                 tokener.next(':');
                 boolean isConstant = false;
@@ -143,7 +180,7 @@ class DefaultChangeEncoder implements ChangeEncoder {
                 // by the latter, so resources spent parsing and instantiating the elder are unnecessary.  Return a lazy
                 // map literal instead to defer instantiation until necessary.
                 if (isConstant && isMapDelta) {
-                    builder.with(Deltas.literal(new LazyJsonMap(body.substring(tokener.pos())))).with(tags);
+                    builder.with(Deltas.literal(new LazyJsonMap(new String(body, tokener.pos(), body.length - tokener.pos(), Charsets.UTF_8)))).with(tags);
                 } else {
                     // Even if the delta is not a literal map delta there are still benefits to evaluating it lazily.
                     // For example, if a delta is behind a compaction record but has not yet been deleted it won't
@@ -151,11 +188,33 @@ class DefaultChangeEncoder implements ChangeEncoder {
                     builder.with(new LazyDelta(tokener, isConstant)).with(tags);
                 }
                 break;
+            case D4:
+                // Spec for D4 is as follows:
+                // D4:<tags>:<change flags>:<CBOR encoded literal map>
+                ByteBuffer bodyBuffer = getBodyBuffer(buf, sep);
+                tokener = new Utf8JsonTokener(bodyBuffer);
+                tags = FluentIterable.from(tokener.nextArray()).transform(Functions.toStringFunction()).toSet();
+                tokener.next(':');
+                // D4 is only used for constant map deltas, so the change flags don't change how the delta is decoded
+                char flag = tokener.next();
+                while (flag != ':' && flag != 0) {
+                    flag = tokener.next();
+                }
+                // As with D3 defer decoding the literal in case it isn't needed.  Copy it rather than hold a
+                // reference to the buffer.
+                bodyBuffer.position(bodyBuffer.position() + tokener.pos());
+                byte[] cbor = new byte[bodyBuffer.remaining()];
+                bodyBuffer.get(cbor);
+                builder.with(CborChanges.lazyLiteral(cbor)).with(tags);
+                break;
             case C1:
-                builder.with(JsonHelper.fromJson(body, Compaction.class));
+                builder.with(JsonHelper.fromJson(getBody(buf, sep), Compaction.class));
+                break;
+            case C2:
+                builder.with(CborChanges.decodeCompaction(getBodyBuffer(buf, sep)));
                 break;
             case H1:
-                builder.with(JsonHelper.fromJson(body, History.class));
+                builder.with(JsonHelper.fromJson(getBody(buf, sep), History.class));
                 break;
             default:
                 throw new UnsupportedOperationException(encoding.name());
@@ -167,10 +226,14 @@ class DefaultChangeEncoder implements ChangeEncoder {
     public Compaction decodeCompaction(ByteBuffer buf) {
         // Used in the first pass of the resolver, doesn't bother decoding deltas since they're not relevant in pass 1.
         int sep = getSeparatorIndex(buf);
-        if (getEncoding(buf, sep) != Encoding.C1) {
-            return null;  // Not a compaction record
+        switch (getEncoding(buf, sep)) {
+            case C1:
+                return JsonHelper.fromJson(getBody(buf, sep), Compaction.class);
+            case C2:
+                return CborChanges.decodeCompaction(getBodyBuffer(buf, sep));
+            default:
+                return null;  // Not a compaction record
         }
-        return JsonHelper.fromJson(getBody(buf, sep), Compaction.class);
     }
 
     /** Returns the index of the colon that separates the encoding prefix from the body suffix. */
@@ -194,8 +257,12 @@ class DefaultChangeEncoder implements ChangeEncoder {
                     return Encoding.D2;
                 case 'D' | ('3' << 8):
                     return Encoding.D3;
+                case 'D' | ('4' << 8):
+                    return Encoding.D4;
                 case 'C' | ('1' << 8):
                     return Encoding.C1;
+                case 'C' | ('2' << 8):
+                    return Encoding.C2;
                 case 'H' | ('1' << 8):
                     return Encoding.H1;
             }
@@ -206,4 +273,20 @@ class DefaultChangeEncoder implements ChangeEncoder {
     private String getBody(ByteBuffer buf, int sep) {
         return BufferUtils.getString(buf, sep + 1, buf.remaining() - (sep + 1), Charsets.UTF_8);
     }
+
+    private ByteBuffer toUtf8(CharSequence change) {
+        return ByteBuffer.wrap(change.toString().getBytes(Charsets.UTF_8));
+    }
+
+    private ByteBuffer getBodyBuffer(ByteBuffer buf, int sep) {
+        ByteBuffer body = buf.duplicate();
+        body.position(body.position() + sep + 1);
+        return body;
+    }
+
+    private byte[] getBodyBytes(ByteBuffer buf, int sep) {
+        byte[] body = new byte[buf.remaining() - (sep + 1)];
+        getBodyBuffer(buf, sep).get(body);
+        return body;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,274 @@
+package com.bazaarvoice.emodb.sor.db.astyanax;
+
+import com.bazaarvoice.emodb.common.dropwizard.metrics.InstrumentedCache;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.api.ChangeBuilder;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.api.History;
+import com.bazaarvoice.emodb.sor.db.LazyDelta;
+import com.bazaarvoice.emodb.sor.delta.ConditionalDelta;
+import com.bazaarvoice.emodb.sor.delta.Delete;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.DeltaVisitor;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.bazaarvoice.emodb.sor.delta.MapDelta;
+import com.bazaarvoice.emodb.sor.delta.NoopDelta;
+import com.bazaarvoice.emodb.sor.delta.SetDelta;
+import com.bazaarvoice.emodb.sor.delta.impl.ConditionalDeltaImpl;
+import com.bazaarvoice.emodb.sor.delta.impl.MapDeltaImpl;
+import com.bazaarvoice.emodb.sor.delta.impl.SetDeltaImpl;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Optional bounded cache of decoded {@link Change} instances keyed by table uuid and change ID.  Hot records which are
+ * read many times between compactions otherwise pay to parse every one of their deltas on every read.
+ * <p>
+ * The resolver shares literal values with the content it returns, and callers are free to modify that content.
+ * Cached changes are therefore never handed out directly.  Each read gets a copy whose literal values are deep-copied
+ * the first time its delta is evaluated, so deltas which are read but never evaluated cost nothing extra.  Parsing
+ * deferred by {@link LazyDelta} happens at most once per cached entry.
+ * <p>
+ * A change ID alone doesn't uniquely identify the encoded change:  clients may reuse a change ID across keys and
+ * compaction may rewrite the cutoff delta in place.  Each entry therefore records a fingerprint of the encoded
+ * value and is only used if the fingerprint of the value just read matches.
+ * <p>
+ * The cache is weighed by the encoded size of each change, so the configured maximum is a bound on the encoded bytes
+ * cached and not on the heap used by the decoded objects.
+ */
+public class ParsedDeltaCache {
+
+    // Rough per-entry cost of the key, fingerprint and cache bookkeeping.
+    private static final int ENTRY_OVERHEAD = 96;
+    private static final HashFunction FINGERPRINT = Hashing.murmur3_128();
+
+    private final ChangeEncoder _changeEncoder;
+    private final Cache<CacheKey, CacheEntry> _cache;
+    private final AtomicLong _weightedSize = new AtomicLong();
+
+    /**
+     * Returns a cache which doesn't cache anything and decodes every change with the provided encoder.
+     */
+    public static ParsedDeltaCache disabled(ChangeEncoder changeEncoder) {
+        return new ParsedDeltaCache(changeEncoder, 0, null);
+    }
+
+    public ParsedDeltaCache(ChangeEncoder changeEncoder, long maximumWeightInBytes, @Nullable MetricRegistry metricRegistry) {
+        checkArgument(maximumWeightInBytes >= 0, "maximumWeightInBytes must be >= 0");
+        checkArgument(maximumWeightInBytes == 0 || metricRegistry != null, "metricRegistry is required for an enabled cache");
+        _changeEncoder = checkNotNull(changeEncoder, "changeEncoder");
+
+        if (maximumWeightInBytes == 0) {
+            _cache = null;
+            return;
+        }
+
+        _cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumWeightInBytes)
+                .weigher(new Weigher<CacheKey, CacheEntry>() {
+                    @Override
+                    public int weigh(CacheKey key, CacheEntry entry) {
+                        return entry.weight;
+                    }
+                })
+                .removalListener(new RemovalListener<CacheKey, CacheEntry>() {
+                    @Override
+                    public void onRemoval(RemovalNotification<CacheKey, CacheEntry> notification) {
+                        _weightedSize.addAndGet(-notification.getValue().weight);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        InstrumentedCache.instrument(_cache, metricRegistry, "bv.emodb.sor", "parsedDeltaCache", false);
+        metricRegistry.register(MetricRegistry.name("bv.emodb.sor", "ParsedDeltaCache", "weighted-size"),
+                (Gauge<Long>) _weightedSize::get);
+    }
+
+    /**
+     * Returns the decoded change, from the cache if a change with the same ID and encoded value was decoded previously.
+     * The provided buffer is not modified.
+     */
+    public Change decodeChange(long tableUuid, UUID changeId, ByteBuffer buf) {
+        if (_cache == null) {
+            return _changeEncoder.decodeChange(changeId, buf);
+        }
+
+        CacheKey key = new CacheKey(tableUuid, changeId);
+        HashCode fingerprint = fingerprint(buf);
+        CacheEntry entry = _cache.getIfPresent(key);
+        if (entry != null && entry.fingerprint.equals(fingerprint)) {
+            return copyOf(entry.change);
+        }
+
+        int weight = buf.remaining() + ENTRY_OVERHEAD;
+        Change change = _changeEncoder.decodeChange(changeId, buf);
+        _weightedSize.addAndGet(weight);
+        _cache.put(key, new CacheEntry(change, fingerprint, weight));
+        return copyOf(change);
+    }
+
+    /**
+     * Returns a change which shares no mutable JSON with the cached change.
+     */
+    private static Change copyOf(Change change) {
+        ChangeBuilder builder = new ChangeBuilder(change.getId()).with(change.getTags());
+        if (change.getDelta() != null) {
+            builder.with(lazyCopyOf(change.getDelta()));
+        }
+        Compaction compaction = change.getCompaction();
+        if (compaction != null) {
+            builder.with(new Compaction(compaction.getCount(), compaction.getFirst(), compaction.getCutoff(),
+                    compaction.getCutoffSignature(), compaction.getLastContentMutation(), compaction.getLastMutation(),
+                    compaction.hasCompactedDelta() ? lazyCopyOf(compaction.getCompactedDelta()) : null,
+                    compaction.getLastTags()));
+        }
+        History history = change.getHistory();
+        if (history != null) {
+            //noinspection unchecked
+            builder.with(new History(history.getChangeId(),
+                    (Map<String, Object>) JsonHelper.deepCopy(history.getContent()),
+                    history.getDelta() != null ? lazyCopyOf(history.getDelta()) : null));
+        }
+        return builder.build();
+    }
+
+    private static Delta lazyCopyOf(Delta delta) {
+        return new LazyDelta(() -> delta.visit(DeltaCopier.INSTANCE, null), delta.isConstant());
+    }
+
+    @VisibleForTesting
+    long getWeightedSize() {
+        return _weightedSize.get();
+    }
+
+    @VisibleForTesting
+    long size() {
+        return _cache != null ? _cache.size() : 0;
+    }
+
+    private static HashCode fingerprint(ByteBuffer buf) {
+        if (buf.hasArray()) {
+            return FINGERPRINT.hashBytes(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        }
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return FINGERPRINT.hashBytes(bytes);
+    }
+
+    private static final class CacheKey {
+        private final long _tableUuid;
+        private final UUID _changeId;
+
+        CacheKey(long tableUuid, UUID changeId) {
+            _tableUuid = tableUuid;
+            _changeId = checkNotNull(changeId, "changeId");
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey that = (CacheKey) o;
+            return _tableUuid == that._tableUuid && _changeId.equals(that._changeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(_tableUuid, _changeId);
+        }
+    }
+
+    private static final class CacheEntry {
+        final Change change;
+        final HashCode fingerprint;
+        final int weight;
+
+        CacheEntry(Change change, HashCode fingerprint, int weight) {
+            this.change = change;
+            this.fingerprint = fingerprint;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Rebuilds a delta with copies of all of its literal values.
+     */
+    private static final class DeltaCopier implements DeltaVisitor<Void, Delta> {
+        static final DeltaCopier INSTANCE = new DeltaCopier();
+
+        @Override
+        public Delta visit(Literal delta, @Nullable Void context) {
+            return Deltas.literal(JsonHelper.deepCopy(delta.getValue()));
+        }
+
+        @Override
+        public Delta visit(NoopDelta delta, @Nullable Void context) {
+            return delta;
+        }
+
+        @Override
+        public Delta visit(Delete delta, @Nullable Void context) {
+            return delta;
+        }
+
+        @Override
+        public Delta visit(MapDelta delta, @Nullable Void context) {
+            Map<String, Delta> entries = Maps.newHashMapWithExpectedSize(delta.getEntries().size());
+            for (Map.Entry<String, Delta> entry : delta.getEntries().entrySet()) {
+                entries.put(entry.getKey(), entry.getValue().visit(this, null));
+            }
+            return new MapDeltaImpl(delta.getRemoveRest(), entries, delta.getDeleteIfEmpty());
+        }
+
+        @Override
+        public Delta visit(SetDelta delta, @Nullable Void context) {
+            // Removed values are only compared against, never added to the content
+            return new SetDeltaImpl(delta.getRemoveRest(), copyOf(delta.getAddedValues()), delta.getRemovedValues(),
+                    delta.getDeleteIfEmpty());
+        }
+
+        @Override
+        public Delta visit(ConditionalDelta delta, @Nullable Void context) {
+            return new ConditionalDeltaImpl(delta.getTest(), delta.getThen().visit(this, null),
+                    delta.getElse().visit(this, null));
+        }
+
+        private List<Literal> copyOf(Set<Literal> literals) {
+            List<Literal> copy = Lists.newArrayListWithCapacity(literals.size());
+            for (Literal literal : literals) {
+                copy.add(Deltas.literal(JsonHelper.deepCopy(literal.getValue())));
+            }
+            return copy;
+        }
+    }
+}
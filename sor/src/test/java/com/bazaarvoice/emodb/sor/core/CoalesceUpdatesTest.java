@@ -0,0 +1,176 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Audit;
+import com.bazaarvoice.emodb.sor.api.AuditBuilder;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.api.ReadConsistency;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.api.Update;
+import com.bazaarvoice.emodb.sor.api.WriteConsistency;
+import com.bazaarvoice.emodb.sor.audit.AuditWriter;
+import com.bazaarvoice.emodb.sor.compactioncontrol.InMemoryCompactionControlSource;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.core.test.DiscardingExecutorService;
+import com.bazaarvoice.emodb.sor.core.test.InMemoryHistoryStore;
+import com.bazaarvoice.emodb.sor.core.test.InMemoryMapStore;
+import com.bazaarvoice.emodb.sor.db.RecordUpdate;
+import com.bazaarvoice.emodb.sor.db.test.InMemoryDataReaderDAO;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.log.NullSlowQueryLog;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTableDAO;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+
+public class CoalesceUpdatesTest {
+
+    private static final String TABLE = "review:testcustomer";
+
+    @Test
+    public void testCoalesceUpdates() {
+        List<UUID> changeIds = newChangeIds(9);
+        List<Update> updates = ImmutableList.of(
+                update("a", changeIds.get(0), "{\"name\":\"Bob\",\"tags\":[\"new\"]}"),
+                update("a", changeIds.get(1), "{..,\"rating\":5}"),
+                update("a", changeIds.get(2), "{..,\"tags\":(..,\"verified\",~\"new\")}"),
+                // Different key
+                update("b", changeIds.get(3), "{..,\"name\":\"Tom\"}"),
+                update("b", changeIds.get(4), "{..,\"state\":\"SUBMITTED\"}"),
+                // A conditional delta can't be composed with what precedes it
+                update("b", changeIds.get(5), "if {..,\"state\":\"SUBMITTED\"} then {..,\"state\":\"APPROVED\"} end"),
+                update("b", changeIds.get(6), "{..,\"rating\":3}"),
+                // Out of order change IDs are resolved in change ID order, so aren't coalesced
+                update("a", changeIds.get(8), "{..,\"rating\":4}"),
+                update("a", changeIds.get(7), "{..,\"rating\":1}"));
+
+        Store coalescing = new Store(true);
+        Store uncoalesced = new Store(false);
+        coalescing.dataStore.updateAll(updates);
+        uncoalesced.dataStore.updateAll(updates);
+
+        for (String key : new String[] {"a", "b"}) {
+            assertEquals(stripIntrinsics(coalescing.dataStore.get(TABLE, key)), stripIntrinsics(uncoalesced.dataStore.get(TABLE, key)));
+        }
+
+        // Each coalesced run is written as one delta with the change ID of the last update in the run
+        assertEquals(coalescing.changeIds(TABLE, "a"), ImmutableList.of(changeIds.get(2), changeIds.get(7), changeIds.get(8)));
+        assertEquals(coalescing.changeIds(TABLE, "b"), ImmutableList.of(changeIds.get(4), changeIds.get(5), changeIds.get(6)));
+        assertEquals(coalescing.databusChangeIds, ImmutableList.of(
+                changeIds.get(2), changeIds.get(4), changeIds.get(5), changeIds.get(6), changeIds.get(8), changeIds.get(7)));
+        assertEquals(coalescing.metricRegistry.meter("bv.emodb.sor.DefaultDataStore.coalesced_updates").getCount(), 3);
+
+        // Every original update is still audited
+        assertEquals(coalescing.auditedChangeTimes, uncoalesced.auditedChangeTimes);
+        assertEquals(coalescing.auditedComments, uncoalesced.auditedComments);
+    }
+
+    @Test
+    public void testDifferentTagsNotCoalesced() {
+        List<UUID> changeIds = newChangeIds(4);
+        Store store = new Store(true);
+        Table table = store.tableDao.get(TABLE);
+        List<RecordUpdate> updates = ImmutableList.of(
+                recordUpdate(table, changeIds.get(0), "{\"name\":\"Bob\"}", ImmutableSet.of("ingest")),
+                recordUpdate(table, changeIds.get(1), "{..,\"rating\":5}", ImmutableSet.of("ingest")),
+                recordUpdate(table, changeIds.get(2), "{..,\"state\":\"APPROVED\"}", ImmutableSet.of("moderation")),
+                recordUpdate(table, changeIds.get(3), "{..,\"rating\":4}", ImmutableSet.<String>of()));
+
+        Map<RecordUpdate, List<RecordUpdate>> coalescedUpdates = Maps.newIdentityHashMap();
+        List<RecordUpdate> coalesced = ImmutableList.copyOf(store.dataStore.coalesce(updates.iterator(), coalescedUpdates));
+
+        // Only the updates with the same tags are coalesced, and every update keeps its own tags
+        assertEquals(coalesced.size(), 3);
+        assertEquals(coalesced.get(0).getChangeId(), changeIds.get(1));
+        assertEquals(coalesced.get(0).getTags(), ImmutableSet.of("ingest"));
+        assertEquals(coalescedUpdates.get(coalesced.get(0)), updates.subList(0, 2));
+        assertSame(coalesced.get(1), updates.get(2));
+        assertSame(coalesced.get(2), updates.get(3));
+        assertEquals(coalescedUpdates.size(), 1);
+    }
+
+    private static RecordUpdate recordUpdate(Table table, UUID changeId, String delta, Set<String> tags) {
+        return new RecordUpdate(table, "a", changeId, Deltas.fromString(delta), new AuditBuilder().build(), tags,
+                WriteConsistency.STRONG);
+    }
+
+    private static Update update(String key, UUID changeId, String delta) {
+        return new Update(TABLE, key, changeId, Deltas.fromString(delta),
+                new AuditBuilder().setComment(key + ":" + delta).build(), WriteConsistency.STRONG);
+    }
+
+    private static List<UUID> newChangeIds(int count) {
+        long now = System.currentTimeMillis();
+        List<UUID> changeIds = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            changeIds.add(TimeUUIDs.uuidForTimeMillis(now + i));
+        }
+        return changeIds;
+    }
+
+    private static ImmutableMap<String, Object> stripIntrinsics(Map<String, Object> content) {
+        ImmutableMap.Builder<String, Object> builder = ImmutableMap.builder();
+        for (Map.Entry<String, Object> entry : content.entrySet()) {
+            // The version counts the deltas written, which coalescing reduces
+            if (!entry.getKey().equals("~version") && !entry.getKey().startsWith("~lastUpdateAt") &&
+                    !entry.getKey().startsWith("~firstUpdateAt") && !entry.getKey().startsWith("~lastMutateAt") &&
+                    !entry.getKey().equals("~signature")) {
+                builder.put(entry);
+            }
+        }
+        return builder.build();
+    }
+
+    private static class Store {
+        final InMemoryDataReaderDAO dataDao = new InMemoryDataReaderDAO();
+        final InMemoryTableDAO tableDao = new InMemoryTableDAO();
+        final MetricRegistry metricRegistry = new MetricRegistry();
+        final List<UUID> databusChangeIds = Lists.newArrayList();
+        final List<Long> auditedChangeTimes = Lists.newArrayList();
+        final List<String> auditedComments = Lists.newArrayList();
+        final DefaultDataStore dataStore;
+
+        Store(boolean coalesceUpdates) {
+            DatabusEventWriterRegistry eventWriterRegistry = new DatabusEventWriterRegistry();
+            eventWriterRegistry.registerDatabusEventWriter(refs -> refs.forEach(ref -> databusChangeIds.add(ref.getChangeId())));
+            AuditWriter auditWriter = (table, key, audit, auditTime) -> {
+                auditedChangeTimes.add(auditTime);
+                auditedComments.add(audit.getComment() + " " + audit.getCustom(Audit.SHA1));
+            };
+            dataStore = new DefaultDataStore(eventWriterRegistry, tableDao, dataDao, dataDao,
+                    new NullSlowQueryLog(), new DiscardingExecutorService(), new InMemoryHistoryStore(),
+                    Optional.<URI>absent(), new InMemoryCompactionControlSource(), Conditions.alwaysFalse(),
+                    auditWriter, new InMemoryMapStore<>(), ResolvedRecordCache.disabled(), CompactionScheduler.disabled(),
+                    coalesceUpdates, metricRegistry, Clock.systemUTC());
+            dataStore.createTable(TABLE, new TableOptionsBuilder().setPlacement("default").build(),
+                    Collections.<String, Object>emptyMap(), new AuditBuilder().setLocalHost().build());
+            databusChangeIds.clear();
+            auditedChangeTimes.clear();
+            auditedComments.clear();
+        }
+
+        List<UUID> changeIds(String table, String key) {
+            List<UUID> changeIds = Lists.newArrayList();
+            dataStore.getTimeline(table, key, true, false, null, null, false, 100, ReadConsistency.STRONG)
+                    .forEachRemaining((Change change) -> changeIds.add(change.getId()));
+            return changeIds;
+        }
+    }
+}
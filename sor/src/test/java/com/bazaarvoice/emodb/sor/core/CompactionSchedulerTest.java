@@ -0,0 +1,161 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.AuditBuilder;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.api.WriteConsistency;
+import com.bazaarvoice.emodb.sor.audit.DiscardingAuditWriter;
+import com.bazaarvoice.emodb.sor.compactioncontrol.InMemoryCompactionControlSource;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.core.test.DiscardingExecutorService;
+import com.bazaarvoice.emodb.sor.core.test.InMemoryHistoryStore;
+import com.bazaarvoice.emodb.sor.core.test.InMemoryMapStore;
+import com.bazaarvoice.emodb.sor.db.test.InMemoryDataReaderDAO;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.log.NullSlowQueryLog;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTableDAO;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.Service;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class CompactionSchedulerTest {
+
+    @Test
+    public void testPollReturnsWorstOffender() {
+        CompactionScheduler scheduler = new CompactionScheduler(100, 3, 1, new MetricRegistry());
+        write(scheduler, "a", 3, 10);
+        write(scheduler, "b", 5, 10);
+        write(scheduler, "c", 2, 10);
+        assertEquals(scheduler.getQueueDepth(), 2);
+
+        assertCandidate(scheduler.poll(), "b", 5, 50);
+        assertCandidate(scheduler.poll(), "a", 3, 30);
+        // Records with fewer than the minimum deltas are left for reads to compact
+        assertNull(scheduler.poll());
+        assertEquals(scheduler.getQueueDepth(), 0);
+    }
+
+    @Test
+    public void testHeavyHittersSurviveTrim() {
+        CompactionScheduler scheduler = new CompactionScheduler(10, 50, 1, new MetricRegistry());
+        for (int i = 0; i < 1000; i++) {
+            scheduler.recordWrite("table", "hot", 100);
+            scheduler.recordWrite("table", "cold-" + i, 100);
+            if (i % 3 == 0) {
+                scheduler.recordWrite("table", "warm", 100);
+            }
+        }
+
+        CompactionScheduler.Candidate hot = scheduler.poll();
+        assertNotNull(hot);
+        assertEquals(hot.key, "hot");
+        // Counts are underestimates, but the average delta size is preserved
+        assertTrue(hot.deltas > 500 && hot.deltas <= 1000, Long.toString(hot.deltas));
+        assertEquals(hot.bytes, hot.deltas * 100);
+
+        CompactionScheduler.Candidate warm = scheduler.poll();
+        assertNotNull(warm);
+        assertEquals(warm.key, "warm");
+        assertNull(scheduler.poll());
+    }
+
+    @Test
+    public void testReadReplacesEstimate() {
+        CompactionScheduler scheduler = new CompactionScheduler(100, 3, 1, new MetricRegistry());
+        write(scheduler, "a", 10, 10);
+        write(scheduler, "b", 10, 10);
+
+        // A read which compacted most of the deltas
+        scheduler.recordRead("table", "a", 4);
+        // A read which compacted enough deltas that the record needn't be tracked
+        scheduler.recordRead("table", "b", 1);
+        // A read of a record whose deltas were too recent to compact
+        scheduler.recordRead("table", "c", 6);
+
+        assertCandidate(scheduler.poll(), "c", 6, 0);
+        assertCandidate(scheduler.poll(), "a", 4, 40);
+        assertNull(scheduler.poll());
+    }
+
+    @Test
+    public void testDisabled() {
+        CompactionScheduler scheduler = CompactionScheduler.disabled();
+        scheduler.recordWrite("table", "a", 10);
+        scheduler.recordRead("table", "a", 1000);
+        assertEquals(scheduler.isEnabled(), false);
+    }
+
+    @Test
+    public void testService() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        CompactionScheduler scheduler = new CompactionScheduler(100, 3, 100, metricRegistry);
+        write(scheduler, "a", 4, 10);
+        write(scheduler, "b", 8, 10);
+
+        CountDownLatch latch = new CountDownLatch(2);
+        StringBuilder compacted = new StringBuilder();
+        Service service = scheduler.newService((table, key) -> {
+            compacted.append(key);
+            latch.countDown();
+            return key.equals("b") ? 6 : 0;
+        });
+        service.startAsync().awaitRunning();
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } finally {
+            service.stopAsync().awaitTerminated();
+        }
+
+        assertEquals(compacted.toString(), "ba");
+        assertEquals(metricRegistry.meter("bv.emodb.sor.CompactionScheduler.compactions").getCount(), 2);
+        assertEquals(metricRegistry.meter("bv.emodb.sor.CompactionScheduler.deltas-deleted").getCount(), 6);
+        assertEquals(metricRegistry.meter("bv.emodb.sor.CompactionScheduler.delta-bytes-reclaimed").getCount(), 60);
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.sor.CompactionScheduler.queue-depth").getValue(), 0);
+    }
+
+    @Test
+    public void testDataStoreRecordsWrites() {
+        InMemoryDataReaderDAO dataDao = new InMemoryDataReaderDAO();
+        CompactionScheduler scheduler = new CompactionScheduler(100, 3, 1, new MetricRegistry());
+        DefaultDataStore store = new DefaultDataStore(new DatabusEventWriterRegistry(), new InMemoryTableDAO(), dataDao, dataDao,
+                new NullSlowQueryLog(), new DiscardingExecutorService(), new InMemoryHistoryStore(),
+                Optional.<URI>absent(), new InMemoryCompactionControlSource(), Conditions.alwaysFalse(),
+                new DiscardingAuditWriter(), new InMemoryMapStore<>(), ResolvedRecordCache.disabled(), scheduler, false,
+                new MetricRegistry(), Clock.systemUTC());
+        store.createTable("table", new TableOptionsBuilder().setPlacement("default").build(),
+                Collections.<String, Object>emptyMap(), new AuditBuilder().setLocalHost().build());
+
+        for (int i = 0; i < 4; i++) {
+            store.update("table", "key", TimeUUIDs.newUUID(), Deltas.fromString("{..,\"rating\":" + i + "}"),
+                    new AuditBuilder().setLocalHost().build(), WriteConsistency.STRONG);
+        }
+
+        assertCandidate(scheduler.poll(), "key", 4, 4 * "{..,\"rating\":0}".length());
+    }
+
+    private static void write(CompactionScheduler scheduler, String key, int deltas, int deltaSize) {
+        for (int i = 0; i < deltas; i++) {
+            scheduler.recordWrite("table", key, deltaSize);
+        }
+    }
+
+    private static void assertCandidate(CompactionScheduler.Candidate candidate, String key, long deltas, long bytes) {
+        assertNotNull(candidate);
+        assertEquals(candidate.table, "table");
+        assertEquals(candidate.key, key);
+        assertEquals(candidate.deltas, deltas);
+        assertEquals(candidate.bytes, bytes);
+    }
+}
@@ -0,0 +1,132 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Compaction;
+import com.bazaarvoice.emodb.sor.db.Key;
+import com.bazaarvoice.emodb.sor.delta.Delta;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.table.db.Table;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+
+public class DefaultResolverTest {
+
+    private static final List<String> DELTAS = ImmutableList.of(
+            "{\"name\":\"Bob\",\"state\":\"SUBMITTED\"}",
+            "{..,\"rating\":5}",
+            "{..,\"rating\":5}",
+            "{..,\"state\":\"APPROVED\"}",
+            "~",
+            "{..,\"name\":\"Tom\"}",
+            "{..,\"name\":\"Tom\"}",
+            "{..,\"tags\":[\"verified\"]}");
+
+    private final Table _table = newTable();
+
+    @Test
+    public void testResumeMatchesFullResolve() {
+        List<UUID> changeIds = newChangeIds(DELTAS.size());
+
+        for (int split = 0; split <= DELTAS.size(); split++) {
+            Resolver full = new DefaultResolver(newIntrinsics());
+            apply(full, changeIds, 0, DELTAS.size());
+
+            Resolver head = new DefaultResolver(newIntrinsics());
+            apply(head, changeIds, 0, split);
+            Resolved snapshot = head.resolved();
+            Resolver resumed = new DefaultResolver(snapshot, _table);
+            apply(resumed, changeIds, split, DELTAS.size());
+
+            assertSameResolved(resumed.resolved(), full.resolved(), changeIds);
+            // Resuming must not have modified the snapshot
+            assertEquals(snapshot.getIntrinsics().getVersion(), split);
+        }
+    }
+
+    @Test
+    public void testResumeFromCompaction() {
+        List<UUID> changeIds = newChangeIds(DELTAS.size());
+        int cutoff = 3;
+
+        // Compact the first deltas, the same as a compactor would
+        Resolver compacting = new DefaultResolver(newIntrinsics());
+        apply(compacting, changeIds, 0, cutoff + 1);
+        Resolved compacted = compacting.resolved();
+        Compaction compaction = new Compaction(
+                compacted.getIntrinsics().getVersion(),
+                compacted.getIntrinsics().getFirstUpdateAtUuid(),
+                compacted.getIntrinsics().getLastUpdateAtUuid(),
+                compacted.getIntrinsics().getSignature(),
+                compacted.getIntrinsics().getLastMutateAtUuid(),
+                compacted.getLastMutation(),
+                compacted.getConstant(), compacted.getLastTags());
+
+        Resolver full = new DefaultResolver(newIntrinsics(), compaction);
+        apply(full, changeIds, cutoff + 1, DELTAS.size());
+
+        Resolver head = new DefaultResolver(newIntrinsics(), compaction);
+        apply(head, changeIds, cutoff + 1, cutoff + 2);
+        Resolver resumed = new DefaultResolver(head.resolved(), _table);
+        apply(resumed, changeIds, cutoff + 2, DELTAS.size());
+
+        assertSameResolved(resumed.resolved(), full.resolved(), changeIds);
+    }
+
+    private void assertSameResolved(Resolved actual, Resolved expected, List<UUID> changeIds) {
+        assertEquals(actual.isUndefined(), expected.isUndefined());
+        if (!expected.isUndefined()) {
+            assertEquals(actual.getContent(), expected.getContent());
+        }
+        MutableIntrinsics actualIntrinsics = actual.getIntrinsics();
+        MutableIntrinsics expectedIntrinsics = expected.getIntrinsics();
+        assertEquals(actualIntrinsics.getVersion(), expectedIntrinsics.getVersion());
+        assertEquals(actualIntrinsics.getSignature(), expectedIntrinsics.getSignature());
+        assertEquals(actualIntrinsics.isDeleted(), expectedIntrinsics.isDeleted());
+        assertEquals(actualIntrinsics.getFirstUpdateAt(), expectedIntrinsics.getFirstUpdateAt());
+        assertEquals(actualIntrinsics.getLastUpdateAt(), expectedIntrinsics.getLastUpdateAt());
+        assertEquals(actualIntrinsics.getLastMutateAt(), expectedIntrinsics.getLastMutateAt());
+        assertEquals(actual.getLastMutation(), expected.getLastMutation());
+        assertEquals(actual.getLastTags(), expected.getLastTags());
+        assertEquals(actual.getLastAppliedChangeId(), expected.getLastAppliedChangeId());
+        for (UUID changeId : changeIds) {
+            assertEquals(actual.isChangeDeltaRedundant(changeId), expected.isChangeDeltaRedundant(changeId));
+            assertEquals(actual.isChangeDeltaPending(changeId, 0), expected.isChangeDeltaPending(changeId, 0));
+        }
+    }
+
+    private void apply(Resolver resolver, List<UUID> changeIds, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Delta delta = Deltas.fromString(DELTAS.get(i));
+            Set<String> tags = i % 3 == 0 ? ImmutableSet.of("moderation") : ImmutableSet.<String>of();
+            resolver.update(changeIds.get(i), delta, tags);
+        }
+    }
+
+    private List<UUID> newChangeIds(int count) {
+        long now = System.currentTimeMillis();
+        ImmutableList.Builder<UUID> changeIds = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            changeIds.add(TimeUUIDs.uuidForTimeMillis(now + i));
+        }
+        return changeIds.build();
+    }
+
+    private MutableIntrinsics newIntrinsics() {
+        return MutableIntrinsics.create(new Key(_table, "key"));
+    }
+
+    private static Table newTable() {
+        Table table = mock(Table.class);
+        when(table.getName()).thenReturn("table");
+        return table;
+    }
+}
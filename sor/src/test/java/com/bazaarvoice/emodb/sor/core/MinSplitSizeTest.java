@@ -8,6 +8,7 @@ import com.bazaarvoice.emodb.sor.core.test.InMemoryDataStore;
 import com.bazaarvoice.emodb.sor.db.DAOUtils;
 import com.bazaarvoice.emodb.sor.db.astyanax.AstyanaxBlockedDataReaderDAO;
 import com.bazaarvoice.emodb.sor.db.astyanax.ChangeEncoder;
+import com.bazaarvoice.emodb.sor.db.astyanax.ParsedDeltaCache;
 import com.bazaarvoice.emodb.sor.db.test.InMemoryDataReaderDAO;
 import com.bazaarvoice.emodb.sor.delta.Deltas;
 import com.bazaarvoice.emodb.sor.uuid.TimeUUIDs;
@@ -68,7 +69,7 @@ public class MinSplitSizeTest {
     @Test
     public void testLocalResplitting() {
         AstyanaxBlockedDataReaderDAO astyanaxDataReaderDAO = new AstyanaxBlockedDataReaderDAO(mock(PlacementCache.class),
-                mock(ChangeEncoder.class), new MetricRegistry(), mock(DAOUtils.class), 4);
+                mock(ChangeEncoder.class), mock(ParsedDeltaCache.class), new MetricRegistry(), mock(DAOUtils.class), 4);
 
         String[] minMaxResplits3Times = {
                 "0000000000000000000000000000000000000000",
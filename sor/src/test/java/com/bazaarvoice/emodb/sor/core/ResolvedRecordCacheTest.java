@@ -0,0 +1,238 @@
+package com.bazaarvoice.emodb.sor.core;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.AuditBuilder;
+import com.bazaarvoice.emodb.sor.api.ReadConsistency;
+import com.bazaarvoice.emodb.sor.api.TableOptionsBuilder;
+import com.bazaarvoice.emodb.sor.api.WriteConsistency;
+import com.bazaarvoice.emodb.sor.audit.DiscardingAuditWriter;
+import com.bazaarvoice.emodb.sor.compactioncontrol.InMemoryCompactionControlSource;
+import com.bazaarvoice.emodb.sor.condition.Conditions;
+import com.bazaarvoice.emodb.sor.core.test.DiscardingExecutorService;
+import com.bazaarvoice.emodb.sor.core.test.InMemoryHistoryStore;
+import com.bazaarvoice.emodb.sor.core.test.InMemoryMapStore;
+import com.bazaarvoice.emodb.sor.db.test.InMemoryDataReaderDAO;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.log.NullSlowQueryLog;
+import com.bazaarvoice.emodb.table.db.test.InMemoryTableDAO;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.testng.Assert.assertEquals;
+
+public class ResolvedRecordCacheTest {
+
+    private static final String TABLE = "review:testcustomer";
+    private static final String KEY = "key1";
+
+    private final long _baseTime = System.currentTimeMillis() - Duration.ofHours(1).toMillis();
+
+    private InMemoryDataReaderDAO _dataDao;
+    private long _fullConsistencyTimestamp;
+    private MetricRegistry _metricRegistry;
+    private DefaultDataStore _cachedStore;
+    private DefaultDataStore _uncachedStore;
+
+    @BeforeMethod
+    public void setUp() {
+        _dataDao = new InMemoryDataReaderDAO();
+        _metricRegistry = new MetricRegistry();
+        InMemoryTableDAO tableDao = new InMemoryTableDAO();
+
+        ResolvedRecordCache cache = new ResolvedRecordCache(Conditions.fromString("intrinsic(\"~table\":like(\"review:*\"))"),
+                1024 * 1024, Duration.ofMinutes(1), Clock.systemUTC(), _metricRegistry);
+
+        _cachedStore = newDataStore(tableDao, cache, _metricRegistry);
+        _uncachedStore = newDataStore(tableDao, ResolvedRecordCache.disabled(), new MetricRegistry());
+
+        _uncachedStore.createTable(TABLE, new TableOptionsBuilder().setPlacement("default").build(),
+                Collections.<String, Object>emptyMap(), new AuditBuilder().setLocalHost().build());
+        _uncachedStore.createTable("other", new TableOptionsBuilder().setPlacement("default").build(),
+                Collections.<String, Object>emptyMap(), new AuditBuilder().setLocalHost().build());
+    }
+
+    private DefaultDataStore newDataStore(InMemoryTableDAO tableDao, ResolvedRecordCache cache, MetricRegistry metricRegistry) {
+        return new DefaultDataStore(new DatabusEventWriterRegistry(), tableDao, _dataDao, _dataDao,
+                new NullSlowQueryLog(), new DiscardingExecutorService(), new InMemoryHistoryStore(),
+                Optional.<URI>absent(), new InMemoryCompactionControlSource(), Conditions.alwaysFalse(),
+                new DiscardingAuditWriter(), new InMemoryMapStore<>(), cache, metricRegistry, Clock.systemUTC());
+    }
+
+    @Test
+    public void testIncrementalResolve() {
+        setFullConsistencyTimestamp(_baseTime + 2500);
+
+        update(1, "{\"name\":\"Bob\",\"state\":\"SUBMITTED\"}");
+        update(2, "{..,\"rating\":5}");
+        update(3, "{..,\"state\":\"APPROVED\"}");
+        assertSameContent(TABLE);
+        assertEquals(incrementalResolves(), 0);
+
+        // Deltas 1 and 2 are in the snapshot, delta 3 and the rest are applied on read
+        update(4, "{..,\"rating\":4}");
+        update(5, "{..,\"rating\":4}");
+        assertSameContent(TABLE);
+        assertSameContent(TABLE);
+        assertEquals(incrementalResolves(), 2);
+        assertEquals(cacheSize(), 1);
+
+        // Roll the now fully consistent deltas into the snapshot
+        setFullConsistencyTimestamp(_baseTime + 4500);
+        assertSameContent(TABLE);
+        update(6, "..");
+        update(7, "~");
+        assertSameContent(TABLE);
+        setFullConsistencyTimestamp(_baseTime + 10000);
+        assertSameContent(TABLE);
+        update(8, "{\"name\":\"Tom\"}");
+        assertSameContent(TABLE);
+        assertEquals(incrementalResolves(), 6);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testModifyingContentLeavesSnapshotIntact() {
+        setFullConsistencyTimestamp(_baseTime + 2500);
+
+        // Build the nested values with deltas, not literals, so every resolve creates its own maps and lists
+        update(1, "{..,\"name\":\"Bob\",\"address\":{..,\"city\":\"Austin\"},\"photos\":(..,\"a.jpg\")}");
+        update(2, "{..,\"rating\":5}");
+        Map<String, Object> expected = _uncachedStore.get(TABLE, KEY);
+
+        // Read first with no deltas after the snapshot, then with a delta replayed on top of it
+        for (int sequence = 3; sequence <= 4; sequence++) {
+            for (int read = 0; read < 2; read++) {
+                Map<String, Object> content = _cachedStore.get(TABLE, KEY);
+                assertEquals(content, expected);
+                ((Map<String, Object>) content.get("address")).put("city", "Dallas");
+                ((List<Object>) content.get("photos")).add("b.jpg");
+            }
+            update(sequence, "{..,\"rating\":5}");
+            expected = _uncachedStore.get(TABLE, KEY);
+        }
+        assertEquals(incrementalResolves(), 3);
+    }
+
+    @Test
+    public void testAnnotatedGet() {
+        setFullConsistencyTimestamp(_baseTime + 2500);
+
+        List<UUID> changeIds = Lists.newArrayList();
+        changeIds.add(update(1, "{\"name\":\"Bob\"}"));
+        changeIds.add(update(2, "{..,\"state\":\"SUBMITTED\"}"));
+        changeIds.add(update(3, "{..,\"state\":\"SUBMITTED\"}"));
+        assertSameContent(TABLE);
+        changeIds.add(update(4, "{..,\"rating\":3}"));
+        changeIds.add(update(5, "{..,\"rating\":3}"));
+        changeIds.add(TimeUUIDs.uuidForTimeMillis(_baseTime + 6000));
+
+        DataProvider.AnnotatedContent expected = Iterators.getOnlyElement(
+                _uncachedStore.prepareGetAnnotated(ReadConsistency.STRONG).add(TABLE, KEY).execute());
+        DataProvider.AnnotatedContent actual = Iterators.getOnlyElement(
+                _cachedStore.prepareGetAnnotated(ReadConsistency.STRONG).add(TABLE, KEY).execute());
+
+        assertEquals(incrementalResolves(), 1);
+        assertEquals(ImmutableMap.copyOf(actual.getContent()), ImmutableMap.copyOf(expected.getContent()));
+        for (UUID changeId : changeIds) {
+            assertEquals(actual.isChangeDeltaRedundant(changeId), expected.isChangeDeltaRedundant(changeId));
+            assertEquals(actual.isChangeDeltaPending(changeId), expected.isChangeDeltaPending(changeId));
+        }
+    }
+
+    @Test
+    public void testCompactionPastSnapshot() {
+        setFullConsistencyTimestamp(_baseTime + 1500);
+
+        update(1, "{\"name\":\"Bob\"}");
+        update(2, "{..,\"state\":\"SUBMITTED\"}");
+        update(3, "{..,\"state\":\"APPROVED\"}");
+        assertSameContent(TABLE);
+
+        // Compaction deletes deltas 2 and 3 which the snapshot doesn't include yet
+        _dataDao.setFullConsistencyDelayMillis(0);
+        _uncachedStore.compact(TABLE, KEY, null, ReadConsistency.STRONG, WriteConsistency.STRONG);
+        _uncachedStore.compact(TABLE, KEY, null, ReadConsistency.STRONG, WriteConsistency.STRONG);
+        setFullConsistencyTimestamp(_baseTime + 3500);
+        update(4, "{..,\"rating\":3}");
+        assertSameContent(TABLE);
+        assertSameContent(TABLE);
+    }
+
+    @Test
+    public void testUncachedTable() {
+        setFullConsistencyTimestamp(_baseTime + 1500);
+
+        update("other", 1, "{\"name\":\"Bob\"}");
+        update("other", 2, "{..,\"state\":\"SUBMITTED\"}");
+        assertSameContent("other");
+        assertSameContent("other");
+        assertEquals(incrementalResolves(), 0);
+        assertEquals(cacheSize(), 0);
+    }
+
+    @Test
+    public void testPurgeInvalidatesCache() {
+        setFullConsistencyTimestamp(_baseTime + 1500);
+
+        update(1, "{\"name\":\"Bob\"}");
+        update(2, "{..,\"state\":\"SUBMITTED\"}");
+        assertSameContent(TABLE);
+        assertEquals(cacheSize(), 1);
+
+        _cachedStore.purgeTableUnsafe(TABLE, new AuditBuilder().setLocalHost().build());
+        assertEquals(cacheSize(), 0);
+        assertEquals(_cachedStore.get(TABLE, KEY).get("~deleted"), true);
+    }
+
+    private void setFullConsistencyTimestamp(long fullConsistencyTimestamp) {
+        _fullConsistencyTimestamp = fullConsistencyTimestamp;
+        _dataDao.setFullConsistencyTimestamp(fullConsistencyTimestamp);
+    }
+
+    private UUID update(int sequence, String delta) {
+        return update(TABLE, sequence, delta);
+    }
+
+    private UUID update(String table, int sequence, String delta) {
+        // Writes older than the full consistency timestamp are rejected, so write as if they arrived on time
+        UUID changeId = TimeUUIDs.uuidForTimeMillis(_baseTime + sequence * 1000);
+        _dataDao.setFullConsistencyTimestamp(_baseTime);
+        _uncachedStore.update(table, KEY, changeId, Deltas.fromString(delta), new AuditBuilder().setLocalHost().build(),
+                WriteConsistency.STRONG);
+        _dataDao.setFullConsistencyTimestamp(_fullConsistencyTimestamp);
+        return changeId;
+    }
+
+    private void assertSameContent(String table) {
+        Map<String, Object> expected = _uncachedStore.get(table, KEY);
+        Map<String, Object> actual = _cachedStore.get(table, KEY);
+        assertEquals(ImmutableMap.copyOf(actual), ImmutableMap.copyOf(expected));
+    }
+
+    private long incrementalResolves() {
+        return _metricRegistry.meter("bv.emodb.sor.ResolvedRecordCache.incremental-resolves").getCount();
+    }
+
+    private long cacheSize() {
+        for (Map.Entry<String, Gauge> entry : _metricRegistry.getGauges().entrySet()) {
+            if (entry.getKey().endsWith(".size.resolvedRecordCache")) {
+                return (Long) entry.getValue().getValue();
+            }
+        }
+        throw new AssertionError("Cache size gauge not found");
+    }
+}
@@ -111,6 +111,30 @@ public class DeltaBlockingTest {
         assertEquals(reversedIterator.hasNext(), false);
     }
 
+    @Test
+    public void testBinaryDelta() {
+        // Binary deltas may contain long runs of bytes which look like utf-8 continuation bytes
+        byte[] header = "0000D4:[]:CM:".getBytes();
+        byte[] encodedDelta = Arrays.copyOf(header, header.length + 200);
+        for (int i = header.length; i < encodedDelta.length; i++) {
+            encodedDelta[i] = (byte) (0x80 + i % 0x40);
+        }
+        ByteBuffer expected = ByteBuffer.wrap(encodedDelta, _prefixLength, encodedDelta.length - _prefixLength).slice();
+
+        List<ByteBuffer> blocks = _daoUtils.getDeltaBlocks(ByteBuffer.wrap(encodedDelta.clone()));
+        assertEquals(blocks.size(), _daoUtils.getNumDeltaBlocks(ByteBuffer.wrap(encodedDelta)));
+        List<TestRow> rows = Lists.newArrayListWithCapacity(blocks.size());
+        UUID changeId = UUID.randomUUID();
+        for (int i = 0; i < blocks.size(); i++) {
+            assertTrue(blocks.get(i).hasRemaining());
+            rows.add(new TestRow(i, changeId, blocks.get(i)));
+        }
+
+        Iterator<DeltaIterator.BlockedDelta> iterator = new ListDeltaIterator(rows.iterator(), false, _prefixLength);
+        assertEquals(_daoUtils.skipPrefix(iterator.next().getContent()), expected);
+        assertFalse(iterator.hasNext());
+    }
+
     @Test
     public void testFragmentedDelta() throws IOException {
         String delta = generateLargeDelta();
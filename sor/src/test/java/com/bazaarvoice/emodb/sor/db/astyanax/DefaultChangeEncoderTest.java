@@ -8,13 +8,22 @@ import com.bazaarvoice.emodb.sor.delta.Delete;
 import com.bazaarvoice.emodb.sor.delta.Delta;
 import com.bazaarvoice.emodb.sor.delta.Deltas;
 import com.bazaarvoice.emodb.sor.delta.Literal;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
 import com.netflix.astyanax.serializers.StringSerializer;
 import org.testng.annotations.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -109,6 +118,118 @@ public class DefaultChangeEncoderTest {
         assertEquals(compaction.getCompactedDelta(), Deltas.delete());
     }
 
+    @Test
+    public void testEncodeDecodeD4() {
+        Map<String, Object> content = ImmutableMap.<String, Object>of(
+                "name", "b\u00f6b \ud83d\ude00", "rating", 5, "big", 12345678901L, "avg", 4.25,
+                "tags", Arrays.asList("one", null, true, ImmutableMap.of("nested", -1)));
+        Delta delta = Deltas.literal(content);
+        Set<String> tags = ImmutableSet.of("tag0", "tag1");
+        ChangeEncoder changeEncoder = new DefaultChangeEncoder(4);
+
+        ByteBuffer encodedDelta = changeEncoder.encodeDelta(delta, EnumSet.of(ChangeFlag.CONSTANT_DELTA, ChangeFlag.MAP_DELTA), tags, "0000");
+        assertTrue(StringSerializer.get().fromByteBuffer(encodedDelta.duplicate()).startsWith("0000D4:[\"tag0\",\"tag1\"]:MC:"));
+        // Binary literals are smaller than their JSON equivalents
+        assertTrue(encodedDelta.remaining() < changeEncoder.encodeDelta(delta.toString(),
+                EnumSet.of(ChangeFlag.CONSTANT_DELTA, ChangeFlag.MAP_DELTA), tags, new StringBuilder("0000")).length());
+
+        encodedDelta.position(4);
+        Change change = changeEncoder.decodeChange(TimeUUIDs.newUUID(), encodedDelta);
+        assertTrue(change.getDelta().isConstant());
+        assertEquals(change.getDelta().toString(), delta.toString());
+        assertEquals(change.getTags(), tags);
+        // Values must decode to the same types as they do from JSON
+        assertEquals(DeltaEvaluator.eval(change.getDelta(), DeltaEvaluator.UNDEFINED, null), content);
+    }
+
+    @Test
+    public void testEncodeD4OnlyForMapLiterals() {
+        ChangeEncoder changeEncoder = new DefaultChangeEncoder(4);
+        Delta update = Deltas.mapBuilder().put("name", "bob").remove("x").build();
+        assertEquals(StringSerializer.get().fromByteBuffer(changeEncoder.encodeDelta(update, EnumSet.of(ChangeFlag.MAP_DELTA), ImmutableSet.<String>of(), "")),
+                "D3:[]:M:{..,\"name\":\"bob\",\"x\":~}");
+        assertEquals(StringSerializer.get().fromByteBuffer(changeEncoder.encodeDelta(Deltas.literal("bob"), EnumSet.of(ChangeFlag.CONSTANT_DELTA), ImmutableSet.<String>of(), "")),
+                "D3:[]:C:\"bob\"");
+
+        // Textual encodings are unchanged for older versions
+        Delta literal = Deltas.literal(ImmutableMap.of("name", "bob"));
+        assertEquals(StringSerializer.get().fromByteBuffer(new DefaultChangeEncoder(3).encodeDelta(literal, EnumSet.of(ChangeFlag.CONSTANT_DELTA, ChangeFlag.MAP_DELTA), ImmutableSet.<String>of(), "")),
+                "D3:[]:MC:{\"name\":\"bob\"}");
+    }
+
+    @Test
+    public void testEncodeDecodeC2() {
+        UUID first = TimeUUIDs.newUUID();
+        UUID cutoff = TimeUUIDs.newUUID();
+        // Compacted content is commonly a lazy map read from a previous compaction
+        Delta content = Deltas.literal(new LazyJsonMap("{\"active\":true,\"rating\":4.5,\"name\":\"caf\u00e9\"}"));
+        Compaction compaction = new Compaction(4, first, cutoff, "b6fe61d13972264e9d7ab0c230c82855", cutoff, cutoff, content, ImmutableSet.of("tag1"));
+
+        ChangeEncoder changeEncoder = new DefaultChangeEncoder(4);
+        ByteBuffer encoded = changeEncoder.encodeCompaction(compaction, "");
+        assertEquals(StringSerializer.get().fromByteBuffer(ByteBuffer.wrap(encoded.array(), 0, 3)), "C2:");
+
+        for (Compaction decoded : Arrays.asList(
+                changeEncoder.decodeCompaction(encoded.duplicate()),
+                changeEncoder.decodeChange(TimeUUIDs.newUUID(), encoded.duplicate()).getCompaction())) {
+            assertEquals(decoded.getCount(), 4);
+            assertEquals(decoded.getFirst(), first);
+            assertEquals(decoded.getCutoff(), cutoff);
+            assertEquals(decoded.getCutoffSignature(), "b6fe61d13972264e9d7ab0c230c82855");
+            assertEquals(decoded.getLastContentMutation(), cutoff);
+            assertEquals(decoded.getLastMutation(), cutoff);
+            assertEquals(decoded.getLastTags(), ImmutableSet.of("tag1"));
+            assertTrue(decoded.getCompactedDelta().isConstant());
+            assertEquals(decoded.getCompactedDelta().toString(), content.toString());
+        }
+
+        // Compactions without a literal map and legacy compactions without a compacted delta
+        Compaction deleted = new Compaction(4, first, cutoff, "b6fe61d13972264e9d7ab0c230c82855", cutoff, cutoff, Deltas.delete(), null);
+        assertEquals(changeEncoder.decodeCompaction(changeEncoder.encodeCompaction(deleted, "")).getCompactedDelta(), Deltas.delete());
+        Compaction legacy = new Compaction(4, first, cutoff, "b6fe61d13972264e9d7ab0c230c82855", null, cutoff);
+        assertEquals(changeEncoder.decodeCompaction(changeEncoder.encodeCompaction(legacy, "")), legacy);
+    }
+
+    @Test
+    public void testEncodedSizeWithKeyDictionary() throws Exception {
+        // Lists of objects repeat the same keys, which the key dictionary writes only once
+        List<Object> reviews = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            reviews.add(ImmutableMap.of("reviewId", "r" + i, "rating", i % 5, "helpfulVotes", i * 3, "submissionTime", 1400000000000L + i));
+        }
+        Map<String, Object> content = ImmutableMap.<String, Object>of("productId", "p1", "reviews", reviews);
+        Delta literal = Deltas.literal(content);
+        UUID cutoff = TimeUUIDs.newUUID();
+        Compaction compaction = new Compaction(1, cutoff, cutoff, "b6fe61d13972264e9d7ab0c230c82855", cutoff, cutoff, literal, null);
+        EnumSet<ChangeFlag> flags = EnumSet.of(ChangeFlag.CONSTANT_DELTA, ChangeFlag.MAP_DELTA);
+
+        ChangeEncoder version3 = new DefaultChangeEncoder(3);
+        ChangeEncoder version4 = new DefaultChangeEncoder(4);
+        int jsonLiteral = version3.encodeDelta(literal, flags, ImmutableSet.<String>of(), "").remaining();
+        int cborLiteral = version4.encodeDelta(literal, flags, ImmutableSet.<String>of(), "").remaining();
+        int jsonCompaction = version3.encodeCompaction(compaction, "").remaining();
+        int cborCompaction = version4.encodeCompaction(compaction, "").remaining();
+        int plainCbor = new ObjectMapper(new CBORFactory()).writeValueAsBytes(content).length;
+
+        assertTrue(cborLiteral * 2 < jsonLiteral, cborLiteral + " vs " + jsonLiteral);
+        assertTrue(cborCompaction * 2 < jsonCompaction, cborCompaction + " vs " + jsonCompaction);
+        assertTrue(CborChanges.encode(content).length * 3 < plainCbor * 2, CborChanges.encode(content).length + " vs " + plainCbor);
+    }
+
+    @Test
+    public void testVersion4DecodesTextualEncodings() {
+        Delta literal = Deltas.literal(ImmutableMap.of("name", "bob"));
+        UUID cutoff = TimeUUIDs.newUUID();
+        Compaction compaction = new Compaction(1, cutoff, cutoff, "b6fe61d13972264e9d7ab0c230c82855", cutoff, cutoff, literal, null);
+
+        ChangeEncoder version3 = new DefaultChangeEncoder(3);
+        ChangeEncoder version4 = new DefaultChangeEncoder(4);
+        Change change = version4.decodeChange(TimeUUIDs.newUUID(),
+                version3.encodeDelta(literal, EnumSet.of(ChangeFlag.CONSTANT_DELTA, ChangeFlag.MAP_DELTA), ImmutableSet.<String>of(), ""));
+        assertEquals(change.getDelta(), literal);
+        assertEquals(version4.decodeCompaction(version3.encodeCompaction(compaction, "")).getCompactedDelta(), literal);
+    }
+
     private void verifyDecodedChange(String encodedDelta, Delta expectedDelta, ImmutableSet<String> tags) {
         ChangeEncoder changeEncoder = new DefaultChangeEncoder();
         Change change = changeEncoder.decodeChange(TimeUUIDs.newUUID(), StringSerializer.get().toByteBuffer(encodedDelta));
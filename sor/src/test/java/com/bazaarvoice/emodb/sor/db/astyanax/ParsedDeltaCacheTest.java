@@ -0,0 +1,142 @@
+package com.bazaarvoice.emodb.sor.db.astyanax;
+
+import com.bazaarvoice.emodb.common.uuid.TimeUUIDs;
+import com.bazaarvoice.emodb.sor.api.Change;
+import com.bazaarvoice.emodb.sor.delta.Deltas;
+import com.bazaarvoice.emodb.sor.delta.eval.DeltaEvaluator;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertTrue;
+
+public class ParsedDeltaCacheTest {
+
+    private static final long TABLE_UUID = 0x1234L;
+
+    @Test
+    public void testCachedChangeIsReused() {
+        ChangeEncoder changeEncoder = spy(new DefaultChangeEncoder());
+        ParsedDeltaCache cache = new ParsedDeltaCache(changeEncoder, 1024 * 1024, new MetricRegistry());
+        UUID changeId = TimeUUIDs.newUUID();
+        ByteBuffer buf = encode("D3:[]:0:{..,\"name\":\"bob\"}");
+
+        Change first = cache.decodeChange(TABLE_UUID, changeId, buf);
+        Change second = cache.decodeChange(TABLE_UUID, changeId, buf.duplicate());
+
+        assertNotSame(second, first);
+        assertEquals(second.getDelta().toString(), first.getDelta().toString());
+        assertEquals(first.getDelta().toString(), Deltas.fromString("{..,\"name\":\"bob\"}").toString());
+        verify(changeEncoder, times(1)).decodeChange(changeId, buf);
+        // The buffer must not be consumed
+        assertEquals(buf.position(), 0);
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testCachedLiteralValuesAreCopied() {
+        ParsedDeltaCache cache = new ParsedDeltaCache(new DefaultChangeEncoder(), 1024 * 1024, new MetricRegistry());
+        UUID changeId = TimeUUIDs.newUUID();
+        ByteBuffer buf = encode("D3:[]:0:{..,\"address\":{\"city\":\"Austin\"},\"tags\":(..,{\"b\":1})}");
+        Map<String, Object> expected = ImmutableMap.of(
+                "address", ImmutableMap.of("city", "Austin"), "tags", ImmutableList.of(ImmutableMap.of("b", 1)));
+
+        // Modify every level of the content resolved from the first read
+        @SuppressWarnings("unchecked") Map<String, Object> first = (Map<String, Object>)
+                DeltaEvaluator.eval(cache.decodeChange(TABLE_UUID, changeId, buf).getDelta(), DeltaEvaluator.UNDEFINED, null);
+        assertEquals(first, expected);
+        //noinspection unchecked
+        ((Map<String, Object>) first.get("address")).put("city", "Dallas");
+        //noinspection unchecked
+        ((Map<String, Object>) ((List<Object>) first.get("tags")).get(0)).put("b", 2);
+
+        // The cached delta is unaffected, so a later read resolves the original value
+        Object second = DeltaEvaluator.eval(cache.decodeChange(TABLE_UUID, changeId, buf).getDelta(), DeltaEvaluator.UNDEFINED, null);
+        assertEquals(second, expected);
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testRewrittenChangeIsDecodedAgain() {
+        ParsedDeltaCache cache = new ParsedDeltaCache(new DefaultChangeEncoder(), 1024 * 1024, new MetricRegistry());
+        UUID changeId = TimeUUIDs.newUUID();
+
+        // Compaction may rewrite the cutoff delta using the same change ID
+        Change original = cache.decodeChange(TABLE_UUID, changeId, encode("D3:[]:0:{..,\"name\":\"bob\"}"));
+        Change rewritten = cache.decodeChange(TABLE_UUID, changeId, encode("D3:[]:C:{\"name\":\"bob\"}"));
+
+        assertNotSame(rewritten, original);
+        assertTrue(rewritten.getDelta().isConstant());
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testTablesAreCachedIndependently() {
+        ParsedDeltaCache cache = new ParsedDeltaCache(new DefaultChangeEncoder(), 1024 * 1024, new MetricRegistry());
+        UUID changeId = TimeUUIDs.newUUID();
+        ByteBuffer buf = encode("D3:[]:0:{..,\"name\":\"bob\"}");
+
+        Change table1 = cache.decodeChange(TABLE_UUID, changeId, buf);
+        Change table2 = cache.decodeChange(TABLE_UUID + 1, changeId, buf);
+
+        assertNotSame(table2, table1);
+        assertEquals(cache.size(), 2);
+    }
+
+    @Test
+    public void testWeightedSize() {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ParsedDeltaCache cache = new ParsedDeltaCache(new DefaultChangeEncoder(), 1024 * 1024, metricRegistry);
+        UUID changeId = TimeUUIDs.newUUID();
+
+        cache.decodeChange(TABLE_UUID, changeId, encode("D3:[]:0:{..,\"name\":\"bob\"}"));
+        cache.decodeChange(TABLE_UUID, changeId, encode("D3:[]:0:{..,\"name\":\"bob\"}"));
+        long weight = cache.getWeightedSize();
+        assertTrue(weight > 0);
+        assertEquals(metricRegistry.getGauges().get("bv.emodb.sor.ParsedDeltaCache.weighted-size").getValue(), weight);
+
+        Gauge<?> hitRate = null;
+        for (String name : metricRegistry.getGauges().keySet()) {
+            if (name.endsWith("hit-rate.parsedDeltaCache")) {
+                hitRate = metricRegistry.getGauges().get(name);
+            }
+        }
+        assertEquals(hitRate.getValue(), 0.5);
+
+        // Replacing the entry must not leak the weight of the original
+        cache.decodeChange(TABLE_UUID, changeId, encode("D3:[]:0:{..,\"name\":\"sue\"}"));
+        assertEquals(cache.getWeightedSize(), weight);
+    }
+
+    @Test
+    public void testDisabledCache() {
+        ChangeEncoder changeEncoder = spy(new DefaultChangeEncoder());
+        ParsedDeltaCache cache = ParsedDeltaCache.disabled(changeEncoder);
+        UUID changeId = TimeUUIDs.newUUID();
+        ByteBuffer buf = encode("D3:[]:0:{..,\"name\":\"bob\"}");
+
+        Change first = cache.decodeChange(TABLE_UUID, changeId, buf);
+        Change second = cache.decodeChange(TABLE_UUID, changeId, buf);
+
+        assertNotSame(second, first);
+        verify(changeEncoder, times(2)).decodeChange(changeId, buf);
+        assertEquals(cache.size(), 0);
+    }
+
+    private ByteBuffer encode(String change) {
+        return ByteBuffer.wrap(change.getBytes(Charsets.UTF_8));
+    }
+}
@@ -50,6 +50,7 @@ import com.bazaarvoice.emodb.databus.auth.SystemProcessDatabusAuthorizer;
 import com.bazaarvoice.emodb.databus.core.DatabusFactory;
 import com.bazaarvoice.emodb.datacenter.DataCenterConfiguration;
 import com.bazaarvoice.emodb.datacenter.DataCenterModule;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.bazaarvoice.emodb.job.JobConfiguration;
 import com.bazaarvoice.emodb.job.JobModule;
 import com.bazaarvoice.emodb.job.JobZooKeeper;
@@ -60,6 +61,7 @@ import com.bazaarvoice.emodb.plugin.PluginServerMetadata;
 import com.bazaarvoice.emodb.plugin.lifecycle.ServerStartedListener;
 import com.bazaarvoice.emodb.plugin.util.PluginInstanceGenerator;
 import com.bazaarvoice.emodb.queue.DedupQueueHostDiscovery;
+import com.bazaarvoice.emodb.queue.QueueChannelWatcher;
 import com.bazaarvoice.emodb.queue.QueueConfiguration;
 import com.bazaarvoice.emodb.queue.QueueModule;
 import com.bazaarvoice.emodb.queue.QueueZooKeeper;
@@ -103,6 +105,7 @@ import com.bazaarvoice.emodb.web.resources.databus.LocalSubjectDatabus;
 import com.bazaarvoice.emodb.web.resources.databus.LongPollingExecutorServices;
 import com.bazaarvoice.emodb.web.resources.databus.SubjectDatabus;
 import com.bazaarvoice.emodb.web.resources.databus.SubjectDatabusClientFactory;
+import com.bazaarvoice.emodb.web.resources.queue.QueueResourcePoller;
 import com.bazaarvoice.emodb.web.scanner.ScanUploadModule;
 import com.bazaarvoice.emodb.web.scanner.ScannerZooKeeper;
 import com.bazaarvoice.emodb.web.settings.DatabusDefaultJoinFilterConditionAdminTask;
@@ -540,6 +543,28 @@ public class EmoModule extends AbstractModule {
             install(new QueueModule(_environment.metrics()));
         }
 
+        /** Provides the poller used by the queue resources to wait for messages, or to poll once if waits are disabled. */
+        @Provides @Singleton
+        QueueResourcePoller provideQueueResourcePoller(QueueConfiguration queueConfiguration,
+                                                       @QueueChannelWatcher ChannelWatcher channelWatcher,
+                                                       MetricRegistry metricRegistry) {
+            Optional<LongPollingExecutorServices> executorServices = Optional.absent();
+            int numPollingThreads = queueConfiguration.getLongPollPollingThreadCount().or(QueueResourcePoller.DEFAULT_NUM_POLLING_THREADS);
+            if (numPollingThreads != 0) {
+                ScheduledExecutorService pollerService = _environment.lifecycle()
+                        .scheduledExecutorService("queue-poll-poller-%d")
+                        .threads(numPollingThreads)
+                        .build();
+                int numKeepAliveThreads = queueConfiguration.getLongPollKeepAliveThreadCount().or(QueueResourcePoller.DEFAULT_NUM_KEEP_ALIVE_THREADS);
+                ScheduledExecutorService keepAliveService = _environment.lifecycle()
+                        .scheduledExecutorService("queue-poll-keepAlive-%d")
+                        .threads(numKeepAliveThreads)
+                        .build();
+                executorServices = Optional.of(new LongPollingExecutorServices(pollerService, keepAliveService));
+            }
+            return new QueueResourcePoller(executorServices, channelWatcher, metricRegistry);
+        }
+
         /** Create an SOA QueueService client for forwarding non-partition-aware clients to the right server. */
         @Provides @Singleton @PartitionAwareClient
         QueueServiceAuthenticator provideQueueClient(QueueService queueService, Client jerseyClient,
@@ -44,6 +44,7 @@ import com.bazaarvoice.emodb.web.resources.databus.ReplicationResource1;
 import com.bazaarvoice.emodb.web.resources.databus.SubjectDatabus;
 import com.bazaarvoice.emodb.web.resources.queue.DedupQueueResource1;
 import com.bazaarvoice.emodb.web.resources.queue.QueueResource1;
+import com.bazaarvoice.emodb.web.resources.queue.QueueResourcePoller;
 import com.bazaarvoice.emodb.web.resources.report.ReportResource1;
 import com.bazaarvoice.emodb.web.resources.sor.DataStoreResource1;
 import com.bazaarvoice.emodb.web.resources.uac.ApiKeyResource1;
@@ -313,12 +314,14 @@ public class EmoService extends Application<EmoConfiguration> {
         DedupQueueService dedupQueueService = _injector.getInstance(DedupQueueService.class);
         DedupQueueServiceAuthenticator dedupQueueClient = _injector.getInstance(Key.get(DedupQueueServiceAuthenticator.class, PartitionAwareClient.class));
 
+        QueueResourcePoller queueResourcePoller = _injector.getInstance(QueueResourcePoller.class);
+
         // Start the Queue service
         ResourceRegistry resources = _injector.getInstance(ResourceRegistry.class);
         // Start the Queue service
-        resources.addResource(_cluster, "emodb-queue-1", new QueueResource1(queueService, queueClient));
+        resources.addResource(_cluster, "emodb-queue-1", new QueueResource1(queueService, queueClient, queueResourcePoller));
         // Start the Dedup Queue service
-        resources.addResource(_cluster, "emodb-dedupq-1", new DedupQueueResource1(dedupQueueService, dedupQueueClient));
+        resources.addResource(_cluster, "emodb-dedupq-1", new DedupQueueResource1(dedupQueueService, dedupQueueClient, queueResourcePoller));
     }
 
     private void evaluateScanner()
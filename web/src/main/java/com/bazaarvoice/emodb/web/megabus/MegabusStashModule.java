@@ -8,8 +8,10 @@ import com.bazaarvoice.emodb.web.auth.ApiKeyEncryption;
 import com.bazaarvoice.emodb.web.scanner.ScanUploadModule;
 import com.bazaarvoice.emodb.web.scanner.ScanUploader;
 import com.bazaarvoice.emodb.web.scanner.ScannerZooKeeper;
+import com.bazaarvoice.emodb.web.scanner.config.ScanRangeSchedulerConfiguration;
 import com.bazaarvoice.emodb.web.scanner.control.DistributedScanRangeMonitor;
 import com.bazaarvoice.emodb.web.scanner.control.MaxConcurrentScans;
+import com.bazaarvoice.emodb.web.scanner.control.ScanRangeScheduler;
 import com.bazaarvoice.emodb.web.scanner.control.ScanUploadMonitor;
 import com.bazaarvoice.emodb.web.scanner.control.ScanWorkflow;
 import com.bazaarvoice.emodb.web.scanner.notifications.MetricsScanCountListener;
@@ -81,6 +83,9 @@ public class MegabusStashModule extends PrivateModule {
         bind(ScanUploadMonitor.class).asEagerSingleton();
         // Monitors for new scans waiting to start
         bind(DistributedScanRangeMonitor.class).asEagerSingleton();
+        // Balances the scan ranges run locally across placements
+        bind(ScanRangeSchedulerConfiguration.class).toInstance(new ScanRangeSchedulerConfiguration());
+        bind(ScanRangeScheduler.class).asEagerSingleton();
 
         bind(MegabusBootDAO.class).to(StashMegabusBootDAO.class).asEagerSingleton();
         expose(MegabusBootDAO.class);
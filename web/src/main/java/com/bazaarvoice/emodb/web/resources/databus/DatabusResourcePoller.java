@@ -1,7 +1,10 @@
 package com.bazaarvoice.emodb.web.resources.databus;
 
 import com.bazaarvoice.emodb.auth.jersey.Subject;
+import com.bazaarvoice.emodb.databus.ChannelNames;
+import com.bazaarvoice.emodb.databus.DatabusChannelWatcher;
 import com.bazaarvoice.emodb.databus.api.PollResult;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
@@ -22,6 +25,7 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -38,13 +42,13 @@ public class DatabusResourcePoller {
     public static final int DEFAULT_NUM_POLLING_THREADS = 8;
 
     private static final Duration MAX_LONG_POLL_TIME = Duration.ofSeconds(20);
-    private static final Duration LONG_POLL_RETRY_TIME = Duration.ofSeconds(2);
     private static final Duration LONG_POLL_SEND_REFRESH_TIME = Duration.ofMillis(200);
     private static final Duration KEEP_ALIVE_SAFETY_BUFFER_TIME = Duration.ofSeconds(10);
 
     private static final String POLL_DATABUS_EMPTY_HEADER = "X-BV-Databus-Empty";
 
     private final Timer _pollTimer;
+    private final ChannelWatcher _channelWatcher;
 
     private final ScheduledExecutorService _keepAliveExecutorService;
     private final ScheduledExecutorService _pollingExecutorService;
@@ -52,10 +56,17 @@ public class DatabusResourcePoller {
     private final Histogram _keepAliveThreadDelayHistogram;
     private final Histogram _pollingThreadDelayHistogram;
 
+    public DatabusResourcePoller(Optional<LongPollingExecutorServices> longPollingExecutorServices,
+                                 MetricRegistry metricRegistry) {
+        this(longPollingExecutorServices, new ChannelWatcher(), metricRegistry);
+    }
+
     @Inject
     public DatabusResourcePoller(Optional<LongPollingExecutorServices> longPollingExecutorServices,
+                                 @DatabusChannelWatcher ChannelWatcher channelWatcher,
                                  MetricRegistry metricRegistry) {
         checkNotNull(longPollingExecutorServices, "longPollingExecutorServices");
+        _channelWatcher = checkNotNull(channelWatcher, "channelWatcher");
         if (longPollingExecutorServices.isPresent()) {
             _keepAliveExecutorService = longPollingExecutorServices.get().getKeepAlive();
             _pollingExecutorService = longPollingExecutorServices.get().getPoller();
@@ -80,13 +91,15 @@ public class DatabusResourcePoller {
     @VisibleForTesting
     public DatabusResourcePoller(MetricRegistry metricRegistry) {
         _pollTimer = buildPollTimer(metricRegistry);
+        _channelWatcher = new ChannelWatcher();
         _keepAliveExecutorService = null;
         _pollingExecutorService = null;
         _keepAliveThreadDelayHistogram = null;
         _pollingThreadDelayHistogram = null;
     }
 
-    // Runnable to intermittently poll for data and output to the response
+    // Runnable to poll for data and output to the response, whenever events are added to the subscription and
+    // otherwise intermittently
     private class DatabusPollRunnable implements Runnable {
 
         private volatile boolean _pollingActive = true;
@@ -101,7 +114,9 @@ public class DatabusResourcePoller {
         private PeekOrPollResponseHelper _helper;
         private long _longPollStopTime;
         private Timer.Context _timerContext;
-        private long _lastRunTime = 0;
+        private ChannelWatcher.Watch _watch;
+        private ScheduledFuture<?> _nextPoll;
+        private long _expectedRunTime = 0;
 
         DatabusPollRunnable(AsyncContext asyncContext, KeepAliveRunnable keepAliveRunnable, Subject subject, SubjectDatabus databus,
                             Duration claimTtl, int limit, String subscription, PeekOrPollResponseHelper helper,
@@ -122,11 +137,9 @@ public class DatabusResourcePoller {
         public void run() {
             boolean rescheduled = false;
             try {
-                if (_lastRunTime > 0) {
-                    // Record any delay between when we *expected* to run and when we actually ran. This should help
-                    // detect overloaded thread pools which, in turn, may lead to timeouts.
-                    _pollingThreadDelayHistogram.update(System.currentTimeMillis() - _lastRunTime - LONG_POLL_RETRY_TIME.toMillis());
-                }
+                // Record any delay between when we *expected* to run and when we actually ran. This should help
+                // detect overloaded thread pools which, in turn, may lead to timeouts.
+                _pollingThreadDelayHistogram.update(System.currentTimeMillis() - getExpectedRunTime());
                 if (_pollingActive) {
                     boolean pollFailed = false;
                     PollResult result;
@@ -135,6 +148,7 @@ public class DatabusResourcePoller {
                         // call on the other end and receive a quick response - we do NOT want to execute a long-poll here
                         // and spend up to 20 seconds waiting for a response (occupying this thread all the while).
                         result = _databus.poll(_subject, _subscription, _claimTtl, _limit);
+                        _watch.recordPoll();
                     } catch (Exception e) {
                         // We're in an async context and have already returned a 200 response.  Since we can't
                         // retroactively change to 500 finish the request with an empty response and log the error.
@@ -146,7 +160,7 @@ public class DatabusResourcePoller {
                     // Go ahead and output the response if we either 1.) find events to output, 2.) exceed our time
                     // limit, or 3.) received an exception during the last poll
                     if (result.getEventIterator().hasNext()
-                            || (System.currentTimeMillis() + LONG_POLL_RETRY_TIME.toMillis()) >= _longPollStopTime
+                            || System.currentTimeMillis() >= _longPollStopTime
                             || pollFailed) {
                         // Lock the context before writing the response to ensure that the KeepAliveRunnable doesn't
                         // insert bad data into the middle of it
@@ -158,12 +172,11 @@ public class DatabusResourcePoller {
                         }
                     } else {
                         // Nothing to output; schedule the job to check again.  If the result had more events then poll
-                        // again immediately, otherwise wait a few seconds.
-                        _lastRunTime = System.currentTimeMillis();
+                        // again immediately, otherwise wait until events are added or a few seconds pass.
                         if (result.hasMoreEvents()) {
-                            _pollingExecutorService.execute(this);
+                            pollNow();
                         } else {
-                            _pollingExecutorService.schedule(this, LONG_POLL_RETRY_TIME.toMillis(), TimeUnit.MILLISECONDS);
+                            schedulePoll();
                         }
                         rescheduled = true;
                     }
@@ -171,6 +184,7 @@ public class DatabusResourcePoller {
             } finally {
                 // Stop the timer if we didn't reschedule the job (either because it completed or an exception was thrown)
                 if (!rescheduled) {
+                    _watch.close();
                     _timerContext.stop();
                     synchronized (_asyncContext) {
                         _asyncContext.complete();
@@ -182,6 +196,50 @@ public class DatabusResourcePoller {
         public void cancelPolling() {
             _pollingActive = false;
         }
+
+        /**
+         * Takes over the watch started before the first poll, then schedules the next poll.  Events added since the
+         * watch started, including during the first poll, make the next poll run right away.
+         */
+        void start(ChannelWatcher.Watch watch) {
+            _watch = watch;
+            _watch.setOnChange(new Runnable() {
+                @Override
+                public void run() {
+                    wake();
+                }
+            });
+            schedulePoll();
+        }
+
+        private synchronized void schedulePoll() {
+            if (_watch.checkChanged()) {
+                // Events were added while polling
+                pollNow();
+            } else {
+                long delay = Math.max(0, Math.min(_channelWatcher.getRecheckInterval().toMillis(),
+                        _longPollStopTime - System.currentTimeMillis()));
+                _expectedRunTime = System.currentTimeMillis() + delay;
+                _nextPoll = _pollingExecutorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void pollNow() {
+            _expectedRunTime = System.currentTimeMillis();
+            _pollingExecutorService.execute(this);
+        }
+
+        /** Runs the next poll right away if it's waiting to run, called when events are added to the subscription. */
+        private synchronized void wake() {
+            if (_nextPoll != null && _nextPoll.cancel(false)) {
+                _nextPoll = null;
+                pollNow();
+            }
+        }
+
+        private synchronized long getExpectedRunTime() {
+            return _expectedRunTime;
+        }
     }
 
     // Runnable to provide a steady stream of whitespace data to the client to keep our connection alive
@@ -264,6 +322,7 @@ public class DatabusResourcePoller {
                          boolean ignoreLongPoll, PeekOrPollResponseHelper helper) {
         Timer.Context timerContext = _pollTimer.time();
         boolean synchronousResponse = true;
+        ChannelWatcher.Watch watch = null;
         Response response;
 
         try {
@@ -271,13 +330,22 @@ public class DatabusResourcePoller {
             // want that to count toward our total run-time)
             long longPollStopTime = System.currentTimeMillis() + MAX_LONG_POLL_TIME.toMillis();
 
+            // If the request may long poll then watch the subscription before the first poll, otherwise events added
+            // while that poll runs wouldn't wake the long poll until the next scheduled poll.
+            if (!ignoreLongPoll && _keepAliveExecutorService != null && _pollingExecutorService != null) {
+                watch = _channelWatcher.watch(ChannelNames.dedupChannels().writeChannel(subscription));
+            }
+
             // Always issue a synchronous request at the start . . this will allow us to bypass our thread pool logic
             // altogether in cases where we might return the value immediately (see more below). There is a danger here
             // that the thread will stall if "databus" is an instance of DatabusClient and we are stuck waiting for a
             // response - however, since we use the server-side client we know that it will always execute synchronously
             // itself (no long-polling) and return in a reasonable period of time.
             PollResult result = databus.poll(subject, subscription, claimTtl, limit);
-            if (ignoreLongPoll || result.getEventIterator().hasNext() || _keepAliveExecutorService == null || _pollingExecutorService == null) {
+            if (watch != null) {
+                watch.recordPoll();
+            }
+            if (watch == null || result.getEventIterator().hasNext()) {
                 // If ignoreLongPoll == true or we have no executor services to schedule long-polling on then always
                 // return a response, even if it's empty. Alternatively, if we have data to return - return it!
                 response = Response.ok()
@@ -287,13 +355,16 @@ public class DatabusResourcePoller {
             } else {
                 // If the response is empty then go into async-mode and start up the runnables for our long-polling.
                 response = scheduleLongPollingRunnables(request, longPollStopTime, subject, databus, claimTtl, limit, subscription,
-                        result.hasMoreEvents(), helper, timerContext);
+                        result.hasMoreEvents(), helper, watch, timerContext);
                 synchronousResponse = false;
             }
         } finally {
             // Stop our timer if our request is finished here . . otherwise we are in async mode and it is the
             // responsibility of DatabusPollRunnable to close it out.
             if (synchronousResponse) {
+                if (watch != null) {
+                    watch.close();
+                }
                 timerContext.stop();
             }
         }
@@ -304,7 +375,7 @@ public class DatabusResourcePoller {
     private Response scheduleLongPollingRunnables(HttpServletRequest request, long longPollStopTime, Subject subject,
                                                   SubjectDatabus databus, Duration claimTtl, int limit, String subscription,
                                                   boolean firstPollHadMoreEvents, PeekOrPollResponseHelper helper,
-                                                  Timer.Context timerContext) {
+                                                  ChannelWatcher.Watch watch, Timer.Context timerContext) {
         final AsyncContext ctx = request.startAsync();
         boolean jobsScheduled = false;
 
@@ -329,8 +400,9 @@ public class DatabusResourcePoller {
             // which completely nullifies the entire point of using an async implementation
             // - Kick off two recurring jobs, one to poll for events and another to keep the connection to the client alive.
             // Note that we start the keep-alive immediately since we've already taken time above to run an initial poll()
-            // request; likewise, we delay before we run another poll() so that we don't run two in immediate succession.
-            _pollingExecutorService.schedule(pollingRunnable, LONG_POLL_RETRY_TIME.toMillis(), TimeUnit.MILLISECONDS);
+            // request; likewise, we wait for events to be added or a few seconds to pass before we run another poll()
+            // so that we don't run two in immediate succession.
+            pollingRunnable.start(watch);
             _keepAliveExecutorService.schedule(keepAliveRunnable, 0, TimeUnit.MILLISECONDS);
             jobsScheduled = true;
 
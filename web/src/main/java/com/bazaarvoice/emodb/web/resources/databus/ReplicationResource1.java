@@ -2,11 +2,13 @@ package com.bazaarvoice.emodb.web.resources.databus;
 
 import com.bazaarvoice.emodb.databus.repl.ReplicationEvent;
 import com.bazaarvoice.emodb.databus.repl.ReplicationSource;
+import com.bazaarvoice.emodb.web.jersey.params.SecondsParam;
 import com.bazaarvoice.emodb.web.resources.SuccessResponse;
 import com.codahale.metrics.annotation.Timed;
 import io.dropwizard.jersey.params.IntParam;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 
+import javax.annotation.Nullable;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -34,8 +36,13 @@ public class ReplicationResource1 {
     @RequiresPermissions("system|replicate_databus")
     @Timed(name = "bv.emodb.databus.ReplicationResource1.get", absolute = true)
     public List<ReplicationEvent> get(@PathParam("channel") String channel,
-                                      @QueryParam("limit") @DefaultValue("100") IntParam limit) {
-        return _replicationSource.get(channel, limit.get());
+                                      @QueryParam("limit") @DefaultValue("100") IntParam limit,
+                                      @QueryParam("ttl") @Nullable SecondsParam claimTtl) {
+        // Without a claim TTL return the first events in the channel whether or not they're claimed
+        if (claimTtl == null) {
+            return _replicationSource.get(channel, limit.get());
+        }
+        return _replicationSource.poll(channel, claimTtl.get(), limit.get());
     }
 
     @POST
@@ -21,6 +21,7 @@ import io.swagger.annotations.ApiOperation;
 import org.apache.shiro.authz.annotation.RequiresAuthentication;
 import org.apache.shiro.authz.annotation.RequiresPermissions;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
@@ -31,6 +32,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import java.util.Collection;
@@ -48,10 +50,12 @@ public class QueueResource1 {
 
     private final QueueService _queueService;
     private final QueueServiceAuthenticator _queueClient;
+    private final QueueResourcePoller _poller;
 
-    public QueueResource1(QueueService queueService, QueueServiceAuthenticator queueClient) {
+    public QueueResource1(QueueService queueService, QueueServiceAuthenticator queueClient, QueueResourcePoller poller) {
         _queueService = checkNotNull(queueService, "queueService");
         _queueClient = checkNotNull(queueClient, "queueClient");
+        _poller = checkNotNull(poller, "poller");
     }
 
     @POST
@@ -163,12 +167,17 @@ public class QueueResource1 {
             notes = "Returns a List of Messages.",
             response = Message.class
     )
-    public List<Message> poll(@QueryParam("partitioned") BooleanParam partitioned,
-                              @PathParam("queue") String queue,
-                              @QueryParam("ttl") @DefaultValue("30") SecondsParam claimTtl,
-                              @QueryParam("limit") @DefaultValue("10") IntParam limit,
-                              @Authenticated Subject subject) {
-        return getService(partitioned, subject.getAuthenticationId()).poll(queue, claimTtl.get(), limit.get());
+    public Response poll(@QueryParam("partitioned") BooleanParam partitioned,
+                         @PathParam("queue") String queue,
+                         @QueryParam("ttl") @DefaultValue("30") SecondsParam claimTtl,
+                         @QueryParam("limit") @DefaultValue("10") IntParam limit,
+                         @QueryParam("wait") @DefaultValue("0") SecondsParam maxWait,
+                         @Context HttpServletRequest request,
+                         @Authenticated Subject subject) {
+        // With a wait the server holds the request until messages arrive, up to the server's maximum wait.  The wait
+        // happens here, between quick polls, so polls forwarded to the server which owns the queue never wait.
+        return _poller.poll(getService(partitioned, subject.getAuthenticationId()), queue, queue, claimTtl.get(),
+                limit.get(), maxWait.get(), request);
     }
 
     @POST
@@ -0,0 +1,334 @@
+package com.bazaarvoice.emodb.web.resources.queue;
+
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.event.core.ChannelWatcher;
+import com.bazaarvoice.emodb.queue.api.BaseQueueService;
+import com.bazaarvoice.emodb.queue.api.Message;
+import com.bazaarvoice.emodb.web.resources.databus.LongPollingExecutorServices;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Helper class for asynchronously polling queue and dedup queue resource requests which wait for messages.
+ * <p>
+ * Like the databus long poll, every poll issued while waiting is a quick poll which doesn't wait itself, so polls
+ * forwarded to the server which owns the queue return well within the forwarding client's timeout, and whitespace is
+ * sent to the caller while waiting so its connection isn't timed out either.
+ */
+public class QueueResourcePoller {
+
+    private static final Logger _log = LoggerFactory.getLogger(QueueResourcePoller.class);
+
+    public static final int DEFAULT_NUM_KEEP_ALIVE_THREADS = 4;
+    public static final int DEFAULT_NUM_POLLING_THREADS = 8;
+
+    private static final Duration LONG_POLL_SEND_REFRESH_TIME = Duration.ofMillis(200);
+    private static final Duration KEEP_ALIVE_SAFETY_BUFFER_TIME = Duration.ofSeconds(10);
+
+    private final ChannelWatcher _channelWatcher;
+
+    private final ScheduledExecutorService _keepAliveExecutorService;
+    private final ScheduledExecutorService _pollingExecutorService;
+
+    private final Histogram _keepAliveThreadDelayHistogram;
+    private final Histogram _pollingThreadDelayHistogram;
+
+    public QueueResourcePoller(Optional<LongPollingExecutorServices> longPollingExecutorServices,
+                               ChannelWatcher channelWatcher, MetricRegistry metricRegistry) {
+        checkNotNull(longPollingExecutorServices, "longPollingExecutorServices");
+        _channelWatcher = checkNotNull(channelWatcher, "channelWatcher");
+        if (longPollingExecutorServices.isPresent()) {
+            _keepAliveExecutorService = longPollingExecutorServices.get().getKeepAlive();
+            _pollingExecutorService = longPollingExecutorServices.get().getPoller();
+        } else {
+            _keepAliveExecutorService = null;
+            _pollingExecutorService = null;
+        }
+
+        _keepAliveThreadDelayHistogram = metricRegistry.histogram(MetricRegistry.name("bv.emodb.queue", "QueueResourcePoller", "keepAliveThreadDelay"));
+        _pollingThreadDelayHistogram = metricRegistry.histogram(MetricRegistry.name("bv.emodb.queue", "QueueResourcePoller", "pollingThreadDelay"));
+    }
+
+    /**
+     * Unit test constructor which does not wait for messages.  This is because DropWizard ResourceTest classes
+     * do not support asynchronous requests.
+     */
+    @VisibleForTesting
+    public QueueResourcePoller(MetricRegistry metricRegistry) {
+        this(Optional.<LongPollingExecutorServices>absent(), new ChannelWatcher(), metricRegistry);
+    }
+
+    // Runnable to poll for messages and output them to the response, whenever messages are sent to the queue and
+    // otherwise intermittently
+    private class QueuePollRunnable implements Runnable {
+
+        private volatile boolean _pollingActive = true;
+
+        private final AsyncContext _asyncContext;
+        private final KeepAliveRunnable _keepAliveRunnable;
+        private final BaseQueueService _queueService;
+        private final String _queue;
+        private final Duration _claimTtl;
+        private final int _limit;
+        private final long _longPollStopTime;
+        private final ChannelWatcher.Watch _watch;
+        private ScheduledFuture<?> _nextPoll;
+        private long _expectedRunTime = 0;
+
+        QueuePollRunnable(AsyncContext asyncContext, KeepAliveRunnable keepAliveRunnable, BaseQueueService queueService,
+                          String queue, Duration claimTtl, int limit, long longPollStopTime, ChannelWatcher.Watch watch) {
+            _asyncContext = asyncContext;
+            _keepAliveRunnable = keepAliveRunnable;
+            _queueService = queueService;
+            _queue = queue;
+            _claimTtl = claimTtl;
+            _limit = limit;
+            _longPollStopTime = longPollStopTime;
+            _watch = watch;
+        }
+
+        @Override
+        public void run() {
+            boolean rescheduled = false;
+            try {
+                // Record any delay between when we *expected* to run and when we actually ran. This should help
+                // detect overloaded thread pools which, in turn, may lead to timeouts.
+                _pollingThreadDelayHistogram.update(System.currentTimeMillis() - getExpectedRunTime());
+                if (_pollingActive) {
+                    boolean pollFailed = false;
+                    List<Message> messages;
+                    try {
+                        // Never wait here: the poll may be forwarded to another server and must return quickly
+                        messages = _queueService.poll(_queue, _claimTtl, _limit);
+                        _watch.recordPoll();
+                    } catch (Exception e) {
+                        // We're in an async context and have already returned a 200 response.  Since we can't
+                        // retroactively change to 500 finish the request with an empty response and log the error.
+                        _log.error("Failed to perform asynchronous poll on queue {}", _queue, e);
+                        messages = Collections.emptyList();
+                        pollFailed = true;
+                    }
+
+                    if (!messages.isEmpty() || System.currentTimeMillis() >= _longPollStopTime || pollFailed) {
+                        // Lock the context before writing the response to ensure that the KeepAliveRunnable doesn't
+                        // insert bad data into the middle of it
+                        synchronized (_asyncContext) {
+                            if (_pollingActive) {
+                                _keepAliveRunnable.cancelKeepAlive();
+                                populateResponse(messages, (HttpServletResponse) _asyncContext.getResponse());
+                            }
+                        }
+                    } else {
+                        schedulePoll();
+                        rescheduled = true;
+                    }
+                }
+            } finally {
+                if (!rescheduled) {
+                    _watch.close();
+                    synchronized (_asyncContext) {
+                        _asyncContext.complete();
+                    }
+                }
+            }
+        }
+
+        public void cancelPolling() {
+            _pollingActive = false;
+        }
+
+        /** Schedules the next poll, which runs right away if messages were sent since the watch started. */
+        void start() {
+            _watch.setOnChange(new Runnable() {
+                @Override
+                public void run() {
+                    wake();
+                }
+            });
+            schedulePoll();
+        }
+
+        private synchronized void schedulePoll() {
+            if (_watch.checkChanged()) {
+                // Messages were sent while polling
+                pollNow();
+            } else {
+                long delay = Math.max(0, Math.min(_channelWatcher.getRecheckInterval().toMillis(),
+                        _longPollStopTime - System.currentTimeMillis()));
+                _expectedRunTime = System.currentTimeMillis() + delay;
+                _nextPoll = _pollingExecutorService.schedule(this, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private synchronized void pollNow() {
+            _expectedRunTime = System.currentTimeMillis();
+            _pollingExecutorService.execute(this);
+        }
+
+        /** Runs the next poll right away if it's waiting to run, called when messages are sent to the queue. */
+        private synchronized void wake() {
+            if (_nextPoll != null && _nextPoll.cancel(false)) {
+                _nextPoll = null;
+                pollNow();
+            }
+        }
+
+        private synchronized long getExpectedRunTime() {
+            return _expectedRunTime;
+        }
+    }
+
+    // Runnable to provide a steady stream of whitespace data to the client to keep our connection alive
+    private class KeepAliveRunnable implements Runnable {
+
+        private final AsyncContext _asyncContext;
+        private final long _keepAliveStopTime;
+        private volatile boolean _keepAliveRequired = true;
+        private QueuePollRunnable _queuePollRunnable;
+        private long _lastRunTime = 0;
+
+        KeepAliveRunnable(AsyncContext asyncContext, long longPollStopTime) {
+            _asyncContext = asyncContext;
+            // Allow the keep-alive to run a little longer than the anticipated long-poll cutoff just to be sure that we
+            // don't disconnect prematurely in cases where the poll() call takes longer than expected.
+            _keepAliveStopTime = longPollStopTime + KEEP_ALIVE_SAFETY_BUFFER_TIME.toMillis();
+        }
+
+        void setQueuePollRunnable(QueuePollRunnable queuePollRunnable) {
+            _queuePollRunnable = queuePollRunnable;
+        }
+
+        void cancelKeepAlive() {
+            _keepAliveRequired = false;
+        }
+
+        @Override
+        public void run() {
+            if (_lastRunTime > 0) {
+                _keepAliveThreadDelayHistogram.update(System.currentTimeMillis() - _lastRunTime - LONG_POLL_SEND_REFRESH_TIME.toMillis());
+            }
+            // Lock the context before writing to the response to ensure that we don't insert data into it while the
+            // QueuePollRunnable is also writing
+            synchronized (_asyncContext) {
+                if (_keepAliveRequired && _keepAliveStopTime > System.currentTimeMillis()) {
+                    try {
+                        sendClientRefresh((HttpServletResponse) _asyncContext.getResponse());
+                        _lastRunTime = System.currentTimeMillis();
+                        _keepAliveExecutorService.schedule(this, LONG_POLL_SEND_REFRESH_TIME.toMillis(), TimeUnit.MILLISECONDS);
+                    } catch (Exception ex) {
+                        _log.error("Failed to send a keep-alive message to the client");
+
+                        // The request is most likely dead, so stop polling right away rather than claim messages which
+                        // the client will never receive (they would only be delivered once their claims expire).
+                        if (_queuePollRunnable != null) {
+                            _queuePollRunnable.cancelPolling();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void populateResponse(List<Message> messages, HttpServletResponse response) {
+        try {
+            JsonHelper.writeJson(response.getOutputStream(), messages);
+        } catch (IOException ex) {
+            _log.error("Failed to write response to the client");
+        }
+    }
+
+    private static void sendClientRefresh(HttpServletResponse response)
+            throws IOException {
+        // Only supply whitespace since this won't affect how the messages are parsed
+        response.getOutputStream().print(' ');
+        response.flushBuffer();
+    }
+
+    /**
+     * Polls the queue, waiting up to {@code maxWait} (capped at the server's maximum wait) for messages if there are
+     * none.  {@code watchedChannel} is the event store channel which messages sent to the queue are added to.
+     */
+    public Response poll(BaseQueueService queueService, String queue, String watchedChannel, Duration claimTtl, int limit,
+                         Duration maxWait, HttpServletRequest request) {
+        long waitMillis = Math.min(maxWait.toMillis(), _channelWatcher.getMaxWait().toMillis());
+        if (waitMillis <= 0 || _keepAliveExecutorService == null || _pollingExecutorService == null) {
+            return Response.ok(queueService.poll(queue, claimTtl, limit)).build();
+        }
+
+        // Count the first poll toward the total wait, and watch the queue before the first poll so messages sent while
+        // it runs still wake the wait which follows
+        long longPollStopTime = System.currentTimeMillis() + waitMillis;
+        ChannelWatcher.Watch watch = _channelWatcher.watch(watchedChannel);
+        boolean watchHandedOff = false;
+
+        try {
+            List<Message> messages = queueService.poll(queue, claimTtl, limit);
+            watch.recordPoll();
+            if (!messages.isEmpty()) {
+                return Response.ok(messages).build();
+            }
+            Response response = scheduleLongPollingRunnables(request, longPollStopTime, queueService, queue, claimTtl,
+                    limit, watch);
+            watchHandedOff = true;
+            return response;
+        } finally {
+            if (!watchHandedOff) {
+                watch.close();
+            }
+        }
+    }
+
+    private Response scheduleLongPollingRunnables(HttpServletRequest request, long longPollStopTime,
+                                                  BaseQueueService queueService, String queue, Duration claimTtl,
+                                                  int limit, ChannelWatcher.Watch watch) {
+        final AsyncContext ctx = request.startAsync();
+        boolean jobsScheduled = false;
+
+        try {
+            ctx.getResponse().setContentType("application/json");
+
+            // Immediately send a client refresh since we've already executed a poll() call and we don't know how long it
+            // will take for our scheduled refresh to do its thing.
+            sendClientRefresh((HttpServletResponse) ctx.getResponse());
+
+            KeepAliveRunnable keepAliveRunnable = new KeepAliveRunnable(ctx, longPollStopTime);
+            QueuePollRunnable pollingRunnable = new QueuePollRunnable(ctx, keepAliveRunnable, queueService, queue,
+                    claimTtl, limit, longPollStopTime, watch);
+            keepAliveRunnable.setQueuePollRunnable(pollingRunnable);
+
+            // Don't use ctx.start() since Jetty's implementation would run the job on the request thread pool
+            pollingRunnable.start();
+            _keepAliveExecutorService.schedule(keepAliveRunnable, 0, TimeUnit.MILLISECONDS);
+            jobsScheduled = true;
+
+            // The actual processing is asynchronous.  Whatever we return here is included in the result, so make it empty.
+            return Response.ok().build();
+        } catch (IOException ex) {
+            throw Throwables.propagate(ex);
+        } finally {
+            // Make sure that we close out the request if our jobs (which would close it for us) failed to get scheduled
+            if (!jobsScheduled) {
+                ctx.complete();
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.bazaarvoice.emodb.web.scanner;
 
+import com.bazaarvoice.emodb.common.stash.StashManifest;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -10,8 +11,10 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Sets;
 
+import javax.annotation.Nullable;
 import java.time.Duration;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -44,6 +47,9 @@ public class ScanOptions {
     private boolean _temporalEnabled = true;
     // Whether or not to only scan live ranges according to StashTableDAO
     private boolean _onlyScanLiveRanges = true;
+    // For incremental scans, the Stash directory this scan builds on and the time from which updated rows are included
+    private String _incrementalPrevious;
+    private Date _incrementalSince;
 
     public ScanOptions(String placement) {
         this(ImmutableSortedSet.of(placement));
@@ -63,7 +69,9 @@ public class ScanOptions {
                         @JsonProperty ("maxRangeScanTime") Long maxRangeScanTime,
                         @JsonProperty ("compactionEnabled") Boolean compactionEnabled,
                         @JsonProperty ("temporalEnabled") Boolean temporalEnabled,
-                        @JsonProperty ("onlyScanLiveRanges") Boolean onlyScanLiveRanges) {
+                        @JsonProperty ("onlyScanLiveRanges") Boolean onlyScanLiveRanges,
+                        @JsonProperty ("incrementalPrevious") String incrementalPrevious,
+                        @JsonProperty ("incrementalSince") Long incrementalSince) {
         this(placements);
         if (destinations != null) {
             addDestinations(destinations);
@@ -89,6 +97,9 @@ public class ScanOptions {
         if (onlyScanLiveRanges != null) {
             _onlyScanLiveRanges = onlyScanLiveRanges;
         }
+        if (incrementalPrevious != null && incrementalSince != null) {
+            setIncremental(incrementalPrevious, new Date(incrementalSince));
+        }
     }
 
     @JsonSerialize
@@ -185,6 +196,48 @@ public class ScanOptions {
         return this;
     }
 
+    /**
+     * Makes this an incremental scan which only writes rows updated at or after "since", including deleted rows.
+     * The resulting Stash is only complete when read together with the Stash in the sibling directory "previous",
+     * see {@link StashManifest}.
+     */
+    public ScanOptions setIncremental(String previous, Date since) {
+        _incrementalPrevious = checkNotNull(previous, "previous");
+        _incrementalSince = checkNotNull(since, "since");
+        return this;
+    }
+
+    @JsonIgnore
+    public boolean isIncremental() {
+        return _incrementalSince != null;
+    }
+
+    @Nullable
+    public String getIncrementalPrevious() {
+        return _incrementalPrevious;
+    }
+
+    @Nullable
+    @JsonProperty("incrementalSince")
+    public Long getIncrementalSinceMs() {
+        return _incrementalSince != null ? _incrementalSince.getTime() : null;
+    }
+
+    @Nullable
+    @JsonIgnore
+    public Date getIncrementalSince() {
+        return _incrementalSince;
+    }
+
+    /**
+     * Returns the manifest to write with the Stash, or null if this is a full scan.
+     */
+    @Nullable
+    @JsonIgnore
+    public StashManifest getStashManifest() {
+        return isIncremental() ? new StashManifest(_incrementalPrevious, _incrementalSince) : null;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -199,6 +252,7 @@ public class ScanOptions {
         return Objects.equal(_placements, that.getPlacements()) &&
                 _scanByAZ == that._scanByAZ &&
                 _compactionEnabled == that._compactionEnabled &&
+                Objects.equal(_incrementalSince, that._incrementalSince) &&
                 _maxConcurrentSubRangeScans == that._maxConcurrentSubRangeScans &&
                 Objects.equal(_destinations, that.getDestinations());
     }
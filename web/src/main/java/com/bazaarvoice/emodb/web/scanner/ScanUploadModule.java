@@ -26,13 +26,17 @@ import com.bazaarvoice.emodb.queue.api.AuthQueueService;
 import com.bazaarvoice.emodb.queue.api.QueueService;
 import com.bazaarvoice.emodb.queue.client.QueueClientFactory;
 import com.bazaarvoice.emodb.queue.client.QueueServiceAuthenticator;
+import com.bazaarvoice.emodb.sor.DataStoreFullConsistency;
 import com.bazaarvoice.emodb.sor.api.CompactionControlSource;
 import com.bazaarvoice.emodb.sor.api.DataStore;
+import com.bazaarvoice.emodb.table.db.astyanax.FullConsistencyTimeProvider;
 import com.bazaarvoice.emodb.web.auth.ApiKeyEncryption;
+import com.bazaarvoice.emodb.web.scanner.config.ScanRangeSchedulerConfiguration;
 import com.bazaarvoice.emodb.web.scanner.config.ScannerConfiguration;
 import com.bazaarvoice.emodb.web.scanner.config.ScheduledScanConfiguration;
 import com.bazaarvoice.emodb.web.scanner.control.DistributedScanRangeMonitor;
 import com.bazaarvoice.emodb.web.scanner.control.MaxConcurrentScans;
+import com.bazaarvoice.emodb.web.scanner.control.ScanRangeScheduler;
 import com.bazaarvoice.emodb.web.scanner.control.QueueScanWorkflow;
 import com.bazaarvoice.emodb.web.scanner.control.SQSScanWorkflow;
 import com.bazaarvoice.emodb.web.scanner.control.ScanUploadMonitor;
@@ -112,6 +116,7 @@ import static com.google.common.base.Preconditions.checkArgument;
  * <li> {@link MetricRegistry}
  * <li> Jersey {@link Client}
  * <li> {@link CompactionControlSource}
+ * <li> @{@link DataStoreFullConsistency} {@link FullConsistencyTimeProvider}
  * </ul>
  * Exports the following:
  * <li> {@link ScanUploader}
@@ -171,6 +176,9 @@ public class ScanUploadModule extends PrivateModule {
         bind(ScanUploadMonitor.class).asEagerSingleton();
         // Monitors for new scans waiting to start
         bind(DistributedScanRangeMonitor.class).asEagerSingleton();
+        // Balances the scan ranges run locally across placements
+        bind(ScanRangeSchedulerConfiguration.class).toInstance(_config.getRangeScheduling());
+        bind(ScanRangeScheduler.class).asEagerSingleton();
         // Schedules any daily scans
         bind(ScanUploadSchedulingService.class).asEagerSingleton();
         // Sends notification that the service is active at the start of a scheduled scan
@@ -3,11 +3,13 @@ package com.bazaarvoice.emodb.web.scanner;
 import com.bazaarvoice.emodb.datacenter.api.DataCenters;
 import com.bazaarvoice.emodb.plugin.stash.StashMetadata;
 import com.bazaarvoice.emodb.plugin.stash.StashStateListener;
+import com.bazaarvoice.emodb.sor.DataStoreFullConsistency;
 import com.bazaarvoice.emodb.sor.api.CompactionControlSource;
 import com.bazaarvoice.emodb.sor.compactioncontrol.DelegateCompactionControl;
 import com.bazaarvoice.emodb.sor.core.DataTools;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
 import com.bazaarvoice.emodb.sor.db.ScanRangeSplits;
+import com.bazaarvoice.emodb.table.db.astyanax.FullConsistencyTimeProvider;
 import com.bazaarvoice.emodb.web.scanner.control.ScanPlan;
 import com.bazaarvoice.emodb.web.scanner.control.ScanWorkflow;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStatus;
@@ -63,18 +65,21 @@ public class ScanUploader {
     private final StashStateListener _stashStateListener;
     private final CompactionControlSource _compactionControlSource;
     private final DataCenters _dataCenters;
+    private final FullConsistencyTimeProvider _fullConsistencyTimeProvider;
 
     private final ScheduledExecutorService _executorService;
 
     @Inject
     public ScanUploader(DataTools dataTools, ScanWorkflow scanWorkflow, ScanStatusDAO scanStatusDAO,
-                        StashStateListener stashStateListener, @DelegateCompactionControl CompactionControlSource compactionControlSource, DataCenters dataCenters) {
+                        StashStateListener stashStateListener, @DelegateCompactionControl CompactionControlSource compactionControlSource, DataCenters dataCenters,
+                        @DataStoreFullConsistency FullConsistencyTimeProvider fullConsistencyTimeProvider) {
         _dataTools = checkNotNull(dataTools, "dataTools");
         _scanWorkflow = checkNotNull(scanWorkflow, "scanWorkflow");
         _scanStatusDAO = checkNotNull(scanStatusDAO, "scanStatusDAO");
         _stashStateListener = checkNotNull(stashStateListener, "stashStateListener");
         _compactionControlSource = checkNotNull(compactionControlSource, "compactionControlSource");
         _dataCenters = checkNotNull(dataCenters, "dataCenters");
+        _fullConsistencyTimeProvider = checkNotNull(fullConsistencyTimeProvider, "fullConsistencyTimeProvider");
         _executorService = Executors.newSingleThreadScheduledExecutor();
     }
 
@@ -97,6 +102,7 @@ public class ScanUploader {
         private final ScanOptions _options;
         private boolean _dryRun = false;
         private String _usePlanFrom;
+        private String _incrementalFrom;
 
         private ScanAndUploadBuilder(String scanId, ScanOptions options) {
             _scanId = scanId;
@@ -113,7 +119,25 @@ public class ScanUploader {
             return this;
         }
 
+        /**
+         * Only uploads the rows updated since the given earlier scan started, producing an incremental Stash which is
+         * read on top of that scan's Stash.  The earlier scan must be complete and must have been written to a
+         * sibling directory of this scan's destinations.
+         */
+        public ScanAndUploadBuilder incrementalFrom(String previousId) {
+            _incrementalFrom = previousId;
+            return this;
+        }
+
         public ScanStatus start() {
+            if (_incrementalFrom != null) {
+                ScanStatus previousStatus = _scanStatusDAO.getScanStatus(_incrementalFrom);
+                if (previousStatus == null || previousStatus.getCompleteTime() == null) {
+                    throw new IllegalStateException("Cannot build incrementally on unknown or incomplete scan: " + _incrementalFrom);
+                }
+                _options.setIncremental(getStashDirectory(previousStatus), getIncrementalSince(previousStatus, _options.getPlacements()));
+            }
+
             ScanStatus status;
             if (_usePlanFrom == null) {
                 ScanPlan plan = createPlan(_scanId, _options);
@@ -135,6 +159,40 @@ public class ScanUploader {
         }
     }
 
+    /**
+     * Returns the time from which an incremental scan built on the given scan includes updated rows.  A delta whose
+     * change ID predates the previous scan's start can still become visible after that scan read its row, either
+     * because the client supplied an older change ID or because the write reached this data center late.  Until a
+     * delta is older than the full consistency lag it may not be visible yet, so the cutoff is moved back from the
+     * previous scan's start by the largest lag of the scanned placements' clusters.
+     */
+    private Date getIncrementalSince(ScanStatus previousStatus, Collection<String> placements) {
+        long now = System.currentTimeMillis();
+        long safetyMargin = 0;
+        for (String placement : placements) {
+            String cluster = _dataTools.getPlacementCluster(placement);
+            safetyMargin = Math.max(safetyMargin, now - _fullConsistencyTimeProvider.getMaxTimeStamp(cluster));
+        }
+        return new Date(previousStatus.getStartTime().getTime() - safetyMargin);
+    }
+
+    /**
+     * Returns the name of the directory a completed scan was written to, taken from its first non-discarding
+     * destination.
+     */
+    private String getStashDirectory(ScanStatus status) {
+        for (ScanDestination destination : status.getOptions().getDestinations()) {
+            if (!destination.isDiscarding()) {
+                String path = destination.getUri().getPath();
+                if (path.endsWith("/")) {
+                    path = path.substring(0, path.length() - 1);
+                }
+                return path.substring(path.lastIndexOf('/') + 1);
+            }
+        }
+        throw new IllegalStateException("Scan was not written to a Stash directory: " + status.getScanId());
+    }
+
     /**
      * Returns a ScanPlan based on the Cassandra rings and token ranges.
      */
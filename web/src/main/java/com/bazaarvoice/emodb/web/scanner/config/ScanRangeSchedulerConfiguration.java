@@ -0,0 +1,67 @@
+package com.bazaarvoice.emodb.web.scanner.config;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Optional;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Configuration for how each server schedules the scan ranges it claims, see
+ * {@link com.bazaarvoice.emodb.web.scanner.control.ScanRangeScheduler}.
+ */
+public class ScanRangeSchedulerConfiguration {
+
+    private static final double DEFAULT_READ_LATENCY_FACTOR = 2.0;
+    private static final double DEFAULT_MAX_HOST_LOAD = 1.0;
+
+    // Maximum number of ranges scanned concurrently from a single placement.  Defaults to the scan thread count.
+    @Valid
+    @NotNull
+    @JsonProperty ("maxRangesPerPlacement")
+    private Optional<Integer> _maxRangesPerPlacement = Optional.absent();
+
+    // A placement's concurrency is reduced while its read latency exceeds its typical latency by this factor
+    @Valid
+    @NotNull
+    @JsonProperty ("readLatencyFactor")
+    private double _readLatencyFactor = DEFAULT_READ_LATENCY_FACTOR;
+
+    // No new ranges are started while the system load average per processor exceeds this value
+    @Valid
+    @NotNull
+    @JsonProperty ("maxHostLoad")
+    private double _maxHostLoad = DEFAULT_MAX_HOST_LOAD;
+
+    public Optional<Integer> getMaxRangesPerPlacement() {
+        return _maxRangesPerPlacement;
+    }
+
+    public ScanRangeSchedulerConfiguration setMaxRangesPerPlacement(Optional<Integer> maxRangesPerPlacement) {
+        checkArgument(!maxRangesPerPlacement.isPresent() || maxRangesPerPlacement.get() > 0, "maxRangesPerPlacement <= 0");
+        _maxRangesPerPlacement = maxRangesPerPlacement;
+        return this;
+    }
+
+    public double getReadLatencyFactor() {
+        return _readLatencyFactor;
+    }
+
+    public ScanRangeSchedulerConfiguration setReadLatencyFactor(double readLatencyFactor) {
+        checkArgument(readLatencyFactor > 1, "readLatencyFactor <= 1");
+        _readLatencyFactor = readLatencyFactor;
+        return this;
+    }
+
+    public double getMaxHostLoad() {
+        return _maxHostLoad;
+    }
+
+    public ScanRangeSchedulerConfiguration setMaxHostLoad(double maxHostLoad) {
+        checkArgument(maxHostLoad > 0, "maxHostLoad <= 0");
+        _maxHostLoad = maxHostLoad;
+        return this;
+    }
+}
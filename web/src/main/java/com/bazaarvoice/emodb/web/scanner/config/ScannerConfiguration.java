@@ -92,6 +92,12 @@ public class ScannerConfiguration {
     @JsonProperty ("completeScanRangeQueueName")
     private Optional<String> _completeScanRangeQueueName = Optional.absent();
 
+    // Limits on concurrent range scans per placement and per host
+    @Valid
+    @NotNull
+    @JsonProperty ("rangeScheduling")
+    private ScanRangeSchedulerConfiguration _rangeScheduling = new ScanRangeSchedulerConfiguration();
+
     public boolean isUseSQSQueues() {
         return _useSQSQueues;
     }
@@ -205,4 +211,13 @@ public class ScannerConfiguration {
         _s3AssumeRole = s3AssumeRole;
         return this;
     }
+
+    public ScanRangeSchedulerConfiguration getRangeScheduling() {
+        return _rangeScheduling;
+    }
+
+    public ScannerConfiguration setRangeScheduling(ScanRangeSchedulerConfiguration rangeScheduling) {
+        _rangeScheduling = rangeScheduling;
+        return this;
+    }
 }
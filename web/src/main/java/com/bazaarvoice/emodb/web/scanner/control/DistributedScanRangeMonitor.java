@@ -2,11 +2,13 @@ package com.bazaarvoice.emodb.web.scanner.control;
 
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
+import com.bazaarvoice.emodb.web.scanner.config.ScanRangeSchedulerConfiguration;
 import com.bazaarvoice.emodb.web.scanner.rangescan.RangeScanUploader;
 import com.bazaarvoice.emodb.web.scanner.rangescan.RangeScanUploaderResult;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanRangeStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatus;
 import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatusDAO;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
@@ -19,12 +21,14 @@ import io.dropwizard.lifecycle.Managed;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -34,7 +38,8 @@ import static com.google.common.base.Preconditions.checkNotNull;
 /**
  * Managed process which listens for scan ranges ready to be uploaded via a previous call to
  * {@link ScanWorkflow#addScanRangeTask(String, int, String, com.bazaarvoice.emodb.sor.db.ScanRange)}.  This process
- * accepts available upload tasks and performs them locally.
+ * accepts available upload tasks and performs them locally, with the {@link ScanRangeScheduler} deciding how many to
+ * claim and when each starts.
  */
 public class DistributedScanRangeMonitor implements Managed {
 
@@ -50,19 +55,29 @@ public class DistributedScanRangeMonitor implements Managed {
     private final ScanWorkflow _scanWorkflow;
     private final ScanStatusDAO _scanStatusDAO;
     private final RangeScanUploader _rangeScanUploader;
+    private final ScanRangeScheduler _scanRangeScheduler;
     private final int _maxConcurrentScans;
     // No ConcurrentSet in Java, so use a ConcurrentMap instead.
     private final ConcurrentMap<Integer, ClaimedTask> _claimedTasks = Maps.newConcurrentMap();
     private ExecutorService _scanningService;
     private ScheduledExecutorService _backgroundService;
 
-    @Inject
     public DistributedScanRangeMonitor(ScanWorkflow scanWorkflow, ScanStatusDAO scanStatusDAO,
                                        RangeScanUploader rangeScanUploader,
+                                       int maxConcurrentScans, LifeCycleRegistry lifecycle) {
+        this(scanWorkflow, scanStatusDAO, rangeScanUploader,
+                new ScanRangeScheduler(maxConcurrentScans, new ScanRangeSchedulerConfiguration(), Clock.systemUTC(), new MetricRegistry()),
+                maxConcurrentScans, lifecycle);
+    }
+
+    @Inject
+    public DistributedScanRangeMonitor(ScanWorkflow scanWorkflow, ScanStatusDAO scanStatusDAO,
+                                       RangeScanUploader rangeScanUploader, ScanRangeScheduler scanRangeScheduler,
                                        @MaxConcurrentScans int maxConcurrentScans, LifeCycleRegistry lifecycle) {
         _scanWorkflow = checkNotNull(scanWorkflow, "scanWorkflow");
         _scanStatusDAO = checkNotNull(scanStatusDAO, "scanStatusDAO");
         _rangeScanUploader = checkNotNull(rangeScanUploader, "rangeScanUploader");
+        _scanRangeScheduler = checkNotNull(scanRangeScheduler, "scanRangeScheduler");
         checkArgument(maxConcurrentScans > 0, "maxConcurrentScans <= 0");
         _maxConcurrentScans = maxConcurrentScans;
 
@@ -126,9 +141,12 @@ public class DistributedScanRangeMonitor implements Managed {
     @VisibleForTesting
     public void startScansIfAvailable() {
         try {
+            // Start any waiting tasks which were held back by a host load which has since dropped
+            _scanRangeScheduler.startWaitingRanges();
+
             int availableCount;
 
-            while ((availableCount = getAvailableScanThreadCount()) > 0) {
+            while ((availableCount = _scanRangeScheduler.getClaimCapacity()) > 0) {
                 List<ClaimedTask> claimedTasks = claimScanRangeTasks(availableCount);
 
                 if (claimedTasks.isEmpty()) {
@@ -137,11 +155,22 @@ public class DistributedScanRangeMonitor implements Managed {
                 }
 
                 for (final ClaimedTask claimedTask : claimedTasks) {
-                    // Start the scan asynchronously
-                    _scanningService.submit(new Runnable() {
+                    // Start the scan asynchronously once the scheduler allows it
+                    final String placement = claimedTask.getTask().getPlacement();
+                    _scanRangeScheduler.submit(placement, new Runnable() {
                         @Override
                         public void run() {
-                            executeClaimedTask(claimedTask);
+                            try {
+                                _scanningService.submit(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        executeClaimedTask(claimedTask);
+                                    }
+                                });
+                            } catch (RejectedExecutionException e) {
+                                // The service is stopping
+                                _scanRangeScheduler.release(placement);
+                            }
                         }
                     });
                 }
@@ -151,13 +180,6 @@ public class DistributedScanRangeMonitor implements Managed {
         }
     }
 
-    /**
-     * Returns the number of threads currently available to start a scan.
-     */
-    private int getAvailableScanThreadCount() {
-        return _maxConcurrentScans - _claimedTasks.size();
-    }
-
     /**
      * Claims scan range tasks that have been queued by the leader and are ready to scan.
      */
@@ -272,13 +294,15 @@ public class DistributedScanRangeMonitor implements Managed {
      * Executes a previously claimed scan range task.
      */
     private void executeClaimedTask(ClaimedTask claimedTask) {
+        ScanRangeTask task = claimedTask.getTask();
+
         // Check whether this claim was already abandoned due to late execution.
         if (!claimedTask.setStartTime(new Date())) {
-            _log.info("Claimed task is overdue; range not scanned: {}", claimedTask.getTask());
+            _log.info("Claimed task is overdue; range not scanned: {}", task);
+            _scanRangeScheduler.release(task.getPlacement());
             return;
         }
 
-        ScanRangeTask task = claimedTask.getTask();
         boolean releaseTask = false;
         try {
             // Immediately renew the claim; future renewals will be handled asynchronously by the background renewal task.
@@ -287,6 +311,7 @@ public class DistributedScanRangeMonitor implements Managed {
             releaseTask = asyncRangeScan(task);
         } finally {
             unclaimTask(claimedTask, releaseTask);
+            _scanRangeScheduler.release(task.getPlacement());
 
             // Immediately try to claim a new scan when this one finishes
             _backgroundService.submit(_startScansIfAvailableRunnable);
@@ -340,6 +365,8 @@ public class DistributedScanRangeMonitor implements Managed {
             result = RangeScanUploaderResult.failure();
         }
 
+        _scanRangeScheduler.rangeScanComplete(placement, result);
+
         try {
             switch (result.getStatus()) {
                 case SUCCESS:
@@ -35,7 +35,7 @@ public class InMemoryScanWorkflow implements ScanWorkflow {
         List<ScanRangeTask> tasks = Lists.newArrayListWithExpectedSize(Math.min(_pendingTasks.size(), max));
 
         InMemoryScanRangeTask task;
-        while ((task = _pendingTasks.poll()) != null) {
+        while (tasks.size() < max && (task = _pendingTasks.poll()) != null) {
             tasks.add(task);
         }
 
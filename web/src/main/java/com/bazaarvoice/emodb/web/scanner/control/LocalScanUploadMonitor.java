@@ -422,7 +422,8 @@ public class LocalScanUploadMonitor extends AbstractService {
             Set<ScanDestination> destinations = status.getOptions().getDestinations();
             // Use -1 as the task ID since writing that the scan is complete is not associated with any scan range task.
             ScanWriter scanWriter = _scanWriterGenerator.createScanWriter(-1, destinations);
-            scanWriter.writeScanComplete(id, _scanStatusDAO.getScanStatus(id).getStartTime());
+            scanWriter.writeScanComplete(id, _scanStatusDAO.getScanStatus(id).getStartTime(),
+                    status.getOptions().getStashManifest());
 
             // Store the time the scan completed
             Date completeTime = new Date();
@@ -0,0 +1,305 @@
+package com.bazaarvoice.emodb.web.scanner.control;
+
+import com.bazaarvoice.emodb.web.scanner.config.ScanRangeSchedulerConfiguration;
+import com.bazaarvoice.emodb.web.scanner.rangescan.RangeScanUploaderResult;
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Queues;
+import com.google.inject.Inject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.time.Clock;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Decides when the scan range tasks claimed by {@link DistributedScanRangeMonitor} start on this server.  Claiming
+ * from the {@link ScanWorkflow} doesn't consider placements, so without scheduling a server could run all of its scan
+ * threads against a single Cassandra ring while it has ranges for other placements waiting.  Ranges are balanced
+ * using three signals:
+ * <ul>
+ *     <li>In-flight ranges per placement.  Each placement has a concurrency limit of at most
+ *         {@link ScanRangeSchedulerConfiguration#getMaxRangesPerPlacement()}.  When a scan thread frees up the waiting
+ *         range from the placement with the lowest ratio of in-flight ranges to its limit starts first.</li>
+ *     <li>Read latency per placement, measured as the time spent waiting per row read.  A placement's limit is halved
+ *         whenever its recent latency exceeds its typical latency by the configured factor or a range scan fails,
+ *         and otherwise grows by one with each completed range.</li>
+ *     <li>Host load.  No new ranges start while the system load average per processor exceeds the configured
+ *         maximum, although one range is always allowed to run.</li>
+ * </ul>
+ * Ranges which can't start immediately wait locally.  Their claims aren't renewed, so if a range can't start before
+ * its claim expires the monitor abandons it and the workflow makes it available to other servers.
+ */
+public class ScanRangeScheduler {
+
+    // Weight of each new sample in a placement's recent read latency
+    private static final double RECENT_LATENCY_WEIGHT = 0.3;
+    // Rate at which a placement's typical read latency rises toward its recent latency when the latter is higher.
+    // Lower latencies are adopted immediately.
+    private static final double TYPICAL_LATENCY_DRIFT = 0.01;
+
+    private final int _maxConcurrentScans;
+    private final int _maxRangesPerPlacement;
+    private final double _readLatencyFactor;
+    private final double _maxHostLoad;
+    private final DoubleSupplier _hostLoad;
+    private final Clock _clock;
+    private final MetricRegistry _metricRegistry;
+    private final Meter _hostOverloaded;
+
+    // All of the following are guarded by "this"
+    private final Map<String, PlacementState> _placements = Maps.newHashMap();
+    private int _running;
+    private int _waiting;
+
+    @Inject
+    public ScanRangeScheduler(@MaxConcurrentScans int maxConcurrentScans, ScanRangeSchedulerConfiguration config,
+                              Clock clock, MetricRegistry metricRegistry) {
+        this(maxConcurrentScans, config, systemLoadPerProcessor(), clock, metricRegistry);
+    }
+
+    @VisibleForTesting
+    public ScanRangeScheduler(int maxConcurrentScans, ScanRangeSchedulerConfiguration config, DoubleSupplier hostLoad,
+                              Clock clock, MetricRegistry metricRegistry) {
+        checkArgument(maxConcurrentScans > 0, "maxConcurrentScans <= 0");
+        _maxConcurrentScans = maxConcurrentScans;
+        _maxRangesPerPlacement = Math.min(config.getMaxRangesPerPlacement().or(maxConcurrentScans), maxConcurrentScans);
+        _readLatencyFactor = config.getReadLatencyFactor();
+        _maxHostLoad = config.getMaxHostLoad();
+        _hostLoad = checkNotNull(hostLoad, "hostLoad");
+        _clock = checkNotNull(clock, "clock");
+        _metricRegistry = checkNotNull(metricRegistry, "metricRegistry");
+
+        _hostOverloaded = metricRegistry.meter(MetricRegistry.name("bv.emodb.scan", "ScanRangeScheduler", "host-overloaded"));
+    }
+
+    private static DoubleSupplier systemLoadPerProcessor() {
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        // The load average is negative on platforms where it isn't available, so host load never limits scans there
+        return () -> os.getSystemLoadAverage() / os.getAvailableProcessors();
+    }
+
+    /**
+     * Returns the number of additional ranges which should be claimed now.  This is the number of ranges which could
+     * start given the host load, but waiting ranges are limited to the number of scan threads so a server never holds
+     * many more ranges than it can scan.
+     */
+    public synchronized int getClaimCapacity() {
+        return Math.max(0, Math.min(getHostLimit() - _running, _maxConcurrentScans - _waiting));
+    }
+
+    /**
+     * Schedules a claimed range for a placement.  Once the range is allowed to start "start" is called, outside of
+     * any lock and possibly in the current thread.  After a range has started the caller must call
+     * {@link #release(String)} when it finishes.
+     */
+    public void submit(String placement, Runnable start) {
+        checkNotNull(start, "start");
+        synchronized (this) {
+            PlacementState state = getPlacementState(placement);
+            state._waitingRanges.add(new WaitingRange(start, _clock.millis()));
+            state._queuedRanges.inc();
+            _waiting += 1;
+        }
+        startWaitingRanges();
+    }
+
+    /**
+     * Signals that a range for the placement which was started by this scheduler has finished, freeing its slot.
+     */
+    public void release(String placement) {
+        synchronized (this) {
+            PlacementState state = getPlacementState(placement);
+            checkState(state._inFlight > 0, "No ranges in flight for placement: %s", placement);
+            state._inFlight -= 1;
+            state._inFlightRanges.dec();
+            _running -= 1;
+        }
+        startWaitingRanges();
+    }
+
+    /**
+     * Records the result of a range scan, adjusting the placement's concurrency limit based on its read latency.
+     */
+    public synchronized void rangeScanComplete(String placement, RangeScanUploaderResult result) {
+        PlacementState state = getPlacementState(placement);
+        state._rangesScanned.mark();
+        state._rowsRead.mark(result.getRowsRead());
+
+        if (result.getStatus() == RangeScanUploaderResult.Status.FAILURE) {
+            state.decreaseLimit();
+        } else if (result.getRowsRead() > 0) {
+            double latency = (double) result.getReadTime().toNanos() / result.getRowsRead();
+            state._readLatency.update((long) latency);
+
+            if (Double.isNaN(state._recentLatency)) {
+                state._recentLatency = state._typicalLatency = latency;
+            } else {
+                state._recentLatency += RECENT_LATENCY_WEIGHT * (latency - state._recentLatency);
+                if (state._recentLatency < state._typicalLatency) {
+                    state._typicalLatency = state._recentLatency;
+                } else {
+                    state._typicalLatency += TYPICAL_LATENCY_DRIFT * (state._recentLatency - state._typicalLatency);
+                }
+            }
+
+            if (state._recentLatency > state._typicalLatency * _readLatencyFactor) {
+                state.decreaseLimit();
+            } else {
+                state.increaseLimit();
+            }
+        }
+    }
+
+    /**
+     * Starts as many waiting ranges as currently allowed.  This is called whenever a range is submitted or released,
+     * and should also be called periodically since host load changes independently of either.
+     */
+    public void startWaitingRanges() {
+        List<Runnable> starts = Lists.newArrayList();
+
+        synchronized (this) {
+            int hostLimit = getHostLimit();
+            while (_running < hostLimit) {
+                PlacementState next = null;
+                for (PlacementState state : _placements.values()) {
+                    if (state.canStart() && (next == null || state.isPreferredTo(next))) {
+                        next = state;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+
+                WaitingRange range = next._waitingRanges.remove();
+                next._queuedRanges.dec();
+                next._queueTime.update(_clock.millis() - range._submitTime, TimeUnit.MILLISECONDS);
+                _waiting -= 1;
+
+                next._inFlight += 1;
+                next._inFlightRanges.inc();
+                _running += 1;
+
+                starts.add(range._start);
+            }
+
+            if (hostLimit < _maxConcurrentScans && _waiting > 0) {
+                _hostOverloaded.mark();
+            }
+        }
+
+        for (Runnable start : starts) {
+            start.run();
+        }
+    }
+
+    /**
+     * Returns the maximum number of ranges which may run given the current host load.  While the host is overloaded
+     * the ranges already running may finish but no new ranges start, unless none are running.
+     */
+    private int getHostLimit() {
+        if (_hostLoad.getAsDouble() > _maxHostLoad) {
+            return Math.max(_running, 1);
+        }
+        return _maxConcurrentScans;
+    }
+
+    private PlacementState getPlacementState(String placement) {
+        PlacementState state = _placements.get(placement);
+        if (state == null) {
+            state = new PlacementState(placement);
+            _placements.put(placement, state);
+        }
+        return state;
+    }
+
+    @VisibleForTesting
+    synchronized int getPlacementLimit(String placement) {
+        return getPlacementState(placement)._limit;
+    }
+
+    @VisibleForTesting
+    synchronized int getInFlightRanges(String placement) {
+        return getPlacementState(placement)._inFlight;
+    }
+
+    @VisibleForTesting
+    synchronized int getWaitingRanges(String placement) {
+        return getPlacementState(placement)._waitingRanges.size();
+    }
+
+    private class PlacementState {
+        private final Deque<WaitingRange> _waitingRanges = Queues.newArrayDeque();
+        private int _inFlight;
+        private int _limit = _maxRangesPerPlacement;
+        // Exponentially weighted average of recent read latencies, in nanoseconds per row
+        private double _recentLatency = Double.NaN;
+        // Lowest recent read latency, slowly rising if the placement's latency permanently increases
+        private double _typicalLatency = Double.NaN;
+
+        private final Meter _rangesScanned;
+        private final Meter _rowsRead;
+        private final Counter _inFlightRanges;
+        private final Counter _queuedRanges;
+        private final Timer _queueTime;
+        private final Histogram _readLatency;
+
+        private PlacementState(String placement) {
+            String prefix = MetricRegistry.name("bv.emodb.scan.ScanRangeScheduler.placement", placement);
+            _rangesScanned = _metricRegistry.meter(MetricRegistry.name(prefix, "ranges-scanned"));
+            _rowsRead = _metricRegistry.meter(MetricRegistry.name(prefix, "rows-read"));
+            _inFlightRanges = _metricRegistry.counter(MetricRegistry.name(prefix, "in-flight-ranges"));
+            _queuedRanges = _metricRegistry.counter(MetricRegistry.name(prefix, "queued-ranges"));
+            _queueTime = _metricRegistry.timer(MetricRegistry.name(prefix, "queue-time"));
+            _readLatency = _metricRegistry.histogram(MetricRegistry.name(prefix, "read-nanos-per-row"));
+        }
+
+        private boolean canStart() {
+            return !_waitingRanges.isEmpty() && _inFlight < _limit;
+        }
+
+        /**
+         * Prefers the less loaded placement, and if both are equally loaded the one whose next range has waited longer.
+         */
+        private boolean isPreferredTo(PlacementState other) {
+            long load = (long) _inFlight * other._limit;
+            long otherLoad = (long) other._inFlight * _limit;
+            if (load != otherLoad) {
+                return load < otherLoad;
+            }
+            return _waitingRanges.peek()._submitTime < other._waitingRanges.peek()._submitTime;
+        }
+
+        private void decreaseLimit() {
+            _limit = Math.max(_limit / 2, 1);
+        }
+
+        private void increaseLimit() {
+            _limit = Math.min(_limit + 1, _maxRangesPerPlacement);
+        }
+    }
+
+    private static class WaitingRange {
+        private final Runnable _start;
+        private final long _submitTime;
+
+        private WaitingRange(Runnable start, long submitTime) {
+            _start = start;
+            _submitTime = submitTime;
+        }
+    }
+}
@@ -31,6 +31,7 @@ import com.google.common.base.Optional;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ForwardingIterator;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
@@ -219,7 +220,7 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         RangeScanHungCheck rangeScanHungCheck = null;
 
         final BatchContext context = new BatchContext(
-                _batchSize, placement, scanRange, shardCounter, rawBytesUploadedCounter);
+                _batchSize, placement, scanRange, shardCounter, rawBytesUploadedCounter, options.getIncrementalSince());
 
         _activeRangeScans.inc();
         try (ScanWriter scanWriter = _scanWriterGenerator.createScanWriter(taskId, options.getDestinations())) {
@@ -296,7 +297,8 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                 allResults = _dataTools.multiTableScan(multiTableScanOptions, _tableSetByScanId.getUnchecked(scanId), LimitCounter.max(), ReadConsistency.STRONG, cutoffTime);
             }
 
-            Iterator<MultiTableScanResult> nonInternalResults = Iterators.filter(allResults, result -> !result.getTable().isInternal());
+            ReadTimingIterator timedResults = new ReadTimingIterator(allResults);
+            Iterator<MultiTableScanResult> nonInternalResults = Iterators.filter(timedResults, result -> !result.getTable().isInternal());
 
             // Enforce a maximum number of results based on the scan options
             Iterator<MultiTableScanResult> results = Iterators.limit(nonInternalResults, getResplitRowCount(options));
@@ -356,13 +358,15 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                         placement, scanRange);
                 // Scan ranges are exclusive on the start key so resend the last key read to start on the next row.
                 return RangeScanUploaderResult.resplit(
-                        ScanRange.create(batch.getLastResult().getRowKey(), scanRange.getTo()));
+                        ScanRange.create(batch.getLastResult().getRowKey(), scanRange.getTo()))
+                        .withReadStatistics(timedResults.getRowsRead(), timedResults.getReadTime());
             }
 
             _log.info("Scanning placement complete for task id={}, {}: {} ({})", taskId, placement, scanRange,
                     Duration.between(startTime, Instant.now()));
 
-            return RangeScanUploaderResult.success();
+            return RangeScanUploaderResult.success()
+                    .withReadStatistics(timedResults.getRowsRead(), timedResults.getReadTime());
         } catch (Throwable t) {
             if (Thread.interrupted()) {
                 _log.error("Scanning placement failed and interrupted for task id={}, {}: {}", taskId, placement, scanRange, t);
@@ -519,7 +523,7 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
                     _log.debug("Writing output file: {}", writer);
                 }
 
-                if (!Intrinsic.isDeleted(content)) {  // Ignore deleted objects
+                if (context.isIncluded(content)) {
                     writer.writeDocument(content);
                 }
             }
@@ -631,6 +635,7 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         private final ScanRange _taskRange;
         private final Counter _shardCounter;
         private final Counter _rawBytesUploadedCounter;
+        private final Date _incrementalSince;
 
         private ScanWriter _scanWriter;
         private final Set<Batch> _openBatches = Sets.newHashSet();
@@ -641,12 +646,25 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         private volatile boolean _stopProcessing = false;
 
         private BatchContext(int batchSize, String placement, ScanRange taskRange,
-                             Counter shardCounter, Counter rawBytesUploadedCounter) {
+                             Counter shardCounter, Counter rawBytesUploadedCounter, @Nullable Date incrementalSince) {
             _batchSize = batchSize;
             _placement = placement;
             _taskRange = taskRange;
             _shardCounter = shardCounter;
             _rawBytesUploadedCounter = rawBytesUploadedCounter;
+            _incrementalSince = incrementalSince;
+        }
+
+        /**
+         * Full Stashes ignore deleted objects.  Incremental Stashes only include objects updated since the previous
+         * Stash, and include deleted objects so readers know to drop them from the previous Stash.
+         */
+        private boolean isIncluded(Map<String, Object> content) {
+            if (_incrementalSince == null) {
+                return !Intrinsic.isDeleted(content);
+            }
+            Date lastUpdateAt = Intrinsic.getLastUpdateAt(content);
+            return lastUpdateAt == null || !lastUpdateAt.before(_incrementalSince);
         }
 
         private ScanWriter getScanWriter() {
@@ -792,6 +810,55 @@ public class LocalRangeScanUploader implements RangeScanUploader, Managed {
         }
     }
 
+    /**
+     * Counts the results read from the placement and the time spent waiting on the underlying iterator for them.
+     * Only the thread performing the range scan reads from it.
+     */
+    private static class ReadTimingIterator extends ForwardingIterator<MultiTableScanResult> {
+        private final Iterator<MultiTableScanResult> _delegate;
+        private long _rowsRead;
+        private long _readNanos;
+
+        private ReadTimingIterator(Iterator<MultiTableScanResult> delegate) {
+            _delegate = delegate;
+        }
+
+        @Override
+        protected Iterator<MultiTableScanResult> delegate() {
+            return _delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return super.hasNext();
+            } finally {
+                _readNanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public MultiTableScanResult next() {
+            long start = System.nanoTime();
+            try {
+                MultiTableScanResult result = super.next();
+                _rowsRead += 1;
+                return result;
+            } finally {
+                _readNanos += System.nanoTime() - start;
+            }
+        }
+
+        public long getRowsRead() {
+            return _rowsRead;
+        }
+
+        public Duration getReadTime() {
+            return Duration.ofNanos(_readNanos);
+        }
+    }
+
     private class RangeScanHungCheck implements Runnable {
         private final int _taskId;
         private final Thread _scanThread;
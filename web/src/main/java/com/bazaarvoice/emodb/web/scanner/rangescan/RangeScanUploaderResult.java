@@ -3,6 +3,7 @@ package com.bazaarvoice.emodb.web.scanner.rangescan;
 import com.bazaarvoice.emodb.sor.db.ScanRange;
 
 import javax.annotation.Nullable;
+import java.time.Duration;
 
 /**
  * Signals to the caller the result of a range scan operation.  This can be one of three values:
@@ -14,6 +15,8 @@ import javax.annotation.Nullable;
  *                   that needs to be resplit and rescheduled can be retrieved using {@link #getResplitRange()}
  * </ol>
  *
+ * Results may also include how many rows were read from the placement and the time spent reading them, which is used
+ * to track each placement's read latency.
  */
 public class RangeScanUploaderResult {
 
@@ -40,10 +43,25 @@ public class RangeScanUploaderResult {
 
     private final Status _status;
     private final ScanRange _resplitRange;
+    private final long _rowsRead;
+    private final Duration _readTime;
 
     public RangeScanUploaderResult(Status status, @Nullable ScanRange resplitRange) {
+        this(status, resplitRange, 0, Duration.ZERO);
+    }
+
+    private RangeScanUploaderResult(Status status, @Nullable ScanRange resplitRange, long rowsRead, Duration readTime) {
         _status = status;
         _resplitRange = resplitRange;
+        _rowsRead = rowsRead;
+        _readTime = readTime;
+    }
+
+    /**
+     * Returns a copy of this result with the number of rows read and the total time spent waiting for them.
+     */
+    public RangeScanUploaderResult withReadStatistics(long rowsRead, Duration readTime) {
+        return new RangeScanUploaderResult(_status, _resplitRange, rowsRead, readTime);
     }
 
     public Status getStatus() {
@@ -55,6 +73,14 @@ public class RangeScanUploaderResult {
         return _resplitRange;
     }
 
+    public long getRowsRead() {
+        return _rowsRead;
+    }
+
+    public Duration getReadTime() {
+        return _readTime;
+    }
+
     @Override
     public String toString() {
         return _status.toString();
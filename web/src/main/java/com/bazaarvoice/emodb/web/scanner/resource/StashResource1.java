@@ -65,6 +65,7 @@ public class StashResource1 {
                                 @QueryParam ("rangeScanSplitSize") @DefaultValue("1000000") Integer rangeScanSplitSize,
                                 @QueryParam ("maxRangeScanTime") @DefaultValue("PT10M") String maxRangeScanTime,
                                 @QueryParam ("usePlanFrom") String usePlanFromStashId,
+                                @QueryParam ("incrementalFrom") String incrementalFromStashId,
                                 @QueryParam ("dryRun") @DefaultValue ("false") Boolean dryRun) {
 
         checkArgument(!placements.isEmpty(), "Placement is required");
@@ -101,6 +102,7 @@ public class StashResource1 {
         return _scanUploader.scanAndUpload(id, options)
                 .dryRun(dryRun)
                 .usePlanFromStashId(usePlanFromStashId)
+                .incrementalFrom(incrementalFromStashId)
                 .start();
     }
 
@@ -2,6 +2,8 @@ package com.bazaarvoice.emodb.web.scanner.writer;
 
 import com.bazaarvoice.emodb.common.dropwizard.metrics.MetricCounterOutputStream;
 import com.bazaarvoice.emodb.common.json.ISO8601DateFormat;
+import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.common.stash.StashManifest;
 import com.bazaarvoice.emodb.common.stash.StashUtil;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.MetricRegistry;
@@ -131,8 +133,15 @@ abstract public class AbstractScanWriter implements ScanWriter {
     }
 
     @Override
-    public boolean writeScanComplete(String scanId, Date startTime)
+    public boolean writeScanComplete(String scanId, Date startTime, @Nullable StashManifest manifest)
             throws IOException {
+        if (manifest != null) {
+            URI manifestFileUri = UriBuilder.fromUri(_baseUri)
+                    .path(StashUtil.MANIFEST_FILE)
+                    .build();
+            writeManifestFile(manifestFileUri, JsonHelper.asUtf8Bytes(manifest));
+        }
+
         // Write the start time, complete time and scan ID in a success file
         String contents = format("%s\n%s\n%s", new ISO8601DateFormat().format(startTime),
                 new ISO8601DateFormat().format(new Date()), scanId);
@@ -176,6 +185,12 @@ abstract public class AbstractScanWriter implements ScanWriter {
     abstract protected boolean writeScanCompleteFile(URI fileUri, byte[] contents)
             throws IOException;
 
+    /**
+     * Writes the contents to the "manifest" file located at "fileUri", replacing it if it already exists.
+     */
+    abstract protected void writeManifestFile(URI fileUri, byte[] contents)
+            throws IOException;
+
     /**
      * Writes the contents to the "latest" file located at "fileUri".
      */
@@ -42,6 +42,12 @@ public class DiscardingScanWriter extends TemporaryFileScanWriter {
         return true;
     }
 
+    @Override
+    protected void writeManifestFile(URI fileUri, byte[] contents)
+            throws IOException {
+        // empty
+    }
+
     @Override
     protected void writeLatestFile(URI fileUri, byte[] contents)
             throws IOException {
@@ -72,6 +72,14 @@ public class FileScanWriter extends TemporaryFileScanWriter {
         return true;
     }
 
+    @Override
+    protected void writeManifestFile(URI fileUri, byte[] contents)
+            throws IOException {
+        File file = new File(fileUri.toURL().getFile());
+        Files.createParentDirs(file);
+        Files.write(contents, file);
+    }
+
     @Override
     protected void writeLatestFile(URI fileUri, byte[] contents)
             throws IOException {
@@ -1,11 +1,13 @@
 package com.bazaarvoice.emodb.web.scanner.writer;
 
+import com.bazaarvoice.emodb.common.stash.StashManifest;
 import com.bazaarvoice.emodb.kafka.KafkaCluster;
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URI;
 import java.time.Clock;
@@ -70,7 +72,7 @@ public class KafkaScanWriter implements ScanWriter {
     }
 
     @Override
-    public boolean writeScanComplete(String scanId, Date startTime) throws IOException {
+    public boolean writeScanComplete(String scanId, Date startTime, @Nullable StashManifest manifest) throws IOException {
         // This is a No-op in this implementation
         return true;
     }
@@ -1,10 +1,12 @@
 package com.bazaarvoice.emodb.web.scanner.writer;
 
+import com.bazaarvoice.emodb.common.stash.StashManifest;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Date;
@@ -76,11 +78,11 @@ public class MultiScanWriter implements ScanWriter {
     }
 
     @Override
-    public boolean writeScanComplete(String scanId, Date startTime)
+    public boolean writeScanComplete(String scanId, Date startTime, @Nullable StashManifest manifest)
             throws IOException {
         boolean allComplete = true;
         for (ScanWriter scanWriter : _scanWriters) {
-            boolean writerComplete = scanWriter.writeScanComplete(scanId, startTime);
+            boolean writerComplete = scanWriter.writeScanComplete(scanId, startTime, manifest);
             allComplete = allComplete && writerComplete;
         }
         return allComplete;
@@ -284,6 +284,14 @@ public class S3ScanWriter extends TemporaryFileScanWriter {
         return true;
     }
 
+    @Override
+    protected void writeManifestFile(URI fileUri, byte[] contents)
+            throws IOException {
+        String bucket = fileUri.getHost();
+        String key = getKeyFromPath(fileUri);
+        uploadContents(bucket, key, contents);
+    }
+
     @Override
     protected void writeLatestFile(URI fileUri, byte[] contents)
             throws IOException {
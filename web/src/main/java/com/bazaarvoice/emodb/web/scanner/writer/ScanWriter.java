@@ -1,5 +1,8 @@
 package com.bazaarvoice.emodb.web.scanner.writer;
 
+import com.bazaarvoice.emodb.common.stash.StashManifest;
+
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.time.Duration;
@@ -26,9 +29,10 @@ public interface ScanWriter extends Closeable {
             throws IOException, InterruptedException;
 
     /**
-     * Writes a signal file that the scan is complete.
+     * Writes a signal file that the scan is complete.  If the scan was incremental its manifest is written first,
+     * so readers never see a complete incremental Stash without one.
      * @return true if the file was written, false if it already existed (repeat call)
      */
-    boolean writeScanComplete(String scanId, Date startTime)
+    boolean writeScanComplete(String scanId, Date startTime, @Nullable StashManifest manifest)
             throws IOException;
 }
@@ -20,6 +20,7 @@ import com.bazaarvoice.emodb.sor.db.ScanRangeSplits;
 import com.bazaarvoice.emodb.table.db.Table;
 import com.bazaarvoice.emodb.table.db.TableSet;
 import com.bazaarvoice.emodb.table.db.astyanax.AstyanaxStorage;
+import com.bazaarvoice.emodb.table.db.astyanax.FullConsistencyTimeProvider;
 import com.bazaarvoice.emodb.web.scanner.ScanDestination;
 import com.bazaarvoice.emodb.web.scanner.ScanOptions;
 import com.bazaarvoice.emodb.web.scanner.ScanUploader;
@@ -68,7 +69,8 @@ public class ScanOperationsTimeUpdateTest {
         CompactionControlSource compactionControlSource = new InMemoryCompactionControlSource();
 
         // start the scan
-        ScanUploader scanUploader = new ScanUploader(getDataTools(), scanWorkflow, scanStatusDAO, stashStateListener, compactionControlSource, dataCenters);
+        ScanUploader scanUploader = new ScanUploader(getDataTools(), scanWorkflow, scanStatusDAO, stashStateListener, compactionControlSource, dataCenters,
+                mock(FullConsistencyTimeProvider.class));
         // the default in code is 1 minute for compaction control buffer time, but we don't want to wait that long in the test, so set to a smaller value.
         scanUploader.setCompactionControlBufferTimeInMillis(1);
         scanUploader.setScanWaitTimeInMillis(5);
@@ -102,7 +104,8 @@ public class ScanOperationsTimeUpdateTest {
         CompactionControlSource compactionControlSource = new InMemoryCompactionControlSource();
 
         // start the scan which will throw an exception
-        ScanUploader scanUploader = new ScanUploader(getDataTools(), scanWorkflow, scanStatusDAO, stashStateListener, compactionControlSource, dataCenters);
+        ScanUploader scanUploader = new ScanUploader(getDataTools(), scanWorkflow, scanStatusDAO, stashStateListener, compactionControlSource, dataCenters,
+                mock(FullConsistencyTimeProvider.class));
         // the default in code is 1 minute for compaction control buffer time, but we don't want to wait that long in the test, so set to a smaller value.
         scanUploader.setCompactionControlBufferTimeInMillis(1);
         scanUploader.setScanWaitTimeInMillis(5);
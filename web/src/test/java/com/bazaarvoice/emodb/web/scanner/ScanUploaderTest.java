@@ -10,6 +10,7 @@ import com.bazaarvoice.emodb.common.api.impl.LimitCounter;
 import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
 import com.bazaarvoice.emodb.common.json.ISO8601DateFormat;
 import com.bazaarvoice.emodb.common.json.JsonHelper;
+import com.bazaarvoice.emodb.common.stash.StashManifest;
 import com.bazaarvoice.emodb.datacenter.api.DataCenter;
 import com.bazaarvoice.emodb.datacenter.api.DataCenters;
 import com.bazaarvoice.emodb.plugin.stash.StashMetadata;
@@ -29,6 +30,7 @@ import com.bazaarvoice.emodb.sor.db.ScanRange;
 import com.bazaarvoice.emodb.sor.db.ScanRangeSplits;
 import com.bazaarvoice.emodb.table.db.Table;
 import com.bazaarvoice.emodb.table.db.astyanax.AstyanaxStorage;
+import com.bazaarvoice.emodb.table.db.astyanax.FullConsistencyTimeProvider;
 import com.bazaarvoice.emodb.web.scanner.control.DistributedScanRangeMonitor;
 import com.bazaarvoice.emodb.web.scanner.control.InMemoryScanWorkflow;
 import com.bazaarvoice.emodb.web.scanner.control.LocalScanUploadMonitor;
@@ -48,6 +50,7 @@ import com.bazaarvoice.emodb.web.scanner.writer.AmazonS3Provider;
 import com.bazaarvoice.emodb.web.scanner.writer.DefaultScanWriterGenerator;
 import com.bazaarvoice.emodb.web.scanner.writer.DiscardingScanWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.S3ScanWriter;
+import com.bazaarvoice.emodb.web.scanner.writer.ScanDestinationWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriter;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterFactory;
 import com.bazaarvoice.emodb.web.scanner.writer.ScanWriterGenerator;
@@ -110,6 +113,7 @@ import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -123,6 +127,7 @@ import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 /**
  * Unit test which validates the scan upload operation.
@@ -328,7 +333,8 @@ public class ScanUploaderTest {
         ScanStatusDAO scanStatusDAO = new InMemoryScanStatusDAO();
         CompactionControlSource compactionControlSource = new InMemoryCompactionControlSource();
         // Create the instance and run the upload
-        ScanUploader scanUploader = new ScanUploader(dataTools, scanWorkflow, scanStatusDAO, stashStateListener, compactionControlSource, dataCenters);
+        ScanUploader scanUploader = new ScanUploader(dataTools, scanWorkflow, scanStatusDAO, stashStateListener, compactionControlSource, dataCenters,
+                mock(FullConsistencyTimeProvider.class));
         // the default in code is 1 minute for compaction control buffer time, but we don't want to wait that long in the test, so set to a smaller value.
 
         scanUploader.setCompactionControlBufferTimeInMillis(1);
@@ -453,7 +459,8 @@ public class ScanUploaderTest {
         DataCenters dataCenters = mock(DataCenters.class);
         DataCenter dataCenter1 = mockDataCenter("us-east", "http://emodb.cert.us-east-1.nexus.bazaarvoice.com:8081", "http://emodb.cert.us-east-1.nexus.bazaarvoice.com:8080");
         when(dataCenters.getSelf()).thenReturn(dataCenter1);
-        ScanUploader scanUploader = new ScanUploader(dataStore, scanWorkflow, scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), dataCenters);
+        ScanUploader scanUploader = new ScanUploader(dataStore, scanWorkflow, scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), dataCenters,
+                mock(FullConsistencyTimeProvider.class));
         // the default in code is 1 minute for compaction control buffer time, but we don't want to wait that long in the test, so set to a smaller value.
         scanUploader.setCompactionControlBufferTimeInMillis(1);
         scanUploader.setScanWaitTimeInMillis(5);
@@ -544,6 +551,153 @@ public class ScanUploaderTest {
         }
     }
 
+    @Test
+    public void testIncrementalScanUploadFromExistingScan() throws Exception {
+        MetricRegistry metricRegistry = new MetricRegistry();
+        InMemoryDataStore dataStore = spy(new InMemoryDataStore(metricRegistry));
+        when(dataStore.getScanRangeSplits("app_global:default", 1000000, Optional.<ScanRange>absent()))
+                .thenReturn(new ScanRangeSplits(ImmutableList.of(createSimpleSplitGroup("00", "ff"))));
+
+        ScanStatusDAO scanStatusDAO = new DataStoreScanStatusDAO(dataStore, "scan-status-table", "app_global:default");
+        DataCenters dataCenters = mock(DataCenters.class);
+        DataCenter dataCenter1 = mockDataCenter("us-east", "http://emodb.cert.us-east-1.nexus.bazaarvoice.com:8081", "http://emodb.cert.us-east-1.nexus.bazaarvoice.com:8080");
+        when(dataCenters.getSelf()).thenReturn(dataCenter1);
+        // Writes to the placement's cluster are fully consistent after 5 minutes
+        FullConsistencyTimeProvider fullConsistencyTimeProvider = mock(FullConsistencyTimeProvider.class);
+        when(fullConsistencyTimeProvider.getMaxTimeStamp("process")).thenAnswer(ignore -> System.currentTimeMillis() - Duration.ofMinutes(5).toMillis());
+        ScanUploader scanUploader = new ScanUploader(dataStore, new InMemoryScanWorkflow(), scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), dataCenters,
+                fullConsistencyTimeProvider);
+        scanUploader.setCompactionControlBufferTimeInMillis(1);
+        scanUploader.setScanWaitTimeInMillis(5);
+
+        // Create a prior scan
+        ScanStatus yesterdayStatus = scanUploader.scanAndUpload("yesterday", new ScanOptions("app_global:default")
+                .addDestination(ScanDestination.discard())
+                .addDestination(ScanDestination.to(new URI("s3://testbucket/stash/2015-01-01-00-00-00/"))))
+                .start();
+        Thread.sleep(Duration.ofSeconds(1).toMillis());
+
+        ScanOptions todayOptions = new ScanOptions("app_global:default")
+                .addDestination(ScanDestination.to(new URI("s3://testbucket/stash/2015-01-02-00-00-00")));
+
+        // The prior scan must be complete before a scan can build on it
+        try {
+            scanUploader.scanAndUpload("today", todayOptions).incrementalFrom("yesterday").dryRun(true).start();
+            fail("IllegalStateException not thrown");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        scanStatusDAO.setCompleteTime("yesterday", new Date());
+
+        ScanStatus todayStatus = scanUploader.scanAndUpload("today", todayOptions)
+                .incrementalFrom("yesterday")
+                .dryRun(true)
+                .start();
+
+        ScanOptions options = todayStatus.getOptions();
+        assertTrue(options.isIncremental());
+        assertEquals(options.getStashManifest().getPrevious(), "2015-01-01-00-00-00");
+        // Rows updated shortly before the prior scan started may not have been visible to it, so they're included too
+        long safetyMargin = yesterdayStatus.getStartTime().getTime() - options.getIncrementalSince().getTime();
+        // (allow a little slack since the lag is measured against a clock which keeps moving during the call)
+        assertTrue(Range.closed(Duration.ofMinutes(5).minusSeconds(1).toMillis(), Duration.ofMinutes(5).plusSeconds(1).toMillis()).contains(safetyMargin),
+                "Unexpected safety margin: " + safetyMargin);
+
+        // The incremental settings survive being persisted with the scan status
+        assertEquals(JsonHelper.convert(options, ScanOptions.class).getStashManifest(), options.getStashManifest());
+    }
+
+    @Test
+    public void testIncrementalScanIncludesLateVisibleWrite() throws Exception {
+        // The prior scan started an hour ago, and writes to the placement's cluster take up to 10 minutes to become
+        // fully consistent
+        long now = System.currentTimeMillis();
+        Date yesterdayStartTime = new Date(now - Duration.ofHours(1).toMillis());
+        FullConsistencyTimeProvider fullConsistencyTimeProvider = mock(FullConsistencyTimeProvider.class);
+        when(fullConsistencyTimeProvider.getMaxTimeStamp("cluster1")).thenReturn(now - Duration.ofMinutes(10).toMillis());
+
+        DataTools dataTools = mock(DataTools.class);
+        when(dataTools.getPlacementCluster("placement1")).thenReturn("cluster1");
+        when(dataTools.getScanRangeSplits(eq("placement1"), anyInt(), eq(Optional.<ScanRange>absent()))).thenReturn(
+                ScanRangeSplits.builder()
+                        .addScanRange("dummy", "dummy", ScanRange.all())
+                        .build());
+
+        ScanStatusDAO scanStatusDAO = new InMemoryScanStatusDAO();
+        scanStatusDAO.updateScanStatus(new ScanStatus("yesterday", new ScanOptions("placement1")
+                .addDestination(ScanDestination.to(new URI("s3://testbucket/stash/2015-01-01-00-00-00/"))),
+                true, false, yesterdayStartTime, ImmutableList.<ScanRangeStatus>of(), ImmutableList.<ScanRangeStatus>of(),
+                ImmutableList.<ScanRangeStatus>of()));
+        scanStatusDAO.setCompleteTime("yesterday", new Date(now - Duration.ofMinutes(30).toMillis()));
+
+        ScanUploader scanUploader = new ScanUploader(dataTools, new InMemoryScanWorkflow(), scanStatusDAO,
+                mock(StashStateListener.class), new InMemoryCompactionControlSource(), mock(DataCenters.class),
+                fullConsistencyTimeProvider);
+        ScanStatus todayStatus = scanUploader.scanAndUpload("today", new ScanOptions("placement1")
+                .addDestination(ScanDestination.to(new URI("s3://testbucket/stash/2015-01-02-00-00-00"))))
+                .incrementalFrom("yesterday")
+                .dryRun(true)
+                .start();
+
+        // "late" was updated with a change ID 3 minutes before the prior scan started but wasn't visible until after the
+        // prior scan read its row.  "old" was last updated well before the prior scan.
+        Map<String, Date> lastUpdateAtByKey = ImmutableMap.of(
+                "late", new Date(yesterdayStartTime.getTime() - Duration.ofMinutes(3).toMillis()),
+                "old", new Date(yesterdayStartTime.getTime() - Duration.ofHours(1).toMillis()));
+
+        List<MultiTableScanResult> results = Lists.newArrayList();
+        for (String keyString : lastUpdateAtByKey.keySet()) {
+            Record record = mock(Record.class);
+            Key key = mock(Key.class);
+            when(key.getKey()).thenReturn(keyString);
+            Table table = mock(Table.class);
+            when(table.getName()).thenReturn("table1");
+            when(key.getTable()).thenReturn(table);
+            when(record.getKey()).thenReturn(key);
+            results.add(new MultiTableScanResult(AstyanaxStorage.getRowKeyRaw(0, 1, keyString), 0, 1, false, record));
+        }
+        when(dataTools.stashMultiTableScan(eq("today"), eq("placement1"), any(ScanRange.class), any(LimitCounter.class), any(ReadConsistency.class), any(Instant.class)))
+                .thenReturn(results.iterator());
+        when(dataTools.toContent(any(MultiTableScanResult.class), any(ReadConsistency.class), eq(false)))
+                .thenAnswer(invocation -> {
+                    String keyString = ((MultiTableScanResult) invocation.getArguments()[0]).getRecord().getKey().getKey();
+                    return ImmutableMap.<String, Object>builder()
+                            .put(Intrinsic.ID, keyString)
+                            .put(Intrinsic.TABLE, "table1")
+                            .put(Intrinsic.DELETED, Boolean.FALSE)
+                            .put(Intrinsic.VERSION, 1)
+                            .put(Intrinsic.LAST_UPDATE_AT, JsonHelper.formatTimestamp(lastUpdateAtByKey.get(keyString)))
+                            .build();
+                });
+
+        // Capture the documents written to the Stash
+        final List<String> writtenIds = Lists.newArrayList();
+        ScanDestinationWriter destinationWriter = mock(ScanDestinationWriter.class);
+        doAnswer(invocation -> {
+            writtenIds.add((String) ((Map<String, Object>) invocation.getArguments()[0]).get(Intrinsic.ID));
+            return null;
+        }).when(destinationWriter).writeDocument(any(Map.class));
+        ScanWriter scanWriter = mock(ScanWriter.class);
+        when(scanWriter.writeShardRows(anyString(), anyString(), anyInt(), anyLong())).thenReturn(destinationWriter);
+        when(scanWriter.waitForAllTransfersComplete(any(Duration.class)))
+                .thenReturn(new WaitForAllTransfersCompleteResult(ImmutableMap.<TransferKey, TransferStatus>of()));
+        ScanWriterGenerator scanWriterGenerator = mock(ScanWriterGenerator.class);
+        when(scanWriterGenerator.createScanWriter(anyInt(), anySetOf(ScanDestination.class))).thenReturn(scanWriter);
+
+        LocalRangeScanUploader uploader = new LocalRangeScanUploader(dataTools, scanWriterGenerator,
+                new InMemoryCompactionControlSource(), mock(LifeCycleRegistry.class), new MetricRegistry(), 1, 1000,
+                Duration.ofMinutes(1), Duration.ofMinutes(5));
+        uploader.start();
+        try {
+            uploader.scanAndUpload("today", 0, todayStatus.getOptions(), "placement1", ScanRange.all(), new Date());
+        } finally {
+            uploader.stop();
+        }
+
+        assertEquals(writtenIds, ImmutableList.of("late"));
+    }
+
     private ScanRangeSplits.SplitGroup createSimpleSplitGroup(String startToken, String endToken) {
         ByteBuffer startTokenBytes = ByteBufferUtil.hexToBytes(startToken);
         ByteBuffer endTokenBytes = ByteBufferUtil.hexToBytes(endToken);
@@ -782,7 +936,8 @@ public class ScanUploaderTest {
         when(dataCenters.getSelf()).thenReturn(dataCenter1);
         when(dataCenters.getAll()).thenReturn(ImmutableList.of(dataCenter1));
 
-        ScanUploader scanUploader = new ScanUploader(mock(DataTools.class), scanWorkflow, scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), mock(DataCenters.class));
+        ScanUploader scanUploader = new ScanUploader(mock(DataTools.class), scanWorkflow, scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), mock(DataCenters.class),
+                mock(FullConsistencyTimeProvider.class));
         scanUploader.resubmitWorkflowTasks("id");
 
         verify(scanStatusDAO).getScanStatus("id");
@@ -811,7 +966,8 @@ public class ScanUploaderTest {
         when(dataCenters.getSelf()).thenReturn(dataCenter1);
         when(dataCenters.getAll()).thenReturn(ImmutableList.of(dataCenter1));
 
-        ScanUploader scanUploader = new ScanUploader(mock(DataTools.class), scanWorkflow, scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), mock(DataCenters.class));
+        ScanUploader scanUploader = new ScanUploader(mock(DataTools.class), scanWorkflow, scanStatusDAO, mock(StashStateListener.class), new InMemoryCompactionControlSource(), mock(DataCenters.class),
+                mock(FullConsistencyTimeProvider.class));
         scanUploader.resubmitWorkflowTasks("id");
 
         verify(scanStatusDAO).getScanStatus("id");
@@ -0,0 +1,238 @@
+package com.bazaarvoice.emodb.web.scanner.control;
+
+import com.bazaarvoice.emodb.common.dropwizard.lifecycle.LifeCycleRegistry;
+import com.bazaarvoice.emodb.sor.db.ScanRange;
+import com.bazaarvoice.emodb.web.scanner.config.ScanRangeSchedulerConfiguration;
+import com.bazaarvoice.emodb.web.scanner.rangescan.RangeScanUploader;
+import com.bazaarvoice.emodb.web.scanner.rangescan.RangeScanUploaderResult;
+import com.bazaarvoice.emodb.web.scanner.scanstatus.ScanStatusDAO;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractListeningExecutorService;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class ScanRangeSchedulerTest {
+
+    @Test
+    public void testPlacementLimit() {
+        ScanRangeScheduler scheduler = new ScanRangeScheduler(4,
+                new ScanRangeSchedulerConfiguration().setMaxRangesPerPlacement(Optional.of(2)),
+                () -> 0.0, Clock.systemUTC(), new MetricRegistry());
+        List<String> started = Lists.newArrayList();
+
+        submit(scheduler, started, "a1", "a2", "a3");
+        assertEquals(started, ImmutableList.of("a1", "a2"));
+        assertEquals(scheduler.getWaitingRanges("a"), 1);
+        // Two ranges are running and one is waiting
+        assertEquals(scheduler.getClaimCapacity(), 2);
+
+        submit(scheduler, started, "b1");
+        assertEquals(started, ImmutableList.of("a1", "a2", "b1"));
+
+        scheduler.release("a");
+        assertEquals(started, ImmutableList.of("a1", "a2", "b1", "a3"));
+        assertEquals(scheduler.getInFlightRanges("a"), 2);
+        assertEquals(scheduler.getWaitingRanges("a"), 0);
+    }
+
+    @Test
+    public void testBalanceAcrossPlacements() {
+        ScanRangeScheduler scheduler = new ScanRangeScheduler(2, new ScanRangeSchedulerConfiguration(),
+                () -> 0.0, Clock.systemUTC(), new MetricRegistry());
+        List<String> started = Lists.newArrayList();
+
+        submit(scheduler, started, "a1", "a2", "a3");
+        submit(scheduler, started, "b1", "b2");
+        assertEquals(started, ImmutableList.of("a1", "a2"));
+        assertEquals(scheduler.getClaimCapacity(), 0);
+
+        // Placement "b" has no ranges in flight so its ranges start before the one "a" submitted first
+        scheduler.release("a");
+        assertEquals(started, ImmutableList.of("a1", "a2", "b1"));
+        scheduler.release("b");
+        assertEquals(started, ImmutableList.of("a1", "a2", "b1", "b2"));
+
+        // Now "a" is the less loaded placement
+        scheduler.release("a");
+        assertEquals(started, ImmutableList.of("a1", "a2", "b1", "b2", "a3"));
+    }
+
+    @Test
+    public void testReadLatencyAdjustsLimit() {
+        ScanRangeScheduler scheduler = new ScanRangeScheduler(8,
+                new ScanRangeSchedulerConfiguration().setMaxRangesPerPlacement(Optional.of(4)),
+                () -> 0.0, Clock.systemUTC(), new MetricRegistry());
+
+        assertEquals(scheduler.getPlacementLimit("a"), 4);
+
+        scheduler.rangeScanComplete("a", result(1000, 1));
+        assertEquals(scheduler.getPlacementLimit("a"), 4);
+
+        // Latency jumps well above the typical latency
+        scheduler.rangeScanComplete("a", result(1000, 20));
+        assertEquals(scheduler.getPlacementLimit("a"), 2);
+        scheduler.rangeScanComplete("a", result(1000, 20));
+        assertEquals(scheduler.getPlacementLimit("a"), 1);
+        scheduler.rangeScanComplete("a", result(1000, 20));
+        assertEquals(scheduler.getPlacementLimit("a"), 1);
+
+        // Other placements aren't affected
+        assertEquals(scheduler.getPlacementLimit("b"), 4);
+
+        // Once latency recovers the limit grows back to the maximum
+        for (int i = 0; i < 20; i++) {
+            scheduler.rangeScanComplete("a", result(1000, 1));
+        }
+        assertEquals(scheduler.getPlacementLimit("a"), 4);
+
+        // Failures also reduce the limit
+        scheduler.rangeScanComplete("a", RangeScanUploaderResult.failure());
+        assertEquals(scheduler.getPlacementLimit("a"), 2);
+    }
+
+    @Test
+    public void testHostLoad() {
+        AtomicLong load = new AtomicLong(2);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ScanRangeScheduler scheduler = new ScanRangeScheduler(4, new ScanRangeSchedulerConfiguration(),
+                () -> load.get(), Clock.systemUTC(), metricRegistry);
+        List<String> started = Lists.newArrayList();
+
+        // While the host is overloaded only one range runs
+        submit(scheduler, started, "a1");
+        submit(scheduler, started, "b1", "b2");
+        assertEquals(started, ImmutableList.of("a1"));
+        assertEquals(scheduler.getClaimCapacity(), 0);
+        assertTrue(metricRegistry.meter("bv.emodb.scan.ScanRangeScheduler.host-overloaded").getCount() > 0);
+
+        load.set(0);
+        scheduler.startWaitingRanges();
+        assertEquals(started, ImmutableList.of("a1", "b1", "b2"));
+        assertEquals(scheduler.getClaimCapacity(), 1);
+    }
+
+    @Test
+    public void testQueueMetrics() {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(1000L);
+        MetricRegistry metricRegistry = new MetricRegistry();
+        ScanRangeScheduler scheduler = new ScanRangeScheduler(1, new ScanRangeSchedulerConfiguration(),
+                () -> 0.0, clock, metricRegistry);
+        List<String> started = Lists.newArrayList();
+
+        submit(scheduler, started, "a1", "a2");
+
+        String prefix = "bv.emodb.scan.ScanRangeScheduler.placement.a.";
+        assertEquals(metricRegistry.counter(prefix + "in-flight-ranges").getCount(), 1);
+        assertEquals(metricRegistry.counter(prefix + "queued-ranges").getCount(), 1);
+
+        when(clock.millis()).thenReturn(6000L);
+        scheduler.rangeScanComplete("a", result(500, 2));
+        scheduler.release("a");
+
+        assertEquals(metricRegistry.counter(prefix + "in-flight-ranges").getCount(), 1);
+        assertEquals(metricRegistry.counter(prefix + "queued-ranges").getCount(), 0);
+        assertEquals(metricRegistry.meter(prefix + "ranges-scanned").getCount(), 1);
+        assertEquals(metricRegistry.meter(prefix + "rows-read").getCount(), 500);
+        assertEquals(metricRegistry.histogram(prefix + "read-nanos-per-row").getSnapshot().getMax(),
+                TimeUnit.MILLISECONDS.toNanos(2) / 500);
+        // One range started immediately and the other waited five seconds
+        assertEquals(metricRegistry.timer(prefix + "queue-time").getCount(), 2);
+        assertEquals(metricRegistry.timer(prefix + "queue-time").getSnapshot().getMax(), TimeUnit.SECONDS.toNanos(5));
+    }
+
+    @Test
+    public void testMonitorSchedulesClaimedTasks() {
+        InMemoryScanWorkflow scanWorkflow = new InMemoryScanWorkflow();
+        scanWorkflow.addScanRangeTask("scan1", 1, "a", range(0, 1));
+        scanWorkflow.addScanRangeTask("scan1", 2, "a", range(1, 2));
+        scanWorkflow.addScanRangeTask("scan1", 3, "b", range(2, 3));
+        scanWorkflow.addScanRangeTask("scan1", 4, "b", range(3, 4));
+
+        ScanRangeScheduler scheduler = new ScanRangeScheduler(2,
+                new ScanRangeSchedulerConfiguration().setMaxRangesPerPlacement(Optional.of(1)),
+                () -> 0.0, Clock.systemUTC(), new MetricRegistry());
+        RangeScanUploader rangeScanUploader = mock(RangeScanUploader.class);
+        DistributedScanRangeMonitor monitor = new DistributedScanRangeMonitor(scanWorkflow, mock(ScanStatusDAO.class),
+                rangeScanUploader, scheduler, 2, mock(LifeCycleRegistry.class));
+        QueuingExecutorService scanningService = new QueuingExecutorService();
+        monitor.setExecutorServices(scanningService, mock(ScheduledExecutorService.class));
+
+        monitor.startScansIfAvailable();
+
+        // The second range from "a" waits for the first so one range from "b" can run, and with two ranges running
+        // and one waiting no further ranges are claimed.
+        assertEquals(scanningService._tasks.size(), 2);
+        assertEquals(scheduler.getInFlightRanges("a"), 1);
+        assertEquals(scheduler.getWaitingRanges("a"), 1);
+        assertEquals(scheduler.getInFlightRanges("b"), 1);
+        assertEquals(scheduler.getWaitingRanges("b"), 0);
+        assertEquals(scanWorkflow.peekAllPendingTasks().size(), 1);
+        verifyZeroInteractions(rangeScanUploader);
+    }
+
+    /** Submits ranges named by their placement and a number, such as "a1", which record their name when started. */
+    private static void submit(ScanRangeScheduler scheduler, List<String> started, String... names) {
+        for (String name : names) {
+            scheduler.submit(name.substring(0, 1), () -> started.add(name));
+        }
+    }
+
+    private static RangeScanUploaderResult result(long rowsRead, long readTimeMillis) {
+        return RangeScanUploaderResult.success().withReadStatistics(rowsRead, Duration.ofMillis(readTimeMillis));
+    }
+
+    private static ScanRange range(int from, int to) {
+        return ScanRange.create(ByteBuffer.wrap(new byte[] {(byte) from}), ByteBuffer.wrap(new byte[] {(byte) to}));
+    }
+
+    /** Executor which holds submitted tasks without running them. */
+    private static class QueuingExecutorService extends AbstractListeningExecutorService {
+        private final List<Runnable> _tasks = Lists.newArrayList();
+
+        @Override
+        public void execute(Runnable command) {
+            _tasks.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return _tasks;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}